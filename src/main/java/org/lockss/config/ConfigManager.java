@@ -209,6 +209,14 @@ public class ConfigManager implements LockssManager {
   public static final String PARAM_LOAD_TDBS = MYPREFIX + "loadTdbs";
   public static final boolean DEFAULT_LOAD_TDBS = true;
 
+  /** If true, a reload in which no file containing title DB entries has
+   * changed reuses the previously merged Tdb rather than rebuilding it
+   * from every file and diffing it against the old one.
+   * @ParamRelevance Rare
+   */
+  static final String PARAM_INCREMENTAL_RELOAD = MYPREFIX + "incrementalReload";
+  static final boolean DEFAULT_INCREMENTAL_RELOAD = true;
+
   /** List of URLs of title DBs configured locally using UI.  Do not set
    * manually
    * @ParamRelevance Never
@@ -798,6 +806,12 @@ public class ConfigManager implements LockssManager {
   long reloadInterval = 10 * Constants.MINUTE;
   private long sendVersionEvery = DEFAULT_SEND_VERSION_EVERY;
   private int maxDeferredAuBatchSize = DEFAULT_MAX_DEFERRED_AU_BATCH_SIZE;
+  private boolean incrementalReload = DEFAULT_INCREMENTAL_RELOAD;
+
+  // Generations and merged Tdb of the most recent load, used to decide
+  // whether the next load can reuse the Tdb
+  private List<ConfigFile.Generation> lastLoadedGens;
+  private Tdb lastLoadedTdb;
 
   private List<Pattern> expertConfigAllowPats;
   private List<Pattern> expertConfigDenyPats;
@@ -1808,16 +1822,24 @@ public class ConfigManager implements LockssManager {
       }
       return false;
     }
+    boolean reuseTdb = canReuseTdb(gens);
     Configuration newConfig = initNewConfiguration();
     // Add app defaults
     mergeAppConfig(newConfig, LockssApp::getBootDefault, "app bootstrap default");
     mergeAppConfig(newConfig, LockssApp::getAppDefault, "app default");
-    loadList(newConfig, gens);
+    loadList(newConfig, gens, !reuseTdb);
     // Add app un-overridable config
     mergeAppConfig(newConfig, LockssApp::getAppConfig, "app config");
+    if (reuseTdb) {
+      log.debug2("No title DB files changed, reusing Tdb");
+      newConfig.setTdb(lastLoadedTdb);
+    }
     if (log.isDebug3()) log.debug3(DEBUG_HEADER + "newConfig = " + newConfig);
 
     boolean did = installConfig(newConfig, gens);
+    // If not installed the new config was equal to the current one
+    lastLoadedGens = new ArrayList<>(gens);
+    lastLoadedTdb = did ? newConfig.getTdb() : currentConfig.getTdb();
     long tottime = TimeBase.msSince(startUpdateTime);
     long cbtime = TimeBase.msSince(startCallbacksTime);
     if (did) {
@@ -1879,8 +1901,60 @@ public class ConfigManager implements LockssManager {
     return sb.toString();
   }
 
+  /** Return true if the Tdb merged by the previous load can be used
+   * as-is for a load of <code>gens</code>: the same files are being
+   * loaded in the same order, and none of those that changed contain (or
+   * previously contained) title DB entries. */
+  boolean canReuseTdb(List<ConfigFile.Generation> gens) {
+    if (!incrementalReload || lastLoadedGens == null
+	|| lastLoadedGens.size() != gens.size()) {
+      return false;
+    }
+    if (hasTdb(LockssApp::getBootDefault) || hasTdb(LockssApp::getAppDefault)
+	|| hasTdb(LockssApp::getAppConfig)) {
+      return false;
+    }
+    Iterator<ConfigFile.Generation> oldIter = lastLoadedGens.iterator();
+    for (ConfigFile.Generation gen : gens) {
+      ConfigFile.Generation oldGen = oldIter.next();
+      if (gen == null || oldGen == null) {
+	if (gen != oldGen) {
+	  return false;
+	}
+	continue;
+      }
+      if (!gen.getUrl().equals(oldGen.getUrl())) {
+	return false;
+      }
+      if (gen.getGeneration() != oldGen.getGeneration()
+	  && (hasTdb(gen.getConfig()) || hasTdb(oldGen.getConfig()))) {
+	return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean hasTdb(Function<LockssApp,Configuration> getter) {
+    return getApp() != null && hasTdb(getter.apply(getApp()));
+  }
+
+  private static boolean hasTdb(Configuration config) {
+    if (config == null) {
+      return false;
+    }
+    Tdb tdb = config.getTdb();
+    return tdb != null && !tdb.isEmpty();
+  }
+
   void loadList(Configuration intoConfig,
 		Collection<ConfigFile.Generation> gens) {
+    loadList(intoConfig, gens, true);
+  }
+
+  /** Merge the configs in <code>gens</code> into <code>intoConfig</code>,
+   * omitting their Tdbs if <code>inclTdb</code> is false. */
+  void loadList(Configuration intoConfig,
+		Collection<ConfigFile.Generation> gens, boolean inclTdb) {
     final String DEBUG_HEADER = "loadList(): ";
     if (log.isDebug3()) {
       log.debug3(DEBUG_HEADER
@@ -1892,7 +1966,7 @@ public class ConfigManager implements LockssManager {
 	if (log.isDebug3()) log.debug3(DEBUG_HEADER
 	    + "gen.getConfig().keySet().size() = "
 	    + gen.getConfig().keySet().size());
-	intoConfig.copyFrom(gen.getConfig(), null);
+	intoConfig.copyFrom(gen.getConfig(), null, null, inclTdb);
 	if (log.isDebug3())
 	  log.debug3(DEBUG_HEADER
 	      + "intoConfig.keySet().size() = " + intoConfig.keySet().size());
@@ -2085,6 +2159,8 @@ public class ConfigManager implements LockssManager {
       maxDeferredAuBatchSize =
 	config.getInt(PARAM_MAX_DEFERRED_AU_BATCH_SIZE,
 		      DEFAULT_MAX_DEFERRED_AU_BATCH_SIZE);
+      incrementalReload = config.getBoolean(PARAM_INCREMENTAL_RELOAD,
+					    DEFAULT_INCREMENTAL_RELOAD);
       notificationTopic = config.get(PARAM_JMS_NOTIFICATION_TOPIC,
 				     DEFAULT_JMS_NOTIFICATION_TOPIC);
       enableJmsSend = config.getBoolean(PARAM_ENABLE_JMS_SEND,
@@ -220,6 +220,18 @@ public abstract class Configuration {
   }
 
   public void copyFrom(Configuration other, ParamCopyEvent pse, StringPool pool) {
+    copyFrom(other, pse, pool, true);
+  }
+
+  /** Copy contents of the argument into this config, optionally omitting
+   * its Tdb.
+   * @other the config from which to copy
+   * @pse null, or an event to be called for every param copied
+   * @pool null, or a StringPool in which to intern keys and values
+   * @inclTdb if false, the other config's Tdb is not merged
+   */
+  void copyFrom(Configuration other, ParamCopyEvent pse, StringPool pool,
+		boolean inclTdb) {
     // merge other config tree into this one
     for (Iterator iter = other.keyIterator(); iter.hasNext(); ) {
       String key = (String)iter.next();
@@ -234,6 +246,9 @@ public abstract class Configuration {
       put(key, val);
     }
     
+    if (!inclTdb) {
+      return;
+    }
     // merge other config Tdb into this one
     Tdb otherTdb = other.getTdb();
     if (otherTdb != null) {
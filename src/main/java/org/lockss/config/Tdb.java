@@ -378,6 +378,10 @@ public class Tdb {
   }
 
   Differences computeDifferences(Tdb oldTdb) {
+    if (oldTdb == this) {
+      // Reused unchanged across a config reload
+      return new Differences();
+    }
     if (oldTdb == null) {
       return new AllDifferences(this);
     } else {
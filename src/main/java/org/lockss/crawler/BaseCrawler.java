@@ -229,7 +229,7 @@ public abstract class BaseCrawler implements Crawler {
   protected AuState aus;
   protected CrawlManager crawlMgr;
   protected AlertManager alertMgr;
-  protected boolean crawlAborted = false;
+  protected volatile boolean crawlAborted = false;
   protected LockssWatchdog wdog;
   protected IPAddr crawlFromAddr;
   protected String proxyHost;
@@ -583,12 +583,18 @@ public abstract class BaseCrawler implements Crawler {
     }
   }
 
+  /** Return true if updateCacheStats() should check that the rate
+   * limiter was invoked for each fetch */
+  protected boolean isCheckRateLimiterUsed() {
+    return true;
+  }
+
   protected void updateCacheStats(UrlFetcher uf,
 				  FetchResult res,
 				  CrawlUrlData curl) {
     // Paranoia - assert that the rate limiter was actually used
     CrawlRateLimiter crl = getCrawlRateLimiter();
-    if(res != FetchResult.NOT_FETCHED &&
+    if(res != FetchResult.NOT_FETCHED && isCheckRateLimiterUsed() &&
        pauseCounter == crl.getPauseCounter()) {
       logger.critical("CrawlRateLimiter not used after " + curl,
                       new Throwable());
@@ -29,16 +29,14 @@ in this Software without prior written authorization from Stanford University.
 package org.lockss.crawler;
 
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.lang3.builder.CompareToBuilder;
-import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.commons.collections4.*;
 import org.apache.commons.collections4.map.*;
 import org.apache.commons.collections4.bag.HashBag; // needed to disambiguate
 import org.apache.oro.text.regex.*;
 
-import EDU.oswego.cs.dl.util.concurrent.*;
-
 import org.lockss.config.*;
 import org.lockss.daemon.*;
 import org.lockss.daemon.Crawler;
@@ -404,10 +402,15 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
   // Maps pool key to record of all crawls active in that pool
   // Synchronized on runningCrawlersLock
   private Map<String, PoolCrawlers> poolMap = new HashMap<String, PoolCrawlers>();
-  // Number of AUs needing crawl in each pool.  Used to determine if/when
-  // it's worth rebuilding the queues
-  private Map<String, MutableInt> poolEligible =
-      new HashMap<String, MutableInt>();
+  // AUs found eligible for crawl at the last queue rebuild that didn't
+  // fit in their pool's queue, in priority order.  Used to top up the
+  // queues as they drain, without rescanning all the AUs.  Synchronized
+  // on queueLock
+  private Map<String, PriorityQueue<CrawlReq>> poolBacklogs =
+      new HashMap<String, PriorityQueue<CrawlReq>>();
+  // True if the last queue rebuild considered all AUs (not just high
+  // priority requests).  Synchronized on queueLock
+  private boolean isQueueBuiltFromAllAus = false;
 
   // AUs running new content crawls
   // Synchronized on runningCrawlersLock
@@ -456,8 +459,7 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
   private List<CrawlEventHandler> crawlEventHandlers= new ArrayList<>();
 
 
-  PooledExecutor pool;
-  BoundedPriorityQueue poolQueue;
+  CrawlThreadPool pool;
 
   /**
    * start the crawl manager.
@@ -508,27 +510,19 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
     svcsMgr = getDaemon().getManagerByType(RestServicesManager.class);
     crawlerServiceBinding = getDaemon().getServiceBinding(ServiceDescr.SVC_CRAWLER);
     initRestClientCredentials();
-    if (!paramOdc && paramQueueEnabled) {
-      poolQueue = new BoundedPriorityQueue(paramPoolQueueSize,
-          new CrawlQueueComparator());
-      pool = new PooledExecutor(poolQueue, paramMaxPoolSize);
-    } else {
-      poolQueue = null;
-      pool = new PooledExecutor(paramMaxPoolSize);
-    }
-    // Thread pool favors queueing once min threads exist, so must set min
-    // threads equal to max threads
-    pool.setMinimumPoolSize(paramMaxPoolSize);
-    pool.setKeepAliveTime(paramPoolKeepaliveTime);
     if (paramOdc) {
-      pool.waitWhenBlocked();
+      pool = CrawlThreadPool.makeBlocking(paramMaxPoolSize,
+          paramPoolKeepaliveTime);
+    } else if (paramQueueEnabled) {
+      pool = CrawlThreadPool.makeQueued(paramMaxPoolSize,
+          paramPoolKeepaliveTime, paramPoolQueueSize,
+          new CrawlQueueComparator());
     } else {
-      pool.abortWhenBlocked();
+      pool = CrawlThreadPool.makeUnqueued(paramMaxPoolSize,
+          paramPoolKeepaliveTime);
     }
-    logger.debug2("Crawler thread pool min, max, queuelen: " +
-        pool.getMinimumPoolSize() + ", " +
-        pool.getMaximumPoolSize() + ", " +
-        (poolQueue != null ? poolQueue.capacity() : 0));
+    logger.debug2("Crawler thread pool max, queuelen: " +
+        pool.getMaxThreads() + ", " + pool.getQueueCapacity());
     if (paramOdc || paramStartCrawlsInterval > 0) {
       enableCrawlStarter();
     }
@@ -588,8 +582,7 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
           config.getTimeInterval(PARAM_CRAWLER_THREAD_POOL_KEEPALIVE,
               DEFAULT_CRAWLER_THREAD_POOL_KEEPALIVE);
       if (pool != null) {
-        pool.setMaximumPoolSize(paramMaxPoolSize);
-        pool.setMinimumPoolSize(paramMaxPoolSize);
+        pool.setMaxThreads(paramMaxPoolSize);
         pool.setKeepAliveTime(paramPoolKeepaliveTime);
       }
       paramPoolQueueSize =
@@ -598,8 +591,8 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
       paramPoolMaxQueueSize =
           config.getInt(PARAM_CRAWLER_THREAD_POOL_MAX_QUEUE_SIZE,
               DEFAULT_CRAWLER_THREAD_POOL_MAX_QUEUE_SIZE);
-      if (poolQueue != null && paramPoolQueueSize != poolQueue.capacity()) {
-// 	poolQueue.setCapacity(paramPoolQueueSize);
+      if (pool != null && pool.isQueued()) {
+        pool.setQueueCapacity(paramPoolQueueSize);
       }
 
       paramQueueEmptySleep = config.getTimeInterval(PARAM_QUEUE_EMPTY_SLEEP,
@@ -868,31 +861,19 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
     }
   }
 
-  static final Runnable NULL_RUNNER = new Runnable() {
-    public void run() {
-    }
-  };
-
   /**
-   * Execute the runnable in a pool thread
+   * Execute the runnable in a pool thread.  In on-demand mode, doesn't
+   * return until another pool thread is available.
    *
    * @param run the Runnable to be run
-   * @throws RuntimeException if no pool thread or queue space is available
+   * @throws RejectedExecutionException if no pool thread or queue space
+   * is available
    */
   protected void execute(Runnable run) throws InterruptedException {
     pool.execute(run);
     if (logger.isDebug3()) {
       logger.debug3("Queued/started " + run);
     }
-    if (paramOdc) {
-      if (logger.isDebug3()) {
-        logger.debug3("waiting");
-      }
-      pool.execute(NULL_RUNNER);
-      if (logger.isDebug3()) {
-        logger.debug3("waited");
-      }
-    }
   }
 
   /**
@@ -1167,7 +1148,17 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
       req.refresh(au, AuUtil.getAuState(au));
     }
 
-    rebuildQueueSoon();
+    // A brand new AU can go straight into the already built queues.
+    // Others (restarted, reconfigured) may already be queued under their
+    // old incarnation.
+    if (event.getType() == AuEvent.Type.Create && req == null
+        && enqueueNewAu(au)) {
+      if (!startOneWait.expired()) {
+        startOneWait.expireIn(paramQueueRecalcAfterNewAu);
+      }
+    } else {
+      rebuildQueueSoon();
+    }
   }
 
   /**
@@ -1556,6 +1547,9 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
       runner = new CrawlRunner(crawler, cookie,
           getNewContentRateLimiter(au),
           newContentStartRateLimiter);
+      if (req.getEnqueueTime() > 0) {
+        runner.setQueuedAt(req.getEnqueueTime());
+      }
       // To avoid race, must add to running crawls before starting
       // execution
       addToRunningCrawls(au, crawler);
@@ -1574,19 +1568,12 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
       }
     } catch (InterruptedException e) {
       if (!isShuttingDown()) {
-        // thrown by pool if can't execute (pool & queue full, or pool full
-        // and no queue.  In on-demand mode should throw only on shutdown.)
+        // In on-demand mode should happen only on shutdown.
         String crawlerRunner =
             (crawler == null ? "no crawler" : crawler.toString()) + " " +
                 (runner == null ? "no runner" : runner.toString());
-        if (e.getMessage() != null &&
-            e.getMessage().endsWith("Pool is blocked")) {
-          logger.warning("Couldn't start/schedule " + au + " crawl: " +
-              e.toString() + " " + crawlerRunner);
-        } else {
-          logger.warning("Couldn't start/schedule " + au + " crawl" + " " +
-              crawlerRunner, e);
-        }
+        logger.warning("Couldn't start/schedule " + au + " crawl" + " " +
+            crawlerRunner, e);
       }
       removeFromRunningCrawls(crawler);
       CrawlerStatus cs = req.getCrawlerStatus();
@@ -1594,6 +1581,17 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
         "The request could not be completed");
       notifyCrawlFailed(req.getCookie(), cs, crawler.getType() );
       return cs;
+    } catch (RejectedExecutionException e) {
+      // thrown by pool if can't execute (pool & queue full, or pool full
+      // and no queue)
+      logger.warning("Couldn't start/schedule " + au + " crawl: " +
+          e.getMessage() + " " + crawler);
+      CrawlerStatus cs = crawler.getCrawlerStatus();
+      cmStatus.removeCrawlerStatusIfPending(cs);
+      removeFromRunningCrawls(crawler);
+      cs.setCrawlStatus(Crawler.STATUS_ERROR, "Crawl pool is full");
+      notifyCrawlFailed(req.getCookie(), cs, crawler.getType() );
+      return cs;
     } catch (RuntimeException e) {
       String crawlerRunner =
           (crawler == null ? "no crawler" : crawler.toString()) + " " +
@@ -1705,6 +1703,7 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
     private RateLimiter auRateLimiter;
     private RateLimiter startRateLimiter;
     private int sortOrder;
+    private long queuedAt = TimeBase.nowMs();
 
     private CrawlRunner(Crawler crawler,
                         
@@ -1743,7 +1742,20 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
       return sortOrder;
     }
 
+    /** Set the time the crawl was first queued, if earlier than the time
+     * this runner was created */
+    void setQueuedAt(long time) {
+      queuedAt = time;
+    }
+
     public void lockssRun() {
+      if (crawler.isWholeAU()) {
+        cmStatus.recordQueueWait(TimeBase.msSince(queuedAt));
+      }
+      lockssRun0();
+    }
+
+    private void lockssRun0() {
       //pull out of thread
       boolean crawlSuccessful = false;
       if (logger.isDebug3()) {
@@ -2075,8 +2087,15 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
   // AUs that weren't added to its queue at the last queue rebuild.
   boolean isWorthRebuildingQueue() {
     Bag runKeys = copySharedRunKeys();
-    for (Map.Entry<String, MutableInt> ent : poolEligible.entrySet()) {
-      int additionalEligible = ent.getValue().intValue();
+    Map<String, Integer> backlogSizes = new HashMap<String, Integer>();
+    synchronized (queueLock) {
+      for (Map.Entry<String, PriorityQueue<CrawlReq>> ent :
+             poolBacklogs.entrySet()) {
+        backlogSizes.put(ent.getKey(), ent.getValue().size());
+      }
+    }
+    for (Map.Entry<String, Integer> ent : backlogSizes.entrySet()) {
+      int additionalEligible = ent.getValue();
       if (additionalEligible <= 0) {
         continue;
       }
@@ -2214,6 +2233,7 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
 
   void enqueueHighPriorityCrawl(CrawlReq req) {
     logger.debug("enqueueHighPriorityCrawl(" + req.getAu() + ")");
+    req.setEnqueueTime(TimeBase.nowMs());
     synchronized (highPriorityCrawlRequests) {
       highPriorityCrawlRequests.put(req.getAuId(), req);
     }
@@ -2234,7 +2254,18 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
     }
   }
 
+  /**
+   * Rebuild the crawl queues from scratch if the rebuild interval has
+   * elapsed or a rebuild has been forced, else just top up the pool
+   * queues from the backlogs recorded by the last full rebuild.
+   */
   void rebuildCrawlQueue() {
+    synchronized (queueLock) {
+      if (isQueueBuiltFromAllAus && !timeToRebuildCrawlQueue.expired()) {
+        refillCrawlQueues();
+        return;
+      }
+    }
     timeToRebuildCrawlQueue.expireIn(paramRebuildCrawlQueueInterval);
     long startTime = TimeBase.nowMs();
     rebuildCrawlQueue0();
@@ -2250,11 +2281,12 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
     int ausWantCrawl = 0;
     int ausEligibleCrawl = 0;
     synchronized (queueLock) {
-      poolEligible.clear();
+      poolBacklogs.clear();
       unsharedRateReqs.clear();
       unsharedRateReqs.setMaxSize(paramUnsharedQueueMax);
       sharedRateReqs.clear();
-      for (ArchivalUnit au : (areAusStarted()
+      isQueueBuiltFromAllAus = areAusStarted();
+      for (ArchivalUnit au : (isQueueBuiltFromAllAus
           ? pluginMgr.getAllAus()
           : getHighPriorityAus())) {
         try {
@@ -2271,28 +2303,14 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
             ausWantCrawl++;
             if (isEligibleForNewContentCrawl(au)) {
               if (req == null) {
-        	CrawlerStatus crawlerStatus =
-        	    new CrawlerStatus(au, au.getStartUrls(), null);
-                req = new CrawlReq(au, crawlerStatus);
+                // CrawlerStatus is created if and when the req makes it
+                // into a pool queue
+                req = new CrawlReq(au, (CrawlerStatus)null);
                 setReqPriority(req);
               }
               if (req.priority > MIN_CRAWL_PRIORITY) {
                 ausEligibleCrawl++;
-                String rateKey = req.getRateKey();
-                if (rateKey == null) {
-                  unsharedRateReqs.add(req);
-                  incrPoolEligible(UNSHARED_RATE_KEY);
-                  if (logger.isDebug3()) {
-                    logger.debug3("Added to queue: null, " + req);
-                  }
-                } else {
-                  sharedRateReqs.put(rateKey, req);
-                  incrPoolEligible(rateKey);
-                  if (logger.isDebug3()) {
-                    logger.debug3("Added to pool queue: " + rateKey +
-                        ", " + req);
-                  }
-                }
+                getPoolBacklog(getPoolKey(req)).add(req);
               }
             }
           }
@@ -2301,38 +2319,135 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
           // ignore AU if it caused an error
         }
       }
+      for (String poolKey : poolBacklogs.keySet()) {
+        fillPoolQueue(poolKey, false);
+      }
     }
-    adjustEligibleCounts();
     cmStatus.setWaitingCount(ausWantCrawl);
     cmStatus.setEligibleCount(ausEligibleCrawl);
   }
 
-  void incrPoolEligible(String pool) {
-    MutableInt n = poolEligible.get(pool);
-    if (n == null) {
-      n = new MutableInt();
-      poolEligible.put(pool, n);
+  /** Move reqs from each pool's backlog into its queue until the queue is
+   * full or the backlog is empty.  O(log n) per req moved. */
+  void refillCrawlQueues() {
+    synchronized (queueLock) {
+      for (String poolKey : poolBacklogs.keySet()) {
+        fillPoolQueue(poolKey, true);
+      }
+    }
+  }
+
+  /**
+   * Add a newly created AU to its pool's backlog (and queue, if there's
+   * room), without rebuilding the queues.
+   * @return false if the queues haven't yet been built from all the AUs,
+   * so the AU should be picked up by a rebuild instead
+   */
+  boolean enqueueNewAu(ArchivalUnit au) {
+    synchronized (queueLock) {
+      if (!isQueueBuiltFromAllAus || timeToRebuildCrawlQueue.expired()) {
+        return false;
+      }
+      try {
+        if (!au.isNamedArchivalUnit() &&
+            shouldCrawlForNewContent(au) &&
+            isEligibleForNewContentCrawl(au)) {
+          CrawlReq req = new CrawlReq(au, (CrawlerStatus)null);
+          setReqPriority(req);
+          if (req.priority > MIN_CRAWL_PRIORITY) {
+            String poolKey = getPoolKey(req);
+            getPoolBacklog(poolKey).add(req);
+            fillPoolQueue(poolKey, false);
+          }
+        }
+      } catch (RuntimeException e) {
+        logger.warning("Checking for crawlworthiness: " + au.getName(), e);
+      }
+      return true;
     }
-    n.add(1);
   }
 
   // called within synchronized (queueLock) {...}
 
-  private void adjustEligibleCounts() {
-    for (Map.Entry<String, MutableInt> ent : poolEligible.entrySet()) {
-      String poolKey = ent.getKey();
+  private void fillPoolQueue(String poolKey, boolean recheck) {
+    PriorityQueue<CrawlReq> backlog = poolBacklogs.get(poolKey);
+    if (backlog == null) {
+      return;
+    }
+    Set poolQueue;
+    int max;
+    if (poolKey == UNSHARED_RATE_KEY) {
+      poolQueue = unsharedRateReqs;
+      max = unsharedRateReqs.getMaxSize();
+    } else {
+      poolQueue = (Set) sharedRateReqs.get(poolKey);
+      max = paramSharedQueueMax;
+    }
+    while ((poolQueue == null || poolQueue.size() < max)
+           && !backlog.isEmpty()) {
+      CrawlReq req = backlog.poll();
+      if (recheck && !isStillEligible(req)) {
+        continue;
+      }
+      if (req.getCrawlerStatus() == null) {
+        ArchivalUnit au = req.getAu();
+        req.setCrawlerStatus(new CrawlerStatus(au, au.getStartUrls(), null));
+      }
+      if (req.getEnqueueTime() == 0) {
+        req.setEnqueueTime(TimeBase.nowMs());
+      }
       if (poolKey == UNSHARED_RATE_KEY) {
-        ent.getValue().subtract(unsharedRateReqs.getMaxSize());
+        unsharedRateReqs.add(req);
+        if (logger.isDebug3()) {
+          logger.debug3("Added to queue: null, " + req);
+        }
       } else {
-        Set poolQueue = (Set) sharedRateReqs.get(poolKey);
-        if (poolQueue != null) {
-          ent.getValue().subtract(poolQueue.size());
+        sharedRateReqs.put(poolKey, req);
+        if (poolQueue == null) {
+          poolQueue = (Set) sharedRateReqs.get(poolKey);
         }
+        if (logger.isDebug3()) {
+          logger.debug3("Added to pool queue: " + poolKey + ", " + req);
+        }
+      }
+    }
+    logger.debug2("Additional Eligible: " + poolKey + ": " + backlog.size());
+  }
+
+  // Reqs may sit in a backlog for up to the rebuild interval, so check
+  // that the AU still exists and still needs a crawl before queueing
+  private boolean isStillEligible(CrawlReq req) {
+    ArchivalUnit au = req.getAu();
+    if (!req.isActive()) {
+      return false;
+    }
+    try {
+      boolean isHighPri;
+      synchronized (highPriorityCrawlRequests) {
+        isHighPri = highPriorityCrawlRequests.get(req.getAuId()) == req;
       }
-      logger.debug2("Additional Eligible: " + poolKey + ": " + ent.getValue());
+      return (isHighPri || shouldCrawlForNewContent(au)) &&
+          isEligibleForNewContentCrawl(au);
+    } catch (RuntimeException e) {
+      logger.warning("Checking for crawlworthiness: " + au.getName(), e);
+      return false;
     }
   }
 
+  private PriorityQueue<CrawlReq> getPoolBacklog(String poolKey) {
+    PriorityQueue<CrawlReq> res = poolBacklogs.get(poolKey);
+    if (res == null) {
+      res = new PriorityQueue<CrawlReq>(11, CPC);
+      poolBacklogs.put(poolKey, res);
+    }
+    return res;
+  }
+
+  private String getPoolKey(CrawlReq req) {
+    String rateKey = req.getRateKey();
+    return rateKey == null ? UNSHARED_RATE_KEY : rateKey;
+  }
+
   List<ArchivalUnit> getHighPriorityAus() {
     synchronized (highPriorityCrawlRequests) {
       List<ArchivalUnit> res = new ArrayList<ArchivalUnit>();
@@ -2474,8 +2589,8 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
   private Iterator crawlStartIter = null;
 
   void startSomeCrawls() {
-    if (crawlerEnabled && (poolQueue != null)) {
-      if (poolQueue.size() < paramPoolQueueSize) {
+    if (crawlerEnabled && pool != null && pool.isQueued()) {
+      if (pool.getQueueSize() < paramPoolQueueSize) {
         logger.debug("Checking for AUs that need crawls");
         // get a new iterator if don't have one or if have exhausted
         // previous one
@@ -2483,12 +2598,12 @@ public class CrawlManagerImpl extends BaseLockssDaemonManager
           crawlStartIter = pluginMgr.getRandomizedAus().iterator();
         }
         for (Iterator iter = pluginMgr.getAllRegistryAus().iterator();
-             iter.hasNext() && poolQueue.size() < paramPoolQueueSize; ) {
+             iter.hasNext() && pool.getQueueSize() < paramPoolQueueSize; ) {
           ArchivalUnit au = (ArchivalUnit) iter.next();
           possiblyStartCrawl(au);
         }
         while (crawlStartIter.hasNext() &&
-            poolQueue.size() < paramPoolQueueSize) {
+            pool.getQueueSize() < paramPoolQueueSize) {
           ArchivalUnit au = (ArchivalUnit) crawlStartIter.next();
           if (!isInternalAu(au)) {
             possiblyStartCrawl(au);
@@ -53,6 +53,9 @@ public class CrawlManagerStatus {
   private int ausWantCrawl;
   private int ausEligibleCrawl;
   private boolean isOdc = false;
+  private int queueWaitCount = 0;
+  private long queueWaitTotal = 0;
+  private long queueWaitMax = 0;
   private Collection runningNCCrawls = Collections.EMPTY_LIST;
 
 
@@ -174,4 +177,28 @@ public class CrawlManagerStatus {
   public void setEligibleCount(int val) {
     ausEligibleCrawl = val;
   }
+
+  /** Record the time a new content crawl spent queued before it started */
+  public synchronized void recordQueueWait(long wait) {
+    queueWaitCount++;
+    queueWaitTotal += wait;
+    if (wait > queueWaitMax) {
+      queueWaitMax = wait;
+    }
+  }
+
+  /** Return the number of crawls whose queue wait has been recorded */
+  public synchronized int getQueueWaitCount() {
+    return queueWaitCount;
+  }
+
+  /** Return the mean time crawls spent queued before they started */
+  public synchronized long getAvgQueueWait() {
+    return queueWaitCount == 0 ? 0 : queueWaitTotal / queueWaitCount;
+  }
+
+  /** Return the longest time a crawl spent queued before it started */
+  public synchronized long getMaxQueueWait() {
+    return queueWaitMax;
+  }
 }
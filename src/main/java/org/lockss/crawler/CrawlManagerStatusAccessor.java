@@ -420,6 +420,14 @@ public class CrawlManagerStatusAccessor implements StatusAccessor {
     addIfNonZero(res, "Pending Crawls", ct.waiting);
     addIfNonZero(res, "Successful Crawls", cms.getSuccessCount());
     addIfNonZero(res, "Failed Crawls", cms.getFailedCount());
+    if (cms.getQueueWaitCount() != 0) {
+      res.add(new StatusTable.SummaryInfo("Avg Queue Wait",
+					  ColumnDescriptor.TYPE_TIME_INTERVAL,
+					  cms.getAvgQueueWait()));
+      res.add(new StatusTable.SummaryInfo("Max Queue Wait",
+					  ColumnDescriptor.TYPE_TIME_INTERVAL,
+					  cms.getMaxQueueWait()));
+    }
     Configuration config = ConfigManager.getCurrentConfig();
     if (config.getBoolean(BaseCrawler.PARAM_PROXY_ENABLED,
 			  BaseCrawler.DEFAULT_PROXY_ENABLED)) {
@@ -114,6 +114,11 @@ public class CrawlQueue {
     return map.isEmpty();
   }
 
+  /** Release any resources held by the queue.  The queue should not be
+   * used afterwards. */
+  public void release() {
+  }
+
   public String toString() {
     return "[" + StringUtil.separatedString(sorted, ", ") + "]";
   }
@@ -46,6 +46,7 @@ public class CrawlReq {
   private ArchivalUnit au;
   private AuState aus = null;
   protected CrawlerStatus crawlerStatus = null;
+  private long enqueueTime = 0;
 
   /**
    * No-arguments constructor.
@@ -129,6 +130,20 @@ public class CrawlReq {
     return crawlerStatus;
   }
 
+  void setCrawlerStatus(CrawlerStatus crawlerStatus) {
+    this.crawlerStatus = crawlerStatus;
+  }
+
+  /** Return the time the request was queued to run, or 0 if it hasn't
+   * been */
+  public long getEnqueueTime() {
+    return enqueueTime;
+  }
+
+  public void setEnqueueTime(long time) {
+    enqueueTime = time;
+  }
+
   public String toString() {
     StringBuilder sb = new StringBuilder();
     sb.append("[CrawlReq");
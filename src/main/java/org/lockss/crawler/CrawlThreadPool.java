@@ -0,0 +1,257 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.crawler;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lockss.util.*;
+
+/**
+ * Thread pool on which {@link CrawlManagerImpl} runs crawls.  Operates in
+ * one of three modes:<ul>
+ *
+ * <li>Blocking (on-demand crawling): {@link #execute(Runnable)} waits
+ * until a thread is free, then starts the crawl and waits again until
+ * another thread is free, so the caller can choose the next crawl only
+ * when it can actually be run.  Waiting callers are served in FIFO
+ * order.</li>
+ *
+ * <li>Queued: crawls beyond the number of threads wait in a bounded
+ * queue, in the order determined by the supplied comparator.  {@link
+ * RejectedExecutionException} is thrown if the queue is full.</li>
+ *
+ * <li>Unqueued: {@link RejectedExecutionException} is thrown if all the
+ * threads are busy.</li></ul>
+ *
+ * Threads are created on demand up to the maximum, which may be changed
+ * while running.
+ */
+class CrawlThreadPool {
+  static Logger log = Logger.getLogger();
+
+  private static final AtomicInteger poolCount = new AtomicInteger();
+
+  private final boolean isBlocking;
+  private final ThreadPoolExecutor executor;
+  // Non-null iff queued.  Holds the Runnables themselves, so the
+  // comparator sees the objects passed to execute().
+  private final PriorityBlockingQueue<Runnable> queue;
+  private final ResizableSemaphore freeThreads;
+  private int maxThreads;
+  private volatile int queueCapacity;
+
+  /** Create a pool that blocks when all threads are busy */
+  static CrawlThreadPool makeBlocking(int maxThreads, long keepAlive) {
+    return new CrawlThreadPool(maxThreads, keepAlive, true, 0, null);
+  }
+
+  /** Create a pool that queues up to queueCapacity requests in the order
+   * determined by comparator, and rejects more than that */
+  static CrawlThreadPool makeQueued(int maxThreads, long keepAlive,
+				    int queueCapacity,
+				    Comparator<? super Runnable> comparator) {
+    return new CrawlThreadPool(maxThreads, keepAlive, false,
+			       queueCapacity, comparator);
+  }
+
+  /** Create a pool that rejects requests when all threads are busy */
+  static CrawlThreadPool makeUnqueued(int maxThreads, long keepAlive) {
+    return new CrawlThreadPool(maxThreads, keepAlive, false, 0, null);
+  }
+
+  private CrawlThreadPool(int maxThreads, long keepAlive,
+			  boolean isBlocking, int queueCapacity,
+			  Comparator<? super Runnable> comparator) {
+    this.maxThreads = maxThreads;
+    this.isBlocking = isBlocking;
+    this.queueCapacity = queueCapacity;
+    BlockingQueue<Runnable> execQueue;
+    if (comparator != null) {
+      queue = new PriorityBlockingQueue<Runnable>(Math.max(queueCapacity, 1),
+						  comparator);
+      execQueue = queue;
+      freeThreads = null;
+    } else {
+      // Callers never have more tasks outstanding than there are
+      // threads, so this queue only ever holds a task momentarily
+      queue = null;
+      execQueue = new LinkedBlockingQueue<Runnable>();
+      freeThreads = new ResizableSemaphore(maxThreads);
+    }
+    final String name = "Crawler-" + poolCount.incrementAndGet();
+    executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+				      Math.max(keepAlive, 0),
+				      TimeUnit.MILLISECONDS,
+				      execQueue,
+				      new ThreadFactory() {
+	  private int n = 0;
+	  public synchronized Thread newThread(Runnable r) {
+	    Thread th = new Thread(r, name + "-" + n++);
+	    th.setDaemon(true);
+	    return th;
+	  }
+	});
+  }
+
+  /**
+   * Run the Runnable in a pool thread
+   * @throws RejectedExecutionException if non-blocking and no thread or
+   * queue space is available
+   * @throws InterruptedException if interrupted while waiting for a free
+   * thread
+   */
+  void execute(Runnable run) throws InterruptedException {
+    if (queue != null) {
+      synchronized (this) {
+	if (executor.getActiveCount() >= maxThreads
+	    && queue.size() >= queueCapacity) {
+	  throw new RejectedExecutionException("Pool is blocked");
+	}
+	executor.execute(run);
+      }
+      return;
+    }
+    if (isBlocking) {
+      freeThreads.acquire();
+    } else if (!freeThreads.tryAcquire()) {
+      throw new RejectedExecutionException("Pool is blocked");
+    }
+    try {
+      executor.execute(new Releaser(run));
+    } catch (RuntimeException e) {
+      freeThreads.release();
+      throw e;
+    }
+    if (isBlocking) {
+      // Don't return until another thread is available, so the next
+      // request is chosen only when it can be started
+      freeThreads.acquire();
+      freeThreads.release();
+    }
+  }
+
+  /** Return true if requests wait in a queue when all threads are busy */
+  boolean isQueued() {
+    return queue != null;
+  }
+
+  /** Return the number of requests waiting for a thread */
+  int getQueueSize() {
+    return queue != null ? queue.size() : 0;
+  }
+
+  /** Return the maximum number of requests that may wait for a thread */
+  int getQueueCapacity() {
+    return queue != null ? queueCapacity : 0;
+  }
+
+  void setQueueCapacity(int capacity) {
+    queueCapacity = capacity;
+  }
+
+  int getMaxThreads() {
+    return maxThreads;
+  }
+
+  /** Return the number of threads currently running crawls */
+  int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  /** Change the number of threads */
+  synchronized void setMaxThreads(int max) {
+    if (max == maxThreads) {
+      return;
+    }
+    if (max > maxThreads) {
+      executor.setMaximumPoolSize(max);
+      executor.setCorePoolSize(max);
+    } else {
+      executor.setCorePoolSize(max);
+      executor.setMaximumPoolSize(max);
+    }
+    if (freeThreads != null) {
+      freeThreads.resize(max - maxThreads);
+    }
+    maxThreads = max;
+  }
+
+  void setKeepAliveTime(long keepAlive) {
+    if (keepAlive > 0) {
+      executor.setKeepAliveTime(keepAlive, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Interrupt running crawls, discard queued ones */
+  List<Runnable> shutdownNow() {
+    return executor.shutdownNow();
+  }
+
+  /** Gives the thread back to the pool when the Runnable exits */
+  private class Releaser implements Runnable {
+    private final Runnable run;
+
+    Releaser(Runnable run) {
+      this.run = run;
+    }
+
+    public void run() {
+      try {
+	run.run();
+      } finally {
+	freeThreads.release();
+      }
+    }
+
+    public String toString() {
+      return run.toString();
+    }
+  }
+
+  /** Fair semaphore whose number of permits can be reduced */
+  static class ResizableSemaphore extends Semaphore {
+    ResizableSemaphore(int permits) {
+      super(permits, true);
+    }
+
+    void resize(int delta) {
+      if (delta > 0) {
+	release(delta);
+      } else if (delta < 0) {
+	reducePermits(-delta);
+      }
+    }
+  }
+}
@@ -78,6 +78,14 @@ public class CrawlUrlData implements CrawlUrl {
     return referrerUrl;
   }
 
+  int getFlags() {
+    return flags;
+  }
+
+  void setFlags(int flags) {
+    this.flags = flags;
+  }
+
   public boolean isFetched() {
     return (flags & IS_FETCHED) != 0;
   }
@@ -0,0 +1,165 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package org.lockss.crawler;
+
+import java.io.*;
+import java.util.*;
+
+import org.lockss.util.*;
+import org.lockss.util.io.FileUtil;
+
+/**
+ * Holds {@link CrawlUrlData} that a crawl may need to come back to, such
+ * as URLs beyond the max crawl depth and parsed URLs that weren't
+ * fetched, keyed by URL fingerprint.  If created with spilling enabled,
+ * the records are appended to a file and only their offsets are kept in
+ * memory; otherwise the CrawlUrlData themselves are kept.  Not
+ * synchronized.
+ */
+public class CrawlUrlStore {
+  static Logger log = Logger.getLogger();
+
+  private final File parentDir;
+  private boolean spill;		// cleared if writing fails
+
+  private Map<Long,CrawlUrlData> inMem = new HashMap<Long,CrawlUrlData>();
+  // fingerprint -> record number, which indexes offsets
+  private UrlFingerprintMap index = new UrlFingerprintMap();
+  private long[] offsets = new long[1024];
+  private int nrecs = 0;
+  private File dir;
+  private RandomAccessFile file;
+  private long end = 0;
+  private ByteArrayOutputStream buf = new ByteArrayOutputStream();
+
+  /**
+   * Create a CrawlUrlStore
+   * @param spill if true, records are written to disk
+   * @param parentDir the directory in which to create the spill directory,
+   * or null for the system temp dir
+   */
+  public CrawlUrlStore(boolean spill, File parentDir) {
+    this.spill = spill;
+    this.parentDir = parentDir;
+  }
+
+  /** Store the CrawlUrlData, replacing any with the same URL */
+  public void put(CrawlUrlData curl) {
+    long fp = UrlFingerprintMap.fingerprint(curl.getUrl());
+    if (spill) {
+      try {
+	append(fp, curl);
+	inMem.remove(fp);
+	return;
+      } catch (IOException e) {
+	log.error("Couldn't write crawl URL store in " + dir
+		  + ", keeping it in memory", e);
+	spill = false;
+      }
+    }
+    index.remove(fp);
+    inMem.put(fp, curl);
+  }
+
+  public boolean contains(String url) {
+    long fp = UrlFingerprintMap.fingerprint(url);
+    return index.containsKey(fp) || inMem.containsKey(fp);
+  }
+
+  /** Remove and return the CrawlUrlData for the URL with fingerprint
+   * fp, or null if none.  If it was written to disk, a new CrawlUrlData
+   * is returned. */
+  public CrawlUrlData remove(long fp) {
+    int rec = index.get(fp, -1);
+    if (rec < 0) {
+      return inMem.remove(fp);
+    }
+    index.remove(fp);
+    try {
+      file.seek(offsets[rec]);
+      int depth = file.readInt();
+      int flags = file.readInt();
+      CrawlUrlData curl =
+	new CrawlUrlData(SpillingCrawlQueue.readString(file), depth);
+      curl.setFlags(flags);
+      curl.setReferrer(SpillingCrawlQueue.readString(file));
+      return curl;
+    } catch (IOException e) {
+      throw new LockssUncheckedIOException("Couldn't read crawl URL store in "
+					   + dir, e);
+    }
+  }
+
+  public int size() {
+    return index.size() + inMem.size();
+  }
+
+  /** Return the number of records currently held on disk */
+  int getSpilledCount() {
+    return index.size();
+  }
+
+  /** Close and delete the file, discarding all the records */
+  public void release() {
+    IOUtil.safeClose(file);
+    file = null;
+    if (dir != null) {
+      FileUtil.delTree(dir);
+      dir = null;
+    }
+    index.clear();
+    inMem.clear();
+  }
+
+  private void append(long fp, CrawlUrlData curl) throws IOException {
+    if (file == null) {
+      dir = (parentDir == null)
+	? FileUtil.createTempDir("crawlurls", "")
+	: FileUtil.createTempDir("crawlurls", "", parentDir);
+      file = new RandomAccessFile(new File(dir, "urls"), "rw");
+    }
+    buf.reset();
+    DataOutputStream out = new DataOutputStream(buf);
+    out.writeInt(curl.getDepth());
+    out.writeInt(curl.getFlags());
+    SpillingCrawlQueue.writeString(out, curl.getUrl());
+    SpillingCrawlQueue.writeString(out, curl.getReferrer());
+    file.seek(end);
+    file.write(buf.toByteArray());
+    if (nrecs == offsets.length) {
+      offsets = Arrays.copyOf(offsets, nrecs * 2);
+    }
+    offsets[nrecs] = end;
+    index.put(fp, nrecs++);
+    end += buf.size();
+  }
+}
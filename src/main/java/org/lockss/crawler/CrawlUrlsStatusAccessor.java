@@ -34,6 +34,7 @@ package org.lockss.crawler;
 import java.util.*;
 import org.lockss.daemon.status.*;
 import org.lockss.daemon.*;
+import org.lockss.config.*;
 import org.lockss.plugin.*;
 import org.lockss.util.*;
 import static org.lockss.crawler.CrawlerStatus.UrlErrorInfo;
@@ -42,6 +43,11 @@ import static org.lockss.crawler.CrawlerStatus.ReferrerType;
 public class CrawlUrlsStatusAccessor implements StatusAccessor {
   static Logger log = Logger.getLogger();
 
+  /** Number of URLs to display on each page of a crawl URL table. */
+  public static final String PARAM_URLS_PER_PAGE =
+    Configuration.PREFIX + "crawlStatus.urlsPerPage";
+  public static final int DEFAULT_URLS_PER_PAGE = 1000;
+
   private static final String URL = "url";
   private static final String IX = "ix";
   private static final String CRAWL_ERROR = "crawl_error";
@@ -135,7 +141,13 @@ public class CrawlUrlsStatusAccessor implements StatusAccessor {
     table.setTitle(getTableTitle(status, tableStr));
     boolean includeReferrers =
       table.isIncludeColumn(REFERRER) && status.hasReferrers();
-    table.setRows(makeRows(status, tableStr, includeReferrers));
+    StatusTable.RowSource rowSource =
+      makeRowSource(status, tableStr, includeReferrers);
+    if (rowSource != null) {
+      table.setRowSource(rowSource, URL,
+			 CurrentConfig.getIntParam(PARAM_URLS_PER_PAGE,
+						   DEFAULT_URLS_PER_PAGE));
+    }
     table.setSummaryInfo(getSummaryInfo(table, status, tableStr));
   }
 
@@ -225,64 +237,90 @@ public class CrawlUrlsStatusAccessor implements StatusAccessor {
     return null;
   }
 
-  private List makeRows(CrawlerStatus status, String tableStr,
-			boolean includeReferrers) {
-    List rows = null;
-
+  // Rows are made as the table is read, so that only the displayed page
+  // of a large crawl's URLs is held in memory.
+  private StatusTable.RowSource makeRowSource(CrawlerStatus status,
+					      String tableStr,
+					      boolean includeReferrers) {
     if (FETCHED_TABLE_NAME.equals(tableStr)) {
-      rows = urlSetToRows(status.getUrlsFetched(), status, includeReferrers);
+      return urlSetRowSource(status.getUrlsFetched(),
+			     status, includeReferrers);
     } else if (NOT_MODIFIED_TABLE_NAME.equals(tableStr)) {
-      rows = urlSetToRows(status.getUrlsNotModified(),
-			  status, includeReferrers);
+      return urlSetRowSource(status.getUrlsNotModified(),
+			     status, includeReferrers);
     } else if (UNCHANGED_TABLE_NAME.equals(tableStr)) {
-      rows = urlSetToRows(status.getUrlsUnchanged(), status, includeReferrers);
+      return urlSetRowSource(status.getUrlsUnchanged(),
+			     status, includeReferrers);
     } else if (PARSED_TABLE_NAME.equals(tableStr)) {
-      rows = urlSetToRows(status.getUrlsParsed(), status, includeReferrers);
+      return urlSetRowSource(status.getUrlsParsed(),
+			     status, includeReferrers);
     } else if (PENDING_TABLE_NAME.equals(tableStr)) {
-      rows = urlSetToRows(status.getUrlsPending(), status, includeReferrers);
+      return urlSetRowSource(status.getUrlsPending(),
+			     status, includeReferrers);
     } else if (EXCLUDED_TABLE_NAME.equals(tableStr)) {
       Map<String,String> map = status.getUrlsExcludedMap();
-      rows = new ArrayList(map.size());
-      int ix = 1;
-      for (Map.Entry<String,String> ent : map.entrySet()) {
- 	rows.add(makeExcludedRow(ent.getKey(), ix++, ent.getValue(),
-				 status, includeReferrers));
-      }
+      return new IndexedRowSource<Map.Entry<String,String>>(
+	map.entrySet(), 1,
+	(ent, ix) -> makeExcludedRow(ent.getKey(), ix, ent.getValue(),
+				     status, includeReferrers));
     } else if (ERROR_TABLE_NAME.equals(tableStr)) {
       Map<String,UrlErrorInfo> errorMap = status.getUrlsErrorMap();
-      rows = new ArrayList(errorMap.size());
-      int ix = 1;
-      for (Map.Entry<String,UrlErrorInfo> ent : errorMap.entrySet()) {
- 	rows.add(makeErrorRow(ent.getKey(), ix++, ent.getValue(),
-			      status, includeReferrers));
-      }
+      return new IndexedRowSource<Map.Entry<String,UrlErrorInfo>>(
+	errorMap.entrySet(), 1,
+	(ent, ix) -> makeErrorRow(ent.getKey(), ix, ent.getValue(),
+				  status, includeReferrers));
     } else if (MIMETYPES_TABLE_NAME.equals(getMtTableStr(tableStr))) {
-      rows = urlSetToRows(status.getUrlsOfMimeType(getMimeTypeStr(tableStr)),
-			  status, includeReferrers);
+      return urlSetRowSource(status.getUrlsOfMimeType(getMimeTypeStr(tableStr)),
+			     status, includeReferrers);
     } 
-    return rows;
+    return null;
   }
 
   /**
    * Take a set of URLs and make a row for each, where row{"URL"}=<url>
    */
-  private List urlSetToRows(Collection urls,
-			    CrawlerStatus status, boolean includeReferrers) {
-    List rows = new ArrayList(urls.size());
-    return urlSetToRows(rows, urls, status, includeReferrers);
+  private StatusTable.RowSource urlSetRowSource(Collection<String> urls,
+						CrawlerStatus status,
+						boolean includeReferrers) {
+    return new IndexedRowSource<String>(urls, 0,
+      (url, ix) -> makeRow(url, ix, status, includeReferrers));
   }
 
-  /**
-   * Take a set of URLs and make a row for each, where row{"URL"}=<url>
-   */
-  private List urlSetToRows(List rows, Collection urls,
-			    CrawlerStatus status, boolean includeReferrers) {
-    int ix = rows.size();
-    for (Iterator it = urls.iterator(); it.hasNext();) {
-      String url = (String)it.next();
-      rows.add(makeRow(url, ix++, status, includeReferrers));
+  interface RowMaker<T> {
+    Map makeRow(T elem, int ix);
+  }
+
+  /** Makes a row from each element of a collection, numbering them in
+   * the IX column, which is the default sort order. */
+  static class IndexedRowSource<T> implements StatusTable.RowSource {
+    private Collection<T> coll;
+    private int firstIx;
+    private RowMaker<T> rowMaker;
+
+    IndexedRowSource(Collection<T> coll, int firstIx, RowMaker<T> rowMaker) {
+      this.coll = coll;
+      this.firstIx = firstIx;
+      this.rowMaker = rowMaker;
+    }
+
+    public Iterator<Map> rowIterator() {
+      final Iterator<T> iter = coll.iterator();
+      return new Iterator<Map>() {
+	private int ix = firstIx;
+
+	public boolean hasNext() {
+	  return iter.hasNext();
+	}
+
+	public Map next() {
+	  return rowMaker.makeRow(iter.next(), ix++);
+	}
+      };
+    }
+
+    public boolean isInDefaultOrder() {
+      return true;
     }
-    return rows;
   }
 
   private Map makeRow(String url, int ix,
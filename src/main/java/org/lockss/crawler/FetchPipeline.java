@@ -0,0 +1,235 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.crawler;
+
+import java.net.MalformedURLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lockss.plugin.*;
+import org.lockss.plugin.UrlFetcher.FetchResult;
+import org.lockss.util.*;
+import org.lockss.util.urlconn.CacheException;
+
+/**
+ * Runs the network part of a crawl's fetches on a small pool of worker
+ * threads, so that several fetches may be in flight at once while the
+ * crawl thread parses pages and maintains the fetch queue and link
+ * graph.  Only {@link UrlFetcher#fetch()} runs on a worker; deciding
+ * whether to fetch a URL and processing the result both happen on the
+ * crawl thread.  The crawl's {@link CrawlRateLimiter} is applied inside
+ * fetch(), and is thread safe, so the AU's fetch rate is unchanged.
+ *
+ * <p>At most <code>maxPerHost</code> fetches from any one host are in
+ * flight at a time.  Not thread safe: all methods other than those of
+ * {@link Task} must be called from the crawl thread.
+ */
+class FetchPipeline {
+  static Logger log = Logger.getLogger();
+
+  private static final AtomicInteger pipelineCount = new AtomicInteger();
+
+  private final int maxInFlight;
+  private final int maxPerHost;
+  private final ThreadPoolExecutor executor;
+  private final BlockingQueue<Task> completed =
+    new LinkedBlockingQueue<Task>();
+  private final Map<String,Integer> hostCounts =
+    new HashMap<String,Integer>();
+  private int inFlight = 0;
+
+  /**
+   * @param maxInFlight the maximum number of concurrent fetches
+   * @param maxPerHost the maximum number of concurrent fetches from any
+   * one host
+   */
+  FetchPipeline(int maxInFlight, int maxPerHost) {
+    this.maxInFlight = maxInFlight;
+    this.maxPerHost = Math.max(maxPerHost, 1);
+    final String name = "CrawlFetch-" + pipelineCount.incrementAndGet();
+    executor = new ThreadPoolExecutor(maxInFlight, maxInFlight,
+				      0, TimeUnit.MILLISECONDS,
+				      new LinkedBlockingQueue<Runnable>(),
+				      new ThreadFactory() {
+	  private int n = 0;
+	  public synchronized Thread newThread(Runnable r) {
+	    Thread th = new Thread(r, name + "-" + n++);
+	    th.setDaemon(true);
+	    return th;
+	  }
+	});
+  }
+
+  /** Return true if no fetches are in flight */
+  boolean isIdle() {
+    return inFlight == 0;
+  }
+
+  /** Return the number of fetches in flight */
+  int getInFlight() {
+    return inFlight;
+  }
+
+  /** Return true if a fetch of the URL may be started now: there's a free
+   * worker and its host isn't already at its limit */
+  boolean canStart(String url) {
+    return inFlight < maxInFlight && hostCount(hostOf(url)) < maxPerHost;
+  }
+
+  /** Start the task's fetch on a worker thread */
+  void start(Task task) {
+    if (task.fetcher == null) {
+      throw new IllegalArgumentException("Task has nothing to fetch: "
+					 + task.curl);
+    }
+    task.host = hostOf(task.curl.getUrl());
+    task.completion = completed;
+    hostCounts.put(task.host, hostCount(task.host) + 1);
+    inFlight++;
+    executor.execute(task);
+  }
+
+  /** Wait up to <code>wait</code> ms for a fetch to finish.
+   * @return the completed task, or null if none finished in time
+   */
+  Task awaitCompletion(long wait) throws InterruptedException {
+    Task task = completed.poll(wait, TimeUnit.MILLISECONDS);
+    if (task != null) {
+      inFlight--;
+      int n = hostCount(task.host) - 1;
+      if (n > 0) {
+	hostCounts.put(task.host, n);
+      } else {
+	hostCounts.remove(task.host);
+      }
+    }
+    return task;
+  }
+
+  /** Stop the workers.  Fetches in progress are interrupted and their
+   * results discarded. */
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private int hostCount(String host) {
+    Integer n = hostCounts.get(host);
+    return n == null ? 0 : n;
+  }
+
+  static String hostOf(String url) {
+    try {
+      String host = UrlUtil.getHost(url);
+      return host == null ? "" : host.toLowerCase();
+    } catch (MalformedURLException e) {
+      return "";
+    }
+  }
+
+  /**
+   * One URL's fetch, which may be run directly or by a FetchPipeline.
+   * A task with no {@link UrlFetcher} is already
+   * complete: it was decided on the crawl thread that no network fetch
+   * was needed, and {@link #getDecision()} holds the outcome.
+   */
+  static class Task implements Runnable {
+    final CrawlUrlData curl;
+    final UrlFetcher fetcher;
+    private final Boolean decision;
+    private String host;
+    private BlockingQueue<Task> completion;
+    private FetchResult result;
+    private Throwable error;
+
+    Task(CrawlUrlData curl, UrlFetcher fetcher) {
+      this.curl = curl;
+      this.fetcher = fetcher;
+      this.decision = null;
+    }
+
+    Task(CrawlUrlData curl, boolean decision) {
+      this.curl = curl;
+      this.fetcher = null;
+      this.decision = decision;
+    }
+
+    /** Return a task that failed before its fetch could start */
+    static Task failed(CrawlUrlData curl, Throwable error) {
+      Task res = new Task(curl, (UrlFetcher)null);
+      res.error = error;
+      return res;
+    }
+
+    /** Return true if this task requires a network fetch */
+    boolean needsFetch() {
+      return fetcher != null;
+    }
+
+    /** Return the outcome of a task that didn't require a fetch, else
+     * null */
+    Boolean getDecision() {
+      return decision;
+    }
+
+    /** Perform the fetch, on whatever thread this is called */
+    public void run() {
+      try {
+	result = fetcher.fetch();
+      } catch (Throwable t) {
+	error = t;
+      } finally {
+	if (completion != null) {
+	  completion.add(this);
+	}
+      }
+    }
+
+    /** Return the result of the fetch, or throw what it threw */
+    FetchResult getResult() throws CacheException {
+      if (error != null) {
+	if (error instanceof CacheException) {
+	  throw (CacheException)error;
+	}
+	if (error instanceof RuntimeException) {
+	  throw (RuntimeException)error;
+	}
+	if (error instanceof Error) {
+	  throw (Error)error;
+	}
+	throw new RuntimeException(error);
+      }
+      return result;
+    }
+  }
+}
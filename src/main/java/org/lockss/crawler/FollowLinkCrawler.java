@@ -112,6 +112,42 @@ public class FollowLinkCrawler extends BaseCrawler {
   public static final String PARAM_PARSE_ON_PERM_FAIL = PREFIX + "parseOnPermFail";
   public static final boolean DEFAULT_PARSE_ON_PERM_FAIL = true;
 
+  /** Maximum number of URLs in the fetch queue to keep in memory.  Beyond
+   * this, the tail of the queue is written to sorted run files on disk.
+   * Zero disables spilling. */
+  public static final String PARAM_FETCH_QUEUE_HOT_SET_SIZE =
+    PREFIX + "fetchQueue.hotSetSize";
+  public static final int DEFAULT_FETCH_QUEUE_HOT_SET_SIZE = 100000;
+
+  /** Number of spilled fetch queue run files above which they're merged
+   * into one. */
+  public static final String PARAM_FETCH_QUEUE_MAX_RUNS =
+    PREFIX + "fetchQueue.maxRuns";
+  public static final int DEFAULT_FETCH_QUEUE_MAX_RUNS = 32;
+
+  /** Directory in which to write spilled fetch queue runs.  If not set,
+   * the system temp dir is used. */
+  public static final String PARAM_FETCH_QUEUE_SPILL_DIR =
+    PREFIX + "fetchQueue.spillDir";
+  public static final String DEFAULT_FETCH_QUEUE_SPILL_DIR = null;
+
+  /** Maximum number of fetches in flight at once within a single crawl.
+   * If greater than 1, fetches are performed by that many worker threads
+   * while the crawl thread parses fetched pages.  The AU's crawl rate
+   * limiter, crawl window and permission checks apply as usual. */
+  public static final String PARAM_FETCH_THREADS = PREFIX + "fetchThreads";
+  public static final int DEFAULT_FETCH_THREADS = 1;
+
+  /** When fetchThreads is greater than 1, the maximum number of fetches
+   * from any one host in flight at once. */
+  public static final String PARAM_MAX_FETCHES_PER_HOST =
+    PREFIX + "maxFetchesPerHost";
+  public static final int DEFAULT_MAX_FETCHES_PER_HOST = 2;
+
+  /** How long the crawl thread waits for an in-flight fetch to finish
+   * before poking the watchdog and checking the crawl window. */
+  static final long FETCH_WAIT = 5 * Constants.SECOND;
+
   protected int maxDepth = DEFAULT_MAX_CRAWL_DEPTH;
 
   protected int hiDepth = 0;		// maximum depth seen
@@ -120,8 +156,13 @@ public class FollowLinkCrawler extends BaseCrawler {
   protected int fqSamples = 0;		// number of fetch queue len samples
   protected int refetchDepth = -1;
   
-  protected Map<String,CrawlUrlData> processedUrls;
-  protected Map<String,CrawlUrlData> maxDepthUrls;
+  // Values in processedUrls
+  static final int PROCESSED_NOT_FETCHED = 0;
+  static final int PROCESSED_FETCHED = 1;
+
+  // Parsed URLs, and URLs beyond maxDepth (value is depth)
+  protected UrlFingerprintMap processedUrls;
+  protected UrlFingerprintMap maxDepthUrls;
   protected boolean cachingStartUrls = false; //added to report an error when
                                               //not able to cache a starting Url
   
@@ -135,6 +176,8 @@ public class FollowLinkCrawler extends BaseCrawler {
   protected boolean isFullSubstanceCheck = false;
   protected boolean refindCdnStems   = false;
   protected boolean parseOnPermFail = DEFAULT_PARSE_ON_PERM_FAIL;
+  protected int fetchThreads = DEFAULT_FETCH_THREADS;
+  protected int maxFetchesPerHost = DEFAULT_MAX_FETCHES_PER_HOST;
 
   // Cache recent negative results from au.shouldBeCached().  This is set
   // to an LRUMsp when crawl is initialized, it's initialized here to a
@@ -142,9 +185,19 @@ public class FollowLinkCrawler extends BaseCrawler {
   // this.setCrawlConfig().  If we want to report all excluded URLs, this
   // can be changed to a simple Set.
   private Map excludedUrlCache = new HashMap();
-  private Set<String> failedUrls = new HashSet<String>();
+  // Fetch workers may add to this (via the facade)
+  private Set<String> failedUrls =
+    Collections.synchronizedSet(new HashSet<String>());
+  // URLs whose fetch is in progress on a worker thread
+  private Map<String,CrawlUrlData> inProgressUrls =
+    new HashMap<String,CrawlUrlData>();
     
   protected CrawlQueue fetchQueue;
+  // Minimum depth of, and links between, all the URLs in the crawl
+  protected UrlDepthGraph urlGraph;
+  // URLs beyond maxDepth and parsed URLs that weren't fetched, which will
+  // be queued if their depth is reduced enough
+  protected CrawlUrlStore deferredUrls;
   protected Queue<CrawlUrlData> permissionProbeUrls;
   protected FifoQueue parseQueue;
   protected Comparator<CrawlUrl> urlOrderComparator;
@@ -157,11 +210,48 @@ public class FollowLinkCrawler extends BaseCrawler {
     } catch (PluginException e) {
       log.error("Plugin CrawlUrlComparatorFactory error, using breadth-first", e);
     }
-    fetchQueue = new CrawlQueue(urlOrderComparator);
+    Configuration config = ConfigManager.getCurrentConfig();
+    fetchQueue = makeFetchQueue(urlOrderComparator, config);
+    deferredUrls = makeDeferredUrlStore(config);
+    urlGraph = newUrlDepthGraph();
     parseQueue = new FifoQueue();
     permissionProbeUrls = new LinkedList<CrawlUrlData>();
   }
 
+  /** Create the fetch queue.  It's created here rather than in
+   * setCrawlConfig() as it's shared with the link extractor callbacks. */
+  protected CrawlQueue makeFetchQueue(Comparator<CrawlUrl> comparator,
+				      Configuration config) {
+    int hotSetSize = config.getInt(PARAM_FETCH_QUEUE_HOT_SET_SIZE,
+				   DEFAULT_FETCH_QUEUE_HOT_SET_SIZE);
+    if (hotSetSize <= 0) {
+      return new CrawlQueue(comparator);
+    }
+    return new SpillingCrawlQueue(comparator, Math.max(hotSetSize, 2),
+				  config.getInt(PARAM_FETCH_QUEUE_MAX_RUNS,
+						DEFAULT_FETCH_QUEUE_MAX_RUNS),
+				  getSpillDir(config));
+  }
+
+  /** Create the store for URLs that may need to be queued later.  They're
+   * written to disk if the fetch queue spills. */
+  protected CrawlUrlStore makeDeferredUrlStore(Configuration config) {
+    int hotSetSize = config.getInt(PARAM_FETCH_QUEUE_HOT_SET_SIZE,
+				   DEFAULT_FETCH_QUEUE_HOT_SET_SIZE);
+    return new CrawlUrlStore(hotSetSize > 0, getSpillDir(config));
+  }
+
+  private File getSpillDir(Configuration config) {
+    String spillDir = config.get(PARAM_FETCH_QUEUE_SPILL_DIR,
+				 DEFAULT_FETCH_QUEUE_SPILL_DIR);
+    return StringUtil.isNullString(spillDir) ? null : new File(spillDir);
+  }
+
+  // Overridable for testing
+  protected UrlDepthGraph newUrlDepthGraph() {
+    return new UrlDepthGraph();
+  }
+
   /** Return true if crawler should follow links from collected files */
   protected boolean shouldFollowLink() {
     return shouldFollowLink;
@@ -232,10 +322,26 @@ public class FollowLinkCrawler extends BaseCrawler {
       config.getBoolean(PARAM_REFIND_CDN_STEMS, DEFAULT_REFIND_CDN_STEMS);
     parseOnPermFail =
         config.getBoolean(PARAM_PARSE_ON_PERM_FAIL, DEFAULT_PARSE_ON_PERM_FAIL);
+    fetchThreads = config.getInt(PARAM_FETCH_THREADS, DEFAULT_FETCH_THREADS);
+    maxFetchesPerHost = config.getInt(PARAM_MAX_FETCHES_PER_HOST,
+				      DEFAULT_MAX_FETCHES_PER_HOST);
+    if (fetchThreads > 1) {
+      connectionPool.setMultiThreaded(fetchThreads, maxFetchesPerHost);
+    }
   }
  
 
   protected boolean doCrawl0() {
+    try {
+      return followLinks();
+    } finally {
+      // Release any disk space used by the fetch queue
+      fetchQueue.release();
+      deferredUrls.release();
+    }
+  }
+
+  private boolean followLinks() {
     if (isAborted()) {
       return aborted(ABORTED_BEFORE_START_MSG);
     }
@@ -245,8 +351,8 @@ public class FollowLinkCrawler extends BaseCrawler {
         "of " + au);
     crawlStatus.addSource("Publisher");
     crawlStatus.setRefetchDepth(getRefetchDepth());
-    processedUrls = new HashMap<String,CrawlUrlData>();
-    maxDepthUrls = new HashMap<String,CrawlUrlData>();
+    processedUrls = new UrlFingerprintMap();
+    maxDepthUrls = new UrlFingerprintMap();
 
     // Enable no-substance-collected detection if so configured and
     // supported by plugin.
@@ -337,78 +443,16 @@ public class FollowLinkCrawler extends BaseCrawler {
       return aborted(ABORTED_BEFORE_START_MSG);
     }
 
-    while (!fetchQueue.isEmpty() && !(isAborted() || crawlTerminated)) {
-      // check crawl window during crawl
-      if (!withinCrawlWindow()) {
-        crawlStatus.setCrawlStatus(Crawler.STATUS_WINDOW_CLOSED);
-        crawlStatus.setDepth(hiDepth);
-        return false;
-      }
-      if (log.isDebug3()) log.debug3("Fetch queue: " + fetchQueue);
-      int len = fetchQueue.size();
-      fqMaxLen = Math.max(fqMaxLen, len);
-      fqSumLen += len;
-      fqSamples += 1;
-
-      CrawlUrlData curl = fetchQueue.remove();
-      if (log.isDebug3()) log.debug3("Removed from queue: " + curl);
-      hiDepth = Math.max(hiDepth, curl.getDepth());
-      String url = curl.getUrl();
-
-      crawlStatus.removePendingUrl(url);
-      try {
-        if (!fetch(curl)) {
-          if (!crawlStatus.isCrawlError()) {
-            log.warning("fetch() failed, didn't set error status: "
-                + curl);
-          }
-        }
-      } catch (RuntimeException e) {
-        if (isAborted()) {
-          log.debug("Expected exception while aborting crawl: " + e);
-          crawlStatus.setDepth(hiDepth);
-          return aborted(e.getMessage());
-        }
-        log.warning("Unexpected exception processing: " + url, e);
-        crawlStatus.signalErrorForUrl(url, e.getMessage(),
-                                      CrawlerStatus.Severity.Error);
-        if (!crawlStatus.isCrawlError()) {
-          crawlStatus.setCrawlStatus(Crawler.STATUS_FETCH_ERROR);
-        }
-      }
-      if (isAborted()) {
-        return aborted();
-      }
-      
-      while(!parseQueue.isEmpty()) {
-        try {
-          CrawlUrlData parseCurl = (CrawlUrlData) parseQueue.peek();
-          if(isAborted()) {
-            return aborted();
-          }
-	  pokeWDog();
-          parseQueue.remove(parseCurl);
-          parse(parseCurl);
-          processedUrls.put(parseCurl.getUrl(), parseCurl);
-        } catch (RuntimeException e) {
-          log.warning("Unexpected exception parsing: " + url, e);
-          crawlStatus.signalErrorForUrl(url, e.toString(),
-                                        CrawlerStatus.Severity.Error);
-          if (!crawlStatus.isCrawlError()) {
-            crawlStatus.setCrawlStatus(Crawler.STATUS_ERROR);
-          }
-        }
-      }
-      if (isAborted()) {
-        return aborted();
-      }
+    Boolean res = (fetchThreads > 1) ? fetchConcurrently() : fetchSerially();
+    if (res != null) {
+      return res;
     }
-    
+
     crawlStatus.setDepth(hiDepth);
     if (!maxDepthUrls.isEmpty()) {
       String msg = "Site depth exceeds max crawl depth (" + maxDepth + ")";
       log.error(msg + ". Stopped crawl of " + au.getName());
-      log.debug("Too deep URLs: " + maxDepthUrls);
+      log.debug("Too deep URLs: " + maxDepthUrls.size());
       crawlStatus.setCrawlStatus(Crawler.STATUS_ERROR, msg);
     } else {
       log.info("Crawled depth = " + (hiDepth) +
@@ -484,6 +528,166 @@ public class FollowLinkCrawler extends BaseCrawler {
     return (!crawlStatus.isCrawlError());
   }
 
+  /** Fetch and parse URLs one at a time until the fetch queue is empty.
+   * @return null if the queue was exhausted, else the value doCrawl0()
+   * should return */
+  private Boolean fetchSerially() {
+    while (!fetchQueue.isEmpty() && !(isAborted() || crawlTerminated)) {
+      // check crawl window during crawl
+      if (!withinCrawlWindow()) {
+        crawlStatus.setCrawlStatus(Crawler.STATUS_WINDOW_CLOSED);
+        crawlStatus.setDepth(hiDepth);
+        return false;
+      }
+      CrawlUrlData curl = nextFromQueue();
+      Boolean res = fetchAndParse(curl, null);
+      if (res != null) {
+        return res;
+      }
+    }
+    return null;
+  }
+
+  /** Fetch URLs on up to fetchThreads worker threads, parsing each on
+   * this thread as its fetch completes, until the fetch queue is empty.
+   * @return null if the queue was exhausted, else the value doCrawl0()
+   * should return */
+  private Boolean fetchConcurrently() {
+    log.debug("Fetching with " + fetchThreads + " threads, max "
+              + maxFetchesPerHost + " per host");
+    FetchPipeline pipeline = new FetchPipeline(fetchThreads,
+                                               maxFetchesPerHost);
+    try {
+      while (!(fetchQueue.isEmpty() && pipeline.isIdle())
+             && !(isAborted() || crawlTerminated)) {
+        if (!withinCrawlWindow()) {
+          crawlStatus.setCrawlStatus(Crawler.STATUS_WINDOW_CLOSED);
+          crawlStatus.setDepth(hiDepth);
+          return false;
+        }
+        // Start fetches until the workers are busy or the next URL's host
+        // is at its limit.  URLs are started in queue order.
+        while (!fetchQueue.isEmpty()
+               && pipeline.canStart(fetchQueue.first().getUrl())
+               && !(isAborted() || crawlTerminated)) {
+          CrawlUrlData curl = nextFromQueue();
+          FetchPipeline.Task task;
+          try {
+            task = startFetch(curl);
+          } catch (RuntimeException e) {
+            // Let fetchAndParse() handle it as it would in fetch()
+            task = FetchPipeline.Task.failed(curl, e);
+          }
+          if (task.needsFetch()) {
+            inProgressUrls.put(curl.getUrl(), curl);
+            pipeline.start(task);
+          } else {
+            Boolean res = fetchAndParse(curl, task);
+            if (res != null) {
+              return res;
+            }
+          }
+        }
+        if (pipeline.isIdle()) {
+          continue;
+        }
+        FetchPipeline.Task done;
+        try {
+          done = pipeline.awaitCompletion(FETCH_WAIT);
+        } catch (InterruptedException e) {
+          abortCrawl();
+          return aborted("Interrupted");
+        }
+        pokeWDog();
+        if (done != null) {
+          Boolean res = fetchAndParse(done.curl, done);
+          inProgressUrls.remove(done.curl.getUrl());
+          if (res != null) {
+            return res;
+          }
+        }
+      }
+    } finally {
+      pipeline.shutdown();
+      inProgressUrls.clear();
+    }
+    return null;
+  }
+
+  /** Remove and return the next URL from the fetch queue, recording queue
+   * statistics */
+  private CrawlUrlData nextFromQueue() {
+    if (log.isDebug3()) log.debug3("Fetch queue: " + fetchQueue);
+    int len = fetchQueue.size();
+    fqMaxLen = Math.max(fqMaxLen, len);
+    fqSumLen += len;
+    fqSamples += 1;
+
+    CrawlUrlData curl = fetchQueue.remove();
+    // Its depth may have been reduced while it was queued
+    syncDepth(curl);
+    if (log.isDebug3()) log.debug3("Removed from queue: " + curl);
+    hiDepth = Math.max(hiDepth, curl.getDepth());
+    crawlStatus.removePendingUrl(curl.getUrl());
+    return curl;
+  }
+
+  /** Fetch curl (or, if task is non-null, finish its fetch), then parse
+   * everything that's ready to be parsed.
+   * @return null if the crawl should continue, else the value doCrawl0()
+   * should return */
+  private Boolean fetchAndParse(CrawlUrlData curl, FetchPipeline.Task task) {
+    String url = curl.getUrl();
+    try {
+      boolean ok = (task == null) ? fetch(curl) : finishFetch(task);
+      if (!ok) {
+        if (!crawlStatus.isCrawlError()) {
+          log.warning("fetch() failed, didn't set error status: "
+              + curl);
+        }
+      }
+    } catch (RuntimeException e) {
+      if (isAborted()) {
+        log.debug("Expected exception while aborting crawl: " + e);
+        crawlStatus.setDepth(hiDepth);
+        return aborted(e.getMessage());
+      }
+      log.warning("Unexpected exception processing: " + url, e);
+      crawlStatus.signalErrorForUrl(url, e.getMessage(),
+                                    CrawlerStatus.Severity.Error);
+      if (!crawlStatus.isCrawlError()) {
+        crawlStatus.setCrawlStatus(Crawler.STATUS_FETCH_ERROR);
+      }
+    }
+    if (isAborted()) {
+      return aborted();
+    }
+      
+    while(!parseQueue.isEmpty()) {
+      try {
+        CrawlUrlData parseCurl = (CrawlUrlData) parseQueue.peek();
+        if(isAborted()) {
+          return aborted();
+        }
+        pokeWDog();
+        parseQueue.remove(parseCurl);
+        parse(parseCurl);
+        markProcessed(parseCurl);
+      } catch (RuntimeException e) {
+        log.warning("Unexpected exception parsing: " + url, e);
+        crawlStatus.signalErrorForUrl(url, e.toString(),
+                                      CrawlerStatus.Severity.Error);
+        if (!crawlStatus.isCrawlError()) {
+          crawlStatus.setCrawlStatus(Crawler.STATUS_ERROR);
+        }
+      }
+    }
+    if (isAborted()) {
+      return aborted();
+    }
+    return null;
+  }
+
   // Overridable for testing
   protected void enqueueStartUrls() 
       throws ConfigurationException, PluginException, IOException {
@@ -492,7 +696,7 @@ public class FollowLinkCrawler extends BaseCrawler {
     for (String url : startUrls) {
       // CrawlQueue doesn't allow duplicate entries, but here we're
       // feeding it a list obtained from a plugin, so ensure no dups.
-      if (fetchQueue.get(url) != null) {
+      if (urlGraph.contains(url)) {
         log.debug2("Duplicate start URL: " + url);
         continue;
       }
@@ -515,6 +719,7 @@ public class FollowLinkCrawler extends BaseCrawler {
 			 CrawlQueue queue,
 			 CrawlerStatus cstat) {
     try {
+      urlGraph.add(curl.getUrl(), curl.getDepth());
       queue.add(curl);
       cstat.addPendingUrl(curl.getUrl());
     } catch (RuntimeException e) {
@@ -558,10 +763,21 @@ public class FollowLinkCrawler extends BaseCrawler {
     }
   }
 
+  /** Fetch curl on this thread.  Used when fetchThreads is 1; concurrent
+   * crawls call startFetch() and finishFetch() directly. */
   protected boolean fetch(CrawlUrlData curl) {
+    FetchPipeline.Task task = startFetch(curl);
+    if (task.needsFetch()) {
+      task.run();
+    }
+    return finishFetch(task);
+  }
+
+  /** Decide whether curl needs to be fetched and, if so, create its
+   * fetcher.  If no network fetch is needed, the returned task is
+   * already complete.  Always called on the crawl thread. */
+  FetchPipeline.Task startFetch(CrawlUrlData curl) {
     String url = curl.getUrl();
-    UrlFetcher fetcher;
-    UrlFetcher.FetchResult res;
     // Fetch URL if it has no content already or its depth is within the
     // refetch depth
     CachedUrl cu;
@@ -571,7 +787,7 @@ public class FollowLinkCrawler extends BaseCrawler {
       if (failedUrls.contains(url)) {
         //skip if it's already failed
         log.debug3("Already failed to cache "+url+". Not retrying.");
-        return true;
+        return new FetchPipeline.Task(curl, true);
       } else {
         // checking the crawl permission of the url's host
         if (!permissionMap.hasPermission(url)) {
@@ -581,52 +797,13 @@ public class FollowLinkCrawler extends BaseCrawler {
           }
           failedUrls.add(url);
           if(!parseOnPermFail) {
-            return false;
+            return new FetchPipeline.Task(curl, false);
           }
+          parseQueue.put(curl);
+          return new FetchPipeline.Task(curl, true);
         } else {
-          fetcher = makeUrlFetcher(curl);
-          try {
-            res = fetcher.fetch();
-            updateCacheStats(fetcher, res, curl);
-            if (res == FetchResult.NOT_FETCHED) {
-              if(curl.isStartUrl() && isFailOnStartUrlError()) {
-                // fail if cannot fetch a StartUrl
-                log.error(CrawlerStatus.START_URL_ERR_MSG + ": " + curl.getUrl());
-                crawlStatus.setCrawlStatus(Crawler.STATUS_FETCH_ERROR,
-                                           CrawlerStatus.START_URL_ERR_MSG);
-                abortCrawl();
-                return false;
-              }
-            } else {
-              if (res == FetchResult.FETCHED && !refindCdnStems) {
-                updateCdnStems(url);
-              }
-              checkSubstanceCollected(au.makeCachedUrl(url));
-            }
-            if (refindCdnStems &&
-                res != FetchResult.FETCHED && 
-                au.makeCachedUrl(url).hasContent()) {
-              updateCdnStems(url);
-            }
-          } catch (CacheException ex) {
-            if(curl.isStartUrl() && isFailOnStartUrlError()) {
-              // fail if cannot fetch a StartUrl
-              log.error(CrawlerStatus.START_URL_ERR_MSG + ": " + curl.getUrl());
-              crawlStatus.setCrawlStatus(Crawler.STATUS_FETCH_ERROR, 
-                                         CrawlerStatus.START_URL_ERR_MSG);
-              abortCrawl();
-              return false;
-            } else if (ex.isAttributeSet(CacheException.ATTRIBUTE_FATAL)) {
-              crawlStatus.setCrawlStatus(Crawler.STATUS_FETCH_ERROR, ex.getShortMessage());
-              abortCrawl();
-              return false;
-            } else if (!crawlStatus.isCrawlError()) {
-              crawlStatus.setCrawlStatus(Crawler.STATUS_FETCH_ERROR, ex.getShortMessage());
-            }
-          }
+          return new FetchPipeline.Task(curl, makeUrlFetcher(curl));
         }
-        parseQueue.put(curl);
-        return true;
       }
     } else {
       // If didn't fetch, check for existing substance file
@@ -643,13 +820,78 @@ public class FollowLinkCrawler extends BaseCrawler {
         updateCdnStems(url);
       }
       parseQueue.put(curl);
-      return true;
+      return new FetchPipeline.Task(curl, true);
+    }
+  }
+
+  /** Process the result of a task's fetch, which has already been run.
+   * Always called on the crawl thread. */
+  boolean finishFetch(FetchPipeline.Task task) {
+    if (task.getDecision() != null) {
+      return task.getDecision();
+    }
+    CrawlUrlData curl = task.curl;
+    String url = curl.getUrl();
+    UrlFetcher fetcher = task.fetcher;
+    UrlFetcher.FetchResult res;
+    try {
+      res = task.getResult();
+      updateCacheStats(fetcher, res, curl);
+      if (res == FetchResult.NOT_FETCHED) {
+        if(curl.isStartUrl() && isFailOnStartUrlError()) {
+          // fail if cannot fetch a StartUrl
+          log.error(CrawlerStatus.START_URL_ERR_MSG + ": " + curl.getUrl());
+          crawlStatus.setCrawlStatus(Crawler.STATUS_FETCH_ERROR,
+                                     CrawlerStatus.START_URL_ERR_MSG);
+          abortCrawl();
+          return false;
+        }
+      } else {
+        if (res == FetchResult.FETCHED && !refindCdnStems) {
+          updateCdnStems(url);
+        }
+        checkSubstanceCollected(au.makeCachedUrl(url));
+      }
+      if (refindCdnStems &&
+          res != FetchResult.FETCHED && 
+          au.makeCachedUrl(url).hasContent()) {
+        updateCdnStems(url);
+      }
+    } catch (CacheException ex) {
+      if(curl.isStartUrl() && isFailOnStartUrlError()) {
+        // fail if cannot fetch a StartUrl
+        log.error(CrawlerStatus.START_URL_ERR_MSG + ": " + curl.getUrl());
+        crawlStatus.setCrawlStatus(Crawler.STATUS_FETCH_ERROR, 
+                                   CrawlerStatus.START_URL_ERR_MSG);
+        abortCrawl();
+        return false;
+      } else if (ex.isAttributeSet(CacheException.ATTRIBUTE_FATAL)) {
+        crawlStatus.setCrawlStatus(Crawler.STATUS_FETCH_ERROR, ex.getShortMessage());
+        abortCrawl();
+        return false;
+      } else if (!crawlStatus.isCrawlError()) {
+        crawlStatus.setCrawlStatus(Crawler.STATUS_FETCH_ERROR, ex.getShortMessage());
+      }
     }
+    parseQueue.put(curl);
+    return true;
+  }
+
+  /** The paranoid check that the rate limiter was used compares a
+   * counter before and after each fetch, which isn't meaningful when
+   * several fetches overlap. */
+  @Override
+  protected boolean isCheckRateLimiterUsed() {
+    return fetchThreads <= 1 && super.isCheckRateLimiterUsed();
   }
   
   protected void parse(CrawlUrlData curl){
     // don't parse if not following links
     if (shouldFollowLink()) {
+      // May have been queued by a plugin, or its depth reduced since it
+      // was dequeued
+      urlGraph.add(curl.getUrl(), curl.getDepth());
+      syncDepth(curl);
       try {
         if (!processedUrls.containsKey(curl.getUrl())) {
           CachedUrl cu = au.makeCachedUrl(curl.getUrl());
@@ -664,7 +906,7 @@ public class FollowLinkCrawler extends BaseCrawler {
                 try {
                   // Might be reparsing with new content (if depth reduced
                   // below refetch depth); clear any existing children
-                  curl.clearChildren();
+                  urlGraph.clearChildren(curl.getUrl());
 		  CharsetUtil.InputStreamAndCharset isc =
 		    CharsetUtil.getCharsetStream(cu);
 		  String charset = isc.getCharset();
@@ -679,7 +921,7 @@ public class FollowLinkCrawler extends BaseCrawler {
                           processedUrls,
                           maxDepthUrls));
                   // done adding children, trim to size
-                  curl.trimChildren();
+                  urlGraph.trimChildren(curl.getUrl());
                   crawlStatus.signalUrlParsed(curl.getUrl());
 		} catch (LockssUncheckedException e) {
 		  throw au.getPlugin().getCacheResultMap().getRepositoryException(e.getCause());
@@ -721,7 +963,7 @@ public class FollowLinkCrawler extends BaseCrawler {
           log.siteWarning("Couldn't parse "+curl+". ignoring error", ex);
         }
         curl.setFailedParse(true);
-        processedUrls.put(curl.getUrl(), curl);
+        markProcessed(curl);
       } catch (IOException ioe) {
         log.error("Problem parsing "+curl+". Ignoring", ioe);
         crawlStatus.signalErrorForUrl(curl.getUrl(), ioe.getMessage(),
@@ -734,6 +976,31 @@ public class FollowLinkCrawler extends BaseCrawler {
     }
   }
 
+  /** Update curl's depth from the link graph */
+  private void syncDepth(CrawlUrlData curl) {
+    int depth = urlGraph.getDepth(curl.getUrl());
+    if (depth >= 0) {
+      curl.encounteredAtDepth(depth);
+    }
+  }
+
+  /** Record that curl has been processed.  If it wasn't fetched, keep it
+   * in case its depth is later reduced to within the refetch depth. */
+  private void markProcessed(CrawlUrlData curl) {
+    String url = curl.getUrl();
+    if (processedUrls.containsKey(url)) {
+      return;
+    }
+    if (curl.isFetched()) {
+      processedUrls.put(url, PROCESSED_FETCHED);
+    } else {
+      processedUrls.put(url, PROCESSED_NOT_FETCHED);
+      if (curl.getDepth() > getRefetchDepth()) {
+	deferredUrls.put(curl);
+      }
+    }
+  }
+
   // Callers are all local and know that we release the CU
   private void checkSubstanceCollected(CachedUrl cu) throws CacheException {
     try {
@@ -770,23 +1037,24 @@ public class FollowLinkCrawler extends BaseCrawler {
   // page parsed
   class MyLinkExtractorCallback implements LinkExtractor.Callback {
     CrawlUrlData curl;
-    Map<String,CrawlUrlData> processedUrls;
-    Map<String,CrawlUrlData> maxDepthUrls;
+    UrlFingerprintMap processedUrls;
+    UrlFingerprintMap maxDepthUrls;
     CrawlQueue fetchQueue;
     ArchivalUnit au;
     Set foundUrls = new HashSet();	// children of this node
-    CrawlUrlData.ReducedDepthHandler rdh = new ReducedDepthHandler();
+    UrlDepthGraph.ReducedDepthHandler rdh = new ReducedDepthHandler();
 
     public MyLinkExtractorCallback(ArchivalUnit au,
 				   CrawlUrlData curl,
 				   CrawlQueue fetchQueue,
-				   Map<String,CrawlUrlData> processedUrls,
-				   Map<String,CrawlUrlData> maxDepthUrls) {
+				   UrlFingerprintMap processedUrls,
+				   UrlFingerprintMap maxDepthUrls) {
       this.au = au;
       this.curl = curl;
       this.fetchQueue = fetchQueue;
       this.processedUrls = processedUrls;
       this.maxDepthUrls = maxDepthUrls;
+      urlGraph.add(curl.getUrl(), curl.getDepth());
     }
 
     /**
@@ -816,18 +1084,24 @@ public class FollowLinkCrawler extends BaseCrawler {
 	}
 	foundUrls.add(normUrl);
 
-	CrawlUrlData child = null;
-	if ((child = processedUrls.get(normUrl)) != null) {
+	// The link graph records only fingerprints, so that neither
+	// queued (possibly spilled) nor processed URLs are kept on the heap
+	// by their parents
+	if (processedUrls.containsKey(normUrl)) {
 	  if (log.isDebug2())
-	    log.debug2("Already processed url: " + child);
+	    log.debug2("Already processed url: " + normUrl);
+	  signalReferrer(normUrl, ReferrerType.Included);
+	} else if (fetchQueue.get(normUrl) != null) {
+	  if (log.isDebug3())
+	    log.debug3("Already queued url: " + normUrl);
 	  signalReferrer(normUrl, ReferrerType.Included);
-	} else if ((child = fetchQueue.get(normUrl)) != null) {
+	} else if (inProgressUrls.containsKey(normUrl)) {
 	  if (log.isDebug3())
-	    log.debug3("Already queued url: " + child);
+	    log.debug3("Already being fetched url: " + normUrl);
 	  signalReferrer(normUrl, ReferrerType.Included);
-	} else if ((child = maxDepthUrls.get(normUrl)) != null) {
+	} else if (maxDepthUrls.containsKey(normUrl)) {
 	  if (log.isDebug3())
-	    log.debug3("Already too-deep url: " + child);
+	    log.debug3("Already too-deep url: " + normUrl);
 	  signalReferrer(normUrl, ReferrerType.Included);
 	} else if (excludedUrlCache.containsKey(normUrl)) {
 	  // au.shouldBeCached() is expensive, don't call it if we already
@@ -855,10 +1129,13 @@ public class FollowLinkCrawler extends BaseCrawler {
 		log.debug2("Included url: "+normUrl);
 	      }
 	      signalReferrer(normUrl, ReferrerType.Included);
-	      child = newCrawlUrlData(normUrl, curl.getDepth() + 1);
+	      CrawlUrlData child =
+		newCrawlUrlData(normUrl, urlGraph.getDepth(curl.getUrl()) + 1);
 	      child.setReferrer(curl.getUrl());
+	      urlGraph.add(normUrl, child.getDepth());
 	      if (child.getDepth() > maxDepth) {
-		maxDepthUrls.put(normUrl, child);
+		maxDepthUrls.put(normUrl, child.getDepth());
+		deferredUrls.put(child);
 	      } else {
 		addToFetchQueue(child);
 	      }
@@ -870,11 +1147,10 @@ public class FollowLinkCrawler extends BaseCrawler {
 	    crawlStatus.signalUrlExcluded(normUrl);
 	    signalReferrer(normUrl, ReferrerType.Excluded);
 	    excludedUrlCache.put(normUrl, "");
+	    return;
 	  }
 	}
-	if (child != null) {
-	  curl.addChild(child, rdh);
-	}
+	urlGraph.addChild(curl.getUrl(), normUrl, rdh);
       } catch (MalformedURLException e) {
 	//XXX what exactly does this log want to tell?
 	log.warning("Normalizing", e);
@@ -894,33 +1170,37 @@ public class FollowLinkCrawler extends BaseCrawler {
     /** Called whenever the depth of an already-known child node is reduced
      * (due to discovering that it's a child of a node shallower than any
      * existing parents). */
-    class ReducedDepthHandler implements CrawlUrlData.ReducedDepthHandler {
-      public void depthReduced(CrawlUrlData curl, int from, int to) {
+    class ReducedDepthHandler implements UrlDepthGraph.ReducedDepthHandler {
+      public void depthReduced(long fp, int from, int to) {
 	if (log.isDebug3())
-	  log.debug3("depthReduced("+from+","+to+"): "+curl);
+	  log.debug3("depthReduced("+from+","+to+"): "+fp);
 	if (from > maxDepth && to <= maxDepth) {
 	  // If previously beyond max craw depth, is now eligible to be fetched
-	  CrawlUrlData tooDeepUrl = maxDepthUrls.remove(curl.getUrl());
-	  if (tooDeepUrl != curl) {
-	    log.warning("Previously too deep " + tooDeepUrl
-			   + " != no longer too deep " + curl);
+	  if (maxDepthUrls.remove(fp)) {
+	    CrawlUrlData tooDeepUrl = deferredUrls.remove(fp);
+	    if (tooDeepUrl == null) {
+	      log.warning("Previously too deep URL not found: " + fp);
+	      return;
+	    }
+	    tooDeepUrl.encounteredAtDepth(to);
+	    if (log.isDebug2()) log.debug2("Rescued from too deep: " +tooDeepUrl);
+	    addToFetchQueue(tooDeepUrl);
 	  }
-	  if (log.isDebug2()) log.debug2("Rescued from too deep: " +curl);
-	  addToFetchQueue(curl);
 	} else if (to <= maxDepth &&
 		   from > getRefetchDepth() &&
 		   to <= getRefetchDepth()) {
 	  // If previously beyond refetch depth and has already been processed
 	  // and not fetched, requeue to now be fetched
-	  CrawlUrlData processedCurl = processedUrls.get(curl.getUrl());
-	  if (processedCurl != null && !processedCurl.isFetched()) {
-	    if (processedCurl != curl) {
-	      log.warning("Previously processed " + processedCurl
-			     + " != now within refetch depth " + curl);
+	  if (processedUrls.get(fp, -1) == PROCESSED_NOT_FETCHED) {
+	    processedUrls.remove(fp);
+	    CrawlUrlData processedCurl = deferredUrls.remove(fp);
+	    if (processedCurl == null) {
+	      log.warning("Previously processed URL not found: " + fp);
+	      return;
 	    }
-	    processedUrls.remove(curl.getUrl());
-	    addToFetchQueue(curl);
-	    if (log.isDebug2()) log.debug2("Requeued for fetch: " + curl);
+	    processedCurl.encounteredAtDepth(to);
+	    addToFetchQueue(processedCurl);
+	    if (log.isDebug2()) log.debug2("Requeued for fetch: " + processedCurl);
 	  }
 	}
       }
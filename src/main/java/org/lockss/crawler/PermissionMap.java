@@ -461,9 +461,10 @@ public class PermissionMap {
    * permission to collect the given URL.
    * @param url the url we want to collect.
    * @return if there is a permission that grants permission for the URL to
-   * be crawled.
+   * be crawled.  Synchronized as concurrent fetch threads may check
+   * redirect targets.
    */
-  public boolean hasPermission(String url) {
+  public synchronized boolean hasPermission(String url) {
     return hasPermission(url, true);
   }
 
@@ -0,0 +1,455 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.crawler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.lockss.util.*;
+import org.lockss.util.io.FileUtil;
+
+/**
+ * A {@link CrawlQueue} that keeps at most a bounded "hot set" of entries
+ * in memory and spills the rest to sorted run files on disk, merging them
+ * back in order as the queue is drained.  Entries are returned in exactly
+ * the order a CrawlQueue with the same comparator would return them.
+ *
+ * <p>Spilled URLs are tracked in a {@link UrlFingerprintMap}
+ * (fingerprint to depth) rather than by URL string, and no reference is
+ * kept to spilled {@link CrawlUrlData}.  A spilled entry comes off the
+ * queue as a new CrawlUrlData read from disk, and {@link #get(String)}
+ * returns a copy of it; changes to either object made while the entry
+ * is spilled aren't seen by the queue.  (FollowLinkCrawler keeps
+ * authoritative depths in a {@link UrlDepthGraph}.)
+ */
+public class SpillingCrawlQueue extends CrawlQueue {
+  static Logger log = Logger.getLogger();
+
+  private final Comparator<Entry> order;
+  private final int hotMax;
+  private final int maxRuns;
+  private final File parentDir;
+
+  private TreeSet<Entry> hot;
+  private Map<String,Entry> hotMap = new HashMap<String,Entry>();
+  private PriorityQueue<Run> runs;
+  private UrlFingerprintMap spilledDepths = new UrlFingerprintMap();
+  private File spillDir;
+  private boolean spillFailed = false;
+  private int spilledCount = 0;
+  private long nextSeq = 0;
+  private int runSeq = 0;
+  private long totalSpilled = 0;
+
+  /**
+   * Create a SpillingCrawlQueue
+   * @param comparator the comparator that determines the order of URLs in
+   * the queue.  If null, the crawl will be breadth first, with the URLs at
+   * each level fetched in the order they were discovered.
+   * @param hotMax the maximum number of entries to keep in memory.  When
+   * exceeded, the last half (in queue order) is written to disk.
+   * @param maxRuns the number of run files above which all runs are merged
+   * into one
+   * @param parentDir the directory in which to create the spill directory,
+   * or null for the system temp dir
+   */
+  public SpillingCrawlQueue(final Comparator<CrawlUrl> comparator,
+			    int hotMax, int maxRuns, File parentDir) {
+    super(comparator);
+    if (hotMax < 2) {
+      throw new IllegalArgumentException("hotMax must be at least 2: "
+					 + hotMax);
+    }
+    this.hotMax = hotMax;
+    this.maxRuns = Math.max(maxRuns, 2);
+    this.parentDir = parentDir;
+    // Entries are numbered in the order added, which breaks ties (and
+    // determines the order if comparator is null).
+    order = new Comparator<Entry>() {
+	public int compare(Entry e1, Entry e2) {
+	  if (comparator != null) {
+	    int res = comparator.compare(e1.curl, e2.curl);
+	    if (res != 0) {
+	      return res;
+	    }
+	  }
+	  return Long.compare(e1.seq, e2.seq);
+	}
+      };
+    hot = new TreeSet<Entry>(order);
+    runs = new PriorityQueue<Run>(11, new Comparator<Run>() {
+	public int compare(Run r1, Run r2) {
+	  return order.compare(r1.head, r2.head);
+	}
+      });
+  }
+
+  /** Add CrawlUrlData to the queue.
+   * @throws IllegalArgumentException if the CrawlUrlData is already in the
+   * queue
+   */
+  @Override
+  public void add(CrawlUrlData curl) {
+    String url = curl.getUrl();
+    if (hotMap.containsKey(url) || spilledDepths.containsKey(url)) {
+      throw new IllegalArgumentException("Illegal to replace entry: " + url);
+    }
+    Entry ent = new Entry(curl, nextSeq++);
+    hot.add(ent);
+    hotMap.put(url, ent);
+    if (hot.size() > hotMax && !spillFailed) {
+      spill();
+    }
+  }
+
+  /** Return the first CrawlUrlData in the queue */
+  @Override
+  public CrawlUrlData first() {
+    Run run = firstRun();
+    if (run != null) {
+      return run.head.curl;
+    }
+    return hot.isEmpty() ? null : hot.first().curl;
+  }
+
+  /** Remove the first CrawlUrlData from the queue and return it */
+  @Override
+  public CrawlUrlData remove() {
+    Run run = firstRun();
+    if (run != null) {
+      runs.poll();
+      CrawlUrlData res = run.head.curl;
+      spilledDepths.remove(res.getUrl());
+      spilledCount--;
+      if (run.advance()) {
+	runs.add(run);
+      }
+      return res;
+    }
+    if (hot.isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    Entry ent = hot.pollFirst();
+    hotMap.remove(ent.curl.getUrl());
+    return ent.curl;
+  }
+
+  /** Retun the CrawlUrlData corresponding to the URL.  If the entry has
+   * been spilled, this is a copy holding only the URL and depth. */
+  @Override
+  public CrawlUrlData get(String url) {
+    Entry ent = hotMap.get(url);
+    if (ent != null) {
+      return ent.curl;
+    }
+    int depth = spilledDepths.get(url, -1);
+    if (depth < 0) {
+      return null;
+    }
+    return new CrawlUrlData(url, depth);
+  }
+
+  /** Return the number of elements in the queue */
+  @Override
+  public int size() {
+    return hot.size() + spilledCount;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /** Return the number of elements currently held on disk */
+  public int getSpilledCount() {
+    return spilledCount;
+  }
+
+  /** Return the total number of elements that have been written to disk */
+  public long getTotalSpilled() {
+    return totalSpilled;
+  }
+
+  /** Return the number of run files */
+  int getRunCount() {
+    return runs.size();
+  }
+
+  /** For unit tests */
+  @Override
+  Collection<CrawlUrlData> asList() {
+    List<Entry> ents = new ArrayList<Entry>(hot);
+    for (Run run : runs) {
+      ents.add(run.head);
+      try (DataInputStream in =
+	   new DataInputStream(new BufferedInputStream(new FileInputStream(run.file)))) {
+	for (int ix = 0; ix < run.total; ix++) {
+	  Entry ent = readEntry(in);
+	  if (ix >= run.total - run.remaining) {
+	    ents.add(ent);
+	  }
+	}
+      } catch (IOException e) {
+	throw new LockssUncheckedIOException(e);
+      }
+    }
+    Collections.sort(ents, order);
+    List<CrawlUrlData> res = new ArrayList<CrawlUrlData>(ents.size());
+    for (Entry ent : ents) {
+      res.add(ent.curl);
+    }
+    return res;
+  }
+
+  /** Close and delete the run files, discarding any entries they hold */
+  @Override
+  public void release() {
+    for (Run run : runs) {
+      run.close();
+    }
+    runs.clear();
+    spilledDepths.clear();
+    spilledCount = 0;
+    if (spillDir != null) {
+      FileUtil.delTree(spillDir);
+      spillDir = null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("[");
+    boolean first = true;
+    for (Entry ent : hot) {
+      if (!first) {
+	sb.append(", ");
+      }
+      sb.append(ent.curl);
+      first = false;
+    }
+    if (spilledCount > 0) {
+      sb.append(first ? "" : ", ");
+      sb.append("+");
+      sb.append(spilledCount);
+      sb.append(" spilled");
+    }
+    sb.append("]");
+    return sb.toString();
+  }
+
+  private Run firstRun() {
+    Run run = runs.peek();
+    if (run != null && (hot.isEmpty() || order.compare(run.head, hot.first()) < 0)) {
+      return run;
+    }
+    return null;
+  }
+
+  /** Write the last half of the hot set to a new run file */
+  private void spill() {
+    int n = hot.size() - hotMax / 2;
+    List<Entry> batch = new ArrayList<Entry>(n);
+    for (int ix = 0; ix < n; ix++) {
+      batch.add(hot.pollLast());
+    }
+    Collections.reverse(batch);
+    File file = null;
+    try {
+      file = newRunFile();
+      try (DataOutputStream out = openRunOut(file)) {
+	for (Entry ent : batch) {
+	  writeEntry(out, ent);
+	}
+      }
+      Run run = new Run(file, batch.size());
+      if (run.advance()) {
+	runs.add(run);
+      }
+    } catch (IOException e) {
+      log.error("Couldn't spill crawl queue to " + file
+		+ ", keeping it in memory", e);
+      if (file != null) {
+	file.delete();
+      }
+      hot.addAll(batch);
+      spillFailed = true;
+      return;
+    }
+    for (Entry ent : batch) {
+      String url = ent.curl.getUrl();
+      hotMap.remove(url);
+      spilledDepths.put(url, ent.curl.getDepth());
+    }
+    spilledCount += batch.size();
+    totalSpilled += batch.size();
+    if (log.isDebug2()) {
+      log.debug2("Spilled " + batch.size() + " URLs, " + spilledCount
+		 + " on disk in " + runs.size() + " runs");
+    }
+    if (runs.size() > maxRuns) {
+      mergeRuns();
+    }
+  }
+
+  /** Merge all the runs into one */
+  private void mergeRuns() {
+    File file = null;
+    int n = 0;
+    try {
+      file = newRunFile();
+      try (DataOutputStream out = openRunOut(file)) {
+	Run run;
+	while ((run = runs.poll()) != null) {
+	  writeEntry(out, run.head);
+	  n++;
+	  if (run.advance()) {
+	    runs.add(run);
+	  }
+	}
+      }
+      Run merged = new Run(file, n);
+      if (merged.advance()) {
+	runs.add(merged);
+      }
+      if (log.isDebug2()) log.debug2("Merged runs, " + n + " URLs");
+    } catch (IOException e) {
+      throw new LockssUncheckedIOException("Couldn't merge crawl queue runs",
+					   e);
+    }
+  }
+
+  private File newRunFile() throws IOException {
+    if (spillDir == null) {
+      spillDir = (parentDir == null)
+	? FileUtil.createTempDir("crawlqueue", "")
+	: FileUtil.createTempDir("crawlqueue", "", parentDir);
+    }
+    return new File(spillDir, "run-" + (runSeq++));
+  }
+
+  private DataOutputStream openRunOut(File file) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+  }
+
+  static void writeEntry(DataOutputStream out, Entry ent) throws IOException {
+    CrawlUrlData curl = ent.curl;
+    out.writeLong(ent.seq);
+    out.writeInt(curl.getDepth());
+    out.writeInt(curl.getFlags());
+    writeString(out, curl.getUrl());
+    writeString(out, curl.getReferrer());
+  }
+
+  static Entry readEntry(DataInputStream in) throws IOException {
+    long seq = in.readLong();
+    int depth = in.readInt();
+    int flags = in.readInt();
+    CrawlUrlData curl = new CrawlUrlData(readString(in), depth);
+    curl.setFlags(flags);
+    curl.setReferrer(readString(in));
+    return new Entry(curl, seq);
+  }
+
+  static void writeString(DataOutput out, String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] b = s.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(b.length);
+      out.write(b);
+    }
+  }
+
+  static String readString(DataInput in) throws IOException {
+    int len = in.readInt();
+    if (len < 0) {
+      return null;
+    }
+    byte[] b = new byte[len];
+    in.readFully(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  static class Entry {
+    final CrawlUrlData curl;
+    final long seq;
+
+    Entry(CrawlUrlData curl, long seq) {
+      this.curl = curl;
+      this.seq = seq;
+    }
+  }
+
+  /** A sorted run file being read back */
+  class Run {
+    final File file;
+    final int total;
+    DataInputStream in;
+    int remaining;
+    Entry head;
+
+    Run(File file, int count) throws IOException {
+      this.file = file;
+      this.total = count;
+      this.remaining = count;
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    /** Read the next entry into head.  At the end, close and delete the
+     * file and return false */
+    boolean advance() {
+      if (remaining <= 0) {
+	head = null;
+	close();
+	return false;
+      }
+      try {
+	head = readEntry(in);
+	remaining--;
+	return true;
+      } catch (IOException e) {
+	close();
+	throw new LockssUncheckedIOException("Couldn't read crawl queue run "
+					     + file, e);
+      }
+    }
+
+    void close() {
+      IOUtil.safeClose(in);
+      in = null;
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package org.lockss.crawler;
+
+import java.util.*;
+
+/**
+ * The link graph of a crawl: the minimum depth at which each URL has been
+ * found, and the links from each parsed URL to its children.  URLs are
+ * identified by their {@link UrlFingerprintMap} fingerprints and neither
+ * URL strings nor {@link CrawlUrlData} are retained, so the graph costs
+ * roughly 50 bytes per URL plus 8 per link.  When a URL's depth is
+ * reduced the reduction is propagated to its descendants, notifying a
+ * {@link ReducedDepthHandler} of each URL whose depth changes, as {@link
+ * CrawlUrlData#addChild(CrawlUrlData, CrawlUrlData.ReducedDepthHandler)}
+ * does for linked CrawlUrlData.  Not synchronized.
+ */
+public class UrlDepthGraph {
+  private static final int INITIAL_SIZE = 1024;
+
+  // fingerprint -> node number, which indexes the arrays below
+  private final UrlFingerprintMap nodes = new UrlFingerprintMap();
+  private long[] fps = new long[INITIAL_SIZE];
+  private int[] depths = new int[INITIAL_SIZE];
+  private long[][] children = new long[INITIAL_SIZE][];
+  private int[] numChildren = new int[INITIAL_SIZE];
+  private int size;
+
+  /** Return the number of URLs in the graph */
+  public int size() {
+    return size;
+  }
+
+  public boolean contains(String url) {
+    return nodes.containsKey(url);
+  }
+
+  /** Return the minimum depth at which the URL has been found, or -1 if
+   * it isn't in the graph */
+  public int getDepth(String url) {
+    int node = nodes.get(url, -1);
+    return node >= 0 ? depths[node] : -1;
+  }
+
+  /** Add a URL to the graph, if not already present.
+   * @return true if it was added */
+  public boolean add(String url, int depth) {
+    if (depth < 0) throw new IllegalArgumentException();
+    long fp = UrlFingerprintMap.fingerprint(url);
+    if (nodes.containsKey(fp)) {
+      return false;
+    }
+    if (size == depths.length) {
+      int n = size * 2;
+      fps = Arrays.copyOf(fps, n);
+      depths = Arrays.copyOf(depths, n);
+      children = Arrays.copyOf(children, n);
+      numChildren = Arrays.copyOf(numChildren, n);
+    }
+    fps[size] = fp;
+    depths[size] = depth;
+    nodes.put(fp, size++);
+    return true;
+  }
+
+  /** Add a link from parent to child, both of which must already be in
+   * the graph.  If that reduces the child's depth, reduce the depths of
+   * its descendants as necessary, notifying the handler (if non-null) of
+   * each URL whose depth is reduced. */
+  public void addChild(String parentUrl, String childUrl,
+		       ReducedDepthHandler rdh) {
+    int parent = node(parentUrl);
+    int child = node(childUrl);
+    long[] kids = children[parent];
+    int n = numChildren[parent];
+    if (kids == null) {
+      kids = children[parent] = new long[4];
+    } else if (n == kids.length) {
+      kids = children[parent] = Arrays.copyOf(kids, n * 2);
+    }
+    kids[n] = fps[child];
+    numChildren[parent] = n + 1;
+    reduceDepth(child, depths[parent] + 1, rdh);
+  }
+
+  /** When finished adding children to the URL, converts its child list
+   * into a more storage-efficient structure */
+  public void trimChildren(String url) {
+    int node = node(url);
+    long[] kids = children[node];
+    if (kids != null && kids.length > numChildren[node]) {
+      children[node] = Arrays.copyOf(kids, numChildren[node]);
+    }
+  }
+
+  /** Reinitialize the URL's child list */
+  public void clearChildren(String url) {
+    int node = node(url);
+    children[node] = null;
+    numChildren[node] = 0;
+  }
+
+  /** For unit tests */
+  int numChildren(String url) {
+    return numChildren[node(url)];
+  }
+
+  // used only by unit tests
+  boolean isChild(String parentUrl, String childUrl) {
+    int parent = node(parentUrl);
+    long fp = UrlFingerprintMap.fingerprint(childUrl);
+    for (int ix = 0; ix < numChildren[parent]; ix++) {
+      if (children[parent][ix] == fp) {
+	return true;
+      }
+    }
+    return false;
+  }
+
+  private int node(String url) {
+    int node = nodes.get(url, -1);
+    if (node < 0) {
+      throw new IllegalArgumentException("Not in graph: " + url);
+    }
+    return node;
+  }
+
+  private void reduceDepth(int node, int depth, ReducedDepthHandler rdh) {
+    int olddepth = depths[node];
+    if (depth >= olddepth) {
+      return;
+    }
+    depths[node] = depth;
+    long[] kids = children[node];
+    int n = numChildren[node];
+    for (int ix = 0; ix < n; ix++) {
+      int child = nodes.get(kids[ix], -1);
+      if (child >= 0) {
+	reduceDepth(child, depth + 1, rdh);
+      }
+    }
+    if (rdh != null) {
+      rdh.depthReduced(fps[node], olddepth, depth);
+    }
+  }
+
+  public interface ReducedDepthHandler {
+    /** Called when the depth of the URL with fingerprint fp is reduced */
+    public void depthReduced(long fp, int oldDepth, int newDepth);
+  }
+}
@@ -0,0 +1,194 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.crawler;
+
+/**
+ * Compact map from URL to a small int value, keyed by 64-bit hashed
+ * fingerprints of the URLs rather than the URL strings themselves.  Uses
+ * open addressing with linear probing over parallel primitive arrays, so
+ * each entry costs roughly 24 bytes regardless of the URL's length.
+ * Distinct URLs with the same fingerprint are indistinguishable; with 64
+ * bit fingerprints that's vanishingly unlikely even for tens of millions
+ * of URLs.  Not synchronized.
+ */
+public class UrlFingerprintMap {
+  private static final float LOAD_FACTOR = 0.5f;
+
+  // 0 marks an empty slot, so a zero fingerprint is stored as 1
+  private long[] keys;
+  private int[] values;
+  private int size;
+
+  public UrlFingerprintMap() {
+    this(1024);
+  }
+
+  public UrlFingerprintMap(int initialCapacity) {
+    int cap = 16;
+    while (cap * LOAD_FACTOR < initialCapacity) {
+      cap <<= 1;
+    }
+    keys = new long[cap];
+    values = new int[cap];
+  }
+
+  /** Return the 64-bit fingerprint of a URL */
+  public static long fingerprint(String url) {
+    // FNV-1a over the chars, then a murmur3 finalizer to spread the bits
+    long h = 0xcbf29ce484222325L;
+    for (int ix = 0; ix < url.length(); ix++) {
+      h ^= url.charAt(ix);
+      h *= 0x100000001b3L;
+    }
+    h ^= (h >>> 33);
+    h *= 0xff51afd7ed558ccdL;
+    h ^= (h >>> 33);
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= (h >>> 33);
+    return h == 0 ? 1 : h;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(String url) {
+    return containsKey(fingerprint(url));
+  }
+
+  boolean containsKey(long fp) {
+    return indexOf(fp) >= 0;
+  }
+
+  /** Return the value associated with the URL, or dflt if none */
+  public int get(String url, int dflt) {
+    return get(fingerprint(url), dflt);
+  }
+
+  int get(long fp, int dflt) {
+    int ix = indexOf(fp);
+    return ix >= 0 ? values[ix] : dflt;
+  }
+
+  /** Associate the value with the URL, replacing any existing value */
+  public void put(String url, int value) {
+    put(fingerprint(url), value);
+  }
+
+  void put(long fp, int value) {
+    int mask = keys.length - 1;
+    int ix = slot(fp, mask);
+    while (keys[ix] != 0) {
+      if (keys[ix] == fp) {
+	values[ix] = value;
+	return;
+      }
+      ix = (ix + 1) & mask;
+    }
+    keys[ix] = fp;
+    values[ix] = value;
+    if (++size > keys.length * LOAD_FACTOR) {
+      grow();
+    }
+  }
+
+  /** Remove the URL.
+   * @return true if it was present */
+  public boolean remove(String url) {
+    return remove(fingerprint(url));
+  }
+
+  boolean remove(long fp) {
+    int ix = indexOf(fp);
+    if (ix < 0) {
+      return false;
+    }
+    // Backward-shift deletion keeps probe sequences intact without
+    // tombstones
+    int mask = keys.length - 1;
+    int hole = ix;
+    int next = (hole + 1) & mask;
+    while (keys[next] != 0) {
+      int home = slot(keys[next], mask);
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+	keys[hole] = keys[next];
+	values[hole] = values[next];
+	hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[hole] = 0;
+    values[hole] = 0;
+    size--;
+    return true;
+  }
+
+  public void clear() {
+    java.util.Arrays.fill(keys, 0);
+    java.util.Arrays.fill(values, 0);
+    size = 0;
+  }
+
+  private int indexOf(long fp) {
+    int mask = keys.length - 1;
+    int ix = slot(fp, mask);
+    while (keys[ix] != 0) {
+      if (keys[ix] == fp) {
+	return ix;
+      }
+      ix = (ix + 1) & mask;
+    }
+    return -1;
+  }
+
+  private static int slot(long fp, int mask) {
+    return (int)(fp ^ (fp >>> 32)) & mask;
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new int[oldValues.length * 2];
+    size = 0;
+    for (int ix = 0; ix < oldKeys.length; ix++) {
+      if (oldKeys[ix] != 0) {
+	put(oldKeys[ix], oldValues[ix]);
+      }
+    }
+  }
+}
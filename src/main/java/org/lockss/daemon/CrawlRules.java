@@ -82,6 +82,10 @@ public class CrawlRules {
     protected Pattern regexp;
     private int action;
     private boolean ignoreCase;
+    // Thread-safe equivalent of regexp, if it could be translated
+    private java.util.regex.Pattern javaRegexp;
+    // Literal string every match must start with, or null
+    private String literalPrefix;
 
     /** Include if match, else ignore */
     public static final int MATCH_INCLUDE = 1;
@@ -117,6 +121,7 @@ public class CrawlRules {
       }
       this.regexp = regexp;
       this.action = action;
+      initMatcher(regexp.getOptions());
     }
 
     /**
@@ -146,19 +151,66 @@ public class CrawlRules {
 	regexp = RegexpUtil.getCompiler().compile(reString, flags);
 	this.action = action;
         this.ignoreCase = ignoreCase;
+	initMatcher(flags);
       } catch (MalformedPatternException e) {
 	throw new LockssRegexpException(e.getMessage());
       }
     }
 
     /**
-     * Perform the match in a synchronized block so that the pattern isn't
-     * concurrently used by multiple threads.
+     * Translate the RE into an equivalent java.util.regex Pattern, which
+     * (unlike ORO Patterns) can be used by multiple threads without
+     * locking.  If that isn't possible, matches use the ORO Pattern.
+     */
+    private void initMatcher(int options) {
+      String re = regexp.getPattern();
+      javaRegexp = RegexpUtil.toJavaPattern(re, options);
+      literalPrefix = RegexpUtil.getLiteralPrefix(re, options);
+      if (javaRegexp == null) {
+	logger.debug2("Using synchronized ORO matcher for " + re);
+      }
+    }
+
+    /**
+     * Return true if the URL can't match because it doesn't start with
+     * the RE's literal prefix
+     */
+    protected boolean isPrefixMismatch(String url) {
+      return literalPrefix != null && !url.startsWith(literalPrefix);
+    }
+
+    /**
+     * Perform the match without locking if the RE was translated to a
+     * java.util.regex Pattern, else in a synchronized block so that the
+     * ORO pattern isn't concurrently used by multiple threads.
      */
     protected boolean isMatch(String url) {
+      if (isPrefixMismatch(url)) {
+	return false;
+      }
+      if (javaRegexp != null) {
+	return javaRegexp.matcher(url).find();
+      }
       return isMatch(RegexpUtil.getMatcher(), url);
     }
 
+    /**
+     * Return a Matcher positioned at the first match in the URL, or null
+     * if there is no match or the RE couldn't be translated.
+     */
+    protected java.util.regex.Matcher findJavaMatch(String url) {
+      if (javaRegexp == null) {
+	return null;
+      }
+      java.util.regex.Matcher m = javaRegexp.matcher(url);
+      return m.find() ? m : null;
+    }
+
+    /** Return true if matches don't require locking */
+    boolean isLockFree() {
+      return javaRegexp != null;
+    }
+
     /**
      * Perform the match in a synchronized block so that the pattern isn't
      * concurrently used by multiple threads.
@@ -274,15 +326,70 @@ public class CrawlRules {
       if (logger.isDebug3()) {
 	logger.debug3("Match called with "+url);
       }
-      Perl5Matcher matcher = RegexpUtil.getMatcher();
-      boolean match = isMatch(matcher, url);
-      if (match) {
-	match &= isConditionMet(matcher.getMatch());
+      boolean match;
+      if (isPrefixMismatch(url)) {
+	match = false;
+      } else if (isLockFree()) {
+	java.util.regex.Matcher m = findJavaMatch(url);
+	match = m != null && isConditionMet(new JavaMatchResult(m));
+      } else {
+	Perl5Matcher matcher = RegexpUtil.getMatcher();
+	match = isMatch(matcher, url);
+	if (match) {
+	  match &= isConditionMet(matcher.getMatch());
+	}
       }
       return matchAction(match);
     }
   }
 
+  /**
+   * Presents a java.util.regex match as an ORO MatchResult, so that
+   * {@link REMatchCondition#isConditionMet(MatchResult)} works with
+   * either engine.
+   */
+  static class JavaMatchResult implements MatchResult {
+    private java.util.regex.MatchResult res;
+
+    JavaMatchResult(java.util.regex.Matcher matcher) {
+      res = matcher.toMatchResult();
+    }
+
+    public int length() {
+      return res.end() - res.start();
+    }
+
+    public int groups() {
+      return res.groupCount() + 1;
+    }
+
+    public String group(int group) {
+      return group < groups() ? res.group(group) : null;
+    }
+
+    public int begin(int group) {
+      int off = beginOffset(group);
+      return off < 0 ? -1 : off - res.start();
+    }
+
+    public int end(int group) {
+      int off = endOffset(group);
+      return off < 0 ? -1 : off - res.start();
+    }
+
+    public int beginOffset(int group) {
+      return group < groups() ? res.start(group) : -1;
+    }
+
+    public int endOffset(int group) {
+      return group < groups() ? res.end(group) : -1;
+    }
+
+    public String toString() {
+      return res.group();
+    }
+  }
+
   /**
    * CrawlRule.REMatchRange matches an RE then checks that the
    * subexpression falls within the specified range (inclusive).
@@ -539,6 +646,7 @@ public class CrawlRules {
    */
   public static class FirstMatch implements CrawlRule {
     private List rules;
+    private CrawlRule[] ruleArray;
 
     /**
      * Create a rule that matches against the given list of rules
@@ -550,6 +658,7 @@ public class CrawlRules {
 	throw new NullPointerException("CrawlRules.FirstMatch with null list");
       }
       this.rules = ListUtil.immutableListOfType(rules, CrawlRule.class);
+      this.ruleArray = (CrawlRule[])this.rules.toArray(new CrawlRule[0]);
     }
 
     /**
@@ -559,8 +668,8 @@ public class CrawlRules {
      * match.
      */
     public int match(String url) {
-      for (Iterator iter = rules.iterator(); iter.hasNext(); ) {
-	int match = ((CrawlRule)iter.next()).match(url);
+      for (CrawlRule rule : ruleArray) {
+	int match = rule.match(url);
 	if (match != CrawlRule.IGNORE) {
 	  return match;
 	}
@@ -45,6 +45,9 @@ public class StatusTable {
 
   public static final int OPTION_NO_ROWS = 1;
   public static final int OPTION_DEBUG_USER = 2;
+  /** Return all the rows of a table that has a {@link RowSource}, rather
+   * than a single page, unless a <tt>numrows</tt> property is present */
+  public static final int OPTION_ALL_ROWS = 3;
   public static final OrderedObject NO_VALUE =
     new OrderedObject("-", Long.valueOf(-1));
 
@@ -57,6 +60,9 @@ public class StatusTable {
   private List columnDescriptors;
   private Map columnDescriptorMap;
   private List rows;
+  private RowSource rowSource;
+  private String pageLinkColumn;
+  private int defaultNumRows;
   private List defaultSortRules;
   private static Logger logger = Logger.getLogger();
   private List summaryInfo;
@@ -496,7 +502,7 @@ public class StatusTable {
    * in their default sort order
    */
   public List<Map> getSortedRows() {
-    if (rows == null) {
+    if (rows == null && rowSource == null) {
       return Collections.EMPTY_LIST;
     }
     return getSortedRows(getDefaultSortRules());
@@ -511,17 +517,259 @@ public class StatusTable {
    * in the sort order specified by sortRules
    */
   public List getSortedRows(List sortRules) {
+    if (rowSource != null) {
+      if (isPaged()) {
+	return getPage(sortRules);
+      }
+      List res = new ArrayList();
+      for (Iterator iter = rowSource.rowIterator(); iter.hasNext(); ) {
+	res.add(iter.next());
+      }
+      Collections.sort(res, new SortRuleComparator(sortRules,
+						   getColumnDescriptorMap()));
+      return res;
+    }
     Collections.sort(rows, new SortRuleComparator(sortRules,
 						  getColumnDescriptorMap()));
     return rows;
   }
 
+  /**
+   * Returns an Iterator over the rows in their default sort order.  If
+   * the table's {@link RowSource} produces rows in that order, all the
+   * rows are not held in memory at once.
+   * @return Iterator over {@link java.util.Map}s representing rows in
+   * the table in their default sort order
+   */
+  public Iterator<Map> getRowCursor() {
+    return getRowCursor(getDefaultSortRules());
+  }
+
+  /**
+   * Same as getRowCursor(), but will sort according to the rules
+   * specified in sortRules.  Any sorting is done before this method
+   * returns.
+   * @param sortRules list of {@link StatusTable.SortRule} objects describing
+   *  how to sort  the rows
+   * @return Iterator over {@link java.util.Map}s representing rows in the
+   * table in the sort order specified by sortRules
+   */
+  public Iterator<Map> getRowCursor(List sortRules) {
+    if (rowSource == null) {
+      if (rows == null) {
+	return Collections.emptyIterator();
+      }
+      return getSortedRows(sortRules).iterator();
+    }
+    if (!isPaged() && isInSourceOrder(sortRules)) {
+      return rowSource.rowIterator();
+    }
+    return getSortedRows(sortRules).iterator();
+  }
+
   /**
    * Set the rows ({@link Map}s) for this table
    * @param rows List of unsorted rows for this table
    */
   public void setRows(List rows) {
     this.rows = rows;
+    this.rowSource = null;
+  }
+
+  /**
+   * Set the {@link RowSource} from which the rows of this table are
+   * generated as they're read, instead of a List of rows.  Unless the
+   * table has {@link #OPTION_ALL_ROWS}, only the <tt>numrows</tt> rows
+   * starting at <tt>skiprows</tt> in sort order are returned, along with
+   * <tt>Previous</tt> and <tt>Next</tt> link rows as needed.  Only those
+   * rows are retained while finding them.
+   * @param rowSource the source of the table's rows
+   * @param linkColumn the name of the column in which to store the
+   * <tt>Previous</tt> and <tt>Next</tt> links
+   * @param defaultNumRows the number of rows per page if there's no
+   * <tt>numrows</tt> property.  If zero, all rows are returned unless
+   * <tt>numrows</tt> is present.
+   */
+  public void setRowSource(RowSource rowSource, String linkColumn,
+			   int defaultNumRows) {
+    this.rowSource = rowSource;
+    this.pageLinkColumn = linkColumn;
+    this.defaultNumRows = defaultNumRows;
+    this.rows = null;
+  }
+
+  /** @return true if the table's rows are generated by a {@link
+   * RowSource} */
+  public boolean hasRowSource() {
+    return rowSource != null;
+  }
+
+  /** @return true if only a single page of the rows is returned */
+  boolean isPaged() {
+    if (rowSource == null) {
+      return false;
+    }
+    if (getIntProp("numrows") > 0) {
+      return true;
+    }
+    return defaultNumRows > 0 && !options.get(OPTION_ALL_ROWS);
+  }
+
+  private boolean isInSourceOrder(List sortRules) {
+    return rowSource.isInDefaultOrder()
+      && sortRules.equals(getDefaultSortRules());
+  }
+
+  // Find the rows in the requested page.  Retains only the first endRow1
+  // rows in sort order while scanning the source, in a heap ordered with
+  // the largest at the head.  Ties are broken by source order so that the
+  // result is the same as that of a stable sort of all the rows.
+  private List<Map> getPage(List sortRules) {
+    int startRow = getStartRow();
+    int numRows = getNumRows(defaultNumRows);
+    int endRow1 = (int)Math.min((long)startRow + numRows, Integer.MAX_VALUE);
+    List<Map> res = new ArrayList<Map>();
+    addPrevRowsLink(res, pageLinkColumn, startRow, numRows,
+		    this::copyPageProps);
+    Iterator<Map> iter = rowSource.rowIterator();
+    boolean more;
+    if (isInSourceOrder(sortRules)) {
+      for (int ix = 0; ix < endRow1 && iter.hasNext(); ix++) {
+	Map row = iter.next();
+	if (ix >= startRow) {
+	  res.add(row);
+	}
+      }
+      more = iter.hasNext();
+    } else {
+      final Comparator<Map> cmp =
+	new SortRuleComparator(sortRules, getColumnDescriptorMap());
+      Comparator<RankedRow> rankCmp = new Comparator<RankedRow>() {
+	  public int compare(RankedRow a, RankedRow b) {
+	    int val = cmp.compare(a.row, b.row);
+	    return val != 0 ? val : Long.compare(a.rank, b.rank);
+	  }};
+      PriorityQueue<RankedRow> heap =
+	new PriorityQueue<RankedRow>(11, rankCmp.reversed());
+      long rank = 0;
+      while (iter.hasNext()) {
+	RankedRow rr = new RankedRow(iter.next(), rank++);
+	if (heap.size() < endRow1) {
+	  heap.add(rr);
+	} else if (rankCmp.compare(rr, heap.peek()) < 0) {
+	  heap.poll();
+	  heap.add(rr);
+	}
+      }
+      more = rank > endRow1;
+      List<RankedRow> top = new ArrayList<RankedRow>(heap);
+      Collections.sort(top, rankCmp);
+      for (int ix = startRow; ix < top.size(); ix++) {
+	res.add(top.get(ix).row);
+      }
+    }
+    if (more) {
+      res.add(makeOtherRowsLink(pageLinkColumn, true, endRow1, numRows,
+				this::copyPageProps));
+    }
+    return res;
+  }
+
+  // Carry the current table properties (e.g., columns, sort) to the
+  // Previous and Next links.  makeOtherRowsLink() sets the row properties
+  // after this.
+  private void copyPageProps(Reference ref) {
+    if (props != null) {
+      for (String prop : props.stringPropertyNames()) {
+	ref.setProperty(prop, props.getProperty(prop));
+      }
+    }
+  }
+
+  private static class RankedRow {
+    final Map row;
+    final long rank;
+
+    RankedRow(Map row, long rank) {
+      this.row = row;
+      this.rank = rank;
+    }
+  }
+
+  /**
+   * Source of the rows of a table too large to build all at once.  Rows
+   * are generated by the iterator as they are read, and may be discarded
+   * by the reader, so the source should not retain them.
+   */
+  public interface RowSource {
+    /**
+     * Return a new Iterator over all the rows of the table.  May be
+     * called more than once.
+     * @return Iterator over {@link java.util.Map}s representing rows
+     */
+    public Iterator<Map> rowIterator();
+
+    /**
+     * @return true if rowIterator() produces the rows in the table's
+     * default sort order, so that they need not be sorted
+     */
+    default public boolean isInDefaultOrder() {
+      return false;
+    }
+  }
+
+  /**
+   * RowSource that makes a row from each element of an Iterable, as the
+   * rows are read.  Elements for which the row maker returns null are
+   * omitted.
+   */
+  public static class IterableRowSource<T> implements RowSource {
+    private Iterable<T> items;
+    private java.util.function.Function<T,Map> rowMaker;
+    private boolean isInDefaultOrder = false;
+
+    /**
+     * @param items the elements from which to make rows
+     * @param rowMaker returns the row Map for an element, or null
+     */
+    public IterableRowSource(Iterable<T> items,
+			     java.util.function.Function<T,Map> rowMaker) {
+      this.items = items;
+      this.rowMaker = rowMaker;
+    }
+
+    /** Declare that the rows are made in the table's default sort order */
+    public IterableRowSource<T> setInDefaultOrder(boolean val) {
+      isInDefaultOrder = val;
+      return this;
+    }
+
+    public boolean isInDefaultOrder() {
+      return isInDefaultOrder;
+    }
+
+    public Iterator<Map> rowIterator() {
+      final Iterator<T> iter = items.iterator();
+      return new Iterator<Map>() {
+	private Map nextRow;
+
+	public boolean hasNext() {
+	  while (nextRow == null && iter.hasNext()) {
+	    nextRow = rowMaker.apply(iter.next());
+	  }
+	  return nextRow != null;
+	}
+
+	public Map next() {
+	  if (!hasNext()) {
+	    throw new NoSuchElementException();
+	  }
+	  Map res = nextRow;
+	  nextRow = null;
+	  return res;
+	}
+      };
+    }
   }
 
   /** Mark any References contained in the value as local.  */
@@ -183,10 +183,9 @@ public class XmlStatusTable {
    * @param colList List
    */
   private void addRows(Element rootElem, List colList) {
-    List rowList = statusTable.getSortedRows();
-    if (rowList == null) {
-      return;
-    }
+    // Rows of a table with a RowSource are generated as they're added,
+    // if they don't need to be sorted
+    Iterator rowIter = statusTable.getRowCursor();
     int colSize = colList.size();
     String[] colNames = new String[colSize];
     int[] colTypes = new int[colSize];
@@ -196,7 +195,6 @@ public class XmlStatusTable {
       colTypes[ii] = cd.getType();
     }
 
-    Iterator rowIter = rowList.iterator();
     while (rowIter.hasNext()) {
       Map rowMap = (Map)rowIter.next();
 
@@ -178,6 +178,36 @@ public abstract class DbManager extends BaseLockssManager
   private static final boolean DEFAULT_START_DERBY_NETWORK_SERVER_CONTROL =
       false;
 
+  /**
+   * If true, the execution count, latency and rows of each distinct SQL
+   * statement are recorded and displayed in a status table.  Off by default,
+   * as each statement prepared while enabled is wrapped in a proxy that adds
+   * overhead to every call.
+   */
+  public static final String PARAM_STATEMENT_STATS =
+      PREFIX + "statementStats.enabled";
+  public static final boolean DEFAULT_STATEMENT_STATS = false;
+
+  /**
+   * Maximum number of distinct SQL statements for which statistics are kept.
+   */
+  public static final String PARAM_STATEMENT_STATS_MAX =
+      PREFIX + "statementStats.maxStatements";
+  public static final int DEFAULT_STATEMENT_STATS_MAX = 1000;
+
+  /**
+   * Whether DBCP pooled connections cache their prepared statements, keyed by
+   * SQL, if not set in the data source <code>dbcp</code> configuration.
+   */
+  protected static final String DEFAULT_DBCP_POOL_PREPARED_STATEMENTS = "true";
+
+  /**
+   * Maximum number of prepared statements cached by each DBCP pooled
+   * connection, if not set in the data source <code>dbcp</code> configuration.
+   */
+  protected static final String DEFAULT_DBCP_MAX_OPEN_PREPARED_STATEMENTS =
+      "100";
+
   /**
    * Absolute or relative path to base dir to store Derby databases.  If
    * not set defaults to "<cache-dir>/db"
@@ -280,6 +310,11 @@ public abstract class DbManager extends BaseLockssManager
       DEFAULT_START_DERBY_NETWORK_SERVER_CONTROL;
 
   private String derbyDbBaseDir;
+
+  // The statistics of the statements prepared by this manager.
+  private final DbStatementStats statementStats =
+      new DbStatementStats(getClass().getSimpleName());
+
   /**
    * Default constructor.
    */
@@ -326,6 +361,10 @@ public abstract class DbManager extends BaseLockssManager
       updateDatabaseIfNeeded(targetDatabaseVersion);
 
       ready = true;
+
+      getDaemon().getStatusService()
+	.registerStatusAccessor(getStatementStatsTableName(),
+	    statementStats.getStatusAccessor());
     } catch (DbException dbe) {
       log.error(dbe.getMessage() + " - DbManager not ready", dbe);
       // Do nothing more if the database infrastructure cannot be setup.
@@ -370,6 +409,11 @@ public abstract class DbManager extends BaseLockssManager
                                      + shouldStartDerbyNetworkServerControl);
 
       derbyDbBaseDir = config.get(PARAM_DERBY_DB_DIR);
+
+      statementStats.setEnabled(config.getBoolean(PARAM_STATEMENT_STATS,
+	  DEFAULT_STATEMENT_STATS));
+      statementStats.setMaxStatements(config.getInt(PARAM_STATEMENT_STATS_MAX,
+	  DEFAULT_STATEMENT_STATS_MAX));
     }
 
     if (log.isDebug2()) log.debug2(DEBUG_HEADER + "Done.");
@@ -380,6 +424,11 @@ public abstract class DbManager extends BaseLockssManager
    */
   @Override
   public void stopService() {
+    if (ready) {
+      getDaemon().getStatusService()
+	.unregisterStatusAccessor(getStatementStatsTableName());
+    }
+
     // Check whether the Derby database was booted.
     if (dbManagerSql.isTypeDerby() && dbBooted) {
       try {
@@ -400,6 +449,25 @@ public abstract class DbManager extends BaseLockssManager
     dbManagerSql.setDataSource(dataSource);
   }
 
+  /**
+   * Provides the statistics of the statements prepared by this manager.
+   * 
+   * @return a DbStatementStats with the statement statistics.
+   */
+  public DbStatementStats getStatementStats() {
+    return statementStats;
+  }
+
+  /**
+   * Provides the name of the status table that displays the statement
+   * statistics.
+   * 
+   * @return a String with the status table name.
+   */
+  public String getStatementStatsTableName() {
+    return getClass().getSimpleName() + "Statements";
+  }
+
   protected void setDbManagerSql(DbManagerSql dbManagerSql) {
     this.dbManagerSql = dbManagerSql;
   }
@@ -990,6 +1058,17 @@ public abstract class DbManager extends BaseLockssManager
       // Set className to DBCP
       dbcpProps.put("className", BasicDataSource.class.getCanonicalName());
 
+      // Cache prepared statements on each pooled connection unless
+      // configured otherwise
+      if (StringUtil.isNullString(dbcpProps.get("poolPreparedStatements"))) {
+        dbcpProps.put("poolPreparedStatements",
+            DEFAULT_DBCP_POOL_PREPARED_STATEMENTS);
+      }
+      if (StringUtil.isNullString(dbcpProps.get("maxOpenPreparedStatements"))) {
+        dbcpProps.put("maxOpenPreparedStatements",
+            DEFAULT_DBCP_MAX_OPEN_PREPARED_STATEMENTS);
+      }
+
       // Set username and password
       dbcpProps.put("username", dataSourceConfig.get("user"));
       dbcpProps.put("password", dataSourceConfig.get("password"));
@@ -682,6 +682,7 @@ public class DbManagerSql {
       // Prepare the statement.
       statement = JdbcBridge.prepareStatement(conn, sql,
 	  Statement.NO_GENERATED_KEYS, maxRetryCount, retryDelay, fetchSize);
+      statement = recordStatementStats(statement, sql);
     } catch (SQLException sqle) {
       log.error("Cannot prepare a statement", sqle);
       log.error("sql = '" + sql + "'");
@@ -761,6 +762,7 @@ public class DbManagerSql {
       // Prepare the statement.
       statement = JdbcBridge.prepareStatement(conn, sql, returnGeneratedKeys,
 	  maxRetryCount, retryDelay, fetchSize);
+      statement = recordStatementStats(statement, sql);
     } catch (SQLException sqle) {
       log.error("Cannot prepare a statement", sqle);
       log.error("sql = '" + sql + "'");
@@ -781,6 +783,25 @@ public class DbManagerSql {
     return statement;
   }
 
+  /**
+   * Arranges for the executions of a newly prepared statement to be recorded
+   * in the statement statistics of the database manager, if any.
+   * 
+   * @param statement
+   *          A PreparedStatement with the prepared statement.
+   * @param sql
+   *          A String with the prepared statement SQL query.
+   * @return a PreparedStatement to be used in place of the original one.
+   */
+  PreparedStatement recordStatementStats(PreparedStatement statement,
+      String sql) {
+    if (dbMgr == null) {
+      return statement;
+    }
+
+    return dbMgr.getStatementStats().wrap(statement, sql);
+  }
+
   /**
    * Executes a querying prepared statement, retrying the execution in the
    * default manner in case of transient failures.
@@ -0,0 +1,396 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.db;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.lockss.daemon.status.*;
+import org.lockss.util.*;
+
+/**
+ * Per-SQL execution statistics for the statements prepared by a {@link
+ * DbManager}.  Statements are wrapped so that each execution records its
+ * latency, and the number of rows it updated or that were read from its
+ * result set, against the SQL text it was prepared with.
+ */
+public class DbStatementStats {
+
+  /** Upper bounds (exclusive, in milliseconds) of the latency histogram
+   * buckets.  A final bucket holds everything slower. */
+  static final long[] LATENCY_BUCKETS = {1, 10, 100, 1000};
+
+  static final String[] LATENCY_BUCKET_NAMES =
+    {"<1ms", "<10ms", "<100ms", "<1s", ">=1s"};
+
+  private final Map<String,SqlStats> statsMap =
+    new ConcurrentHashMap<String,SqlStats>();
+  private final AtomicLong untracked = new AtomicLong();
+  private volatile boolean enabled = false;
+  private volatile int maxStatements = 1000;
+  private final String name;
+
+  /**
+   * @param name the name of the database, used in the status table title.
+   */
+  public DbStatementStats(String name) {
+    this.name = name;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Set the maximum number of distinct SQL statements to track.
+   * Statements prepared after the limit is reached aren't recorded. */
+  public void setMaxStatements(int maxStatements) {
+    this.maxStatements = maxStatements;
+  }
+
+  /**
+   * Returns a statement that records its executions, or the statement
+   * itself if disabled or too many distinct statements are being tracked.
+   *
+   * @param statement A PreparedStatement just prepared.
+   * @param sql A String with the SQL it was prepared with.
+   * @return a PreparedStatement to be used in place of the original.
+   */
+  PreparedStatement wrap(PreparedStatement statement, String sql) {
+    if (!enabled || statement == null || sql == null) {
+      return statement;
+    }
+    SqlStats stats = statsMap.get(sql);
+    if (stats == null) {
+      if (statsMap.size() >= maxStatements) {
+	untracked.incrementAndGet();
+	return statement;
+      }
+      stats = statsMap.computeIfAbsent(sql, SqlStats::new);
+    }
+    return (PreparedStatement)
+      Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+			     new Class[] {PreparedStatement.class},
+			     new StatementHandler(statement, stats));
+  }
+
+  /** Return the stats for the SQL statement, or null if none. */
+  public SqlStats getStats(String sql) {
+    return statsMap.get(sql);
+  }
+
+  /** Return the stats for all tracked statements. */
+  public Collection<SqlStats> getAllStats() {
+    return new ArrayList<SqlStats>(statsMap.values());
+  }
+
+  /** Return the number of statements prepared that weren't tracked because
+   * the limit had been reached. */
+  public long getUntrackedCount() {
+    return untracked.get();
+  }
+
+  /** Discard all statistics. */
+  public void reset() {
+    statsMap.clear();
+    untracked.set(0);
+  }
+
+  static int bucketIndex(long millis) {
+    for (int ix = 0; ix < LATENCY_BUCKETS.length; ix++) {
+      if (millis < LATENCY_BUCKETS[ix]) {
+	return ix;
+      }
+    }
+    return LATENCY_BUCKETS.length;
+  }
+
+  /**
+   * Execution statistics for a single SQL statement.
+   */
+  public static class SqlStats {
+    private final String sql;
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray histogram =
+      new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+
+    SqlStats(String sql) {
+      this.sql = sql;
+    }
+
+    void recordExecution(long nanos, boolean error) {
+      executions.increment();
+      if (error) {
+	errors.increment();
+      }
+      totalNanos.add(nanos);
+      maxNanos.accumulateAndGet(nanos, Math::max);
+      histogram.incrementAndGet(bucketIndex(TimeUnit.NANOSECONDS.toMillis(nanos)));
+    }
+
+    void addRows(long n) {
+      if (n > 0) {
+	rows.add(n);
+      }
+    }
+
+    public String getSql() {
+      return sql;
+    }
+
+    public long getExecutions() {
+      return executions.sum();
+    }
+
+    public long getErrors() {
+      return errors.sum();
+    }
+
+    /** Return the total number of rows updated by, or read from the
+     * results of, this statement. */
+    public long getRows() {
+      return rows.sum();
+    }
+
+    public long getTotalTime() {
+      return TimeUnit.NANOSECONDS.toMillis(totalNanos.sum());
+    }
+
+    public long getMaxTime() {
+      return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    public double getAverageTime() {
+      long n = getExecutions();
+      return n == 0 ? 0.0 : totalNanos.sum() / (n * 1000000.0);
+    }
+
+    /** Return the number of executions in each latency bucket. */
+    public long[] getHistogram() {
+      long[] res = new long[histogram.length()];
+      for (int ix = 0; ix < res.length; ix++) {
+	res[ix] = histogram.get(ix);
+      }
+      return res;
+    }
+  }
+
+  static Object invoke(Object target, Method method, Object[] args)
+      throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Times the executions of a PreparedStatement. */
+  static class StatementHandler implements InvocationHandler {
+    private final PreparedStatement statement;
+    private final SqlStats stats;
+
+    StatementHandler(PreparedStatement statement, SqlStats stats) {
+      this.statement = statement;
+      this.stats = stats;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args)
+	throws Throwable {
+      String name = method.getName();
+      switch (name) {
+      case "equals":
+	return proxy == args[0];
+      case "hashCode":
+	return System.identityHashCode(proxy);
+      case "toString":
+	return statement.toString();
+      }
+      // Only the parameterless forms execute the prepared SQL
+      if ((args != null && args.length != 0) || !name.startsWith("execute")) {
+	return DbStatementStats.invoke(statement, method, args);
+      }
+      long start = System.nanoTime();
+      boolean error = true;
+      try {
+	Object res = DbStatementStats.invoke(statement, method, args);
+	error = false;
+	if (res instanceof ResultSet) {
+	  res = Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+				       new Class[] {ResultSet.class},
+				       new ResultSetHandler((ResultSet)res,
+							    stats));
+	} else if (res instanceof Number) {
+	  stats.addRows(((Number)res).longValue());
+	} else if (res instanceof int[]) {
+	  for (int count : (int[])res) {
+	    stats.addRows(count);
+	  }
+	} else if (res instanceof long[]) {
+	  for (long count : (long[])res) {
+	    stats.addRows(count);
+	  }
+	}
+	return res;
+      } finally {
+	stats.recordExecution(System.nanoTime() - start, error);
+      }
+    }
+  }
+
+  /** Counts the rows read from a ResultSet. */
+  static class ResultSetHandler implements InvocationHandler {
+    private final ResultSet resultSet;
+    private final SqlStats stats;
+
+    ResultSetHandler(ResultSet resultSet, SqlStats stats) {
+      this.resultSet = resultSet;
+      this.stats = stats;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args)
+	throws Throwable {
+      switch (method.getName()) {
+      case "equals":
+	return proxy == args[0];
+      case "hashCode":
+	return System.identityHashCode(proxy);
+      case "next":
+	Object res = DbStatementStats.invoke(resultSet, method, args);
+	if (Boolean.TRUE.equals(res)) {
+	  stats.addRows(1);
+	}
+	return res;
+      default:
+	return DbStatementStats.invoke(resultSet, method, args);
+      }
+    }
+  }
+
+  // Status table.
+
+  static final String COL_SQL = "sql";
+  static final String COL_EXECUTIONS = "executions";
+  static final String COL_ERRORS = "errors";
+  static final String COL_ROWS = "rows";
+  static final String COL_AVG = "avg";
+  static final String COL_MAX = "max";
+  static final String COL_TOTAL = "total";
+  static final String COL_BUCKET = "bucket";
+
+  private static final List<StatusTable.SortRule> statusSortRules =
+    ListUtil.list(new StatusTable.SortRule(COL_TOTAL, false));
+
+  private static List<ColumnDescriptor> makeColDescs() {
+    List<ColumnDescriptor> res = new ArrayList<ColumnDescriptor>();
+    res.add(new ColumnDescriptor(COL_SQL, "SQL",
+				 ColumnDescriptor.TYPE_STRING));
+    res.add(new ColumnDescriptor(COL_EXECUTIONS, "Executions",
+				 ColumnDescriptor.TYPE_INT));
+    res.add(new ColumnDescriptor(COL_ERRORS, "Errors",
+				 ColumnDescriptor.TYPE_INT));
+    res.add(new ColumnDescriptor(COL_ROWS, "Rows",
+				 ColumnDescriptor.TYPE_INT,
+				 "Rows updated, or read from the result set"));
+    res.add(new ColumnDescriptor(COL_AVG, "Avg ms",
+				 ColumnDescriptor.TYPE_FLOAT));
+    res.add(new ColumnDescriptor(COL_MAX, "Max",
+				 ColumnDescriptor.TYPE_TIME_INTERVAL));
+    res.add(new ColumnDescriptor(COL_TOTAL, "Total",
+				 ColumnDescriptor.TYPE_TIME_INTERVAL));
+    for (int ix = 0; ix < LATENCY_BUCKET_NAMES.length; ix++) {
+      res.add(new ColumnDescriptor(COL_BUCKET + ix, LATENCY_BUCKET_NAMES[ix],
+				   ColumnDescriptor.TYPE_INT));
+    }
+    return res;
+  }
+
+  private static final List<ColumnDescriptor> statusColDescs =
+    makeColDescs();
+
+  /** Return a StatusAccessor that displays the statistics. */
+  StatusAccessor getStatusAccessor() {
+    return new Status();
+  }
+
+  private class Status implements StatusAccessor {
+    public String getDisplayName() {
+      return "SQL Statements - " + name;
+    }
+
+    public boolean requiresKey() {
+      return false;
+    }
+
+    public void populateTable(StatusTable table) {
+      table.setColumnDescriptors(statusColDescs);
+      table.setDefaultSortRules(statusSortRules);
+      List<Map<String,Object>> rows = new ArrayList<Map<String,Object>>();
+      for (SqlStats stats : getAllStats()) {
+	Map<String,Object> row = new HashMap<String,Object>();
+	row.put(COL_SQL, stats.getSql());
+	row.put(COL_EXECUTIONS, stats.getExecutions());
+	row.put(COL_ERRORS, stats.getErrors());
+	row.put(COL_ROWS, stats.getRows());
+	row.put(COL_AVG, stats.getAverageTime());
+	row.put(COL_MAX, stats.getMaxTime());
+	row.put(COL_TOTAL, stats.getTotalTime());
+	long[] hist = stats.getHistogram();
+	for (int ix = 0; ix < hist.length; ix++) {
+	  row.put(COL_BUCKET + ix, hist[ix]);
+	}
+	rows.add(row);
+      }
+      table.setRows(rows);
+      List<StatusTable.SummaryInfo> res =
+	new ArrayList<StatusTable.SummaryInfo>();
+      res.add(new StatusTable.SummaryInfo("Statements tracked",
+					  ColumnDescriptor.TYPE_INT,
+					  rows.size()));
+      if (untracked.get() > 0) {
+	res.add(new StatusTable.SummaryInfo("Statements not tracked",
+					    ColumnDescriptor.TYPE_INT,
+					    untracked.get()));
+      }
+      table.setSummaryInfo(res);
+    }
+  }
+}
@@ -46,6 +46,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -572,6 +573,20 @@ public class CounterReportsManager extends BaseLockssDaemonManager {
 	+ "CounterReportsRequestAggregator task added to cron.");
 
     ready = true;
+
+    // Start writing recorded requests in the background.
+    CounterReportsRequestRecorder.getInstance()
+	.start(ConfigManager.getCurrentConfig());
+  }
+
+  /**
+   * Stops the CounterReportsManager service.
+   */
+  @Override
+  public void stopService() {
+    CounterReportsRequestRecorder.getInstance().stop();
+    ready = false;
+    super.stopService();
   }
 
   /**
@@ -732,8 +747,6 @@ public class CounterReportsManager extends BaseLockssDaemonManager {
    */
   public void persistRequest(String url, boolean isPublisherInvolved,
       String organization) throws DbException {
-    final String DEBUG_HEADER = "persistRequest(): ";
-
     // Do nothing more if the service is not ready to be used.
     if (!ready) {
       return;
@@ -745,6 +758,30 @@ public class CounterReportsManager extends BaseLockssDaemonManager {
       if (log.isDebug3()) log.debug3("organization = " + organization);
     }
 
+    persistRequests(Collections.singletonList(
+	new CounterReportsRequestRecorder.Request(url, isPublisherInvolved,
+	    organization, TimeBase.nowMs())));
+  }
+
+  /**
+   * Persists the data involved in several requests in a single transaction.
+   * 
+   * @param requests
+   *          A List<CounterReportsRequestRecorder.Request> with the requests
+   *          to be persisted.
+   * @throws DbException
+   *           if there are problems accessing the database.
+   */
+  void persistRequests(List<CounterReportsRequestRecorder.Request> requests)
+      throws DbException {
+    final String DEBUG_HEADER = "persistRequests(): ";
+
+    // Do nothing more if the service is not ready to be used or there is
+    // nothing to persist.
+    if (!ready || requests.isEmpty()) {
+      return;
+    }
+
     Connection conn = null;
     boolean success = false;
 
@@ -752,51 +789,54 @@ public class CounterReportsManager extends BaseLockssDaemonManager {
       // Get a connection to the database.
       conn = dbManager.getConnection();
 
-      // Get the date of the request.
-      Calendar calendar = Calendar.getInstance();
-      calendar.setTime(TimeBase.nowDate());
-
-      int requestYear = calendar.get(Calendar.YEAR);
-      log.debug2(DEBUG_HEADER + "requestYear = " + requestYear);
-      int requestMonth = (calendar.get(Calendar.MONTH) + 1);
-      log.debug2(DEBUG_HEADER + "requestMonth = " + requestMonth);
-      int requestDay = calendar.get(Calendar.DAY_OF_MONTH);
-      log.debug2(DEBUG_HEADER + "requestDay = " + requestDay);
-
       String sql = SQL_QUERY_URL_REQUEST_INSERT;
       log.debug2(DEBUG_HEADER + "SQL = '" + sql + "'.");
       PreparedStatement insertRequest = null;
+      Calendar calendar = Calendar.getInstance();
 
       try {
-        // Prepare the statement used to persist the request.
+        // Prepare the statement used to persist the requests.
         insertRequest = dbManager.prepareStatement(conn, sql);
 
-        short index = 1;
+        for (CounterReportsRequestRecorder.Request request : requests) {
+          // Get the date of the request.
+          calendar.setTimeInMillis(request.time);
+
+          int requestYear = calendar.get(Calendar.YEAR);
+          int requestMonth = (calendar.get(Calendar.MONTH) + 1);
+          int requestDay = calendar.get(Calendar.DAY_OF_MONTH);
+          if (log.isDebug3()) log.debug3(DEBUG_HEADER + "url = '"
+              + request.url + "', date = " + requestYear + "-" + requestMonth
+              + "-" + requestDay);
 
-        // Populate the URL.
-        insertRequest.setString(index++, url);
+          short index = 1;
 
-        // Populate the indication of whether this record corresponds to the
-        // serving of the request by the publisher.
-        insertRequest.setBoolean(index++, isPublisherInvolved);
+          // Populate the URL.
+          insertRequest.setString(index++, request.url);
 
-        // Populate the year of the request.
-        insertRequest.setShort(index++, (short) requestYear);
+          // Populate the indication of whether this record corresponds to
+          // the serving of the request by the publisher.
+          insertRequest.setBoolean(index++, request.isPublisherInvolved);
 
-        // Populate the month of the request.
-        insertRequest.setShort(index++, (short) requestMonth);
+          // Populate the year of the request.
+          insertRequest.setShort(index++, (short) requestYear);
 
-        // Populate the day of the request.
-        insertRequest.setShort(index++, (short) requestDay);
+          // Populate the month of the request.
+          insertRequest.setShort(index++, (short) requestMonth);
+
+          // Populate the day of the request.
+          insertRequest.setShort(index++, (short) requestDay);
+
+          insertRequest.addBatch();
+        }
 
-        // Insert the record.
-        int count = dbManager.executeUpdate(insertRequest);
-        log.debug2(DEBUG_HEADER + "count = " + count);
+        // Insert the records.
+        int[] counts = insertRequest.executeBatch();
+        log.debug2(DEBUG_HEADER + "counts.length = " + counts.length);
       } catch (SQLException sqle) {
-        log.error("Cannot persist URL request", sqle);
-        log.error("URL = '" + url + "'.");
+        log.error("Cannot persist URL requests", sqle);
         log.error("SQL = '" + sql + "'.");
-        throw new DbException("Cannot persist URL request", sqle);
+        throw new DbException("Cannot persist URL requests", sqle);
       } finally {
 	MetadataDbManager.safeCloseStatement(insertRequest);
       }
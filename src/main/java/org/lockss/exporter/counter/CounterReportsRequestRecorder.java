@@ -33,14 +33,37 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.commons.collections4.map.LRUMap;
 import org.lockss.app.LockssDaemon;
+import org.lockss.config.Configuration;
+import org.lockss.daemon.LockssThread;
+import org.lockss.daemon.status.ColumnDescriptor;
+import org.lockss.daemon.status.StatusAccessor;
+import org.lockss.daemon.status.StatusTable;
 import org.lockss.db.DbException;
 import org.lockss.metadata.MetadataDbManager;
+import org.lockss.util.Constants;
 import org.lockss.util.Logger;
+import org.lockss.util.time.TimeBase;
 import org.mortbay.http.HttpResponse;
 
 /**
  * Persists the request data necessary to create COUNTER reports.
+ * <p>
+ * Requests are queued by the serving thread and written by a background
+ * thread in batches, so serving does not wait on the metadata database.
+ * If the queue is full the request is dropped and counted.  Whether a URL
+ * is a full-text URL is cached, including negative results, for a limited
+ * time.
  * 
  * @version 1.0
  */
@@ -48,6 +71,48 @@ public class CounterReportsRequestRecorder {
   private static final Logger log = Logger
       .getLogger(CounterReportsRequestRecorder.class);
 
+  // Prefix for the request recorder configuration entries.
+  public static final String PREFIX =
+      CounterReportsManager.PREFIX + "requestRecorder.";
+
+  /**
+   * Maximum number of requests waiting to be written.  Requests made when
+   * the queue is full are dropped.  Changes require daemon restart.
+   */
+  public static final String PARAM_QUEUE_SIZE = PREFIX + "queueSize";
+  public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+  /**
+   * Maximum number of requests written in one transaction.
+   */
+  public static final String PARAM_BATCH_SIZE = PREFIX + "batchSize";
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  /**
+   * Maximum number of URLs whose full-text status is cached.  Changes
+   * require daemon restart.
+   */
+  public static final String PARAM_URL_CACHE_SIZE = PREFIX + "urlCacheSize";
+  public static final int DEFAULT_URL_CACHE_SIZE = 10000;
+
+  /**
+   * How long a URL found to be a full-text URL stays cached.
+   */
+  public static final String PARAM_URL_CACHE_TTL = PREFIX + "urlCacheTtl";
+  public static final long DEFAULT_URL_CACHE_TTL = Constants.HOUR;
+
+  /**
+   * How long a URL found not to be a full-text URL stays cached.  Kept
+   * short, as its metadata may be extracted at any time.
+   */
+  public static final String PARAM_URL_NEGATIVE_CACHE_TTL =
+      PREFIX + "urlNegativeCacheTtl";
+  public static final long DEFAULT_URL_NEGATIVE_CACHE_TTL =
+      10 * Constants.MINUTE;
+
+  // Name of the status table.
+  public static final String STATUS_TABLE_NAME = "CounterRequestRecorder";
+
   private static final String SQL_QUERY_MD_ITEM_ID_FROM_URL = "select "
       + MD_ITEM_SEQ_COLUMN
       + " from " + URL_TABLE
@@ -67,6 +132,36 @@ public class CounterReportsRequestRecorder {
     TRUE, FALSE
   }
 
+  // The queue of requests to be written, or null if not started.
+  private volatile BlockingQueue<Request> queue = null;
+  // Held for reading while offering to the queue, and for writing while
+  // detaching it, so that nothing is queued once stopping begins.
+  private final ReadWriteLock queueLock = new ReentrantReadWriteLock();
+  private WriterThread writer = null;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private long urlCacheTtl = DEFAULT_URL_CACHE_TTL;
+  private long urlNegativeCacheTtl = DEFAULT_URL_NEGATIVE_CACHE_TTL;
+
+  // Full-text status of recently requested URLs.
+  private LRUMap<String, CachedUrl> urlCache =
+      new LRUMap<String, CachedUrl>(DEFAULT_URL_CACHE_SIZE);
+
+  // Statistics.
+  private final AtomicLong queuedCount = new AtomicLong();
+  // The number of queued requests taken from the queue and written or
+  // discarded, by this and any previous writer.
+  private final AtomicLong processedCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong recordedCount = new AtomicLong();
+  private final AtomicLong ignoredCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  private final AtomicLong cacheHitCount = new AtomicLong();
+  private final AtomicLong cacheMissCount = new AtomicLong();
+  private long batchCount = 0;
+  private long lastFlushTime = 0;
+  private long totalFlushTime = 0;
+  private long maxFlushTime = 0;
+
   /**
    * Constructor.
    * 
@@ -84,6 +179,68 @@ public class CounterReportsRequestRecorder {
     return instance;
   }
 
+  /**
+   * Starts the background writer and registers the status table.
+   * 
+   * @param config
+   *          A Configuration with the current configuration.
+   */
+  synchronized void start(Configuration config) {
+    if (queue != null) {
+      return;
+    }
+    batchSize = Math.max(1, config.getInt(PARAM_BATCH_SIZE,
+	DEFAULT_BATCH_SIZE));
+    urlCacheTtl = config.getTimeInterval(PARAM_URL_CACHE_TTL,
+	DEFAULT_URL_CACHE_TTL);
+    urlNegativeCacheTtl = config.getTimeInterval(PARAM_URL_NEGATIVE_CACHE_TTL,
+	DEFAULT_URL_NEGATIVE_CACHE_TTL);
+    urlCache = new LRUMap<String, CachedUrl>(
+	config.getInt(PARAM_URL_CACHE_SIZE, DEFAULT_URL_CACHE_SIZE));
+    queue = new ArrayBlockingQueue<Request>(
+	config.getInt(PARAM_QUEUE_SIZE, DEFAULT_QUEUE_SIZE));
+    writer = new WriterThread(queue);
+    writer.start();
+    LockssDaemon.getLockssDaemon().getStatusService()
+	.registerStatusAccessor(STATUS_TABLE_NAME, new Status());
+  }
+
+  /**
+   * Writes any queued requests and stops the background writer.  Requests
+   * recorded once stopping has begun are written directly.
+   */
+  void stop() {
+    WriterThread w;
+    synchronized (this) {
+      if (queue == null) {
+	return;
+      }
+      LockssDaemon.getLockssDaemon().getStatusService()
+	  .unregisterStatusAccessor(STATUS_TABLE_NAME);
+      w = writer;
+      writer = null;
+
+      // Wait for offers in progress, so the writer sees all the requests
+      // ever queued.
+      queueLock.writeLock().lock();
+      try {
+	queue = null;
+      } finally {
+	queueLock.writeLock().unlock();
+      }
+    }
+    w.stopWriter();
+    try {
+      w.join(Constants.MINUTE);
+    } catch (InterruptedException e) {
+      // Fall through
+    }
+    if (w.isAlive()) {
+      log.warning("COUNTER request writer did not stop; queued requests may"
+	  + " not be written");
+    }
+  }
+
   /**
    * Records a request that is the subject of a report.
    * 
@@ -100,67 +257,209 @@ public class CounterReportsRequestRecorder {
    */
   public void recordRequest(String url, PublisherContacted contacted,
       int publisherCode, String organization) {
+    final String DEBUG_HEADER = "recordRequest(): ";
+    CounterReportsManager counterReportsManager =
+	LockssDaemon.getLockssDaemon().getCounterReportsManager();
+
+    // Check whether the COUNTER reports manager is disabled.
+    if (!counterReportsManager.isReady()) {
+      // Yes: Do nothing.
+      log.debug2(DEBUG_HEADER + "Done: COUNTER reports manager is disabled.");
+      return;
+    }
+
+    // Get an indication of whether the publisher is involved in serving the
+    // content.
+    log.debug2(DEBUG_HEADER + "url = '" + url + "'.");
+    log.debug2("publisherCode = " + publisherCode);
+    boolean isPublisherInvolved = contacted == PublisherContacted.TRUE
+	&& (publisherCode == HttpResponse.__200_OK
+	    || publisherCode == HttpResponse.__304_Not_Modified);
+    log.debug2("isPublisherInvolved = " + isPublisherInvolved);
+
+    Request request =
+	new Request(url, isPublisherInvolved, organization, TimeBase.nowMs());
+
+    if (!offer(request)) {
+      // The writer is not running: Write the request now.
+      writeBatch(Collections.singletonList(request));
+    }
+  }
+
+  /**
+   * Queues a request for the background writer, dropping it if the queue is
+   * full.
+   * 
+   * @param request
+   *          A Request with the request to be queued.
+   * @return <code>false</code> if the writer is not running, in which case
+   *         the request has not been queued.
+   */
+  private boolean offer(Request request) {
+    final String DEBUG_HEADER = "offer(): ";
+    queueLock.readLock().lock();
     try {
-      final String DEBUG_HEADER = "recordRequest(): ";
-      CounterReportsManager counterReportsManager =
-	  LockssDaemon.getLockssDaemon().getCounterReportsManager();
-      
-      // Check whether the COUNTER reports manager is disabled.
-      if (!counterReportsManager.isReady()) {
-	// Yes: Do nothing.
-	log.debug2(DEBUG_HEADER + "Done: COUNTER reports manager is disabled.");
-	return;
+      BlockingQueue<Request> q = queue;
+
+      if (q == null) {
+	return false;
+      } else if (q.offer(request)) {
+	queuedCount.incrementAndGet();
+      } else {
+	droppedCount.incrementAndGet();
+	log.debug(DEBUG_HEADER + "Queue full, request dropped: "
+	    + request.url);
       }
+      return true;
+    } finally {
+      queueLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Waits until all the requests queued so far have been written.
+   * 
+   * @throws InterruptedException
+   *           if interrupted while waiting.
+   */
+  public void flush() throws InterruptedException {
+    WriterThread w = writer;
+    if (w == null) {
+      return;
+    }
+    w.waitWritten(queuedCount.get());
+  }
+
+  /**
+   * Writes a batch of requests, ignoring those whose URLs are not full-text
+   * URLs.
+   * 
+   * @param requests
+   *          A List<Request> with the requests to be written.
+   */
+  void writeBatch(List<Request> requests) {
+    long start = TimeBase.nowMs();
+    MetadataDbManager dbManager =
+	LockssDaemon.getLockssDaemon().getMetadataDbManager();
+    CounterReportsManager counterReportsManager =
+	LockssDaemon.getLockssDaemon().getCounterReportsManager();
+    List<Request> toPersist = new ArrayList<Request>(requests.size());
+    Connection conn = null;
+    // The number of requests already counted as ignored, recorded or failed.
+    int counted = 0;
+
+    try {
+      try {
+	// Find which of the requests are needed for any report.
+	for (Request request : requests) {
+	  Boolean isFullText = getCachedFullText(request.url);
+
+	  if (isFullText == null) {
+	    cacheMissCount.incrementAndGet();
+
+	    if (conn == null) {
+	      conn = dbManager.getConnection();
+	    }
 
-      // No: Get the metadata identifier of the URL.
-      log.debug2(DEBUG_HEADER + "url = '" + url + "'.");
-      Long mdItemId = findMatchingFullTextMdItemId(url);
+	    isFullText = findMatchingFullTextMdItemId(dbManager, conn,
+		request.url) != null;
+	    putCachedFullText(request.url, isFullText);
+	  } else {
+	    cacheHitCount.incrementAndGet();
+	  }
 
-      // Do nothing more if it is not a request needed for any report.
-      if (mdItemId == null) {
+	  if (isFullText) {
+	    toPersist.add(request);
+	  } else {
+	    ignoredCount.incrementAndGet();
+	    counted++;
+	  }
+	}
+      } catch (DbException dbe) {
+	log.error("Cannot find full-text URL - Statistics not collected", dbe);
+	failedCount.addAndGet(requests.size() - counted);
 	return;
+      } finally {
+	MetadataDbManager.safeRollbackAndClose(conn);
       }
 
-      // Get an indication of whether the publisher is involved in serving the
-      // content.
-      log.debug2("publisherCode = " + publisherCode);
-      boolean isPublisherInvolved = contacted == PublisherContacted.TRUE
-	  && (publisherCode == HttpResponse.__200_OK
-	      || publisherCode == HttpResponse.__304_Not_Modified);
-      log.debug2("isPublisherInvolved = " + isPublisherInvolved);
+      try {
+	// Persist the request data.
+	counterReportsManager.persistRequests(toPersist);
+	recordedCount.addAndGet(toPersist.size());
+      } catch (DbException dbe) {
+	log.error("Cannot persist requests - Statistics not collected", dbe);
+	failedCount.addAndGet(toPersist.size());
+      }
+      counted += toPersist.size();
+    } catch (RuntimeException e) {
+      // Count only the requests not already accounted for.
+      failedCount.addAndGet(requests.size() - counted);
+      throw e;
+    } finally {
+      recordFlushTime(TimeBase.msSince(start));
+    }
+  }
 
-      // Persist the request data.
-      counterReportsManager.persistRequest(url, isPublisherInvolved,
-	  organization);
-      log.debug2(DEBUG_HEADER + "Done.");
-    } catch (DbException sqle) {
-      log.error("Cannot persist request - Statistics not collected", sqle);
+  private synchronized void recordFlushTime(long time) {
+    batchCount++;
+    lastFlushTime = time;
+    totalFlushTime += time;
+    maxFlushTime = Math.max(maxFlushTime, time);
+  }
+
+  private synchronized Boolean getCachedFullText(String url) {
+    CachedUrl cached = urlCache.get(url);
+
+    if (cached == null) {
+      return null;
+    }
+
+    if (TimeBase.nowMs() >= cached.expiration) {
+      urlCache.remove(url);
+      return null;
     }
+
+    return cached.isFullText;
+  }
+
+  private synchronized void putCachedFullText(String url, boolean isFullText) {
+    long ttl = isFullText ? urlCacheTtl : urlNegativeCacheTtl;
+
+    if (ttl > 0) {
+      urlCache.put(url, new CachedUrl(isFullText, TimeBase.nowMs() + ttl));
+    }
+  }
+
+  /**
+   * Forgets the cached full-text status of all URLs.
+   */
+  public synchronized void clearUrlCache() {
+    urlCache.clear();
   }
 
   /**
    * Provides the metadata item identifier that corresponds to a full-text URL.
    * 
+   * @param dbManager
+   *          A MetadataDbManager with the database manager.
+   * @param conn
+   *          A Connection with the database connection to be used.
    * @param url
    *          A String with the URL.
    * @return a Long with the metadata item identifier, if any.
    * @throws DbException
    *           if there are problems accessing the database.
    */
-  private Long findMatchingFullTextMdItemId(String url) throws DbException {
+  private Long findMatchingFullTextMdItemId(MetadataDbManager dbManager,
+      Connection conn, String url) throws DbException {
     final String DEBUG_HEADER = "findMatchingFullTextMdItemId(): ";
 
-    Connection conn = null;
     PreparedStatement getUrlMdItemId = null;
     ResultSet results = null;
     Long mdItemId = null;
-    MetadataDbManager dbManager =
-	LockssDaemon.getLockssDaemon().getMetadataDbManager();
 
     try {
-      // Get the database connection.
-      conn = dbManager.getConnection();
-
       // Prepare the query.
       getUrlMdItemId =
 	  dbManager.prepareStatement(conn, SQL_QUERY_MD_ITEM_ID_FROM_URL);
@@ -179,10 +478,159 @@ public class CounterReportsRequestRecorder {
     } finally {
       MetadataDbManager.safeCloseResultSet(results);
       MetadataDbManager.safeCloseStatement(getUrlMdItemId);
-      MetadataDbManager.safeRollbackAndClose(conn);
     }
 
     log.debug2(DEBUG_HEADER + "mdItemId = '" + mdItemId + "'.");
     return mdItemId;
   }
+
+  /**
+   * A request waiting to be written.
+   */
+  static class Request {
+    final String url;
+    final boolean isPublisherInvolved;
+    final String organization;
+    final long time;
+
+    Request(String url, boolean isPublisherInvolved, String organization,
+	long time) {
+      this.url = url;
+      this.isPublisherInvolved = isPublisherInvolved;
+      this.organization = organization;
+      this.time = time;
+    }
+  }
+
+  // The cached full-text status of a URL.
+  private static class CachedUrl {
+    final boolean isFullText;
+    final long expiration;
+
+    CachedUrl(boolean isFullText, long expiration) {
+      this.isFullText = isFullText;
+      this.expiration = expiration;
+    }
+  }
+
+  /**
+   * Drains the queue, writing requests in batches.
+   */
+  private class WriterThread extends LockssThread {
+    private final BlockingQueue<Request> q;
+    private volatile boolean goOn = true;
+
+    WriterThread(BlockingQueue<Request> q) {
+      super("CounterRequestWriter");
+      this.q = q;
+    }
+
+    @Override
+    protected void lockssRun() {
+      nowRunning();
+      List<Request> batch = new ArrayList<Request>();
+
+      while (goOn || !q.isEmpty()) {
+	try {
+	  Request first = q.poll(Constants.SECOND, TimeUnit.MILLISECONDS);
+
+	  if (first == null) {
+	    continue;
+	  }
+
+	  batch.add(first);
+	  q.drainTo(batch, batchSize - 1);
+	  writeBatch(batch);
+	} catch (InterruptedException e) {
+	  // No action
+	} catch (RuntimeException e) {
+	  // writeBatch() has counted the requests as failed.
+	  log.error("Unexpected exception writing COUNTER requests", e);
+	} finally {
+	  synchronized (this) {
+	    processedCount.addAndGet(batch.size());
+	    notifyAll();
+	  }
+	  batch.clear();
+	}
+      }
+    }
+
+    // Waits until at least count requests have been processed, by this
+    // or any previous writer.
+    synchronized void waitWritten(long count) throws InterruptedException {
+      while (isAlive() && processedCount.get() < count) {
+	wait(Constants.SECOND);
+      }
+    }
+
+    // Not interrupted, as that may break a database operation in
+    // progress.  The queue poll times out often enough.
+    void stopWriter() {
+      goOn = false;
+    }
+  }
+
+  // Status table.
+
+  private class Status implements StatusAccessor {
+    public String getDisplayName() {
+      return "COUNTER Request Recorder";
+    }
+
+    public boolean requiresKey() {
+      return false;
+    }
+
+    public void populateTable(StatusTable table) {
+      List<StatusTable.SummaryInfo> res =
+	  new ArrayList<StatusTable.SummaryInfo>();
+      BlockingQueue<Request> q = queue;
+      long batches;
+      long lastFlush;
+      long avgFlush;
+      long maxFlush;
+      int cacheSize;
+
+      synchronized (CounterReportsRequestRecorder.this) {
+	batches = batchCount;
+	lastFlush = lastFlushTime;
+	avgFlush = batchCount == 0 ? 0 : totalFlushTime / batchCount;
+	maxFlush = maxFlushTime;
+	cacheSize = urlCache.size();
+      }
+
+      if (q != null) {
+	res.add(new StatusTable.SummaryInfo("Queue depth",
+	    ColumnDescriptor.TYPE_INT, q.size()));
+	res.add(new StatusTable.SummaryInfo("Queue capacity",
+	    ColumnDescriptor.TYPE_INT, q.size() + q.remainingCapacity()));
+      }
+      res.add(new StatusTable.SummaryInfo("Requests queued",
+	  ColumnDescriptor.TYPE_INT, queuedCount.get()));
+      res.add(new StatusTable.SummaryInfo("Requests dropped",
+	  ColumnDescriptor.TYPE_INT, droppedCount.get()));
+      res.add(new StatusTable.SummaryInfo("Requests recorded",
+	  ColumnDescriptor.TYPE_INT, recordedCount.get()));
+      res.add(new StatusTable.SummaryInfo("Requests not full-text",
+	  ColumnDescriptor.TYPE_INT, ignoredCount.get()));
+      res.add(new StatusTable.SummaryInfo("Requests failed",
+	  ColumnDescriptor.TYPE_INT, failedCount.get()));
+      res.add(new StatusTable.SummaryInfo("Batches written",
+	  ColumnDescriptor.TYPE_INT, batches));
+      res.add(new StatusTable.SummaryInfo("Last flush",
+	  ColumnDescriptor.TYPE_TIME_INTERVAL, lastFlush));
+      res.add(new StatusTable.SummaryInfo("Average flush",
+	  ColumnDescriptor.TYPE_TIME_INTERVAL, avgFlush));
+      res.add(new StatusTable.SummaryInfo("Max flush",
+	  ColumnDescriptor.TYPE_TIME_INTERVAL, maxFlush));
+      res.add(new StatusTable.SummaryInfo("URL cache size",
+	  ColumnDescriptor.TYPE_INT, cacheSize));
+      res.add(new StatusTable.SummaryInfo("URL cache hits",
+	  ColumnDescriptor.TYPE_INT, cacheHitCount.get()));
+      res.add(new StatusTable.SummaryInfo("URL cache misses",
+	  ColumnDescriptor.TYPE_INT, cacheMissCount.get()));
+      table.setSummaryInfo(res);
+    }
+  }
 }
@@ -89,6 +89,10 @@ public class HtmlCompoundTransform implements HtmlTransform {
     this(new HtmlTransform[] {t1, t2, t3});
   }
 
+  HtmlTransform[] getTransforms() {
+    return transforms;
+  }
+
   public NodeList transform(NodeList nodeList) throws IOException {
     for (int ix = 0; ix < transforms.length; ix++) {
       nodeList = transforms[ix].transform(nodeList);
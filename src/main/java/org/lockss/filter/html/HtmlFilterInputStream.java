@@ -30,9 +30,13 @@ package org.lockss.filter.html;
 
 import org.apache.commons.io.*;
 import org.htmlparser.*;
+import org.htmlparser.filters.*;
 import org.htmlparser.lexer.*;
 import org.htmlparser.util.*;
+import org.htmlparser.scanners.CompositeTagScanner;
+import org.htmlparser.scanners.Scanner;
 import org.htmlparser.scanners.ScriptScanner;
+import org.htmlparser.tags.CompositeTag;
 
 import org.lockss.app.*;
 import org.lockss.config.*;
@@ -79,6 +83,12 @@ import java.io.*;
  * {@link #getCharset()}.  This is a temporary measure until the code is
  * fixed so that the output encoding matches the input, switching mid-stream.
  *
+ * <p>If the transform only ever examines individual leaf nodes (comments,
+ * non-composite tags such as &lt;img&gt; or &lt;meta&gt;, possibly
+ * qualified by their attributes), the input is filtered token by token as
+ * it is read rather than being parsed into a complete tree first.  The
+ * output is identical; see {@link #PARAM_STREAMING}.
+ *
  * @see HtmlTransform
  * @see HtmlNodeFilterTransform
  * @see HtmlNodeFilters
@@ -144,6 +154,18 @@ public class HtmlFilterInputStream
     Configuration.PREFIX + "filter.html.useFile";
   public static final boolean DEFAULT_USE_FILE = true;
 
+  /** If true, transforms that examine only leaf nodes (comments and
+   * non-composite tags) are applied to each token as it is lexed and the
+   * result is made available immediately, rather than parsing the entire
+   * input into a tree first.  Used only in verbatim mode, and only when
+   * the output encoding doesn't depend on charset changes in the input.
+   * Output is first released once the input is past {@link
+   * #PARAM_MARK_SIZE}, so that a charset change can still restart it.
+   * Other transforms always use the full parse tree. */
+  public static final String PARAM_STREAMING =
+    Configuration.PREFIX + "filter.html.streaming";
+  public static final boolean DEFAULT_STREAMING = true;
+
   private FeedbackLogger fl = new FeedbackLogger();
 
   private InputStream in;
@@ -160,6 +182,7 @@ public class HtmlFilterInputStream
   private int wrFileThresh;
   private boolean useFile;
   private boolean adaptEncoding = DEFAULT_ADAPT_ENCODING;
+  private boolean streaming;
   private PrototypicalNodeFactory nodeFact;
 
   /**
@@ -225,6 +248,7 @@ public class HtmlFilterInputStream
     useFile = config.getBoolean(PARAM_USE_FILE, DEFAULT_USE_FILE);
     adaptEncoding = config.getBoolean(PARAM_ADAPT_ENCODING,
 				     DEFAULT_ADAPT_ENCODING);
+    streaming = config.getBoolean(PARAM_STREAMING, DEFAULT_STREAMING);
   }
 
   /** Parse the input, apply the transform, generate output string and
@@ -233,6 +257,11 @@ public class HtmlFilterInputStream
     try {
 
       Parser parser = makeParser();
+      if (isStreamable()) {
+	setOutToStreamingInputStream(parser.getLexer());
+	in = null;
+	return;
+      }
       NodeList nl = parser.parse(null);
       if (nl.size() <= 0) {
         log.warning("nl.size(): " + nl.size());
@@ -326,6 +355,111 @@ public class HtmlFilterInputStream
   }
 
 
+  /** True if the output can be generated token by token.  Requires
+   * verbatim output (so that missing end tags needn't be inferred), an
+   * output encoding that's known before the input has been read, and a
+   * transform whose result on the whole tree is the same as its result on
+   * each token separately. */
+  boolean isStreamable() {
+    if (!streaming || !verbatim) {
+      return false;
+    }
+    if (outCharset != null && adaptEncoding) {
+      // output charset may change if input contains a charset <meta>
+      return false;
+    }
+    return isStreamable(xform);
+  }
+
+  boolean isStreamable(HtmlTransform xform) {
+    if (xform instanceof HtmlCompoundTransform) {
+      for (HtmlTransform x : ((HtmlCompoundTransform)xform).getTransforms()) {
+	if (!isStreamable(x)) {
+	  return false;
+	}
+      }
+      return true;
+    }
+    if (xform instanceof HtmlNodeFilterTransform) {
+      return isLeafFilter(((HtmlNodeFilterTransform)xform).getFilter());
+    }
+    return false;
+  }
+
+  /** True if the filter can accept only leaf nodes (comments and
+   * non-composite tags), based only on the node itself.  Such a filter
+   * never removes or selects a subtree, so applying it to the token
+   * stream is equivalent to applying it to the tree. */
+  boolean isLeafFilter(NodeFilter filter) {
+    if (filter instanceof HtmlNodeFilters.CommentFilter
+	|| filter instanceof HtmlNodeFilters.CommentStringFilter
+	|| filter instanceof HtmlNodeFilters.CommentRegexFilter) {
+      return true;
+    }
+    if (filter instanceof TagNameFilter) {
+      String name = ((TagNameFilter)filter).getName();
+      return !(getNodeFactory().get(name) instanceof CompositeTag);
+    }
+    if (filter instanceof AndFilter) {
+      boolean leaf = false;
+      for (NodeFilter f : ((AndFilter)filter).getPredicates()) {
+	if (!isLocalFilter(f)) {
+	  return false;
+	}
+	leaf |= isLeafFilter(f);
+      }
+      return leaf;
+    }
+    if (filter instanceof OrFilter) {
+      for (NodeFilter f : ((OrFilter)filter).getPredicates()) {
+	if (!isLeafFilter(f)) {
+	  return false;
+	}
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /** True if the filter's result depends only on the node itself (its
+   * type, name and attributes), not on its children or ancestors. */
+  boolean isLocalFilter(NodeFilter filter) {
+    if (isLeafFilter(filter)
+	|| filter instanceof TagNameFilter
+	|| filter instanceof HasAttributeFilter
+	|| filter instanceof HtmlNodeFilters.HasAttributeRegexFilter) {
+      return true;
+    }
+    if (filter instanceof NotFilter) {
+      return isLocalFilter(((NotFilter)filter).getPredicate());
+    }
+    if (filter instanceof AndFilter || filter instanceof OrFilter) {
+      NodeFilter[] preds = (filter instanceof AndFilter)
+	? ((AndFilter)filter).getPredicates()
+	: ((OrFilter)filter).getPredicates();
+      for (NodeFilter f : preds) {
+	if (!isLocalFilter(f)) {
+	  return false;
+	}
+      }
+      return true;
+    }
+    return false;
+  }
+
+  void setOutToStreamingInputStream(Lexer lexer) {
+    Reader rdr = new StreamingReader(in, lexer);
+    if (outCharset != null) {
+      out = new ReaderInputStream(rdr, outCharset);
+    } else {
+      out = new ReaderInputStream(rdr);
+    }
+    if (CurrentConfig.getBooleanParam(LockssApp.PARAM_MONITOR_INPUT_STREAMS,
+				      LockssApp.DEFAULT_MONITOR_INPUT_STREAMS)) {
+      out = new MonitoringInputStream(out,"HtmlFilterInputStream");
+    }
+  }
+
   /** Make a parser, register our extra nodes */
   protected Parser makeParser()
       throws UnsupportedEncodingException, IOException {
@@ -488,6 +622,123 @@ public class HtmlFilterInputStream
     out = null;
   }
 
+  /** Reader that lexes the input a token at a time, applies the transform
+   * to each token and returns the resulting html.  Start tags of plain
+   * composite tags (those handled by the generic CompositeTagScanner) are
+   * returned by themselves rather than as a subtree; their children and
+   * end tag follow as separate tokens.  Tags with a specialized scanner
+   * (<i>eg</i>, &lt;script&gt; and &lt;style&gt;, whose content isn't
+   * lexed as html) are scanned as a unit, exactly as the parser would.
+   * <p>A charset &lt;meta&gt; may require the text already lexed to be
+   * decoded again (EncodingChangeException), in which case lexing
+   * restarts from the beginning, as it does in Parser.parse().  To make
+   * that possible, output is held back until the lexer is past the mark
+   * limit ({@link #PARAM_MARK_SIZE}), beyond which a charset change can't
+   * be handled by either path. */
+  class StreamingReader extends Reader {
+    private InputStream srcIn;
+    private Lexer lexer;
+    private String chunk = "";
+    private int chunkPos = 0;
+    // Output not yet released, null once past the mark limit
+    private StringBuilder held;
+
+    StreamingReader(InputStream srcIn, Lexer lexer) {
+      this.srcIn = srcIn;
+      this.lexer = lexer;
+      if (markSize > 0) {
+	held = new StringBuilder();
+      }
+    }
+
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      if (len == 0) {
+	return 0;
+      }
+      while (chunkPos >= chunk.length()) {
+	if (!nextChunk()) {
+	  return -1;
+	}
+      }
+      int n = Math.min(len, chunk.length() - chunkPos);
+      chunk.getChars(chunkPos, chunkPos + n, cbuf, off);
+      chunkPos += n;
+      return n;
+    }
+
+    /** Lex and transform the next token, store its html in chunk.
+     * @return false at end of input */
+    private boolean nextChunk() throws IOException {
+      if (lexer == null) {
+	return false;
+      }
+      try {
+	while (true) {
+	  Node node;
+	  try {
+	    node = nextNode();
+	  } catch (EncodingChangeException e) {
+	    if (held == null) {
+	      throw e;
+	    }
+	    log.debug2("Restarting after encoding change: " + e.getMessage());
+	    lexer.reset();
+	    held.setLength(0);
+	    continue;
+	  }
+	  if (node == null) {
+	    String rest = (held != null) ? held.toString() : "";
+	    close();
+	    chunk = rest;
+	    return !rest.isEmpty();
+	  }
+	  NodeList nl = new NodeList(node);
+	  String html = xform.transform(nl).toHtml(verbatim);
+	  if (held == null) {
+	    chunk = html;
+	    chunkPos = 0;
+	    return true;
+	  }
+	  held.append(html);
+	  if (lexer.getPosition() >= markSize) {
+	    chunk = held.toString();
+	    chunkPos = 0;
+	    held = null;
+	    return true;
+	  }
+	}
+      } catch (ParserException e) {
+	IOException ioe = new IOException(e.toString());
+	ioe.initCause(e);
+	throw ioe;
+      }
+    }
+
+    private Node nextNode() throws ParserException {
+      Node node = lexer.nextNode();
+      if (node instanceof Tag) {
+	Tag tag = (Tag)node;
+	if (!tag.isEndTag()) {
+	  Scanner scanner = tag.getThisScanner();
+	  if (scanner != null
+	      && scanner.getClass() != CompositeTagScanner.class) {
+	    node = scanner.scan(tag, lexer, new NodeList());
+	  }
+	}
+      }
+      return node;
+    }
+
+    public void close() {
+      lexer = null;
+      held = null;
+      chunk = "";
+      chunkPos = 0;
+      IOUtil.safeClose(srcIn);
+      srcIn = null;
+    }
+  }
+
   static class FeedbackLogger implements ParserFeedback{
     public FeedbackLogger() {
     }
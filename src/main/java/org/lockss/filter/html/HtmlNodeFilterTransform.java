@@ -81,6 +81,16 @@ public class HtmlNodeFilterTransform implements HtmlTransform {
     this.exclude = exclude;
   }
 
+  /** Return the filter supplied to {@link #exclude(NodeFilter)} or
+   * {@link #include(NodeFilter)} */
+  NodeFilter getFilter() {
+    return exclude ? ((NotFilter)filter).getPredicate() : filter;
+  }
+
+  boolean isExclude() {
+    return exclude;
+  }
+
   public NodeList transform(NodeList nodeList) throws IOException {
     if (exclude) {
       nodeList.keepAllNodesThatMatch(filter, true);
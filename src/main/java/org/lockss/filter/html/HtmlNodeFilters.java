@@ -219,12 +219,7 @@ public class HtmlNodeFilters {
    * @since 1.64
    */
   public static NodeFilter comment() {
-    return new NodeFilter() {
-      @Override
-      public boolean accept(Node node) {
-        return (node instanceof Remark);
-      }
-    };
+    return new CommentFilter();
   }
   
   /**
@@ -433,6 +428,16 @@ public class HtmlNodeFilters {
   }
 
 
+  /**
+   * This class accepts all comment nodes.
+   */
+  public static class CommentFilter implements NodeFilter {
+    @Override
+    public boolean accept(Node node) {
+      return (node instanceof Remark);
+    }
+  }
+
   /**
    * This class accepts all comment nodes containing the given string.
    */
@@ -35,6 +35,7 @@ package org.lockss.hasher;
 import java.io.InputStream;
 import java.security.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.nio.charset.StandardCharsets;
 
 import org.apache.commons.lang3.ArrayUtils;
@@ -82,8 +83,45 @@ public class BlockHasher extends GenericHasher {
     Configuration.PREFIX + "blockHasher.addMissingLocalHash";
   public static final boolean DEFAULT_ADD_MISSING_LOCAL_HASH = false;
 
+  /** If positive, content is read ahead of the digest computation, on a
+   * separate thread, into up to this many bytes of buffers per hash.
+   * Upcoming versions of the current node are opened and read while the
+   * current one is being digested.  Not used when local hashing is
+   * enabled. */
+  public static final String PARAM_READ_AHEAD_BYTES =
+    Configuration.PREFIX + "blockHasher.readAhead.bytes";
+  public static final int DEFAULT_READ_AHEAD_BYTES = 0;
+
+  /** Size of each read-ahead buffer */
+  public static final String PARAM_READ_AHEAD_BUFFER_SIZE =
+    Configuration.PREFIX + "blockHasher.readAhead.bufferSize";
+  public static final int DEFAULT_READ_AHEAD_BUFFER_SIZE = 64 * 1024;
+
+  /** If positive, and a hash has at least this many digests (peers),
+   * each buffer of content is fed to the digests in parallel by
+   * several threads.  The buffer is shared, not copied.  Zero
+   * disables. */
+  public static final String PARAM_DIGEST_FANOUT_MIN_PEERS =
+    Configuration.PREFIX + "blockHasher.digestFanout.minPeers";
+  public static final int DEFAULT_DIGEST_FANOUT_MIN_PEERS = 0;
+
+  /** Number of threads, including the hash thread, among which the
+   * digests are divided when fanning out digest updates.  Read when the
+   * thread pool is first created. */
+  public static final String PARAM_DIGEST_FANOUT_THREADS =
+    Configuration.PREFIX + "blockHasher.digestFanout.threads";
+  public static final int DEFAULT_DIGEST_FANOUT_THREADS = 4;
+
+  /** Buffers smaller than this are digested serially, as the cost of
+   * handing them off would exceed the gain */
+  public static final String PARAM_DIGEST_FANOUT_MIN_BYTES =
+    Configuration.PREFIX + "blockHasher.digestFanout.minBytes";
+  public static final int DEFAULT_DIGEST_FANOUT_MIN_BYTES = 4096;
+
   private static final Logger log = Logger.getLogger();
 
+  private static ThreadPoolExecutor DIGEST_EXECUTOR;
+
   private int maxVersions = DEFAULT_HASH_MAX_VERSIONS;
   private boolean includeUrl = false;
   private boolean ignoreFilesOutsideCrawlSpec =
@@ -119,6 +157,12 @@ public class BlockHasher extends GenericHasher {
   private AuSuspectUrlVersions asuv = null;
   private CuIterator cuIter;
   private boolean needSaveSuspectUrlVersions = false;
+  private int readAheadBytes = DEFAULT_READ_AHEAD_BYTES;
+  private int readAheadBufSize = DEFAULT_READ_AHEAD_BUFFER_SIZE;
+  private VersionPrefetcher prefetcher = null;
+  private int digestFanoutMinPeers = DEFAULT_DIGEST_FANOUT_MIN_PEERS;
+  private int digestFanoutMinBytes = DEFAULT_DIGEST_FANOUT_MIN_BYTES;
+  private int digestFanoutThreads = DEFAULT_DIGEST_FANOUT_THREADS;
 
   LocalHashResult lhr = null;
 
@@ -188,6 +232,16 @@ public class BlockHasher extends GenericHasher {
 			DEFAULT_IGNORE_FILES_OUTSIDE_CRAWL_SPEC);
     enableLocalHash = config.getBoolean(PARAM_ENABLE_LOCAL_HASH,
 					DEFAULT_ENABLE_LOCAL_HASH);
+    readAheadBytes = config.getInt(PARAM_READ_AHEAD_BYTES,
+				   DEFAULT_READ_AHEAD_BYTES);
+    readAheadBufSize = config.getInt(PARAM_READ_AHEAD_BUFFER_SIZE,
+				     DEFAULT_READ_AHEAD_BUFFER_SIZE);
+    digestFanoutMinPeers = config.getInt(PARAM_DIGEST_FANOUT_MIN_PEERS,
+					 DEFAULT_DIGEST_FANOUT_MIN_PEERS);
+    digestFanoutMinBytes = config.getInt(PARAM_DIGEST_FANOUT_MIN_BYTES,
+					 DEFAULT_DIGEST_FANOUT_MIN_BYTES);
+    digestFanoutThreads = config.getInt(PARAM_DIGEST_FANOUT_THREADS,
+					DEFAULT_DIGEST_FANOUT_THREADS);
     if (enableLocalHash) {
 //       localHashHandler = new DefaultLocalHashHandler();
       lhr = new LocalHashResult();
@@ -329,7 +383,8 @@ public class BlockHasher extends GenericHasher {
 	hasher = getStreamHasher(useHashAlgorithm);
       }
       if (hasher == null) {
-	is = getInputStream(curVer);
+	is = prefetcher != null ? prefetcher.nextVersion()
+	  : getInputStream(curVer);
       } else {
 	if (isTrace) log.debug3("Local hash for " + curVer.getUrl());
 	currentVersionLocalHasher = hasher;
@@ -346,6 +401,8 @@ public class BlockHasher extends GenericHasher {
       log.error("Error opening CU for hashing: " + curVer, e);
       endVersion(e);
       return true;
+    } catch (InterruptedException e) {
+      throw new RuntimeInterruptedException(e);
     }
   }
 
@@ -437,6 +494,23 @@ public class BlockHasher extends GenericHasher {
     } else {
       cuVersions = curCu.getCuVersions(getMaxVersions());
     }
+    startPrefetch();
+  }
+
+  /** Start reading ahead the versions of the current node, if enabled */
+  private void startPrefetch() {
+    if (readAheadBytes > 0 && !enableLocalHash && cuVersions.length > 0) {
+      prefetcher =
+	VersionPrefetcher.start(this, cuVersions, readAheadBufSize,
+				readAheadBytes / readAheadBufSize);
+    }
+  }
+
+  private void stopPrefetch() {
+    if (prefetcher != null) {
+      prefetcher.close();
+      prefetcher = null;
+    }
   }
   
   private CachedUrl[] pruneSuspectVersions(CachedUrl cu) {
@@ -463,6 +537,7 @@ public class BlockHasher extends GenericHasher {
   }
 
   protected void endOfNode() {
+    stopPrefetch();
     super.endOfNode();
     if (hblock != null) {
       if (cb != null) cb.blockDone(hblock);
@@ -544,15 +619,90 @@ public class BlockHasher extends GenericHasher {
       IOUtil.safeClose(is);
       is = null;
     }
+    stopPrefetch();
     super.abortHash();
   }
 
   private int updateDigests(byte[] content, int len) {
-    for (int ix = 0; ix < peerDigests.length; ix++) {
+    int nDigs = peerDigests.length;
+    if (digestFanoutMinPeers > 0 && nDigs >= digestFanoutMinPeers
+	&& digestFanoutThreads > 1 && len >= digestFanoutMinBytes) {
+      updateDigestsParallel(content, len);
+    } else {
+      updateDigestRange(content, len, 0, nDigs);
+    }
+    return len * nDigs;
+  }
+
+  private void updateDigestRange(byte[] content, int len, int from, int to) {
+    for (int ix = from; ix < to; ix++) {
       if (isTrace) log.debug3("Updating digest " + ix + ", len = " + len);
       peerDigests[ix].update(content, 0, len);
     }
-    return len * peerDigests.length;
+  }
+
+  /** Divide the digests into ranges and update each range on a different
+   * thread, from the same (read-only) buffer.  Returns only when all
+   * updates are complete, as the buffer will be reused. */
+  private void updateDigestsParallel(final byte[] content, final int len) {
+    int nDigs = peerDigests.length;
+    int nParts = Math.min(digestFanoutThreads, nDigs);
+    List<Future<?>> futures = new ArrayList<Future<?>>(nParts - 1);
+    for (int part = 1; part < nParts; part++) {
+      final int from = part * nDigs / nParts;
+      final int to = (part + 1) * nDigs / nParts;
+      futures.add(getDigestExecutor().submit(new Runnable() {
+	  public void run() {
+	    updateDigestRange(content, len, from, to);
+	  }}));
+    }
+    // This thread does the first range
+    updateDigestRange(content, len, 0, nDigs / nParts);
+    // Wait for all even if interrupted, as they're using the buffer and
+    // digests, and won't take long.
+    boolean interrupted = false;
+    Throwable err = null;
+    for (Future<?> fut : futures) {
+      while (true) {
+	try {
+	  fut.get();
+	  break;
+	} catch (InterruptedException e) {
+	  interrupted = true;
+	} catch (ExecutionException e) {
+	  if (err == null) {
+	    err = e.getCause();
+	  }
+	  break;
+	}
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (err instanceof RuntimeException) {
+      throw (RuntimeException)err;
+    } else if (err instanceof Error) {
+      throw (Error)err;
+    } else if (err != null) {
+      throw new RuntimeException(err);
+    }
+  }
+
+  private static synchronized ThreadPoolExecutor getDigestExecutor() {
+    if (DIGEST_EXECUTOR == null) {
+      int nThreads =
+	CurrentConfig.getIntParam(PARAM_DIGEST_FANOUT_THREADS,
+				  DEFAULT_DIGEST_FANOUT_THREADS);
+      // The hash thread does one share itself
+      int poolsize = Math.max(1, nThreads - 1);
+      DIGEST_EXECUTOR = new ThreadPoolExecutor(poolsize, poolsize,
+					       Constants.MINUTE,
+					       TimeUnit.MILLISECONDS,
+					       new LinkedBlockingQueue<Runnable>());
+      DIGEST_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+    return DIGEST_EXECUTOR;
   }
 
   private int nonceLength = -1;
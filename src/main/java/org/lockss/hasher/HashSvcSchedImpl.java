@@ -46,7 +46,10 @@ import org.lockss.plugin.*;
 
 /**
  * Implementation of API for content and name hashing services that uses
- * the SchedService to execute tasks.
+ * the SchedService to execute tasks.  If the SchedService is configured
+ * with more than one TaskRunner ({@link SchedService#PARAM_NUM_RUNNERS})
+ * that many hashes may run concurrently, each still bound by its own
+ * deadline.
  */
 public class HashSvcSchedImpl
   extends BaseLockssDaemonManager implements HashService, ConfigurableManager {
@@ -77,6 +80,9 @@ public class HashSvcSchedImpl
   private BigInteger totalBytesHashed = BigInteger.valueOf(0);
   private int reqCtr = 0;
   private long totalTime = 0;
+  // lock for totalBytesHashed and totalTime, which may be updated by
+  // several stepper threads
+  private Object statsLock = new Object();
 
   public HashSvcSchedImpl() {}
 
@@ -169,12 +175,19 @@ public class HashSvcSchedImpl
     if (sched == null) {
       throw new IllegalStateException("HashService has not been initialized");
     }
-    if (totalTime < 5 * Constants.SECOND) {
-      return -1;
+    synchronized (statsLock) {
+      if (totalTime < 5 * Constants.SECOND) {
+	return -1;
+      }
+      int bpms =
+	totalBytesHashed.divide(BigInteger.valueOf(totalTime)).intValue();
+      return bpms;
     }
-    int bpms =
-      totalBytesHashed.divide(BigInteger.valueOf(totalTime)).intValue();
-    return bpms;
+  }
+
+  /** Return the number of hashes that may run concurrently */
+  int getNumRunners() {
+    return sched.getNumRunners();
   }
 
   /** Add the configured padding percentage, plus the constant */
@@ -188,8 +201,8 @@ public class HashSvcSchedImpl
     }
     task.setOverrunAllowed(true);
     if (sched.scheduleTask(task)) {
-      task.hashReqSeq = ++reqCtr;
       synchronized (queueLock) {
+	task.hashReqSeq = ++reqCtr;
 	if (!task.finished) {
 	  // Don't put on waiting queue if task has already finished (and
 	  // been removed from waiting queue).
@@ -286,9 +299,11 @@ public class HashSvcSchedImpl
     }
 
     protected void updateStats() {
-      totalTime += unaccountedTime;
-      totalBytesHashed =
-	totalBytesHashed.add(BigInteger.valueOf(unaccountedBytesHashed));
+      synchronized (statsLock) {
+	totalTime += unaccountedTime;
+	totalBytesHashed =
+	  totalBytesHashed.add(BigInteger.valueOf(unaccountedBytesHashed));
+      }
       unaccountedBytesHashed = 0;
       super.updateStats();
      }
@@ -492,17 +507,28 @@ public class HashSvcSchedImpl
 
     private List getSummaryInfo(String key) {
       List res = new ArrayList();
+      BigInteger bytes;
+      long time;
+      synchronized (statsLock) {
+	bytes = totalBytesHashed;
+	time = totalTime;
+      }
       res.add(new StatusTable.SummaryInfo("Total bytes hashed",
 					  ColumnDescriptor.TYPE_INT,
-					  totalBytesHashed));
+					  bytes));
       res.add(new StatusTable.SummaryInfo("Total hash time",
 					  ColumnDescriptor.TYPE_TIME_INTERVAL,
-					  Long.valueOf(totalTime)));
-      if (totalTime != 0) {
+					  Long.valueOf(time)));
+      if (time != 0) {
 	res.add(new StatusTable.SummaryInfo("Bytes/ms",
 					    ColumnDescriptor.TYPE_STRING,
-					    hashRate(totalBytesHashed,
-						     totalTime)));
+					    hashRate(bytes, time)));
+      }
+      int nRunners = getNumRunners();
+      if (nRunners > 1) {
+	res.add(new StatusTable.SummaryInfo("Concurrent hashes",
+					    ColumnDescriptor.TYPE_INT,
+					    nRunners));
       }
       return res;
     }
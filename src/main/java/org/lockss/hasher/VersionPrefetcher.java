@@ -0,0 +1,359 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.hasher;
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lockss.config.*;
+import org.lockss.plugin.*;
+import org.lockss.util.*;
+
+/**
+ * Read-ahead stage for {@link BlockHasher}.  Opens the versions of a
+ * node in order on a separate thread and reads their content into a
+ * bounded pool of buffers, so that I/O on upcoming versions overlaps the
+ * digest computation on the current one.  The consumer obtains one
+ * InputStream per version, in order, from {@link #nextVersion()}; the
+ * bytes, and any exception thrown while opening or reading a version,
+ * are delivered exactly as they would have been had the consumer opened
+ * and read the version itself.
+ */
+class VersionPrefetcher {
+  private static final Logger log = Logger.getLogger();
+
+  static final String PREFIX =
+    Configuration.PREFIX + "blockHasher.readAhead.";
+
+  /** Max number of read-ahead threads shared by all BlockHashers.  If all
+   * are busy, hashers read synchronously. */
+  static final String PARAM_THREADS = PREFIX + "threads";
+  static final int DEFAULT_THREADS = 4;
+
+  /** Duration after which idle read-ahead threads are terminated */
+  static final String PARAM_THREAD_KEEPALIVE = PREFIX + "threadKeepAlive";
+  static final long DEFAULT_THREAD_KEEPALIVE = Constants.MINUTE;
+
+  private static ThreadPoolExecutor EXECUTOR;
+
+  // Producer states
+  private static final int STATE_NEW = 0;
+  private static final int STATE_RUNNING = 1;
+  private static final int STATE_CLOSED = 2;
+
+  private final BlockHasher hasher;
+  private final CachedUrl[] versions;
+  private final BlockingQueue<byte[]> freeBufs;
+  private final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<Chunk>();
+  private final AtomicInteger state = new AtomicInteger(STATE_NEW);
+  private volatile boolean closed = false;
+  private Future<?> future;
+  private int nextVix = 0;
+  private VersionStream curStream;
+
+  /** A buffer of content, or an end-of-version or error marker */
+  static class Chunk {
+    final byte[] buf;
+    final int len;
+    final Throwable err;
+    final boolean isOpenErr;
+
+    Chunk(byte[] buf, int len) {
+      this(buf, len, null, false);
+    }
+
+    Chunk(Throwable err, boolean isOpenErr) {
+      this(null, 0, err, isOpenErr);
+    }
+
+    Chunk(byte[] buf, int len, Throwable err, boolean isOpenErr) {
+      this.buf = buf;
+      this.len = len;
+      this.err = err;
+      this.isOpenErr = isOpenErr;
+    }
+
+    boolean isEnd() {
+      return buf == null;
+    }
+  }
+
+  private static final Chunk END_OF_VERSION = new Chunk(null, 0);
+
+  /**
+   * Start prefetching the versions.
+   * @param hasher the BlockHasher, used to open the version streams
+   * @param versions the versions, in the order they will be consumed
+   * @param bufSize size of each read-ahead buffer
+   * @param nBufs number of read-ahead buffers
+   * @return the VersionPrefetcher, or null if no read-ahead thread is
+   * available, in which case the caller should read synchronously
+   */
+  static VersionPrefetcher start(BlockHasher hasher, CachedUrl[] versions,
+				 int bufSize, int nBufs) {
+    VersionPrefetcher pf =
+      new VersionPrefetcher(hasher, versions, bufSize, nBufs);
+    try {
+      pf.future = getExecutor().submit(new Runnable() {
+	  public void run() {
+	    pf.produce();
+	  }});
+      return pf;
+    } catch (RejectedExecutionException e) {
+      if (log.isDebug3()) log.debug3("No read-ahead thread available");
+      return null;
+    }
+  }
+
+  private VersionPrefetcher(BlockHasher hasher, CachedUrl[] versions,
+			    int bufSize, int nBufs) {
+    this.hasher = hasher;
+    this.versions = versions;
+    nBufs = Math.max(nBufs, 2);
+    freeBufs = new ArrayBlockingQueue<byte[]>(nBufs);
+    for (int ix = 0; ix < nBufs; ix++) {
+      freeBufs.add(new byte[bufSize]);
+    }
+  }
+
+  /** Return an InputStream on the next version.  Throws any
+   * RuntimeException or Error that was thrown when opening the version.
+   */
+  InputStream nextVersion() throws InterruptedException {
+    if (curStream != null) {
+      curStream.skipToEnd();
+    }
+    if (nextVix >= versions.length) {
+      throw new IllegalStateException("No more versions");
+    }
+    nextVix++;
+    Chunk first = chunks.take();
+    if (first.err != null && first.isOpenErr) {
+      curStream = null;
+      throwUnchecked(first.err);
+    }
+    curStream = new VersionStream(first);
+    return curStream;
+  }
+
+  /** Stop the producer and release any stream it has open */
+  void close() {
+    closed = true;
+    if (state.compareAndSet(STATE_NEW, STATE_CLOSED)) {
+      // never started, nothing open
+      return;
+    }
+    if (future != null) {
+      future.cancel(true);
+    }
+    chunks.clear();
+  }
+
+  // Producer side
+
+  private void produce() {
+    if (!state.compareAndSet(STATE_NEW, STATE_RUNNING)) {
+      return;
+    }
+    try {
+      for (CachedUrl ver : versions) {
+	if (closed) {
+	  return;
+	}
+	InputStream is;
+	try {
+	  is = hasher.getInputStream(ver);
+	} catch (RuntimeException | OutOfMemoryError e) {
+	  chunks.put(new Chunk(e, true));
+	  continue;
+	}
+	try {
+	  while (!closed) {
+	    byte[] buf = freeBufs.take();
+	    int n;
+	    try {
+	      n = is.read(buf, 0, buf.length);
+	    } catch (InterruptedIOException e) {
+	      if (closed) {
+		return;
+	      }
+	      chunks.put(new Chunk(e, false));
+	      break;
+	    } catch (Exception | OutOfMemoryError e) {
+	      chunks.put(new Chunk(e, false));
+	      break;
+	    }
+	    if (n < 0) {
+	      freeBufs.put(buf);
+	      chunks.put(END_OF_VERSION);
+	      break;
+	    } else if (n == 0) {
+	      freeBufs.put(buf);
+	    } else {
+	      chunks.put(new Chunk(buf, n));
+	    }
+	  }
+	} finally {
+	  IOUtil.safeClose(is);
+	}
+      }
+    } catch (InterruptedException e) {
+      // closed by consumer
+    }
+  }
+
+  // Consumer side
+
+  /** InputStream on the chunks belonging to one version */
+  class VersionStream extends InputStream {
+    private Chunk cur;
+    private int pos = 0;
+    private boolean done = false;
+
+    VersionStream(Chunk first) {
+      cur = first;
+    }
+
+    // Return true if there is a current chunk with data remaining, else
+    // false at end of version.  Throws the producer's exception, if any.
+    private boolean ensureData() throws IOException {
+      while (!done) {
+	if (cur == null) {
+	  try {
+	    cur = chunks.take();
+	  } catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new InterruptedIOException("Interrupted waiting for content");
+	  }
+	  pos = 0;
+	}
+	if (cur.err != null) {
+	  done = true;
+	  Throwable err = cur.err;
+	  cur = null;
+	  if (err instanceof IOException) {
+	    throw (IOException)err;
+	  }
+	  throwUnchecked(err);
+	}
+	if (cur.isEnd()) {
+	  done = true;
+	  cur = null;
+	  return false;
+	}
+	if (pos < cur.len) {
+	  return true;
+	}
+	releaseCur();
+      }
+      return false;
+    }
+
+    private void releaseCur() {
+      if (cur != null && cur.buf != null) {
+	freeBufs.offer(cur.buf);
+      }
+      cur = null;
+    }
+
+    public int read() throws IOException {
+      if (!ensureData()) {
+	return -1;
+      }
+      return cur.buf[pos++] & 0xff;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+	return 0;
+      }
+      if (!ensureData()) {
+	return -1;
+      }
+      int n = Math.min(len, cur.len - pos);
+      System.arraycopy(cur.buf, pos, b, off, n);
+      pos += n;
+      return n;
+    }
+
+    public int available() {
+      return (done || cur == null) ? 0 : cur.len - pos;
+    }
+
+    /** Discard the remainder of this version, so that the next one can be
+     * read */
+    void skipToEnd() throws InterruptedException {
+      while (!done) {
+	if (cur == null) {
+	  cur = chunks.take();
+	}
+	if (cur.err != null || cur.isEnd()) {
+	  done = true;
+	  cur = null;
+	} else {
+	  releaseCur();
+	}
+      }
+    }
+
+    /** Closing a version stream has no effect on the underlying stream,
+     * which the producer closes when it reaches the end of the version */
+    public void close() {
+    }
+  }
+
+  private static void throwUnchecked(Throwable t) {
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException)t;
+    }
+    if (t instanceof Error) {
+      throw (Error)t;
+    }
+    throw new RuntimeException(t);
+  }
+
+  private static synchronized ThreadPoolExecutor getExecutor() {
+    if (EXECUTOR == null) {
+      Configuration config = ConfigManager.getCurrentConfig();
+      int poolsize = config.getInt(PARAM_THREADS, DEFAULT_THREADS);
+      long keepalive = config.getTimeInterval(PARAM_THREAD_KEEPALIVE,
+					      DEFAULT_THREAD_KEEPALIVE);
+      // No queue; if all threads are busy the caller reads synchronously.
+      // Queueing could deadlock, as a queued producer's consumer may be
+      // run by the same thread as a consumer whose producer holds a pool
+      // thread.
+      EXECUTOR = new ThreadPoolExecutor(0, poolsize,
+					keepalive, TimeUnit.MILLISECONDS,
+					new SynchronousQueue<Runnable>());
+    }
+    return EXECUTOR;
+  }
+}
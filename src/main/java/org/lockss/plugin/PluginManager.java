@@ -33,7 +33,15 @@ import java.net.*;
 import java.security.KeyStore;
 import java.sql.Connection;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.*;
 import java.util.regex.*;
 import java.util.stream.*;
@@ -243,6 +251,25 @@ public class PluginManager
     PREFIX + "perAuRestartSleep";
   public static final long DEFAULT_PER_AU_RESTART_SLEEP = 500;
 
+  /** Number of threads used to create AUs concurrently at startup.  1
+   * creates them one at a time. */
+  public static final String PARAM_AU_STARTUP_THREADS =
+    PREFIX + "auStartupThreads";
+  public static final int DEFAULT_AU_STARTUP_THREADS = 4;
+
+  /** AUs are created concurrently at startup only if at least this many
+   * are configured. */
+  public static final String PARAM_AU_STARTUP_PARALLEL_MIN =
+    PREFIX + "auStartupParallelMin";
+  public static final int DEFAULT_AU_STARTUP_PARALLEL_MIN = 500;
+
+  /** Number of concurrently created AUs that are installed (into the AU
+   * map and host search sets) at a time, while holding the AU add/delete
+   * lock. */
+  public static final String PARAM_AU_STARTUP_BATCH_SIZE =
+    PREFIX + "auStartupBatchSize";
+  public static final int DEFAULT_AU_STARTUP_BATCH_SIZE = 200;
+
   /** The type of plugin we prefer to load, if both are present.
       Can be either "class" or "xml" (case insensitive) */
   public static final String PARAM_PREFERRED_PLUGIN_TYPE =
@@ -465,6 +492,15 @@ public class PluginManager
   private boolean paramAllowGlobalAuConfig = DEFAULT_ALLOW_GLOBAL_AU_CONFIG;
   private long paramAuRestartMaxSleep = DEFAULT_AU_RESTART_MAX_SLEEP;
   private long paramPerAuRestartSleep = DEFAULT_PER_AU_RESTART_SLEEP;
+  private int paramAuStartupThreads = DEFAULT_AU_STARTUP_THREADS;
+  private int paramAuStartupParallelMin = DEFAULT_AU_STARTUP_PARALLEL_MIN;
+  private int paramAuStartupBatchSize = DEFAULT_AU_STARTUP_BATCH_SIZE;
+
+  // Progress of configureAllArchivalUnits(), for status display
+  private volatile int auStartupTotal = 0;
+  private volatile int auStartupCount = 0;
+  private volatile long auStartupStartTime = 0;
+  private volatile long auStartupEndTime = 0;
   private boolean paramDisableURLConnectionCache =
     DEFAULT_DISABLE_URL_CONNECTION_CACHE;
   private boolean acceptExpiredCertificates = DEFAULT_ACCEPT_EXPIRED_CERTS;
@@ -663,6 +699,14 @@ public class PluginManager
       paramAuRestartMaxSleep =
 	config.getTimeInterval(PARAM_AU_RESTART_MAX_SLEEP,
 			       DEFAULT_AU_RESTART_MAX_SLEEP);
+      paramAuStartupThreads =
+	config.getInt(PARAM_AU_STARTUP_THREADS, DEFAULT_AU_STARTUP_THREADS);
+      paramAuStartupParallelMin =
+	config.getInt(PARAM_AU_STARTUP_PARALLEL_MIN,
+		      DEFAULT_AU_STARTUP_PARALLEL_MIN);
+      paramAuStartupBatchSize =
+	Math.max(1, config.getInt(PARAM_AU_STARTUP_BATCH_SIZE,
+				  DEFAULT_AU_STARTUP_BATCH_SIZE));
 
       paramUseAuidPool =
 	config.getBoolean(PARAM_USE_AUID_POOL, DEFAULT_USE_AUID_POOL);
@@ -851,12 +895,241 @@ public class PluginManager
     if (log.isDebug3())
       log.debug3("auConfigurations.size() = " + auConfigurations.size());
 
-    // Loop over each Archival Unit configuration.
-    for (AuConfiguration auConfiguration : auConfigurations) {
-      if (log.isDebug3()) log.debug3("auConfiguration = " + auConfiguration);
+    auStartupTotal = auConfigurations.size();
+    auStartupCount = 0;
+    auStartupStartTime = TimeBase.nowMs();
+    auStartupEndTime = 0;
 
-      startOrReconfigureAu(auConfiguration,
+    if (paramAuStartupThreads > 1 &&
+	auConfigurations.size() >= paramAuStartupParallelMin) {
+      configureArchivalUnitsInParallel(auConfigurations);
+    } else {
+      // Loop over each Archival Unit configuration.
+      for (AuConfiguration auConfiguration : auConfigurations) {
+	if (log.isDebug3()) log.debug3("auConfiguration = " + auConfiguration);
+
+	startOrReconfigureAu(auConfiguration,
+			     SkipConfigCondition.ConfigUnchanged);
+	auStartupCount++;
+      }
+    }
+    auStartupEndTime = TimeBase.nowMs();
+    log.info("Started " + auStartupCount + " AUs in " +
+	     TimeUtil.timeIntervalToString(getAuStartupElapsed()) +
+	     " (" + String.format("%.1f", getAuStartupRate()) + " AUs/sec)");
+  }
+
+  /** Return the number of AU configurations being processed at startup */
+  public int getAuStartupTotal() {
+    return auStartupTotal;
+  }
+
+  /** Return the number of AU configurations processed so far at startup */
+  public int getAuStartupCount() {
+    return auStartupCount;
+  }
+
+  /** Return true if startup AU configuration is in progress */
+  public boolean isAuStartupRunning() {
+    return auStartupStartTime != 0 && auStartupEndTime == 0;
+  }
+
+  /** Return the time spent so far configuring AUs at startup */
+  public long getAuStartupElapsed() {
+    if (auStartupStartTime == 0) {
+      return 0;
+    }
+    long end = auStartupEndTime != 0 ? auStartupEndTime : TimeBase.nowMs();
+    return end - auStartupStartTime;
+  }
+
+  /** Return the rate (AUs/sec) at which AUs have been configured at
+   * startup */
+  public double getAuStartupRate() {
+    long elapsed = getAuStartupElapsed();
+    return elapsed > 0 ? auStartupCount * 1000.0 / elapsed : 0.0;
+  }
+
+  /** A startup AU configuration and, if the AU is being created
+   * concurrently, its creation task */
+  private static class StartupAu {
+    AuConfiguration auConfiguration;
+    Configuration auConf;
+    Plugin plugin;
+    Future<ArchivalUnit> future;
+    ArchivalUnit au;
+
+    StartupAu(AuConfiguration auConfiguration) {
+      this.auConfiguration = auConfiguration;
+    }
+  }
+
+  /**
+   * Create new AUs concurrently, then install them, in their original
+   * order, a batch at a time while holding auAddDelLock.  AUs that aren't
+   * simply new (already running, disabled, plugin not loaded) are handled
+   * by {@link #startOrReconfigureAu(AuConfiguration, SkipConfigCondition)}
+   * at their place in the order.
+   */
+  private void configureArchivalUnitsInParallel(Collection<AuConfiguration>
+						auConfigurations) {
+    log.info("Starting " + auConfigurations.size() + " AUs using " +
+	     paramAuStartupThreads + " threads");
+    ThreadPoolExecutor executor =
+      new ThreadPoolExecutor(paramAuStartupThreads, paramAuStartupThreads,
+			     0, TimeUnit.MILLISECONDS,
+			     new LinkedBlockingQueue<Runnable>(),
+			     new ThreadFactory() {
+	  private int n = 0;
+	  public synchronized Thread newThread(Runnable r) {
+	    Thread th = new Thread(r, "AuStartup-" + n++);
+	    th.setDaemon(true);
+	    return th;
+	  }
+	});
+    try {
+      // Submit all the creations up front, so they proceed while earlier
+      // batches are being installed
+      Deque<StartupAu> startupAus = new ArrayDeque<StartupAu>();
+      Map<String,Boolean> pluginLoaded = new HashMap<String,Boolean>();
+      for (AuConfiguration auConfiguration : auConfigurations) {
+	StartupAu sa = new StartupAu(auConfiguration);
+	submitStartupAu(executor, sa, pluginLoaded);
+	startupAus.add(sa);
+      }
+      List<StartupAu> batch = new ArrayList<StartupAu>();
+      while (!startupAus.isEmpty()) {
+	batch.clear();
+	while (batch.size() < paramAuStartupBatchSize &&
+	       !startupAus.isEmpty()) {
+	  batch.add(startupAus.poll());
+	}
+	// Wait for the batch's AUs without holding the lock
+	for (StartupAu sa : batch) {
+	  waitForStartupAu(sa);
+	}
+	synchronized (auAddDelLock) {
+	  for (StartupAu sa : batch) {
+	    installStartupAu(sa);
+	    auStartupCount++;
+	  }
+	}
+      }
+    } catch (InterruptedException e) {
+      log.warning("Interrupted while starting AUs; " +
+		  (auStartupTotal - auStartupCount) + " not started");
+      Thread.currentThread().interrupt();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** If the AU is new and can be created concurrently, submit a task to
+   * create it */
+  private void submitStartupAu(ExecutorService executor, StartupAu sa,
+			       Map<String,Boolean> pluginLoaded) {
+    final String auId = sa.auConfiguration.getAuId();
+    String pluginKey = pluginKeyFromAuId(auId);
+    synchronized (auAddDelLock) {
+      Boolean loaded = pluginLoaded.get(pluginKey);
+      if (loaded == null) {
+	loaded = ensurePluginLoaded(pluginKey);
+	pluginLoaded.put(pluginKey, loaded);
+      }
+      if (!loaded || auMap.containsKey(auId)) {
+	return;
+      }
+    }
+    final Configuration auConf =
+      AuConfigurationUtils.toUnprefixedConfiguration(sa.auConfiguration);
+    if (auConf.getBoolean(AU_PARAM_DISABLED, false)) {
+      return;
+    }
+    final Plugin plugin = getPlugin(pluginKey);
+    sa.auConf = auConf;
+    sa.plugin = plugin;
+    sa.future = executor.submit(new Callable<ArchivalUnit>() {
+	public ArchivalUnit call() throws Exception {
+	  return createStartupAu(plugin, auConf, auId);
+	}});
+  }
+
+  /** Create, but don't install, an AU.  Runs in an AU startup thread.
+   * @return the AU, or null if the config doesn't describe an AU */
+  private ArchivalUnit createStartupAu(Plugin plugin, Configuration auConf,
+				       String auId)
+      throws ArchivalUnit.ConfigurationException {
+    if (log.isDebug2()) log.debug2("Creating AU id: " + auId);
+
+    // Check the consistency of the Archival Unit configuration.
+    try {
+      String genAuid = generateAuId(plugin, auConf);
+      if (!auId.equals(genAuid)) {
+	log.warning("Generated AUID " + genAuid +
+		    " does not match stored AUID " + auId +
+		    ". Proceeding anyway.");
+      }
+    } catch (RuntimeException e) {
+      log.warning("Not configuring probable non-AU.  " +
+		  "Can't generate AUID from config: " + auConf);
+      return null;
+    }
+
+    ArchivalUnit au = plugin.configureAu(auConf, null);
+    if (!auId.equals(au.getAuId())) {
+      plugin.stopAu(au);
+      throw new ArchivalUnit.ConfigurationException(
+	  "Configured AU has unexpected AUID: " + au.getAuId() +
+	  ", expected: "+ auId);
+    }
+    return au;
+  }
+
+  private void waitForStartupAu(StartupAu sa) throws InterruptedException {
+    if (sa.future == null) {
+      return;
+    }
+    try {
+      sa.au = sa.future.get();
+    } catch (ExecutionException e) {
+      log.error("Failed to configure AU " + sa.auConfiguration.getAuId(),
+		e.getCause());
+    }
+  }
+
+  /** Install a concurrently created AU, or configure one that wasn't.
+   * Must be called holding auAddDelLock. */
+  private void installStartupAu(StartupAu sa) {
+    if (sa.future == null) {
+      startOrReconfigureAu(sa.auConfiguration,
 			   SkipConfigCondition.ConfigUnchanged);
+      return;
+    }
+    ArchivalUnit au = sa.au;
+    sa.au = null;
+    if (au == null) {
+      // Couldn't be created; already logged
+      return;
+    }
+    String auId = au.getAuId();
+    if (auMap.containsKey(auId)) {
+      // Configured by someone else in the meantime
+      sa.plugin.stopAu(au);
+      startOrReconfigureAu(sa.auConfiguration,
+			   SkipConfigCondition.ConfigUnchanged);
+      return;
+    }
+    try {
+      if (!isAuContentFromWs()) {
+	getDaemon().startOrReconfigureAuManagers(au, sa.auConf);
+      }
+      log.debug("Configured AU " + au);
+      putAuInMap(au);
+      signalAuEvent(au, AuEvent.forAu(au, AuEvent.Type.StartupCreate));
+      inactiveAuIds.remove(auId);
+    } catch (Exception e) {
+      log.error("Couldn't configure AU managers for " + auId, e);
+      sa.plugin.stopAu(au);
     }
   }
 
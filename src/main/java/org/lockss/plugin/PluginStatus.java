@@ -140,6 +140,30 @@ class Plugins extends PluginStatus implements StatusAccessor {
     table.setColumnDescriptors(colDescs);
     table.setDefaultSortRules(sortRules);
     table.setRows(getRows(table.getOptions().get(StatusTable.OPTION_DEBUG_USER)));
+    table.setSummaryInfo(getSummaryInfo());
+  }
+
+  /** Progress of AU startup */
+  List getSummaryInfo() {
+    List res = new ArrayList();
+    res.add(new StatusTable.SummaryInfo("Startup Status",
+					ColumnDescriptor.TYPE_STRING,
+					mgr.getStartupStatus().toString()));
+    if (mgr.getAuStartupTotal() > 0) {
+      String started = mgr.getAuStartupCount() + " of " +
+	mgr.getAuStartupTotal() +
+	(mgr.isAuStartupRunning() ? " (in progress)" : "");
+      res.add(new StatusTable.SummaryInfo("AUs Started",
+					  ColumnDescriptor.TYPE_STRING,
+					  started));
+      res.add(new StatusTable.SummaryInfo("AU Startup Time",
+					  ColumnDescriptor.TYPE_TIME_INTERVAL,
+					  mgr.getAuStartupElapsed()));
+      res.add(new StatusTable.SummaryInfo("AUs/sec",
+					  ColumnDescriptor.TYPE_FLOAT,
+					  mgr.getAuStartupRate()));
+    }
+    return res;
   }
 
   public List getRows(boolean includeInternalAus) {
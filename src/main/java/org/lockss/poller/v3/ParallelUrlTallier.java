@@ -0,0 +1,501 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.poller.v3;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lockss.hasher.HashBlock;
+import org.lockss.protocol.VoteBlock;
+import org.lockss.protocol.VoteBlocks;
+import org.lockss.util.*;
+
+/**
+ * <p>Tallies a poll's URLs using several threads.  The URL space is
+ * divided into contiguous ranges at a set of boundary URLs, and each
+ * range is tallied by its own worker, which steps through the voters'
+ * blocks with its own {@link UrlTallier} seeked to the start of the
+ * range.  The poller's {@link HashBlock}s, which arrive in URL order,
+ * are routed to the worker owning their range.</p>
+ *
+ * <p>Because the blocks arrive in URL order, this is mostly a pipeline
+ * rather than N-way parallelism: while the hasher works through one
+ * range, that range's worker tallies its blocks, the previous range's
+ * worker finishes the voter-only URLs at its end, and the later workers
+ * have done no more than seek to their ranges.  Voter-only URLs can't be
+ * tallied ahead of the hasher, as whether the poller has a URL isn't
+ * known until the hasher gets there.  The gain is taking the tally, and
+ * the reading of vote blocks, off the hashing thread.</p>
+ *
+ * <p>Workers don't touch any state shared across URLs.  The votes they
+ * would have cast on {@link ParticipantUserData#voteTally} and the hash
+ * stats tallier are recorded, and the results are applied by the thread
+ * calling {@link #tallyBlock} and {@link #finish}, in URL order.  As
+ * each worker reads the same blocks a serial tally would have from the
+ * start of its range, and the seek to the range checks the order of the
+ * blocks it skips, a voter whose blocks are misordered is spoiled from
+ * the same URL on as in a serial tally, and the per-participant counts,
+ * tally status and repairs are the same.  The exception is an I/O error
+ * reading a voter's blocks, which spoils the voter only from that point
+ * to the end of the range in which it occurs, as each worker reads the
+ * blocks through its own iterator.</p>
+ */
+class ParallelUrlTallier {
+  private static final Logger log = Logger.getLogger();
+
+  static final int INPUT_QUEUE_SIZE = 256;
+  static final int OUTPUT_QUEUE_SIZE = 1024;
+  // How long to wait to hand off a block before applying results
+  static final long HANDOFF_WAIT = 10;
+
+  private static final Object END = new Object();
+  private static final AtomicInteger tallierCount = new AtomicInteger();
+
+  private final V3Poller poller;
+  private final List<String> boundaries;
+  private final Partition[] partitions;
+  private final ThreadPoolExecutor executor;
+  // Lowest partition which may still receive blocks
+  private int inputIx = 0;
+  // Partition whose results are currently being applied
+  private int outputIx = 0;
+  private boolean finished = false;
+
+  /**
+   * Choose up to nPartitions-1 boundary URLs, evenly spaced through
+   * the URL sample of the participant with the most vote blocks.
+   * @return an ordered list of boundaries, empty if the participants
+   * don't provide a usable sample.
+   */
+  static List<String>
+    chooseBoundaries(Collection<ParticipantUserData> participants,
+		     int nPartitions) {
+    List<String> res = new ArrayList<String>();
+    if (nPartitions <= 1) {
+      return res;
+    }
+    VoteBlocks largest = null;
+    for (ParticipantUserData participant : participants) {
+      VoteBlocks vbs = participant.getVoteBlocks();
+      if (vbs != null && (largest == null || vbs.size() > largest.size())) {
+	largest = vbs;
+      }
+    }
+    if (largest == null) {
+      return res;
+    }
+    List<String> sample = largest.getSampleUrls();
+    if (sample.size() < 2) {
+      return res;
+    }
+    String prev = sample.get(0);
+    for (int ix = 1; ix < nPartitions; ix++) {
+      String url = sample.get(ix * sample.size() / nPartitions);
+      if (VoteBlock.compareUrls(prev, url) < 0) {
+	res.add(url);
+	prev = url;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Create a ParallelUrlTallier and start its workers.
+   * @param poller The poller whose tally this is.
+   * @param participants The participants, in the order used by the
+   * poller's hasher.
+   * @param boundaries Strictly increasing URLs at which to divide the
+   * URL space.  There will be one more range than boundaries.
+   */
+  ParallelUrlTallier(V3Poller poller,
+		     Collection<ParticipantUserData> participants,
+		     List<String> boundaries) {
+    this.poller = poller;
+    this.boundaries = new ArrayList<String>(boundaries);
+    int nPartitions = boundaries.size() + 1;
+    partitions = new Partition[nPartitions];
+    final String name = "V3Tally-" + tallierCount.incrementAndGet();
+    executor = new ThreadPoolExecutor(nPartitions, nPartitions,
+				      0, TimeUnit.MILLISECONDS,
+				      new LinkedBlockingQueue<Runnable>(),
+				      new ThreadFactory() {
+	  private int n = 0;
+	  public synchronized Thread newThread(Runnable r) {
+	    Thread th = new Thread(r, name + "-" + n++);
+	    th.setDaemon(true);
+	    return th;
+	  }
+	});
+    for (int ix = 0; ix < nPartitions; ix++) {
+      String lo = ix == 0 ? null : boundaries.get(ix - 1);
+      String hi = ix == boundaries.size() ? null : boundaries.get(ix);
+      partitions[ix] = new Partition(lo, hi, new UrlTallier(participants));
+    }
+    for (Partition part : partitions) {
+      executor.execute(part);
+    }
+    log.debug("Tallying in " + nPartitions + " ranges split at "
+	      + boundaries);
+  }
+
+  int getPartitionCount() {
+    return partitions.length;
+  }
+
+  /**
+   * Hand a hash block to the worker for its range, then apply whatever
+   * results are ready.  Blocks must be supplied in URL order.
+   */
+  void tallyBlock(HashBlock hashBlock) {
+    if (finished) {
+      throw new IllegalStateException("Tally already finished");
+    }
+    int ix = partitionIndex(hashBlock.getUrl());
+    if (ix < inputIx) {
+      throw new IllegalArgumentException("Block " + hashBlock.getUrl()
+					 + " out of order");
+    }
+    // No more blocks will arrive for the earlier ranges.
+    while (inputIx < ix) {
+      handOff(partitions[inputIx++], END);
+    }
+    handOff(partitions[ix], hashBlock);
+    applyResults(false);
+  }
+
+  /**
+   * The poller has no more blocks.  Wait for the workers to tally the
+   * remaining voter URLs and apply all the results.
+   */
+  void finish() {
+    if (finished) {
+      return;
+    }
+    while (inputIx < partitions.length) {
+      handOff(partitions[inputIx++], END);
+    }
+    applyResults(true);
+    finished = true;
+  }
+
+  /**
+   * Stop the workers and release their iterators.
+   */
+  void release() {
+    executor.shutdownNow();
+  }
+
+  private int partitionIndex(String url) {
+    int ix = 0;
+    while (ix < boundaries.size()
+	   && VoteBlock.compareUrls(boundaries.get(ix), url) <= 0) {
+      ix++;
+    }
+    return ix;
+  }
+
+  // A worker blocked on a full output queue may be waiting for us, so
+  // keep applying results while waiting for room in the input queue.
+  private void handOff(Partition part, Object obj) {
+    try {
+      while (!part.input.offer(obj, HANDOFF_WAIT, TimeUnit.MILLISECONDS)) {
+	applyResults(false);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while tallying", e);
+    }
+  }
+
+  /**
+   * Apply results in URL order: all of one partition's before any of
+   * the next's.
+   * @param wait if true, wait for all partitions to finish.
+   */
+  private void applyResults(boolean wait) {
+    try {
+      while (outputIx < partitions.length) {
+	BlockingQueue<Result> output = partitions[outputIx].output;
+	Result res = wait ? output.take() : output.poll();
+	if (res == null) {
+	  return;
+	}
+	if (res == Result.DONE) {
+	  outputIx++;
+	} else {
+	  apply(res);
+	}
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while tallying", e);
+    }
+  }
+
+  private void apply(Result res) {
+    if (res.error != null) {
+      finished = true;
+      if (res.error instanceof RuntimeException) {
+	throw (RuntimeException)res.error;
+      }
+      if (res.error instanceof Error) {
+	throw (Error)res.error;
+      }
+      throw new RuntimeException(res.error);
+    }
+    res.recorder.replay(V3Poller.makeHashStatsTallier(),
+			ParticipantUserData.voteTally);
+    if (res.tally == null) {
+      // A voter-only URL the poller didn't expect.
+      return;
+    }
+    if (res.pollerHas) {
+      poller.pollerUrlTallied(res.tally, res.url);
+    } else {
+      poller.voterUrlTallied(res.tally, res.url);
+    }
+  }
+
+  /** The outcome of tallying one URL, or an error. */
+  static class Result {
+    static final Result DONE = new Result(null, false, null, null);
+
+    final String url;
+    final boolean pollerHas;
+    final BlockTally tally;
+    final Recorder recorder;
+    final Throwable error;
+
+    Result(String url, boolean pollerHas, BlockTally tally,
+	   Recorder recorder) {
+      this.url = url;
+      this.pollerHas = pollerHas;
+      this.tally = tally;
+      this.recorder = recorder;
+      this.error = null;
+    }
+
+    Result(Throwable error) {
+      this.url = null;
+      this.pollerHas = false;
+      this.tally = null;
+      this.recorder = null;
+      this.error = error;
+    }
+  }
+
+  /** Tallies one URL range. */
+  private class Partition implements Runnable {
+    final String lo;		// inclusive, null for the start
+    final String hi;		// exclusive, null for the end
+    final UrlTallier urlTallier;
+    final BlockingQueue<Object> input =
+      new ArrayBlockingQueue<Object>(INPUT_QUEUE_SIZE);
+    final BlockingQueue<Result> output =
+      new ArrayBlockingQueue<Result>(OUTPUT_QUEUE_SIZE);
+
+    Partition(String lo, String hi, UrlTallier urlTallier) {
+      this.lo = lo;
+      this.hi = hi;
+      this.urlTallier = urlTallier;
+    }
+
+    public void run() {
+      try {
+	try {
+	  if (lo != null
+	      && VoteBlock.compareUrls(urlTallier.peekUrl(), lo) < 0) {
+	    urlTallier.seek(lo);
+	  }
+	  while (true) {
+	    Object obj = input.take();
+	    if (obj == END) {
+	      break;
+	    }
+	    HashBlock hashBlock = (HashBlock)obj;
+	    String pollerUrl = hashBlock.getUrl();
+	    tallyVoterUrls(pollerUrl);
+	    tallyPollerUrl(pollerUrl, hashBlock);
+	  }
+	  tallyVoterUrls(hi);
+	  output.put(Result.DONE);
+	} catch (InterruptedException e) {
+	  // Released
+	} catch (Throwable t) {
+	  log.error("Tally of range [" + lo + ", " + hi + ") failed", t);
+	  output.put(new Result(t));
+	}
+      } catch (InterruptedException e) {
+	// Released
+      } finally {
+	urlTallier.release();
+      }
+    }
+
+    /** Tally the voter URLs before limit, or all if limit is null */
+    private void tallyVoterUrls(String limit) throws InterruptedException {
+      while (true) {
+	String voterUrl = urlTallier.peekUrl();
+	if (voterUrl == null
+	    || (limit != null && VoteBlock.compareUrls(voterUrl, limit) >= 0)) {
+	  break;
+	}
+	tallyVoterUrl(voterUrl);
+      }
+    }
+
+    private void tallyVoterUrl(String voterUrl) throws InterruptedException {
+      if (poller.shouldTallyVoterUrl(voterUrl)) {
+	Recorder recorder = new Recorder();
+	VoteBlockTallier voteBlockTallier =
+	  poller.getVoterUrlTally(recorder, recorder);
+	urlTallier.voteAllParticipants(voterUrl, voteBlockTallier);
+	output.put(new Result(voterUrl, false,
+			      voteBlockTallier.getBlockTally(), recorder));
+      } else {
+	log.debug("tallyVoterUrl: " + voterUrl + " isn't expected by poller");
+	urlTallier.voteNoParticipants(voterUrl);
+      }
+    }
+
+    private void tallyPollerUrl(String pollerUrl, HashBlock hashBlock)
+	throws InterruptedException {
+      Recorder recorder = new Recorder();
+      VoteBlockTallier voteBlockTallier =
+	poller.getPollerUrlTally(hashBlock, recorder, recorder);
+      urlTallier.voteAllParticipants(pollerUrl, voteBlockTallier);
+      output.put(new Result(pollerUrl, true,
+			    voteBlockTallier.getBlockTally(), recorder));
+    }
+  }
+
+  /**
+   * Records the votes and hash stats for one URL, to be replayed in
+   * order on the real talliers.
+   */
+  static class Recorder
+    implements VoteBlockTallier.VoteBlockTally, VoteBlockTallier.VoteCallback {
+
+    private static final int HASH_STATS = 0;
+    private static final int AGREED = 1;
+    private static final int DISAGREED = 2;
+    private static final int POLLER_ONLY = 3;
+    private static final int VOTER_ONLY = 4;
+    private static final int NEITHER = 5;
+    private static final int SPOILED = 6;
+
+    private final List<Event> events = new ArrayList<Event>();
+
+    private static class Event {
+      final int kind;
+      final ParticipantUserData id;
+      final String url;
+      final VoteBlock voteBlock;
+
+      Event(int kind, ParticipantUserData id, String url,
+	    VoteBlock voteBlock) {
+	this.kind = kind;
+	this.id = id;
+	this.url = url;
+	this.voteBlock = voteBlock;
+      }
+    }
+
+    private void add(int kind, ParticipantUserData id, String url) {
+      events.add(new Event(kind, id, url, null));
+    }
+
+    public void vote(VoteBlock voteBlock, ParticipantUserData id) {
+      events.add(new Event(HASH_STATS, id, null, voteBlock));
+    }
+
+    public void voteAgreed(ParticipantUserData id, String url) {
+      add(AGREED, id, url);
+    }
+
+    public void voteDisagreed(ParticipantUserData id, String url) {
+      add(DISAGREED, id, url);
+    }
+
+    public void votePollerOnly(ParticipantUserData id, String url) {
+      add(POLLER_ONLY, id, url);
+    }
+
+    public void voteVoterOnly(ParticipantUserData id, String url) {
+      add(VOTER_ONLY, id, url);
+    }
+
+    public void voteNeither(ParticipantUserData id, String url) {
+      add(NEITHER, id, url);
+    }
+
+    public void voteSpoiled(ParticipantUserData id, String url) {
+      add(SPOILED, id, url);
+    }
+
+    int size() {
+      return events.size();
+    }
+
+    /** Replay the recorded calls, in order */
+    void replay(VoteBlockTallier.VoteCallback hashStats,
+		VoteBlockTallier.VoteBlockTally voteTally) {
+      for (Event ev : events) {
+	switch (ev.kind) {
+	case HASH_STATS:
+	  hashStats.vote(ev.voteBlock, ev.id);
+	  break;
+	case AGREED:
+	  voteTally.voteAgreed(ev.id, ev.url);
+	  break;
+	case DISAGREED:
+	  voteTally.voteDisagreed(ev.id, ev.url);
+	  break;
+	case POLLER_ONLY:
+	  voteTally.votePollerOnly(ev.id, ev.url);
+	  break;
+	case VOTER_ONLY:
+	  voteTally.voteVoterOnly(ev.id, ev.url);
+	  break;
+	case NEITHER:
+	  voteTally.voteNeither(ev.id, ev.url);
+	  break;
+	case SPOILED:
+	  voteTally.voteSpoiled(ev.id, ev.url);
+	  break;
+	}
+      }
+    }
+  }
+}
@@ -229,6 +229,7 @@ public class V3Poller implements Poll {
   public static final boolean DEFAULT_LOG_UNIQUE_VERSIONS = false;
   public static final boolean DEFAULT_V3_ENABLE_HASH_STATS = false;
   public static final int DEFAULT_V3_MODULUS = 0;
+  public static final int DEFAULT_TALLY_THREADS = 1;
   /**
    * Length of poller and voter challenges
    */
@@ -485,6 +486,15 @@ public class V3Poller implements Poll {
       PREFIX + "logUniqueVersions";
   public static final String PARAM_V3_ENABLE_HASH_STATS =
       PREFIX + "enableHashStats";
+  /**
+   * Number of threads with which to tally the URLs in a poll.  If
+   * greater than one, the URL space is divided into that many ranges,
+   * using the voters' vote block indices, and each range is tallied
+   * concurrently.  Results are applied in URL order, as in a serial
+   * tally.
+   */
+  public static final String PARAM_TALLY_THREADS =
+      PREFIX + "tallyThreads";
   /**
    * Override default setting of modulus to force PoP polls for testing
    */
@@ -532,6 +542,10 @@ public class V3Poller implements Poll {
   // Only set once theParticipants is frozen. Nothing enforces this,
   // which seems awkward.
   private UrlTallier urlTallier;
+  // Replaces urlTallier if tallying in parallel, created when tallying
+  // starts.
+  private ParallelUrlTallier parallelTallier;
+  private boolean parallelTallyChecked = false;
   private LockssDaemon theDaemon;
   private PollManager pollManager;
   private IdentityManager idManager;
@@ -579,6 +593,7 @@ public class V3Poller implements Poll {
   private boolean repairHashAllVersions = DEFAULT_REPAIR_HASH_ALL_VERSIONS;
   private boolean logUniqueVersions = DEFAULT_LOG_UNIQUE_VERSIONS;
   private boolean enableHashStats = DEFAULT_V3_ENABLE_HASH_STATS;
+  private int tallyThreads = DEFAULT_TALLY_THREADS;
   private long tallyEnd;
   private LocalHashResult lhr = null;
   private SubstanceChecker subChecker;
@@ -824,6 +839,7 @@ public class V3Poller implements Poll {
         DEFAULT_THRESHOLD_REPAIRERS_LOCAL_POLLS);
     isRecordPeerUrlLists = c.getBoolean(PARAM_RECORD_PEER_URL_LISTS,
         DEFAULT_RECORD_PEER_URL_LISTS);
+    tallyThreads = c.getInt(PARAM_TALLY_THREADS, DEFAULT_TALLY_THREADS);
   }
 
   boolean isRecordPeerUrlLists() {
@@ -1168,6 +1184,7 @@ public class V3Poller implements Poll {
       urlTallier.release();
       urlTallier = null;
     }
+    releaseParallelTallier();
 
     // Clean up any lingering participants.
     synchronized (theParticipants) {
@@ -1508,7 +1525,8 @@ public class V3Poller implements Poll {
    * @param hashBlock The {@link HashBlock} to tally.
    * @return The {@link BlockTally} with the final tally results. The
    * results have been acted upon, and the tally is returned for
-   * testing purposes.
+   * testing purposes.  If tallying in parallel the block is handed off
+   * and null is returned.
    */
   BlockTally tallyBlock(HashBlock hashBlock) {
     setStatus(V3Poller.POLLER_STATUS_TALLYING);
@@ -1528,11 +1546,48 @@ public class V3Poller implements Poll {
       }
     }
 
+    ParallelUrlTallier pt = getParallelTallier();
+    if (pt != null) {
+      pt.tallyBlock(hashBlock);
+      return null;
+    }
     tallyVoterUrls(pollerUrl);
     BlockTally tally = tallyPollerUrl(pollerUrl, hashBlock);
     return tally;
   }
 
+  /**
+   * @return The {@link ParallelUrlTallier} to use for this poll, or
+   * null if tallying serially.  Decided the first time it's called.
+   */
+  private ParallelUrlTallier getParallelTallier() {
+    if (!parallelTallyChecked) {
+      parallelTallyChecked = true;
+      if (tallyThreads > 1) {
+        synchronized (theParticipants) {
+          List<String> boundaries =
+              ParallelUrlTallier.chooseBoundaries(theParticipants.values(),
+                  tallyThreads);
+          if (boundaries.isEmpty()) {
+            log.debug("No URL sample to divide tally; tallying serially");
+          } else {
+            parallelTallier =
+                new ParallelUrlTallier(this, theParticipants.values(),
+                    boundaries);
+          }
+        }
+      }
+    }
+    return parallelTallier;
+  }
+
+  private void releaseParallelTallier() {
+    if (parallelTallier != null) {
+      parallelTallier.release();
+      parallelTallier = null;
+    }
+  }
+
   /**
    * Add any symmetric hash values to the corresponding VoteBlock.
    * See V3Voter.blockHashComplete.
@@ -1607,15 +1662,25 @@ public class V3Poller implements Poll {
    * @return A {@link VoteBlockTallier} which has had no votes.
    */
   VoteBlockTallier getVoterUrlTally() {
+    return getVoterUrlTally(makeHashStatsTallier(),
+        ParticipantUserData.voteTally);
+  }
+
+  /**
+   * As {@link #getVoterUrlTally()}, but with the given hash stats and
+   * per-participant tallies.
+   */
+  VoteBlockTallier getVoterUrlTally(VoteBlockTallier.VoteCallback hashStats,
+      VoteBlockTallier.VoteBlockTally voteTally) {
     // Will finish with the WON/LOST/&c of the vote for this url
     BlockTally tally = new BlockTally(getQuorum(), getVoteMargin());
     // For the bytesHashed/bytesRead and the version counts
     VoteBlockTallier voteBlockTallier =
-        VoteBlockTallier.make(makeHashStatsTallier(), tally.getVoteCallback());
+        VoteBlockTallier.make(hashStats, tally.getVoteCallback());
     // For the WON/LOST
     voteBlockTallier.addBlockTally(tally);
     // For the agree/disagree/&c for each participant
-    voteBlockTallier.addTally(ParticipantUserData.voteTally);
+    voteBlockTallier.addTally(voteTally);
     return voteBlockTallier;
   }
 
@@ -1631,17 +1696,28 @@ public class V3Poller implements Poll {
    * @return A {@link VoteBlockTallier} which has had no votes.
    */
   VoteBlockTallier getPollerUrlTally(HashBlock hashBlock) {
+    return getPollerUrlTally(hashBlock, makeHashStatsTallier(),
+        ParticipantUserData.voteTally);
+  }
+
+  /**
+   * As {@link #getPollerUrlTally(HashBlock)}, but with the given hash
+   * stats and per-participant tallies.
+   */
+  VoteBlockTallier getPollerUrlTally(HashBlock hashBlock,
+      VoteBlockTallier.VoteCallback hashStats,
+      VoteBlockTallier.VoteBlockTally voteTally) {
     // Will finish with the WON/LOST/&c of the vote for this url
     BlockTally tally = new BlockTally(getQuorum(), getVoteMargin(),
         hashBlock, getHashIndexer());
     // For the bytesHashed/bytesRead and the version counts
     VoteBlockTallier voteBlockTallier =
-        VoteBlockTallier.make(hashBlock, getHashIndexer(), makeHashStatsTallier(),
+        VoteBlockTallier.make(hashBlock, getHashIndexer(), hashStats,
             tally.getVoteCallback());
     // For the WON/LOST
     voteBlockTallier.addBlockTally(tally);
     // For the agree/disagree/&c for each participant
-    voteBlockTallier.addTally(ParticipantUserData.voteTally);
+    voteBlockTallier.addTally(voteTally);
     return voteBlockTallier;
   }
 
@@ -1680,7 +1756,7 @@ public class V3Poller implements Poll {
       log.error("finishTally() called in inquorate poll");
       return;
     }
-    tallyVoterUrls();
+    tallyRemainingUrls();
 
     // Checkpoint the poll.
     checkpointPoll();
@@ -1707,6 +1783,20 @@ public class V3Poller implements Poll {
     }
   }
 
+  // package-level for testing.
+
+  /**
+   * Tally all the blocks the voters have after the poller's last block.
+   */
+  void tallyRemainingUrls() {
+    ParallelUrlTallier pt = getParallelTallier();
+    if (pt != null) {
+      pt.finish();
+    } else {
+      tallyVoterUrls();
+    }
+  }
+
   /**
    * Tally and consume all the remaining blocks.
    */
@@ -1725,7 +1815,7 @@ public class V3Poller implements Poll {
    * @return {@code true} if and only if the given voter-only URL --
    * which is not present on the poller -- should be tallied.
    */
-  private boolean shouldTallyVoterUrl(String url) {
+  boolean shouldTallyVoterUrl(String url) {
     // The worry is that one or more voters didn't know about proof of
     // possession polls, and voted the whole AU, but we didn't bother
     // hashing most of the AU. There would be a lot of voter-only
@@ -1747,10 +1837,7 @@ public class V3Poller implements Poll {
     if (shouldTallyVoterUrl(voterUrl)) {
       VoteBlockTallier voteBlockTallier = getVoterUrlTally();
       urlTallier.voteAllParticipants(voterUrl, voteBlockTallier);
-      BlockTally tally = voteBlockTallier.getBlockTally();
-
-      updateTallyStatus(tally, voterUrl);
-      repairIfNeeded(tally, voterUrl);
+      voterUrlTallied(voteBlockTallier.getBlockTally(), voterUrl);
     } else {
       // Might be a voter who doesn't know about sampled polling and
       // has hashed the entire AU.
@@ -1775,10 +1862,25 @@ public class V3Poller implements Poll {
     VoteBlockTallier voteBlockTallier = getPollerUrlTally(hashBlock);
     urlTallier.voteAllParticipants(pollerUrl, voteBlockTallier);
     BlockTally tally = voteBlockTallier.getBlockTally();
+    pollerUrlTallied(tally, pollerUrl);
+    return tally;
+  }
+
+  /**
+   * Act on the result of tallying a URL which only voters have.
+   */
+  void voterUrlTallied(BlockTally tally, String voterUrl) {
+    updateTallyStatus(tally, voterUrl);
+    repairIfNeeded(tally, voterUrl);
+  }
+
+  /**
+   * Act on the result of tallying a URL which the poller has.
+   */
+  void pollerUrlTallied(BlockTally tally, String pollerUrl) {
     signalNodeAgreement(tally, pollerUrl);
     updateTallyStatus(tally, pollerUrl);
     repairIfNeeded(tally, pollerUrl);
-    return tally;
   }
 
   private Collection<PeerIdentity>
@@ -3474,6 +3576,7 @@ public class V3Poller implements Poll {
     if (urlTallier != null) {
       urlTallier.release();
     }
+    releaseParallelTallier();
 
     synchronized (theParticipants) {
       for (ParticipantUserData ud : theParticipants.values()) {
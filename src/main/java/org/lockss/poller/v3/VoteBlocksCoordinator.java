@@ -125,6 +125,24 @@ final class VoteBlocksCoordinator {
       }
     }
 
+    /** Advance the iterator to the first voteBlock whose URL doesn't
+     * sort before url. */
+    void seek(String url) {
+      if (VoteBlock.compareUrls(getUrl(), url) >= 0) {
+	return;
+      }
+      try {
+	iter.seek(url);
+      } catch (OrderedVoteBlocksIterator.OrderException e) {
+	installErrorIterator(e);
+	return;
+      } catch (IOException e) {
+	installErrorIterator(e);
+	return;
+      }
+      nextVoteBlock();
+    }
+
     /**
      * Release resources.
      */
@@ -227,21 +245,7 @@ final class VoteBlocksCoordinator {
     // efficient.
     for (Entry entry : entryList) {
       iteratorQueue.remove(entry);
-      // todo(bhayes): Change VoteBlockIterator to support a "seek"
-      // operation.
-
-      // VoteBlocks.getVoteBlock(url) has [unused] code trying to do
-      // something similar. It creates a VoteBlocksIterator, and
-      // iterates over the whole VoteBlocks, [ignoring that it should
-      // already be in URL order] looking for a VoteBlock with the
-      // given URL, and returns that block. What we could use is a
-      // method VoteBlocksIterator.seek(url) that fast-forwards to
-      // the right place. But we don't want to just get the VoteBlock,
-      // we want to advance the iterator.
-      // 
-      while (VoteBlock.compareUrls(entry.getUrl(), url) < 0) {
-	entry.nextVoteBlock();
-      }
+      entry.seek(url);
       iteratorQueue.add(entry);
     }
   }
@@ -69,28 +69,28 @@ class BlockingPeerChannel implements PeerChannel {
   }
 
   private ChannelState state = ChannelState.INIT;
-  private Object stateLock = new Object();
+  Object stateLock = new Object();
   private long lastStateChange = -1;
   private ChannelState prevState = ChannelState.NONE;
-  private boolean isOriginate = false;
+  boolean isOriginate = false;
 
   volatile private PeerIdentity peer = null;
-  volatile private PeerAddress pad;
+  volatile PeerAddress pad;
   private PeerIdentity myTransportPeerId;
   private BlockingStreamComm scomm;
   private Socket sock;
   private Queue rcvQueue;
-  private Queue sendQueue;
+  Queue sendQueue;
   private InputStream ins;
   private OutputStream outs;
   private OutputStream socket_outs;
   private int sendCnt = 0;
-  private boolean didOpen = false;
-  private Throwable connectException;
+  boolean didOpen = false;
+  Throwable connectException;
 
-  volatile private long lastSendTime = 0;
-  volatile private long lastRcvTime = 0;
-  volatile private long lastActiveTime = 0;
+  volatile long lastSendTime = 0;
+  volatile long lastRcvTime = 0;
+  volatile long lastActiveTime = 0;
 
   volatile private ChannelReader reader;
   volatile private ChannelRunner writer;
@@ -101,11 +101,11 @@ class BlockingPeerChannel implements PeerChannel {
   private ChannelRunner wtWriter;
   private ChannelRunner wtConnecter;
 
-  private byte[] rcvHeader = new byte[HEADER_LEN];
+  byte[] rcvHeader = new byte[HEADER_LEN];
   private byte[] sndHeader = new byte[HEADER_LEN];
-  private byte[] peerbuf = new byte[MAX_PEERID_LEN];
+  byte[] peerbuf = new byte[MAX_PEERID_LEN];
 
-  private ChannelStats stats = new ChannelStats();
+  ChannelStats stats = new ChannelStats();
 
   /** All other constructors should call this one
    */
@@ -697,7 +697,13 @@ class BlockingPeerChannel implements PeerChannel {
       log.warning(msg);
       throw new ProtocolException(msg);
     }
-    String peerkey = new String(peerbuf, 0, plen);
+    handlePeerId(new String(peerbuf, 0, plen));
+  }
+
+  /** Verify the peer's id received in a peer id message, tell comm to
+   * associate us with id if not already.
+   */
+  void handlePeerId(String peerkey) throws IOException {
     PeerIdentity pid = scomm.findPeerIdentity(peerkey);
     if (peer == null) {
       peer = pid;
@@ -731,43 +737,59 @@ class BlockingPeerChannel implements PeerChannel {
    */
   void readDataMsg() throws IOException {
     long len = getRcvdMessageLength();
-    int proto = ByteArray.decodeInt(rcvHeader, HEADER_OFF_PROTO);
-    if (log.isDebug3()) log.debug3("Got data hdr: " + proto + ", len: " + len);
-    if (len > scomm.getMaxMessageSize()) {
-      throw new ProtocolException("Too-large incoming message: " + len);
-    }
     long startTime = 0;
     if (len >= scomm.getMinMeasuredMessageSize()) {
       startTime = TimeBase.nowMs();
     }
-    PeerMessage msg = scomm.newPeerMessage(len);
-    msg.setProtocol(proto);
-    msg.setSender(peer);
+    PeerMessage msg = newRcvdMessage();
     try {
       OutputStream msgOut = msg.getOutputStream();
       copyBytes(ins, msgOut, len, stats.getInCount());
       logRate("Rcv", len, startTime);
       msgOut.close();
-      // update lastActiveTime *before* queuing message; produces more
-      // predictable behavior when running in simulated time in unit tests
-      lastRcvTime = lastActiveTime = TimeBase.nowMs();
-      RateLimiter limiter = scomm.getReceiveRateLimiter(peer);
-      if (limiter == null || limiter.isEventOk()) {
-	if (limiter != null) {
-	  limiter.event();
-	}
-	rcvQueue.put(msg);
-	countRcvdMsg();
-      } else {
-	scomm.rcvRateLimited(peer);
-	log.debug3("rcv rate limited");
-      }
+      rcvdMessage(msg);
     } catch (IOException e) {
       msg.delete();
       throw e;
     }
   }
 
+  /** Check the data message header in rcvHeader, return a new PeerMessage
+   * to hold its content
+   */
+  PeerMessage newRcvdMessage() throws IOException {
+    long len = getRcvdMessageLength();
+    int proto = ByteArray.decodeInt(rcvHeader, HEADER_OFF_PROTO);
+    if (log.isDebug3()) log.debug3("Got data hdr: " + proto + ", len: " + len);
+    if (len > scomm.getMaxMessageSize()) {
+      throw new ProtocolException("Too-large incoming message: " + len);
+    }
+    PeerMessage msg = scomm.newPeerMessage(len);
+    msg.setProtocol(proto);
+    msg.setSender(peer);
+    return msg;
+  }
+
+  /** Enqueue a completely received message, subject to the receive rate
+   * limit
+   */
+  void rcvdMessage(PeerMessage msg) {
+    // update lastActiveTime *before* queuing message; produces more
+    // predictable behavior when running in simulated time in unit tests
+    lastRcvTime = lastActiveTime = TimeBase.nowMs();
+    RateLimiter limiter = scomm.getReceiveRateLimiter(peer);
+    if (limiter == null || limiter.isEventOk()) {
+      if (limiter != null) {
+	limiter.event();
+      }
+      rcvQueue.put(msg);
+      countRcvdMsg();
+    } else {
+      scomm.rcvRateLimited(peer);
+      log.debug3("rcv rate limited");
+    }
+  }
+
   void countRcvdMsg() {
     stats.rcvdMsg();
     BlockingStreamComm.PeerData pd = scomm.getPeerData(peer);
@@ -844,7 +866,7 @@ class BlockingPeerChannel implements PeerChannel {
     return ByteArray.decodeByte(rcvHeader, HEADER_OFF_OP);
   }
 
-  private void logRate(String direction, long len, long startTime) {
+  void logRate(String direction, long len, long startTime) {
     if (startTime <= 0 || !log.isDebug()) {
       return;
     }
@@ -985,10 +1007,21 @@ class BlockingPeerChannel implements PeerChannel {
     if (len >= scomm.getMinMeasuredMessageSize()) {
       startTime = TimeBase.nowMs();
     }
+    long startNanos = System.nanoTime();
+    long startCpu = ChannelStats.currentThreadCpuNanos();
     writeHeader(OP_DATA, msg.getDataSize(), msg.getProtocol());
-    copyBytes(msg.getInputStream(), outs, msg.getDataSize(),
-	      stats.getOutCount());
+    InputStream ins = msg.getInputStream();
+    try {
+      // File-backed messages are large; copy them in bigger chunks
+      int bufsize = (msg instanceof FilePeerMessage)
+	? scomm.getFileSendBufferSize() : COPY_BUFFER_SIZE;
+      copyBytes(ins, outs, msg.getDataSize(), stats.getOutCount(), bufsize);
+    } finally {
+      IOUtil.safeClose(ins);
+    }
     outs.flush();
+    stats.sentTimed(len, System.nanoTime() - startNanos,
+		    ChannelStats.currentThreadCpuNanos() - startCpu);
     countSentMsg();
     logRate("Send", len, startTime);
   }
@@ -1012,9 +1045,21 @@ class BlockingPeerChannel implements PeerChannel {
   boolean copyBytes(InputStream is, OutputStream os, long len,
 		    ChannelStats.Count count)
       throws IOException {
-    byte[] copybuf = new byte[COPY_BUFFER_SIZE];
+    return copyBytes(is, os, len, count, COPY_BUFFER_SIZE);
+  }
+
+  /** Copy len bytes from input to output stream, using a buffer of the
+   * specified size.
+   * @return true if len bytes successfully copied
+   * @throws ProtocolException if eof reached before len bytes
+   * @throws IOException
+   */
+  boolean copyBytes(InputStream is, OutputStream os, long len,
+		    ChannelStats.Count count, int bufsize)
+      throws IOException {
+    byte[] copybuf = new byte[Math.max(bufsize, COPY_BUFFER_SIZE)];
     long rem = len;
-    int bufsize = copybuf.length;
+    bufsize = copybuf.length;
     while (rem > 0) {
       int nread = is.read(copybuf, 0, rem > bufsize ? bufsize : (int)rem);
       if (nread < 0) {
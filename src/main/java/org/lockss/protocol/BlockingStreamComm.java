@@ -250,6 +250,19 @@ public class BlockingStreamComm
     PREFIX + "minMeasuredMessageSize";
   public static final long DEFAULT_MIN_MEASURED_MESSAGE_SIZE = 5 * 1024 * 1024;
 
+  /** If true, the bodies of file-backed messages are sent directly from
+   * the file to the socket (FileChannel.transferTo()) when the channel
+   * isn't encrypted and supports it */
+  public static final String PARAM_ZERO_COPY_SEND =
+    PREFIX + "zeroCopySend";
+  public static final boolean DEFAULT_ZERO_COPY_SEND = true;
+
+  /** Size of the buffer used to copy the bodies of file-backed messages
+   * to the socket when they can't be sent directly from the file */
+  public static final String PARAM_FILE_SEND_BUFFER_SIZE =
+    PREFIX + "fileSendBufferSize";
+  public static final int DEFAULT_FILE_SEND_BUFFER_SIZE = 64 * 1024;
+
   /** Dir for PeerMessage data storage */
   public static final String PARAM_DATA_DIR = PREFIX + "messageDataDir";
   /** Default is PlatformInfo.getSystemTempDir() */
@@ -317,6 +330,8 @@ public class BlockingStreamComm
   private long paramMaxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
   private long paramMinMeasuredMessageSize =
     DEFAULT_MIN_MEASURED_MESSAGE_SIZE;
+  private boolean paramZeroCopySend = DEFAULT_ZERO_COPY_SEND;
+  private int paramFileSendBufferSize = DEFAULT_FILE_SEND_BUFFER_SIZE;
   private File dataDir = null;
   private int paramBacklog = DEFAULT_LISTEN_BACKLOG;
   private int paramMaxChannels = DEFAULT_MAX_CHANNELS;
@@ -342,6 +357,7 @@ public class BlockingStreamComm
   private PooledExecutor pool;
   protected SSLSocketFactory sslSocketFactory = null;
   protected SSLServerSocketFactory sslServerSocketFactory = null;
+  protected SSLContext sslContext = null;
   private boolean paramDissociateOnNoSend = DEFAULT_DISSOCIATE_ON_NO_SEND;
   private boolean paramDissociateOnEveryStop =
     DEFAULT_DISSOCIATE_ON_EVERY_STOP;
@@ -667,8 +683,7 @@ public class BlockingStreamComm
       // new primary channel, if we have room
       if (nPrimary < paramMaxChannels) {
 	try {
-	  BlockingPeerChannel chan =
-	    getSocketFactory().newPeerChannel(BlockingStreamComm.this, pid);
+	  BlockingPeerChannel chan = newPeerChannel(pid);
 	  if (log.isDebug2()) log.debug2("Created " + chan);
 	  try {
 	    handOffQueuedMsgs(chan);
@@ -974,6 +989,11 @@ public class BlockingStreamComm
 	paramMinMeasuredMessageSize =
 	  config.getLong(PARAM_MIN_MEASURED_MESSAGE_SIZE,
 			 DEFAULT_MIN_MEASURED_MESSAGE_SIZE);
+	paramZeroCopySend = config.getBoolean(PARAM_ZERO_COPY_SEND,
+					      DEFAULT_ZERO_COPY_SEND);
+	paramFileSendBufferSize =
+	  config.getInt(PARAM_FILE_SEND_BUFFER_SIZE,
+			DEFAULT_FILE_SEND_BUFFER_SIZE);
 	paramIsBufferedSend = config.getBoolean(PARAM_IS_BUFFERED_SEND,
 						DEFAULT_IS_BUFFERED_SEND);
 	paramIsTcpNoDelay = config.getBoolean(PARAM_TCP_NODELAY,
@@ -1151,7 +1171,6 @@ public class BlockingStreamComm
     TrustManager[] tma = tmf.getTrustManagers();
 
     // Now create an SSLContext from the KeyManager
-    SSLContext sslContext = null;
     try {
       RandomManager rmgr = getDaemon().getRandomManager();
       SecureRandom rng = rmgr.getSecureRandom();
@@ -1242,6 +1261,45 @@ public class BlockingStreamComm
     return sockFact;
   }
 
+  /** Return a new, unstarted channel that will connect to the peer.
+   * Overridable by implementations that use a different kind of
+   * channel */
+  BlockingPeerChannel newPeerChannel(PeerIdentity pid) throws IOException {
+    return getSocketFactory().newPeerChannel(this, pid);
+  }
+
+  String getBindAddr() {
+    return bindAddr;
+  }
+
+  boolean isSendFromBindAddr() {
+    return sendFromBindAddr;
+  }
+
+  int getListenBacklog() {
+    return paramBacklog;
+  }
+
+  PeerAddress.Tcp getMyTransportPeerAddr() {
+    return myTransportPeerAddr;
+  }
+
+  boolean isUseV3OverSsl() {
+    return paramUseV3OverSsl;
+  }
+
+  boolean isSslClientAuth() {
+    return paramSslClientAuth;
+  }
+
+  long getSslHandshakeTimeout() {
+    return paramSslHandshakeTimeout;
+  }
+
+  boolean isSocketKeepAlive() {
+    return paramSoKeepAlive;
+  }
+
   long getConnectTimeout() {
     return paramConnectTimeout;
   }
@@ -1274,6 +1332,14 @@ public class BlockingStreamComm
     return paramMinMeasuredMessageSize;
   }
 
+  boolean isZeroCopySend() {
+    return paramZeroCopySend;
+  }
+
+  int getFileSendBufferSize() {
+    return paramFileSendBufferSize;
+  }
+
   boolean isBufferedSend() {
     return paramIsBufferedSend;
   }
@@ -1290,6 +1356,10 @@ public class BlockingStreamComm
     return paramDissociateOnEveryStop;
   }
 
+  long getWaitExit() {
+    return paramWaitExit;
+  }
+
   /**
    * Called by channel when it learns its peer's identity
    */
@@ -1396,12 +1466,7 @@ public class BlockingStreamComm
   }
 
   void start() {
-    pool = new PooledExecutor(paramMaxPoolSize);
-    pool.setMinimumPoolSize(paramMinPoolSize);
-    pool.setKeepAliveTime(paramPoolKeepaliveTime);
-    log.debug2("Channel thread pool min, max: " +
-	      pool.getMinimumPoolSize() + ", " + pool.getMaximumPoolSize());
-    pool.abortWhenBlocked();
+    startChannelPool();
 
     rcvQueue = new FifoQueue();
     try {
@@ -1415,8 +1480,7 @@ public class BlockingStreamComm
       } else {
 	log.debug("Listening on port " + port);
       }
-      listenSock =
-	getSocketFactory().newServerSocket(bindAddr, port, paramBacklog);
+      openListenSocket(port);
     } catch (IOException e) {
       log.critical("Can't create listen socket", e);
       return;
@@ -1427,6 +1491,22 @@ public class BlockingStreamComm
     running = true;
   }
 
+  /** Create the thread pool in which channel threads run */
+  void startChannelPool() {
+    pool = new PooledExecutor(paramMaxPoolSize);
+    pool.setMinimumPoolSize(paramMinPoolSize);
+    pool.setKeepAliveTime(paramPoolKeepaliveTime);
+    log.debug2("Channel thread pool min, max: " +
+	      pool.getMinimumPoolSize() + ", " + pool.getMaximumPoolSize());
+    pool.abortWhenBlocked();
+  }
+
+  /** Create the listen socket, which is serviced by the listen thread */
+  void openListenSocket(int port) throws IOException {
+    listenSock =
+      getSocketFactory().newServerSocket(bindAddr, port, paramBacklog);
+  }
+
   protected boolean isRunning() {
     return running;
   }
@@ -1809,6 +1889,20 @@ public class BlockingStreamComm
     sock.setEnabledProtocols(enaprotos.toArray(new String[0]));
   }
 
+  void disableSelectedProtocols(SSLEngine engine) {
+    List<String> disabled = engine.getUseClientMode()
+      ? paramDisableSslClientProtocols : paramDisableSslServerProtocols;
+    if (disabled == null) return;
+    Set<String> enaprotos = new HashSet<String>();
+    for (String s : engine.getEnabledProtocols()) {
+      if (disabled.contains(s)) {
+	continue;
+      }
+      enaprotos.add(s);
+    }
+    engine.setEnabledProtocols(enaprotos.toArray(new String[0]));
+  }
+
   // Listen thread
   private class ListenThread extends CommThread {
     private volatile boolean goOn = true;
@@ -2097,6 +2191,12 @@ public class BlockingStreamComm
 				       ColumnDescriptor.TYPE_INT),
 		  new ColumnDescriptor("RcvdBytes", "Bytes Rcvd",
 				       ColumnDescriptor.TYPE_INT),
+		  new ColumnDescriptor("SendRate", "MB/s Sent",
+				       ColumnDescriptor.TYPE_FLOAT,
+				       "Throughput of message bodies sent"),
+		  new ColumnDescriptor("SendCpu", "CPU ms/MB",
+				       ColumnDescriptor.TYPE_FLOAT,
+				       "CPU time used per MB of message bodies sent"),
 		  new ColumnDescriptor("LastSend", "LastSend",
 				       ColumnDescriptor.TYPE_TIME_INTERVAL),
 		  new ColumnDescriptor("LastRcv", "LastRcv",
@@ -2169,6 +2269,12 @@ public class BlockingStreamComm
       res.add(new StatusTable.SummaryInfo("Bytes Rcvd",
 					  ColumnDescriptor.TYPE_INT,
 					  count.getBytes()));
+      Double cpu = stats.getSendCpuMsPerMB();
+      if (cpu != null) {
+	res.add(new StatusTable.SummaryInfo("CPU ms/MB Sent",
+					    ColumnDescriptor.TYPE_FLOAT,
+					    cpu));
+      }
       return res;
     }
 
@@ -2208,6 +2314,8 @@ public class BlockingStreamComm
       count = stats.getOutCount();
       row.put("Rcvd", count.getMsgs());
       row.put("RcvdBytes", count.getBytes());
+      row.put("SendRate", stats.getSendMBPerSec());
+      row.put("SendCpu", stats.getSendCpuMsPerMB());
       StringBuilder sb = new StringBuilder(flags);
       if (chan.isOriginate()) sb.append("O");
       if (chan.hasConnecter()) sb.append("C");
@@ -34,18 +34,40 @@ package org.lockss.protocol;
 
 import java.io.*;
 import java.net.*;
+import java.lang.management.*;
 
 import org.lockss.util.*;
 import org.lockss.util.Queue;
 import org.lockss.daemon.*;
 
 public class ChannelStats {
+  private static final ThreadMXBean threadBean =
+    ManagementFactory.getThreadMXBean();
+  private static final boolean cpuTimeSupported =
+    threadBean.isCurrentThreadCpuTimeSupported();
+  private static final long MB = 1024 * 1024;
+
   Count in = new Count();
   Count out = new Count();
 
+  // Data message bodies sent, with the elapsed and CPU time spent sending
+  // them
+  long sendTimedBytes = 0;
+  long sendNanos = 0;
+  long sendCpuNanos = 0;
+  // True if other channels' stats have been added
+  boolean isAggregate = false;
+
+  /** Add another channel's stats to these.  Channels send concurrently,
+   * so their send times can't be summed; aggregate stats have no send
+   * rate. */
   void add(ChannelStats other) {
     in.add(other.getInCount());
     out.add(other.getOutCount());
+    sendTimedBytes += other.sendTimedBytes;
+    sendNanos += other.sendNanos;
+    sendCpuNanos += other.sendCpuNanos;
+    isAggregate = true;
   }
 
   public Count getInCount() {
@@ -72,6 +94,45 @@ public class ChannelStats {
     out.addMsg();
   }
 
+  /** Record the time taken to send a message body
+   * @param bytes size of the body
+   * @param nanos elapsed time
+   * @param cpuNanos CPU time used by the sending thread
+   */
+  void sentTimed(long bytes, long nanos, long cpuNanos) {
+    sendTimedBytes += bytes;
+    sendNanos += nanos;
+    sendCpuNanos += cpuNanos;
+  }
+
+  /** Return the send throughput in MB/sec, or null if nothing has been
+   * timed or these are aggregate stats */
+  public Double getSendMBPerSec() {
+    if (isAggregate || sendNanos <= 0 || sendTimedBytes <= 0) {
+      return null;
+    }
+    return (sendTimedBytes / (double)MB) / (sendNanos / 1e9);
+  }
+
+  /** Return the CPU time (ms) used per MB sent, or null if nothing has
+   * been timed or thread CPU time isn't available */
+  public Double getSendCpuMsPerMB() {
+    if (!cpuTimeSupported || sendTimedBytes <= 0) {
+      return null;
+    }
+    return (sendCpuNanos / 1e6) / (sendTimedBytes / (double)MB);
+  }
+
+  /** Return the CPU time used so far by the current thread, in
+   * nanoseconds, or 0 if not supported */
+  static long currentThreadCpuNanos() {
+    if (!cpuTimeSupported) {
+      return 0;
+    }
+    long res = threadBean.getCurrentThreadCpuTime();
+    return res < 0 ? 0 : res;
+  }
+
   public class Count {
     int msgs = 0;
     long bytes = 0;
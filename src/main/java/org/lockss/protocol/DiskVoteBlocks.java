@@ -31,6 +31,8 @@ package org.lockss.protocol;
 import java.util.*;
 import java.io.*;
 import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 import org.lockss.app.LockssApp;
 import org.lockss.util.*;
@@ -40,18 +42,46 @@ import org.lockss.config.*;
 /**
  * A VoteBlocks data structure backed by a disk file.  This implementation
  * is not thread-safe.
+ *
+ * <p>Blocks are stored in a compact binary format (see {@link
+ * VoteBlock#getBinaryEncoded()}), each preceded by a 4-byte length, with
+ * the file starting with {@link #BINARY_MAGIC}.  Files written in the
+ * legacy format (the same as the wire format: each block's {@link
+ * VoteBlock#getEncoded()} preceded by a 2-byte length) are still read,
+ * and vote blocks received from peers are converted to the binary
+ * format.  The URL and file offset of every {@value #INDEX_INTERVAL}th
+ * block are kept in an in-memory index, so that {@link #getVoteBlock}
+ * and {@link VoteBlocksIterator#seek} can binary-search blocks that are
+ * in URL order.
  * 
  * @author sethm
  */
 public class DiskVoteBlocks implements VoteBlocks {
   private static final Logger log = Logger.getLogger();
 
+  /** First four bytes of a binary format file.  Can't begin a legacy
+   * format file, whose first two bytes are a positive length. */
+  static final int BINARY_MAGIC = 0xff564231;	// "\377VB1"
+
+  /** One of every INDEX_INTERVAL blocks is entered in the URL index */
+  static final int INDEX_INTERVAL = 64;
+
+  static final int FORMAT_UNKNOWN = 0;
+  static final int FORMAT_LEGACY = 1;
+  static final int FORMAT_BINARY = 2;
+
+  private static final int READ_BUFFER_SIZE = 16 * 1024;
+
   private String m_filePath;
   private transient File m_file;
   private int m_size = 0;
   private boolean keepOpen = false;
   private boolean monitorStreams = LockssApp.DEFAULT_MONITOR_INPUT_STREAMS;
   private DataOutputStream m_dos;
+  // Not serialized; determined from the file when first needed
+  private transient int m_format = FORMAT_UNKNOWN;
+  private transient long m_endOffset;
+  private transient UrlIndex m_index;
 
   public DiskVoteBlocks(boolean keepOpen) {
     Configuration config = ConfigManager.getCurrentConfig();
@@ -70,7 +100,9 @@ public class DiskVoteBlocks implements VoteBlocks {
    * </p>
    * 
    * <p>
-   * This method is used when decoding V3LcapMessages.
+   * This method is used when decoding V3LcapMessages.  The blocks arrive
+   * in the legacy (wire) format and are converted to the binary format;
+   * if that fails they're left in the legacy format.
    * </p>
    * 
    * @param blocksToRead Number of blocks to read from the InputStream.
@@ -92,6 +124,10 @@ public class DiskVoteBlocks implements VoteBlocks {
     } finally {
       IOUtil.safeClose(os);
     }
+    m_format = FORMAT_LEGACY;
+    m_endOffset = m_file.length();
+    m_index = null;
+    convertToBinary(toDir);
   }
 
   /**
@@ -105,6 +141,9 @@ public class DiskVoteBlocks implements VoteBlocks {
     this(keepOpen);
     m_file = FileUtil.createTempFile("voteblocks-", ".bin", toDir);
     m_filePath = m_file.getAbsolutePath();
+    m_format = FORMAT_BINARY;
+    m_endOffset = 0;
+    m_index = new UrlIndex();
   }
 
   /**
@@ -114,8 +153,89 @@ public class DiskVoteBlocks implements VoteBlocks {
     m_file = new File(m_filePath);
   }
 
+  /** Rewrite a legacy format file in the binary format.  The original
+   * is kept if it can't be completely read. */
+  private void convertToBinary(File toDir) {
+    File legacyFile = m_file;
+    File binFile = null;
+    Iterator iter = null;
+    DataOutputStream dos = null;
+    UrlIndex index = new UrlIndex();
+    try {
+      iter = new Iterator(legacyFile, FORMAT_LEGACY);
+      binFile = FileUtil.createTempFile("voteblocks-", ".bin", toDir);
+      dos = new DataOutputStream(new BufferedOutputStream(
+					   new FileOutputStream(binFile)));
+      dos.writeInt(BINARY_MAGIC);
+      long offset = 4;
+      int n = 0;
+      while (iter.hasNext()) {
+	VoteBlock vb = iter.next();
+	byte[] rec = vb.getBinaryEncoded();
+	dos.writeInt(rec.length);
+	dos.write(rec);
+	index.add(vb.getUrl(), offset);
+	offset += 4 + rec.length;
+	n++;
+      }
+      dos.close();
+      if (n != m_size) {
+	log.warning("Expected " + m_size + " vote blocks, found " + n +
+		    ", leaving in legacy format: " + legacyFile);
+	return;
+      }
+      if (!binFile.renameTo(legacyFile)) {
+	log.warning("Couldn't rename " + binFile + " to " + legacyFile);
+	return;
+      }
+      binFile = null;
+      m_format = FORMAT_BINARY;
+      m_endOffset = offset;
+      m_index = index;
+    } catch (IOException e) {
+      log.warning("Couldn't convert vote blocks, leaving in legacy format: "
+		  + legacyFile, e);
+    } finally {
+      if (iter != null) {
+	iter.release();
+      }
+      IOUtil.safeClose(dos);
+      if (binFile != null) {
+	binFile.delete();
+      }
+    }
+  }
+
+  /** Determine the file's format, and the offset at which to append,
+   * if not already known. */
+  private int ensureFormat() throws IOException {
+    if (m_format == FORMAT_UNKNOWN) {
+      m_format = readFormat(m_file);
+      m_endOffset = m_file.length();
+    }
+    return m_format;
+  }
+
+  int getFormat() throws IOException {
+    return ensureFormat();
+  }
+
+  static int readFormat(File file) throws IOException {
+    if (file.length() == 0) {
+      return FORMAT_BINARY;
+    }
+    try (DataInputStream dis =
+	 new DataInputStream(new FileInputStream(file))) {
+      if (file.length() >= 4 && dis.readInt() == BINARY_MAGIC) {
+	return FORMAT_BINARY;
+      }
+      return FORMAT_LEGACY;
+    }
+  }
+
   /* Inherit documentation */
   public synchronized void addVoteBlock(VoteBlock b) throws IOException {
+    ensureFormat();
     // Append to the end of the file.
     DataOutputStream dos;
     if (m_dos != null) {
@@ -125,9 +245,25 @@ public class DiskVoteBlocks implements VoteBlocks {
       dos = new DataOutputStream(new BufferedOutputStream(fos));
     }
     try {
-      byte[] encodedBlock = b.getEncoded();
-      dos.writeShort(encodedBlock.length);
-      dos.write(encodedBlock);
+      long offset = m_endOffset;
+      if (m_format == FORMAT_BINARY) {
+	if (offset == 0) {
+	  dos.writeInt(BINARY_MAGIC);
+	  offset = 4;
+	}
+	byte[] encodedBlock = b.getBinaryEncoded();
+	dos.writeInt(encodedBlock.length);
+	dos.write(encodedBlock);
+	m_endOffset = offset + 4 + encodedBlock.length;
+      } else {
+	byte[] encodedBlock = b.getEncoded();
+	dos.writeShort(encodedBlock.length);
+	dos.write(encodedBlock);
+	m_endOffset = offset + 2 + encodedBlock.length;
+      }
+      if (m_index != null) {
+	m_index.add(b.getUrl(), offset);
+      }
       this.m_size++;
     } finally {
       if (keepOpen) {
@@ -143,18 +279,59 @@ public class DiskVoteBlocks implements VoteBlocks {
     return new DiskVoteBlocks.Iterator();
   }
 
-  /** Search the collection for the requested VoteBlock.
-   * 
-   * XXX: This is implemented as a simple linear search, so it is O(n).
-   * The disk structure is not terribly easy to seek into because each
-   * record is variable length, so I'm not sure it will be easy to implement
-   * binary search and improve performance.  Therefore, this method should
-   * be used with care, and sparingly.
+  /** Return the URL index, building it by reading the file if
+   * necessary */
+  synchronized UrlIndex getIndex() throws IOException {
+    if (m_index == null) {
+      if (m_dos != null) {
+	m_dos.flush();
+      }
+      UrlIndex index = new UrlIndex();
+      Iterator iter = new Iterator(m_file, ensureFormat());
+      try {
+	while (iter.hasNext()) {
+	  index.add(iter.peek().getUrl(), iter.getNextOffset());
+	  iter.next();
+	}
+      } finally {
+	iter.release();
+      }
+      m_index = index;
+    }
+    return m_index;
+  }
+
+  /** Return the indexed URLs, one per {@value #INDEX_INTERVAL} blocks,
+   * or an empty list if the blocks aren't in URL order. */
+  public synchronized List<String> getSampleUrls() {
+    try {
+      UrlIndex index = getIndex();
+      if (index.isOrdered()) {
+	return index.getUrls();
+      }
+    } catch (IOException e) {
+      log.warning("Couldn't build URL index: " + m_file, e);
+    }
+    return Collections.emptyList();
+  }
+
+  /** Search the collection for the requested VoteBlock.  If the blocks
+   * are in URL order this is a binary search of the index followed by a
+   * scan of at most {@value #INDEX_INTERVAL} blocks, otherwise a linear
+   * search.
    */
   public VoteBlock getVoteBlock(String url) {
     VoteBlocksIterator iter = null;
     try {
       iter = iterator();
+      if (getIndex().isOrdered()) {
+	iter.seek(url);
+	VoteBlock vb = iter.peek();
+	if (vb != null && url.equals(vb.getUrl())) {
+	  return vb;
+	}
+	return null;
+      }
       while (iter.hasNext()) {
         VoteBlock vb = iter.next();
         if (url.equals(vb.getUrl())) {
@@ -195,10 +372,18 @@ public class DiskVoteBlocks implements VoteBlocks {
       log.debug2("Unable to delete file: " + m_file);
     }
     m_file = null;
+    m_index = null;
   }
 
+  /** Return a stream of the blocks in the wire format, converting them
+   * from the binary format if necessary */
   public synchronized InputStream getInputStream() throws IOException {
-    InputStream is = new BufferedInputStream(new FileInputStream(m_file));
+    InputStream is;
+    if (ensureFormat() == FORMAT_LEGACY) {
+      is = new BufferedInputStream(new FileInputStream(m_file));
+    } else {
+      is = new EncodingInputStream(new Iterator(m_file, FORMAT_BINARY));
+    }
     if (monitorStreams) {
       is = new MonitoringInputStream(is, "dvb getInputStream()");
     }
@@ -228,24 +413,107 @@ public class DiskVoteBlocks implements VoteBlocks {
     return sb.toString();
   }
 
+  /** Sparse index of the URLs of the blocks in the file.  Also records
+   * whether all the URLs were added in strictly increasing order, without
+   * which the index can't be used. */
+  static class UrlIndex {
+    private final ArrayList<String> urls = new ArrayList<String>();
+    private long[] offsets = new long[16];
+    private int count = 0;
+    private String lastUrl = null;
+    private boolean ordered = true;
+
+    void add(String url, long offset) {
+      if (count > 0 && VoteBlock.compareUrls(lastUrl, url) >= 0) {
+	ordered = false;
+      }
+      lastUrl = url;
+      if (count++ % INDEX_INTERVAL == 0) {
+	int n = urls.size();
+	if (n == offsets.length) {
+	  offsets = Arrays.copyOf(offsets, n * 2);
+	}
+	urls.add(url);
+	offsets[n] = offset;
+      }
+    }
+
+    boolean isOrdered() {
+      return ordered;
+    }
+
+    List<String> getUrls() {
+      return new ArrayList<String>(urls);
+    }
+
+    /** Return the offset of the last indexed block whose URL doesn't sort
+     * after url, or -1 if none or the index can't be used */
+    long find(String url) {
+      if (!ordered) {
+	return -1;
+      }
+      int lo = 0;
+      int hi = urls.size() - 1;
+      int res = -1;
+      while (lo <= hi) {
+	int mid = (lo + hi) >>> 1;
+	if (VoteBlock.compareUrls(urls.get(mid), url) <= 0) {
+	  res = mid;
+	  lo = mid + 1;
+	} else {
+	  hi = mid - 1;
+	}
+      }
+      return res < 0 ? -1 : offsets[res];
+    }
+  }
+
   class Iterator implements VoteBlocksIterator {
-    private RandomAccessFile m_raf;
+    private FileChannel m_chan;
+    private final int m_format;
+    private final boolean m_useIndex;
+    // Read-ahead buffer, always in read mode.  m_chanPos is the file
+    // offset of the byte following the buffered data.
+    private ByteBuffer m_buf;
+    private long m_chanPos;
     private VoteBlock m_nextVB;  // Next block to be returned by next(), peek()
+    private long m_nextOffset;   // File offset of m_nextVB
     
     public Iterator() throws FileNotFoundException {
+      this(m_file, getFormatOrLegacy(), true);
+    }
+
+    Iterator(File file, int format) throws FileNotFoundException {
+      this(file, format, false);
+    }
+
+    private Iterator(File file, int format, boolean useIndex)
+	throws FileNotFoundException {
       if (log.isDebug2()) {
-	log.debug2("Open raf: " + m_file);
+	log.debug2("Open channel: " + file);
       }
-      m_raf = new RandomAccessFile(m_file, "r"); 
+      try {
+	m_chan = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      } catch (IOException e) {
+	FileNotFoundException fnfe = new FileNotFoundException(file.toString());
+	fnfe.initCause(e);
+	throw fnfe;
+      }
+      m_format = format;
+      m_useIndex = useIndex;
+      m_buf = ByteBuffer.allocate(READ_BUFFER_SIZE);
+      m_buf.flip();
+      m_chanPos = (format == FORMAT_BINARY) ? 4 : 0;
     }
     
     /* Inherit documentation */
     @Override
     public void release() {
       if (log.isDebug2()) {
-	log.debug2("Release raf: " + m_file);
+	log.debug2("Release channel: " + m_file);
       }
-      IOUtil.safeClose(m_raf);
+      IOUtil.safeClose(m_chan);
+      m_chan = null;
     }
 
     /* Inherit documentation */
@@ -269,6 +537,42 @@ public class DiskVoteBlocks implements VoteBlocks {
       ensureVB();
       return m_nextVB;
     }
+
+    /** Skip to the first block whose URL doesn't sort before url, using
+     * the index if possible */
+    @Override
+    public void seek(String url) throws IOException {
+      VoteBlock vb = peek();
+      if (vb == null || VoteBlock.compareUrls(vb.getUrl(), url) >= 0) {
+	return;
+      }
+      if (m_useIndex) {
+	long offset = getIndex().find(url);
+	if (offset > m_nextOffset) {
+	  m_buf.clear();
+	  m_buf.flip();
+	  m_chanPos = offset;
+	  m_nextVB = null;
+	}
+      }
+      while ((vb = peek()) != null
+	     && VoteBlock.compareUrls(vb.getUrl(), url) < 0) {
+	m_nextVB = null;
+      }
+    }
+
+    /** True if the blocks were added, or found when the index was built,
+     * in strictly increasing URL order */
+    @Override
+    public boolean isKnownOrdered() throws IOException {
+      return m_useIndex && getIndex().isOrdered();
+    }
+
+    /** Return the file offset of the block that will be returned by
+     * next() */
+    long getNextOffset() {
+      return m_nextOffset;
+    }
     
     private void ensureVB() throws IOException {
       if (m_nextVB == null) {
@@ -279,15 +583,142 @@ public class DiskVoteBlocks implements VoteBlocks {
     /* This method automatically closes the file when it reaches the end. */
     protected void readVB() throws IOException {
       m_nextVB = null;
-      if (m_raf.getFD().valid()) {
-	try {
-	  short nextLen = m_raf.readShort();
-	  byte[] encodedBlock = new byte[nextLen];
-	  m_raf.readFully(encodedBlock);
-	  m_nextVB = new VoteBlock(encodedBlock);
-	} catch (java.io.EOFException e) {
-	  IOUtil.safeClose(m_raf);
+      if (m_chan == null) {
+	return;
+      }
+      m_nextOffset = m_chanPos - m_buf.remaining();
+      if (m_format == FORMAT_BINARY) {
+	if (!fill(4)) {
+	  release();
+	  return;
+	}
+	int len = m_buf.getInt();
+	if (len < 0) {
+	  throw new IOException("Bad vote block length " + len + " in " +
+				m_file);
+	}
+	if (!fill(len)) {
+	  release();
+	  return;
+	}
+	ByteBuffer rec = m_buf.slice();
+	rec.limit(len);
+	m_nextVB = VoteBlock.decodeBinary(rec);
+	m_buf.position(m_buf.position() + len);
+      } else {
+	if (!fill(2)) {
+	  release();
+	  return;
+	}
+	short len = m_buf.getShort();
+	if (len < 0) {
+	  throw new IOException("Bad vote block length " + len + " in " +
+				m_file);
+	}
+	if (!fill(len)) {
+	  release();
+	  return;
+	}
+	byte[] encodedBlock = new byte[len];
+	m_buf.get(encodedBlock);
+	m_nextVB = new VoteBlock(encodedBlock);
+      }
+    }
+
+    /** Ensure at least n bytes are buffered.
+     * @return false if the end of the file is reached first */
+    private boolean fill(int n) throws IOException {
+      if (m_buf.remaining() >= n) {
+	return true;
+      }
+      if (m_buf.capacity() < n) {
+	ByteBuffer bigger = ByteBuffer.allocate(n);
+	bigger.put(m_buf);
+	m_buf = bigger;
+      } else {
+	m_buf.compact();
+      }
+      try {
+	while (m_buf.position() < n) {
+	  int nread = m_chan.read(m_buf, m_chanPos);
+	  if (nread < 0) {
+	    return false;
+	  }
+	  m_chanPos += nread;
+	}
+	return true;
+      } finally {
+	m_buf.flip();
+      }
+    }
+  }
+
+  /** Return the format, defaulting to legacy if the file can't be read
+   * (in which case the Iterator will fail to open it) */
+  private int getFormatOrLegacy() {
+    try {
+      return ensureFormat();
+    } catch (IOException e) {
+      return FORMAT_LEGACY;
+    }
+  }
+
+  /** Produces the wire format (legacy format) encoding of the blocks
+   * from an Iterator */
+  static class EncodingInputStream extends InputStream {
+    private Iterator iter;
+    private byte[] cur = ByteArray.EMPTY_BYTE_ARRAY;
+    private int pos = 0;
+
+    EncodingInputStream(Iterator iter) {
+      this.iter = iter;
+    }
+
+    /** Ensure there's something left in cur.
+     * @return false at end */
+    private boolean ensure() throws IOException {
+      while (pos >= cur.length) {
+	if (iter == null) {
+	  return false;
 	}
+	if (!iter.hasNext()) {
+	  close();
+	  return false;
+	}
+	byte[] enc = iter.next().getEncoded();
+	cur = new byte[enc.length + 2];
+	cur[0] = (byte)(enc.length >> 8);
+	cur[1] = (byte)enc.length;
+	System.arraycopy(enc, 0, cur, 2, enc.length);
+	pos = 0;
+      }
+      return true;
+    }
+
+    public int read() throws IOException {
+      if (!ensure()) {
+	return -1;
+      }
+      return cur[pos++] & 0xff;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+	return 0;
+      }
+      if (!ensure()) {
+	return -1;
+      }
+      int n = Math.min(len, cur.length - pos);
+      System.arraycopy(cur, pos, b, off, n);
+      pos += n;
+      return n;
+    }
+
+    public void close() {
+      if (iter != null) {
+	iter.release();
+	iter = null;
       }
     }
   }
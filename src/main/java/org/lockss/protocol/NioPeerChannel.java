@@ -0,0 +1,1200 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.protocol;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.StandardOpenOption;
+import javax.net.ssl.*;
+
+import org.lockss.util.*;
+import org.lockss.util.Queue;
+import org.lockss.util.time.Deadline;
+import org.lockss.util.time.TimeBase;
+
+/** A channel to a peer over a non-blocking SocketChannel.  All I/O is
+ * performed by the {@link NioStreamComm.SelectorThread} the channel is
+ * assigned to; other threads only enqueue messages and change state.  The
+ * state transitions, queueing and statistics are those of {@link
+ * BlockingPeerChannel}.
+ */
+class NioPeerChannel extends BlockingPeerChannel {
+  static Logger log = Logger.getLogger();
+
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  // Minimum buffer size, must hold a header and a peerid
+  static final int MIN_BUFFER_SIZE = 1024;
+
+  private enum RcvState {HEADER, PEERID, DATA}
+
+  private final NioStreamComm scomm;
+  private final NioStreamComm.SelectorThread selThread;
+  private volatile SocketChannel sc;
+  private SelectionKey key;
+  private Transport transport;
+  private volatile boolean handshakeDone = false;
+  private long connectStart = 0;
+  private long handshakeStart = 0;
+  private long openTime = 0;
+  private long drainStart = 0;
+
+  // Receive side.  rcvBuf is always in write mode between calls.
+  private ByteBuffer rcvBuf;
+  private RcvState rcvState = RcvState.HEADER;
+  private int rcvPos = 0;		// header or peerid bytes received
+  private long rcvLen;
+  private long rcvRemaining;
+  private long rcvStartTime;
+  private PeerMessage rcvMsg;
+  private OutputStream rcvMsgOut;
+  private volatile boolean inputClosed = false;
+
+  // Send side.  outBuf is the buffer being written, either sendBuf or
+  // (for file-backed messages sent over SSL) the direct fileBuf.  Both are
+  // always in read mode between calls.
+  private ByteBuffer sendBuf;
+  private ByteBuffer fileBuf;
+  private ByteBuffer outBuf;
+  private byte[] sndHeader = new byte[HEADER_LEN];
+  private boolean peerIdSent = false;
+  private volatile PeerMessage sendMsg;
+  private InputStream sendMsgIn;
+  private FileChannel sendFile;
+  private long sendFilePos;
+  private long sendRemaining;
+  private long sendStartTime;
+  private long sendStartNanos;
+  private long sendCpuNanos;
+  private long writeCpuStart;
+  private boolean outputShutdown = false;
+
+  /** Create a channel to be connected to the peer; doesn't attempt to
+   * connect (yet)
+   * @param scomm parent stream comm
+   * @param peer the peer to talk to
+   * @param selThread the thread that will perform the channel's I/O
+   */
+  NioPeerChannel(NioStreamComm scomm, PeerIdentity peer,
+		 NioStreamComm.SelectorThread selThread) {
+    super(scomm, peer);
+    this.scomm = scomm;
+    this.selThread = selThread;
+  }
+
+  /** Create a channel from an existing (incoming) connection.  The peer
+   * identity is not yet known.
+   * @param scomm parent stream comm
+   * @param sc the non-blocking SocketChannel open to the peer
+   * @param selThread the thread that will perform the channel's I/O
+   */
+  NioPeerChannel(NioStreamComm scomm, SocketChannel sc,
+		 NioStreamComm.SelectorThread selThread) {
+    super(scomm, sc.socket());
+    this.scomm = scomm;
+    this.selThread = selThread;
+    this.sc = sc;
+  }
+
+  // Entry points from NioStreamComm and BlockingStreamComm.PeerData
+
+  /** Start a non-blocking connect to the peer.
+   */
+  @Override
+  public void startOriginate() throws IOException {
+    isOriginate = true;
+    pad = getPeer().getPeerAddress();
+    if (!(pad instanceof PeerAddress.Tcp)) {
+      throw new IllegalArgumentException("Wrong type of PeerAddress: " + pad);
+    }
+    if (stateTrans(ChannelState.INIT, ChannelState.CONNECTING,
+		   "startOriginate")) {
+      connectStart = TimeBase.nowMs();
+      selThread.execute(new Runnable() {
+	  public void run() {
+	    connect();
+	  }});
+    }
+  }
+
+  /** Start the channel in response to an incoming connection
+   */
+  @Override
+  public void startIncoming() {
+    if (stateTrans(ChannelState.ACCEPTED, ChannelState.STARTING,
+		   "startIncoming")) {
+      selThread.execute(new Runnable() {
+	  public void run() {
+	    startConnectedChannel();
+	  }});
+    }
+  }
+
+  @Override
+  public boolean send(PeerMessage msg) {
+    if (!super.send(msg)) {
+      return false;
+    }
+    wakeWriter();
+    return true;
+  }
+
+  /** Enqueue all messages on queue to be sent */
+  @Override
+  public synchronized void enqueueMsgs(Queue queue) {
+    PeerMessage msg;
+    try {
+      while ((msg = (PeerMessage)queue.get(Deadline.EXPIRED)) != null) {
+	if (log.isDebug3()) log.debug3("Enqueued " + msg);
+	sendQueue.put(msg);
+      }
+    } catch (InterruptedException e) {
+      log.critical("Impossible");
+    }
+    wakeWriter();
+  }
+
+  @Override
+  void stopChannel(boolean abort, String msg, Throwable t) {
+    super.stopChannel(abort, msg, t);
+    if (isClosed()) {
+      // Close now so the peer sees it promptly, release the rest in the
+      // selector thread
+      IOUtil.safeClose(sc);
+      selThread.execute(new Runnable() {
+	  public void run() {
+	    releaseResources();
+	  }});
+    }
+  }
+
+  /** Ask the selector thread to recompute the channel's interest set,
+   * which will start sending if there's anything queued */
+  private void wakeWriter() {
+    selThread.execute(new Runnable() {
+	public void run() {
+	  updateInterest();
+	}});
+  }
+
+  // Everything below runs in the selector thread
+
+  /** Open a SocketChannel and start connecting to the peer
+   */
+  void connect() {
+    if (!isState(ChannelState.CONNECTING)) {
+      // aborted before we got here
+      return;
+    }
+    PeerAddress.Tcp tpad = (PeerAddress.Tcp)pad;
+    try {
+      sc = SocketChannel.open();
+      sc.configureBlocking(false);
+      String bindAddr = scomm.getBindAddr();
+      if (scomm.isSendFromBindAddr() && bindAddr != null) {
+	sc.socket().bind(new InetSocketAddress(InetAddress.getByName(bindAddr),
+					       0));
+      }
+      scomm.setupOpenSocket(sc.socket());
+      key = selThread.register(sc, SelectionKey.OP_CONNECT, this);
+      if (sc.connect(new InetSocketAddress(tpad.getIPAddr().getInetAddr(),
+					   tpad.getPort()))) {
+	connected();
+      }
+    } catch (IOException e) {
+      connectFailed(e);
+    }
+  }
+
+  /** Complete a pending connect */
+  void finishConnect() {
+    try {
+      if (!sc.finishConnect()) {
+	return;
+      }
+    } catch (IOException e) {
+      connectFailed(e);
+      return;
+    }
+    connected();
+  }
+
+  private void connected() {
+    didOpen = true;
+    log.debug2("Connected to " + getPeer());
+    if (stateTrans(ChannelState.CONNECTING, ChannelState.STARTING)) {
+      startConnectedChannel();
+    }
+  }
+
+  private void connectFailed(IOException e) {
+    if (e instanceof SocketException) {
+      connectException = e;
+    }
+    stateTrans(ChannelState.CONNECTING, ChannelState.DISSOCIATING);
+    abortChannel("Connect failed to " + getPeer() + ": " + e.toString());
+    stateTrans(ChannelState.DISSOCIATING, ChannelState.CONNECT_FAIL);
+  }
+
+  /** Set up buffers and transport, register for I/O and start the SSL
+   * handshake, if any.  The peerid message is sent once the handshake is
+   * complete.
+   */
+  private void startConnectedChannel() {
+    if (!stateTrans(ChannelState.STARTING, ChannelState.OPEN)) {
+      // aborted before we got here
+      return;
+    }
+    try {
+      transport = newTransport();
+      int bufSize = Math.max(MIN_BUFFER_SIZE, scomm.getBufferSize());
+      rcvBuf = ByteBuffer.allocate(Math.max(bufSize,
+					    transport.getAppBufferSize()));
+      sendBuf = ByteBuffer.allocate(bufSize);
+      sendBuf.flip();
+      outBuf = sendBuf;
+      handshakeStart = TimeBase.nowMs();
+      if (key == null) {
+	key = selThread.register(sc, 0, this);
+      }
+      continueHandshake();
+      updateInterest();
+    } catch (Exception e) {
+      handleException(e);
+    }
+  }
+
+  private Transport newTransport() throws IOException {
+    Socket sock = sc.socket();
+    SSLEngine engine =
+      scomm.newSslEngine(isOriginate(),
+			 sock.getInetAddress().getHostAddress(),
+			 sock.getPort());
+    if (engine == null) {
+      return new PlainTransport();
+    }
+    return new SslTransport(engine);
+  }
+
+  private void continueHandshake() throws IOException {
+    if (transport.handshake(rcvBuf)) {
+      handshakeDone = true;
+      openTime = TimeBase.nowMs();
+      transport.verify();
+      // Data may have arrived along with the end of the handshake
+      handleRead();
+      if (!isClosed()) {
+	handleWrite();
+      }
+    }
+  }
+
+  /** Called by the selector thread when the channel's key is selected */
+  void handleSelected(SelectionKey k) {
+    try {
+      if (k.isValid() && k.isConnectable()) {
+	finishConnect();
+      } else if (!handshakeDone) {
+	if (transport != null) {
+	  continueHandshake();
+	}
+      } else {
+	if (k.isValid() && k.isReadable()) {
+	  handleRead();
+	}
+	if (k.isValid() && k.isWritable() && !isClosed()) {
+	  handleWrite();
+	}
+      }
+      updateInterest();
+    } catch (Exception e) {
+      handleException(e);
+    }
+  }
+
+  /** Set the interest ops appropriate to the channel's current state */
+  void updateInterest() {
+    SelectionKey k = key;
+    if (k == null || !k.isValid() || isClosed()) {
+      return;
+    }
+    int ops = 0;
+    if (isState(ChannelState.CONNECTING)) {
+      ops = SelectionKey.OP_CONNECT;
+    } else if (transport != null) {
+      if (!inputClosed) {
+	ops |= SelectionKey.OP_READ;
+      }
+      if (wantsWrite()) {
+	ops |= SelectionKey.OP_WRITE;
+      }
+    }
+    if (k.interestOps() != ops) {
+      k.interestOps(ops);
+    }
+  }
+
+  private boolean wantsWrite() {
+    if (transport.hasPendingOutput() || outBuf.hasRemaining()) {
+      return true;
+    }
+    if (!handshakeDone || outputShutdown) {
+      return false;
+    }
+    return !peerIdSent || sendMsg != null || !isSendIdle();
+  }
+
+  /** Abort the channel in response to an exception in the selector
+   * thread */
+  private void handleException(Exception e) {
+    if (e instanceof SSLPeerUnverifiedException) {
+      // Warning already issued by verifySslSession()
+      Socket sock = sc.socket();
+      log.debug2("Not verified: " +
+		 sock.getInetAddress() + ":" + sock.getPort());
+      abortChannel();
+    } else if (e instanceof SocketException
+	       || e instanceof ClosedChannelException) {
+      // Expected when closing
+      if (isClosed()) {
+	abortChannel();
+      } else {
+	abortChannel("Channel I/O: " + e.toString());
+      }
+    } else if (e instanceof IOException) {
+      if (log.isDebug3()) {
+	abortChannel("Channel I/O", e);
+      } else {
+	abortChannel("Channel I/O: " + e.toString());
+      }
+    } else {
+      abortChannel("Channel I/O", e);
+    }
+  }
+
+  /** Check for connect, handshake, idle and drain timeouts.  Called
+   * periodically by the selector thread */
+  void checkTimers() {
+    switch (getState()) {
+    case CONNECTING:
+      if (TimeBase.msSince(connectStart) > scomm.getConnectTimeout()) {
+	connectFailed(new ConnectException("Connect timed out"));
+      }
+      return;
+    case OPEN:
+      if (!handshakeDone) {
+	if (transport != null &&
+	    TimeBase.msSince(handshakeStart) >
+	    scomm.absTimeout(scomm.getSslHandshakeTimeout())) {
+	  abortChannel(p()+"SSL handshake timed out");
+	}
+	return;
+      }
+      if (isSendIdle() && sendMsg == null &&
+	  TimeBase.msSince(Math.max(lastActiveTime, openTime)) >
+	  scomm.getChannelIdleTime()) {
+	closeIdle();
+      }
+      return;
+    case DRAIN_INPUT:
+      if (TimeBase.msSince(drainStart) >= scomm.getDrainInputTime() / 2 &&
+	  TimeBase.msSince(lastActiveTime) > scomm.getDrainInputTime()) {
+	abortChannel(p()+"Aborting DRAIN_INPUT");
+      }
+      return;
+    default:
+    }
+  }
+
+  /** Channel has been idle long enough to close.  Shut down output only,
+   * in case the peer is now sending a message */
+  private void closeIdle() {
+    if (notStateTrans(stopIgnStates, ChannelState.DRAIN_INPUT)) {
+      // No longer can send messages so must dissociate now
+      scomm.dissociateChannelFromPeer(this, getPeer(), null);
+      drainStart = TimeBase.nowMs();
+      try {
+	log.debug2("Shutdown output");
+	transport.shutdownOutput();
+	outputShutdown = true;
+	updateInterest();
+      } catch (IOException e) {
+	abortChannel("shutdownOutput", e);
+      }
+    }
+  }
+
+  /** Release buffers, partially received message, etc.  Called in the
+   * selector thread after the channel has been closed. */
+  void releaseResources() {
+    SelectionKey k = key;
+    if (k != null) {
+      k.cancel();
+    }
+    selThread.unregister(this);
+    IOUtil.safeClose(sc);
+    if (rcvMsg != null) {
+      IOUtil.safeClose(rcvMsgOut);
+      rcvMsg.delete();
+      rcvMsg = null;
+      rcvMsgOut = null;
+    }
+    if (sendMsgIn != null) {
+      IOUtil.safeClose(sendMsgIn);
+      sendMsgIn = null;
+    }
+    if (sendFile != null) {
+      IOUtil.safeClose(sendFile);
+      sendFile = null;
+    }
+    fileBuf = null;
+    sendMsg = null;
+    if (transport != null) {
+      transport.close();
+    }
+  }
+
+  // Message reception
+
+  /** Read and process whatever input is available */
+  void handleRead() throws IOException {
+    while (!inputClosed && !isClosed()) {
+      int n = transport.read(rcvBuf);
+      if (rcvBuf.position() > 0) {
+	rcvBuf.flip();
+	processInput(rcvBuf);
+	rcvBuf.clear();
+      }
+      if (n < 0) {
+	inputEnded();
+	return;
+      }
+      if (n == 0) {
+	return;
+      }
+    }
+  }
+
+  /** Input stream closed by peer, drain output if necessary */
+  private void inputEnded() throws IOException {
+    if (rcvState != RcvState.HEADER || rcvPos != 0) {
+      throw new ProtocolException("Connection closed in middle of message");
+    }
+    if (log.isDebug2()) log.debug2(p()+"Input closed");
+    inputClosed = true;
+    synchronized (stateLock) {
+      if (!isSendIdle() && isOpen()) {
+	stateTrans(ChannelState.OPEN, ChannelState.DRAIN_OUTPUT);
+      } else {
+	notStateTrans(stopIgnStates, ChannelState.NEED_CLOSE);
+      }
+    }
+    if (isState(ChannelState.NEED_CLOSE)) {
+      stopChannel();
+    }
+  }
+
+  /** Consume all the bytes in buf, dispatching completed messages */
+  void processInput(ByteBuffer buf) throws IOException {
+    while (buf.hasRemaining() && !isClosed()) {
+      int n;
+      switch (rcvState) {
+      case HEADER:
+	n = Math.min(buf.remaining(), HEADER_LEN - rcvPos);
+	buf.get(rcvHeader, rcvPos, n);
+	rcvPos += n;
+	rcvdBytes(n);
+	if (rcvPos == HEADER_LEN) {
+	  rcvPos = 0;
+	  processHeader();
+	}
+	break;
+      case PEERID:
+	n = (int)Math.min(buf.remaining(), rcvRemaining);
+	buf.get(peerbuf, rcvPos, n);
+	rcvPos += n;
+	rcvRemaining -= n;
+	rcvdBytes(n);
+	if (rcvRemaining == 0) {
+	  int plen = rcvPos;
+	  rcvPos = 0;
+	  rcvState = RcvState.HEADER;
+	  handlePeerId(new String(peerbuf, 0, plen));
+	}
+	break;
+      case DATA:
+	n = (int)Math.min(buf.remaining(), rcvRemaining);
+	rcvMsgOut.write(buf.array(), buf.arrayOffset() + buf.position(), n);
+	buf.position(buf.position() + n);
+	rcvRemaining -= n;
+	stats.getInCount().addBytes(n);
+	lastActiveTime = TimeBase.nowMs();
+	if (rcvRemaining == 0) {
+	  finishRcvdMessage();
+	}
+	break;
+      }
+    }
+  }
+
+  private void rcvdBytes(int n) {
+    lastRcvTime = lastActiveTime = TimeBase.nowMs();
+    stats.rcvdBytes(n);
+  }
+
+  /** Act on a complete header in rcvHeader */
+  private void processHeader() throws IOException {
+    if (rcvHeader[HEADER_OFF_CHECK] != HEADER_CHECK) {
+      throw new ProtocolException("Message doesn't start with " +
+				  HEADER_CHECK);
+    }
+    int op = getRcvdMessageOp();
+    if (getPeer() == null && op != OP_PEERID) {
+      throw new ProtocolException("Didn't receive peerid first: " + op);
+    }
+    long len;
+    switch (op) {
+    case OP_PEERID:
+      len = getRcvdMessageLength();
+      if (len > MAX_PEERID_LEN) {
+	String msg = "Peerid too long: " + len;
+	log.warning(msg);
+	throw new ProtocolException(msg);
+      }
+      if (len < 0) {
+	String msg = "No data in Peerid message";
+	log.warning(msg);
+	throw new ProtocolException(msg);
+      }
+      if (len == 0) {
+	handlePeerId("");
+      } else {
+	rcvRemaining = len;
+	rcvState = RcvState.PEERID;
+      }
+      break;
+    case OP_DATA:
+      len = getRcvdMessageLength();
+      rcvStartTime = 0;
+      if (len >= scomm.getMinMeasuredMessageSize()) {
+	rcvStartTime = TimeBase.nowMs();
+      }
+      rcvMsg = newRcvdMessage();
+      rcvMsgOut = rcvMsg.getOutputStream();
+      rcvLen = len;
+      rcvRemaining = len;
+      rcvState = RcvState.DATA;
+      if (rcvRemaining <= 0) {
+	finishRcvdMessage();
+      }
+      break;
+    case OP_CLOSE:
+      // Not implemented yet
+      break;
+    default:
+      String msg = "Received unknown opcode: " + op;
+      if (scomm.getAbortOnUnknownOp()) {
+	throw new ProtocolException(msg);
+      } else {
+	log.debug(msg);
+      }
+    }
+  }
+
+  private void finishRcvdMessage() throws IOException {
+    PeerMessage msg = rcvMsg;
+    OutputStream msgOut = rcvMsgOut;
+    rcvMsg = null;
+    rcvMsgOut = null;
+    rcvState = RcvState.HEADER;
+    try {
+      logRate("Rcv", rcvLen, rcvStartTime);
+      msgOut.close();
+    } catch (IOException e) {
+      msg.delete();
+      throw e;
+    }
+    rcvdMessage(msg);
+  }
+
+  // Message sending
+
+  /** Send the peerid message, then data messages as they become available
+   * on the send queue, until the socket won't accept more */
+  void handleWrite() throws IOException {
+    writeCpuStart = ChannelStats.currentThreadCpuNanos();
+    try {
+      writeAvailable();
+    } finally {
+      if (sendMsg != null) {
+	chargeSendCpu();
+      }
+    }
+  }
+
+  private void writeAvailable() throws IOException {
+    while (!isClosed()) {
+      if (outBuf.hasRemaining()) {
+	if (!transport.write(outBuf)) {
+	  return;
+	}
+      } else if (!transport.flush()) {
+	return;
+      }
+      if (outputShutdown) {
+	return;
+      }
+      if (sendMsg != null) {
+	if (sendRemaining > 0) {
+	  if (sendFile == null) {
+	    fillFromMsg();
+	  } else if (transport.canTransferFile()) {
+	    if (!transferFromFile()) {
+	      return;
+	    }
+	  } else {
+	    fillFromFile();
+	  }
+	} else if (!finishSentMessage()) {
+	  return;
+	}
+	continue;
+      }
+      if (!peerIdSent) {
+	stagePeerId();
+	continue;
+      }
+      PeerMessage msg = (PeerMessage)sendQueue.peek();
+      if (msg == null) {
+	synchronized (stateLock) {
+	  // if draining output and nothing left to send, close.
+	  if (isSendIdle()) {
+	    stateTrans(ChannelState.DRAIN_OUTPUT, ChannelState.NEED_CLOSE);
+	  }
+	}
+	if (isState(ChannelState.NEED_CLOSE)) {
+	  stopChannel();
+	}
+	return;
+      }
+      startMessage(msg);
+    }
+  }
+
+  private void stagePeerId() {
+    String key = scomm.getMyTransportPeerId().getIdString();
+    if (log.isDebug3()) log.debug3("Sending peerid: " + key);
+    sendBuf.clear();
+    putHeader(OP_PEERID, key.length(), 0);
+    sendBuf.put(key.getBytes());
+    sendBuf.flip();
+    outBuf = sendBuf;
+    stats.sentBytes(key.length());
+    peerIdSent = true;
+  }
+
+  private void startMessage(PeerMessage msg) throws IOException {
+    lastSendTime = lastActiveTime = TimeBase.nowMs();
+    msg.setLastRetry(lastSendTime);
+    long len = msg.getDataSize();
+    if (log.isDebug3()) log.debug3("Sending data: " + msg.getProtocol() +
+				   ", len: " + len);
+    sendStartTime = 0;
+    if (len >= scomm.getMinMeasuredMessageSize()) {
+      sendStartTime = TimeBase.nowMs();
+    }
+    sendStartNanos = System.nanoTime();
+    writeCpuStart = ChannelStats.currentThreadCpuNanos();
+    sendCpuNanos = 0;
+    sendBuf.clear();
+    putHeader(OP_DATA, len, msg.getProtocol());
+    sendBuf.flip();
+    outBuf = sendBuf;
+    sendMsg = msg;
+    if (msg instanceof FilePeerMessage && scomm.isZeroCopySend()) {
+      // Send the body straight from the file: with transferTo() if the
+      // transport allows it, else through a direct buffer
+      File file = ((FilePeerMessage)msg).getDataFile();
+      sendFile = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      sendFilePos = 0;
+      if (sendFile.size() < len) {
+	throw new ProtocolException("Message file shorter than message: "
+				    + file);
+      }
+    } else {
+      sendMsgIn = msg.getInputStream();
+    }
+    sendRemaining = len;
+  }
+
+  private void fillFromMsg() throws IOException {
+    sendBuf.clear();
+    int n = sendMsgIn.read(sendBuf.array(), 0,
+			   (int)Math.min(sendBuf.capacity(), sendRemaining));
+    if (n < 0) {
+      throw new ProtocolException("Connection closed in middle of message");
+    }
+    sendBuf.position(n);
+    sendBuf.flip();
+    outBuf = sendBuf;
+    sentBody(n);
+  }
+
+  /** Read the next chunk of the message file into fileBuf */
+  private void fillFromFile() throws IOException {
+    if (fileBuf == null) {
+      fileBuf = ByteBuffer.allocateDirect(Math.max(sendBuf.capacity(),
+						   scomm.getFileSendBufferSize()));
+    }
+    fileBuf.clear();
+    if (sendRemaining < fileBuf.capacity()) {
+      fileBuf.limit((int)sendRemaining);
+    }
+    int n = sendFile.read(fileBuf, sendFilePos);
+    if (n < 0) {
+      throw new ProtocolException("Message file ended in middle of message");
+    }
+    fileBuf.flip();
+    outBuf = fileBuf;
+    sendFilePos += n;
+    sentBody(n);
+  }
+
+  /** Transfer as much of the message file as the socket will accept.
+   * @return false if the socket accepted nothing */
+  private boolean transferFromFile() throws IOException {
+    long n = transport.transferFile(sendFile, sendFilePos, sendRemaining);
+    if (n <= 0) {
+      return false;
+    }
+    sendFilePos += n;
+    sentBody(n);
+    return true;
+  }
+
+  private void sentBody(long n) {
+    sendRemaining -= n;
+    stats.getOutCount().addBytes(n);
+    lastActiveTime = TimeBase.nowMs();
+  }
+
+  /** Add the CPU time used since writeCpuStart to the current message */
+  private void chargeSendCpu() {
+    long now = ChannelStats.currentThreadCpuNanos();
+    sendCpuNanos += now - writeCpuStart;
+    writeCpuStart = now;
+  }
+
+  /** The current message has been completely written; remove it from the
+   * send queue.
+   * @return false if the channel is now closing */
+  private boolean finishSentMessage() throws IOException {
+    PeerMessage msg = sendMsg;
+    IOUtil.safeClose(sendMsgIn);
+    IOUtil.safeClose(sendFile);
+    chargeSendCpu();
+    stats.sentTimed(msg.getDataSize(), System.nanoTime() - sendStartNanos,
+		    sendCpuNanos);
+    sendMsg = null;
+    sendMsgIn = null;
+    sendFile = null;
+    countSentMsg();
+    logRate("Send", msg.getDataSize(), sendStartTime);
+    try {
+      // remove the message just sent
+      if (msg != sendQueue.get(Deadline.EXPIRED)) {
+	throw new IllegalStateException("Send queue not behaving as FIFO");
+      }
+    } catch (InterruptedException e) {
+      // can't happen (get doesn't wait)
+    }
+    scomm.countMessageRetries(msg);
+    msg.delete();
+    lastSendTime = lastActiveTime = TimeBase.nowMs();
+    synchronized (stateLock) {
+      // if draining output and nothing left to send, close.
+      if (isSendIdle()) {
+	stateTrans(ChannelState.DRAIN_OUTPUT, ChannelState.NEED_CLOSE);
+      }
+    }
+    if (isState(ChannelState.NEED_CLOSE)) {
+      stopChannel();
+      return false;
+    }
+    return true;
+  }
+
+  /** Put a message header in sendBuf */
+  private void putHeader(int op, long len, int proto) {
+    sndHeader[HEADER_OFF_CHECK] = HEADER_CHECK;
+    sndHeader[HEADER_OFF_OP] = (byte)op;
+    ByteArray.encodeLong(len, sndHeader, HEADER_OFF_LEN);
+    ByteArray.encodeInt(proto, sndHeader, HEADER_OFF_PROTO);
+    sendBuf.put(sndHeader);
+    stats.sentBytes(HEADER_LEN);
+  }
+
+  // Status
+
+  @Override
+  boolean hasConnecter() {
+    return isState(ChannelState.CONNECTING);
+  }
+
+  @Override
+  boolean hasReader() {
+    return handshakeDone && !inputClosed && !isClosed();
+  }
+
+  @Override
+  boolean hasWriter() {
+    return !isClosed() && (sendMsg != null || !isSendIdle());
+  }
+
+  public String toString() {
+    return "[NChan(" + getState() + "): " +
+      (getPeer() != null ? getPeer().toString() : "(none)")
+      + "]";
+  }
+
+  /** Moves plaintext between the channel's buffers and the socket */
+  abstract class Transport {
+    /** Read available input into dst.
+     * @return number of bytes read, 0 if none available, -1 at EOF */
+    abstract int read(ByteBuffer dst) throws IOException;
+
+    /** Write as much of src as possible.
+     * @return true iff src and any previously buffered output have been
+     * completely written */
+    abstract boolean write(ByteBuffer src) throws IOException;
+
+    /** Write any buffered output.
+     * @return true iff nothing remains to be written */
+    boolean flush() throws IOException {
+      return true;
+    }
+
+    boolean hasPendingOutput() {
+      return false;
+    }
+
+    /** True if transferFile() may be used */
+    boolean canTransferFile() {
+      return false;
+    }
+
+    /** Write up to count bytes of the file, starting at pos, directly to
+     * the socket.
+     * @return the number of bytes written */
+    long transferFile(FileChannel fc, long pos, long count)
+	throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    /** Advance the handshake, if any.  Application data that arrives with
+     * the end of the handshake is put in dst
+     * @return true iff the handshake is complete */
+    boolean handshake(ByteBuffer dst) throws IOException {
+      return true;
+    }
+
+    /** Check the peer's credentials, if any, once the handshake is
+     * complete */
+    void verify() throws IOException {
+    }
+
+    abstract void shutdownOutput() throws IOException;
+
+    int getAppBufferSize() {
+      return 0;
+    }
+
+    void close() {
+    }
+  }
+
+  class PlainTransport extends Transport {
+    int read(ByteBuffer dst) throws IOException {
+      return sc.read(dst);
+    }
+
+    boolean write(ByteBuffer src) throws IOException {
+      sc.write(src);
+      return !src.hasRemaining();
+    }
+
+    boolean canTransferFile() {
+      return true;
+    }
+
+    long transferFile(FileChannel fc, long pos, long count)
+	throws IOException {
+      return fc.transferTo(pos, count, sc);
+    }
+
+    void shutdownOutput() throws IOException {
+      sc.socket().shutdownOutput();
+    }
+  }
+
+  /** Runs an SSLEngine over the SocketChannel.  netIn is always in write
+   * mode, netOut in read mode, between calls. */
+  class SslTransport extends Transport {
+    private final SSLEngine engine;
+    private ByteBuffer netIn;
+    private ByteBuffer netOut;
+    private boolean inboundClosed = false;
+    private boolean outboundClosing = false;
+
+    SslTransport(SSLEngine engine) throws IOException {
+      this.engine = engine;
+      int packetSize = engine.getSession().getPacketBufferSize();
+      netIn = ByteBuffer.allocate(packetSize);
+      netOut = ByteBuffer.allocate(packetSize);
+      netOut.flip();
+      engine.beginHandshake();
+    }
+
+    int getAppBufferSize() {
+      return engine.getSession().getApplicationBufferSize();
+    }
+
+    boolean hasPendingOutput() {
+      return netOut.hasRemaining()
+	|| (outboundClosing && !engine.isOutboundDone());
+    }
+
+    boolean flush() throws IOException {
+      while (true) {
+	if (netOut.hasRemaining()) {
+	  sc.write(netOut);
+	  if (netOut.hasRemaining()) {
+	    return false;
+	  }
+	}
+	if (!outboundClosing || engine.isOutboundDone()) {
+	  return true;
+	}
+	wrapCloseNotify();
+      }
+    }
+
+    /** Wrap the close_notify alert into netOut, which must be empty */
+    private void wrapCloseNotify() throws IOException {
+      netOut.clear();
+      SSLEngineResult res;
+      try {
+	res = engine.wrap(EMPTY, netOut);
+      } finally {
+	netOut.flip();
+      }
+      if (res.bytesProduced() == 0 && !engine.isOutboundDone()) {
+	throw new SSLException("Couldn't wrap close_notify: " + res);
+      }
+    }
+
+    /** Wrap src into netOut, which must be empty */
+    private SSLEngineResult wrap(ByteBuffer src) throws IOException {
+      netOut.clear();
+      SSLEngineResult res;
+      try {
+	res = engine.wrap(src, netOut);
+      } finally {
+	netOut.flip();
+      }
+      switch (res.getStatus()) {
+      case CLOSED:
+	throw new SSLException("SSLEngine closed");
+      case BUFFER_OVERFLOW:
+	netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+	netOut.flip();
+	break;
+      default:
+      }
+      runDelegatedTasks();
+      return res;
+    }
+
+    /** Unwrap as much of netIn as possible into dst */
+    private SSLEngineResult unwrap(ByteBuffer dst) throws IOException {
+      netIn.flip();
+      SSLEngineResult res;
+      try {
+	res = engine.unwrap(netIn, dst);
+      } finally {
+	netIn.compact();
+      }
+      if (res.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW
+	  && !netIn.hasRemaining()) {
+	// Record larger than buffer
+	int size = engine.getSession().getPacketBufferSize();
+	ByteBuffer bigger =
+	  ByteBuffer.allocate(Math.max(size, netIn.capacity() * 2));
+	netIn.flip();
+	bigger.put(netIn);
+	netIn = bigger;
+      }
+      runDelegatedTasks();
+      return res;
+    }
+
+    private void runDelegatedTasks() {
+      Runnable task;
+      while ((task = engine.getDelegatedTask()) != null) {
+	task.run();
+      }
+    }
+
+    boolean handshake(ByteBuffer dst) throws IOException {
+      while (true) {
+	switch (engine.getHandshakeStatus()) {
+	case NOT_HANDSHAKING:
+	case FINISHED:
+	  return flush();
+	case NEED_TASK:
+	  runDelegatedTasks();
+	  break;
+	case NEED_WRAP:
+	  if (!flush()) {
+	    return false;
+	  }
+	  wrap(EMPTY);
+	  if (!flush()) {
+	    return false;
+	  }
+	  break;
+	case NEED_UNWRAP:
+	default:
+	  if (!flush()) {
+	    return false;
+	  }
+	  SSLEngineResult res = unwrap(dst);
+	  switch (res.getStatus()) {
+	  case BUFFER_UNDERFLOW:
+	    int n = sc.read(netIn);
+	    if (n < 0) {
+	      throw new EOFException("Connection closed during SSL handshake");
+	    }
+	    if (n == 0) {
+	      return false;
+	    }
+	    break;
+	  case BUFFER_OVERFLOW:
+	    throw new SSLException("No room for data during SSL handshake");
+	  case CLOSED:
+	    throw new SSLException("Connection closed during SSL handshake");
+	  default:
+	  }
+	}
+      }
+    }
+
+    void verify() throws IOException {
+      scomm.verifySslSession(engine, sc.socket());
+    }
+
+    int read(ByteBuffer dst) throws IOException {
+      int n = inboundClosed ? -1 : sc.read(netIn);
+      int produced = 0;
+      loop:
+      while (netIn.position() > 0 && dst.hasRemaining() && !inboundClosed) {
+	SSLEngineResult res = unwrap(dst);
+	produced += res.bytesProduced();
+	switch (res.getStatus()) {
+	case CLOSED:
+	  inboundClosed = true;
+	  break loop;
+	case BUFFER_UNDERFLOW:
+	case BUFFER_OVERFLOW:
+	  break loop;
+	default:
+	  if (res.bytesConsumed() == 0 && res.bytesProduced() == 0) {
+	    break loop;
+	  }
+	}
+	// A post-handshake message (e.g., key update) may require a reply
+	if (engine.getHandshakeStatus() ==
+	    SSLEngineResult.HandshakeStatus.NEED_WRAP
+	    && !hasPendingOutput()) {
+	  wrap(EMPTY);
+	  flush();
+	}
+      }
+      if (produced > 0) {
+	return produced;
+      }
+      if (inboundClosed) {
+	return -1;
+      }
+      if (n < 0) {
+	try {
+	  engine.closeInbound();
+	} catch (SSLException e) {
+	  // Peer closed without close_notify
+	  log.debug3("closeInbound", e);
+	}
+	inboundClosed = true;
+	return -1;
+      }
+      return 0;
+    }
+
+    boolean write(ByteBuffer src) throws IOException {
+      while (true) {
+	if (!flush()) {
+	  return false;
+	}
+	if (!src.hasRemaining()) {
+	  return true;
+	}
+	wrap(src);
+      }
+    }
+
+    /** Send close_notify.  Any of it that doesn't fit in the socket is
+     * written by later flush()es.  Input remains open: a TLS 1.3 peer may
+     * go on sending; a TLS 1.2 peer closes its side on receipt, but
+     * records already in flight can still be read. */
+    void shutdownOutput() throws IOException {
+      outboundClosing = true;
+      engine.closeOutbound();
+      flush();
+    }
+
+    void close() {
+      engine.closeOutbound();
+    }
+  }
+}
@@ -0,0 +1,441 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.protocol;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.*;
+
+import org.lockss.util.*;
+import org.lockss.util.net.IPAddr;
+import org.lockss.util.time.Deadline;
+import org.lockss.util.time.TimeBase;
+import org.lockss.config.*;
+
+/**
+ * NioStreamComm implements the streaming message protocol using
+ * non-blocking SocketChannels (and SSLEngine, if V3 over SSL is enabled),
+ * serviced by a small, fixed set of selector threads, rather than the
+ * connecter, reader and writer threads BlockingStreamComm runs for each
+ * channel.  The wire format, send queueing and retry behavior, and
+ * channel statistics are the same as BlockingStreamComm's, so the two can
+ * talk to each other.  Enable on a node by setting
+ * <code>org.lockss.manager.org.lockss.protocol.LcapStreamComm</code> to
+ * <code>org.lockss.protocol.NioStreamComm</code>.
+ */
+public class NioStreamComm extends BlockingStreamComm {
+
+  static Logger log = Logger.getLogger();
+
+  static final String NIO_PREFIX = PREFIX + "nio.";
+
+  /** Number of selector threads servicing channels.  Set at startup. */
+  public static final String PARAM_SELECTOR_THREADS =
+    NIO_PREFIX + "selectorThreads";
+  public static final int DEFAULT_SELECTOR_THREADS = 2;
+
+  /** Interval at which selector threads check channel timers (connect,
+   * SSL handshake, idle and drain timeouts) */
+  public static final String PARAM_TIMER_INTERVAL =
+    NIO_PREFIX + "timerInterval";
+  public static final long DEFAULT_TIMER_INTERVAL = 1 * Constants.SECOND;
+
+  /** Size of each channel's send and receive buffers.  (SSL channels may
+   * use larger buffers if the session requires it.) */
+  public static final String PARAM_BUFFER_SIZE = NIO_PREFIX + "bufferSize";
+  public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+  static final String PRIORITY_PARAM_SELECTOR = "SSelector";
+  static final int PRIORITY_DEFAULT_SELECTOR = -1;
+
+  private int paramSelectorThreads = DEFAULT_SELECTOR_THREADS;
+  private long paramTimerInterval = DEFAULT_TIMER_INTERVAL;
+  private int paramBufferSize = DEFAULT_BUFFER_SIZE;
+
+  private SelectorThread[] selectors;
+  private AtomicInteger nextSelector = new AtomicInteger();
+  private ServerSocketChannel listenChannel;
+
+  public NioStreamComm() {
+    super();
+  }
+
+  @Override
+  public void setConfig(Configuration config,
+			Configuration prevConfig,
+			Configuration.Differences changedKeys) {
+    super.setConfig(config, prevConfig, changedKeys);
+    if (changedKeys.contains(NIO_PREFIX)) {
+      if (selectors == null) {
+	paramSelectorThreads = config.getInt(PARAM_SELECTOR_THREADS,
+					     DEFAULT_SELECTOR_THREADS);
+      }
+      paramTimerInterval = config.getTimeInterval(PARAM_TIMER_INTERVAL,
+						  DEFAULT_TIMER_INTERVAL);
+      paramBufferSize = config.getInt(PARAM_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+    }
+  }
+
+  int getBufferSize() {
+    return paramBufferSize;
+  }
+
+  long getTimerInterval() {
+    return paramTimerInterval;
+  }
+
+  /** Start the selector threads in place of the channel thread pool */
+  @Override
+  void startChannelPool() {
+    int n = Math.max(1, paramSelectorThreads);
+    log.debug2("Starting " + n + " selector threads");
+    selectors = new SelectorThread[n];
+    String id = getMyTransportPeerId().getIdString();
+    for (int ix = 0; ix < n; ix++) {
+      try {
+	selectors[ix] = new SelectorThread("SCommSelect-" + ix + ": " + id);
+      } catch (IOException e) {
+	throw new RuntimeException("Can't open selector", e);
+      }
+      selectors[ix].start();
+      selectors[ix].waitRunning();
+    }
+  }
+
+  /** Open a non-blocking listen channel, serviced by the first selector
+   * thread */
+  @Override
+  void openListenSocket(int port) throws IOException {
+    final ServerSocketChannel ssc = ServerSocketChannel.open();
+    try {
+      ssc.configureBlocking(false);
+      ssc.socket().setReuseAddress(true);
+      String bindAddr = getBindAddr();
+      InetSocketAddress sa = (bindAddr != null)
+	? new InetSocketAddress(InetAddress.getByName(bindAddr), port)
+	: new InetSocketAddress(port);
+      int backlog = getListenBacklog();
+      ssc.socket().bind(sa, backlog < 0 ? 0 : backlog);
+      if (isUseV3OverSsl()) {
+	if (getSslContext() == null) {
+	  throw new IOException("no SSL context");
+	}
+	log.debug("New SSL server channel: " + port +
+		  " clientAuth " + isSslClientAuth());
+      }
+    } catch (IOException e) {
+      IOUtil.safeClose(ssc);
+      throw e;
+    }
+    listenChannel = ssc;
+    final SelectorThread sel = selectors[0];
+    sel.execute(new Runnable() {
+	public void run() {
+	  try {
+	    sel.register(ssc, SelectionKey.OP_ACCEPT, null);
+	  } catch (IOException e) {
+	    log.critical("Can't register listen channel", e);
+	    IOUtil.safeClose(ssc);
+	  }
+	}});
+  }
+
+  /** Incoming connections are accepted by a selector thread, there is no
+   * listen thread */
+  @Override
+  void ensureListener() {
+  }
+
+  @Override
+  void stop() {
+    super.stop();
+    IOUtil.safeClose(listenChannel);
+    listenChannel = null;
+    if (selectors != null) {
+      Deadline timeout = null;
+      if (getWaitExit() > 0) {
+	timeout = Deadline.in(getWaitExit());
+      }
+      for (SelectorThread sel : selectors) {
+	stopThread(sel, timeout);
+      }
+      selectors = null;
+    }
+  }
+
+  @Override
+  BlockingPeerChannel newPeerChannel(PeerIdentity pid) throws IOException {
+    return new NioPeerChannel(this, pid, chooseSelector());
+  }
+
+  /** Assign channels to selector threads round-robin */
+  SelectorThread chooseSelector() throws IOException {
+    SelectorThread[] sels = selectors;
+    if (sels == null) {
+      throw new IOException("SComm not running");
+    }
+    int ix = (nextSelector.getAndIncrement() & Integer.MAX_VALUE) % sels.length;
+    return sels[ix];
+  }
+
+  SSLContext getSslContext() {
+    return sslContext;
+  }
+
+  /** Create an SSLEngine for a new channel, or return null if not using
+   * SSL */
+  SSLEngine newSslEngine(boolean isClient, String host, int port)
+      throws IOException {
+    if (!isUseV3OverSsl()) {
+      return null;
+    }
+    SSLContext ctx = getSslContext();
+    if (ctx == null) {
+      throw new IOException("no SSL context");
+    }
+    SSLEngine engine = ctx.createSSLEngine(host, port);
+    engine.setUseClientMode(isClient);
+    if (!isClient) {
+      engine.setNeedClientAuth(isSslClientAuth());
+    }
+    disableSelectedProtocols(engine);
+    return engine;
+  }
+
+  /** Check the peer's certificate once the SSL handshake is complete, if
+   * client authentication is in use */
+  void verifySslSession(SSLEngine engine, Socket sock)
+      throws SSLPeerUnverifiedException {
+    if (!isSslClientAuth()) {
+      return;
+    }
+    try {
+      SSLSession session = engine.getSession();
+      session.getPeerCertificates();
+      log.debug(session.getPeerHost() + " via " + session.getProtocol() +
+		" verified");
+    } catch (SSLPeerUnverifiedException ex) {
+      log.error(sock.getInetAddress() + ":" + sock.getPort() +
+		" not verified");
+      throw ex;
+    }
+  }
+
+  /** Accept pending connections on the listen channel and start channels
+   * for them.  Called by the selector thread servicing the listen
+   * channel. */
+  void acceptConnections(ServerSocketChannel ssc) {
+    while (true) {
+      SocketChannel sc;
+      try {
+	sc = ssc.accept();
+      } catch (IOException e) {
+	if (isRunning()) {
+	  log.warning("Channel listener", e);
+	}
+	return;
+      }
+      if (sc == null) {
+	return;
+      }
+      try {
+	processIncomingConnection(sc);
+      } catch (Exception e) {
+	log.warning("Channel listener", e);
+	IOUtil.safeClose(sc);
+      }
+    }
+  }
+
+  // overridable for testing
+  void processIncomingConnection(SocketChannel sc) throws IOException {
+    sc.configureBlocking(false);
+    Socket sock = sc.socket();
+    setupOpenSocket(sock);
+    log.debug2("Accepted connection from " +
+	       new IPAddr(sock.getInetAddress()));
+    NioPeerChannel chan =
+      new NioPeerChannel(this, sc, chooseSelector());
+    chan.startIncoming();
+  }
+
+  /** Thread that performs all I/O for the channels registered with its
+   * Selector, and runs their timers.  Other threads hand it work via
+   * {@link #execute(Runnable)}. */
+  class SelectorThread extends CommThread {
+    private volatile boolean goOn = true;
+    private final Selector selector;
+    private final java.util.Queue<Runnable> tasks =
+      new ConcurrentLinkedQueue<Runnable>();
+    private final Set<NioPeerChannel> channels =
+      new HashSet<NioPeerChannel>();
+    private long lastTimerCheck = 0;
+
+    SelectorThread(String name) throws IOException {
+      super(name);
+      selector = Selector.open();
+    }
+
+    public void lockssRun() {
+      setPriority(PRIORITY_PARAM_SELECTOR, PRIORITY_DEFAULT_SELECTOR);
+      triggerWDogOnExit(true);
+      startWDog(WDOG_PARAM_SCOMM, WDOG_DEFAULT_SCOMM);
+      nowRunning();
+
+      try {
+	while (goOn) {
+	  pokeWDog();
+	  runTasks();
+	  try {
+	    selector.select(Math.max(1, getTimerInterval()));
+	  } catch (IOException e) {
+	    log.error("select()", e);
+	    break;
+	  }
+	  if (!goOn) {
+	    break;
+	  }
+	  Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+	  while (iter.hasNext()) {
+	    SelectionKey key = iter.next();
+	    iter.remove();
+	    handleKey(key);
+	  }
+	  runTasks();
+	  if (TimeBase.msSince(lastTimerCheck) >= getTimerInterval()) {
+	    checkTimers();
+	    lastTimerCheck = TimeBase.nowMs();
+	  }
+	}
+      } finally {
+	closeAll();
+      }
+    }
+
+    private void handleKey(SelectionKey key) {
+      if (!key.isValid()) {
+	return;
+      }
+      Object att = key.attachment();
+      if (att instanceof NioPeerChannel) {
+	((NioPeerChannel)att).handleSelected(key);
+      } else if (key.channel() instanceof ServerSocketChannel) {
+	acceptConnections((ServerSocketChannel)key.channel());
+      }
+    }
+
+    private void runTasks() {
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+	try {
+	  task.run();
+	} catch (RuntimeException e) {
+	  log.error("Selector task threw", e);
+	}
+      }
+    }
+
+    private void checkTimers() {
+      for (NioPeerChannel chan : new ArrayList<NioPeerChannel>(channels)) {
+	chan.checkTimers();
+      }
+    }
+
+    private void closeAll() {
+      for (NioPeerChannel chan : new ArrayList<NioPeerChannel>(channels)) {
+	chan.abortChannel();
+      }
+      channels.clear();
+      for (SelectionKey key : selector.keys()) {
+	IOUtil.safeClose(key.channel());
+      }
+      IOUtil.safeClose(selector);
+      // Run anything that was handed to us after we stopped
+      runTasks();
+    }
+
+    /** Run the task in this thread.  If the thread has exited the task
+     * is run immediately in the caller's thread */
+    void execute(Runnable task) {
+      tasks.add(task);
+      if (isAlive() && goOn) {
+	selector.wakeup();
+      } else {
+	runTasks();
+      }
+    }
+
+    /** Register a SelectableChannel with this thread's selector.  Must be
+     * called in this thread.
+     * @param ch the channel
+     * @param ops initial interest set
+     * @param chan the NioPeerChannel to notify when ch is selected, or
+     * null for the listen channel
+     * @return the SelectionKey
+     * @throws IOException if the channel is closed or this thread has
+     * stopped
+     */
+    SelectionKey register(SelectableChannel ch, int ops, NioPeerChannel chan)
+	throws IOException {
+      if (!goOn) {
+	throw new IOException("Selector thread stopped");
+      }
+      try {
+	SelectionKey key = ch.register(selector, ops, chan);
+	if (chan != null) {
+	  channels.add(chan);
+	}
+	return key;
+      } catch (ClosedSelectorException e) {
+	throw new IOException("Selector closed");
+      }
+    }
+
+    /** Called by the channel (in this thread) when it's done with its
+     * SocketChannel */
+    void unregister(NioPeerChannel chan) {
+      channels.remove(chan);
+    }
+
+    void stopCommThread() {
+      stopWDog();
+      triggerWDogOnExit(false);
+      goOn = false;
+      selector.wakeup();
+    }
+  }
+}
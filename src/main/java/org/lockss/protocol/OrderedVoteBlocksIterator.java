@@ -107,6 +107,29 @@ public class OrderedVoteBlocksIterator implements VoteBlocksIterator {
     return iterator.peek(); 
   }
 
+  /**
+   * Advance the iterator to url.  The wrapped iterator's seek() is used
+   * only if its blocks are known to be in order; otherwise each block
+   * skipped is checked.
+   * @throws OrderException if blocks are detected to be out of order.
+   */
+  @Override public void seek(String url) throws IOException {
+    check();
+    if (iterator.isKnownOrdered()) {
+      iterator.seek(url);
+      return;
+    }
+    VoteBlock vb;
+    while ((vb = peek()) != null &&
+	   VoteBlock.compareUrls(vb.getUrl(), url) < 0) {
+      next();
+    }
+  }
+
+  @Override public boolean isKnownOrdered() throws IOException {
+    return iterator.isKnownOrdered();
+  }
+
   /** Release any resources held by the iterator */
   @Override public void release() {
     iterator.release(); 
@@ -28,6 +28,8 @@ package org.lockss.protocol;
 
 import java.util.*;
 import java.io.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
 
 import org.mortbay.util.*;
 
@@ -131,6 +133,120 @@ public class VoteBlock implements LockssSerializable {
     props.putEncodedPropertyList(VB_VERSIONS, vers);
     return props.encode();
   }
+
+  // Compact binary encoding, used by DiskVoteBlocks.  All numbers are
+  // big-endian:
+  //   int url length (-1 if null), url (UTF-8)
+  //   byte vote type
+  //   int version count, then for each version:
+  //     long filtered offset, filtered length,
+  //          unfiltered offset, unfiltered length
+  //     byte hash error
+  //     short plain hash length, plain hash
+  //     short nonced hash length, nonced hash
+
+  private static final int BINARY_VERSION_FIXED_LEN = 4 * 8 + 1 + 2 + 2;
+
+  /** Return the compact binary encoding of this VoteBlock */
+  byte[] getBinaryEncoded() {
+    byte[] urlBytes =
+      url == null ? null : url.getBytes(StandardCharsets.UTF_8);
+    int len = 4 + (urlBytes == null ? 0 : urlBytes.length) + 1 + 4;
+    for (int ix = 0; ix < versions.size(); ix++) {
+      VoteBlock.Version ver = (VoteBlock.Version)versions.get(ix);
+      len += BINARY_VERSION_FIXED_LEN
+	+ hashLen(ver.getPlainHash()) + hashLen(ver.getHash());
+    }
+    byte[] res = new byte[len];
+    ByteBuffer buf = ByteBuffer.wrap(res);
+    if (urlBytes == null) {
+      buf.putInt(-1);
+    } else {
+      buf.putInt(urlBytes.length);
+      buf.put(urlBytes);
+    }
+    buf.put((byte)voteType);
+    buf.putInt(versions.size());
+    for (int ix = 0; ix < versions.size(); ix++) {
+      VoteBlock.Version ver = (VoteBlock.Version)versions.get(ix);
+      buf.putLong(ver.getFilteredOffset());
+      buf.putLong(ver.getFilteredLength());
+      buf.putLong(ver.getUnfilteredOffset());
+      buf.putLong(ver.getUnfilteredLength());
+      buf.put(ver.getHashError() ? (byte)1 : (byte)0);
+      putHash(buf, ver.getPlainHash());
+      putHash(buf, ver.getHash());
+    }
+    return res;
+  }
+
+  /** Decode a VoteBlock from its compact binary encoding, which must
+   * occupy the remainder of the buffer.
+   * @throws IOException if the encoding is malformed
+   */
+  static VoteBlock decodeBinary(ByteBuffer buf) throws IOException {
+    try {
+      String url = null;
+      int urlLen = buf.getInt();
+      if (urlLen >= 0) {
+	byte[] urlBytes = new byte[urlLen];
+	buf.get(urlBytes);
+	url = new String(urlBytes, StandardCharsets.UTF_8);
+      }
+      VoteBlock vb = new VoteBlock(url, buf.get());
+      int nVersions = buf.getInt();
+      if (nVersions < 0 || nVersions > buf.remaining()) {
+	throw new IOException("Malformed vote block: " + nVersions +
+			      " versions");
+      }
+      vb.versions = new ArrayList(nVersions);
+      for (int ix = 0; ix < nVersions; ix++) {
+	long filteredOffset = buf.getLong();
+	long filteredLength = buf.getLong();
+	long unfilteredOffset = buf.getLong();
+	long unfilteredLength = buf.getLong();
+	boolean hashError = buf.get() != 0;
+	byte[] plainHash = getHash(buf);
+	byte[] noncedHash = getHash(buf);
+	vb.versions.add(new VoteBlock.Version(filteredOffset, filteredLength,
+					      unfilteredOffset,
+					      unfilteredLength,
+					      plainHash, noncedHash,
+					      hashError));
+      }
+      if (buf.hasRemaining()) {
+	throw new IOException("Malformed vote block: " + buf.remaining() +
+			      " extra bytes");
+      }
+      return vb;
+    } catch (BufferUnderflowException | IllegalArgumentException
+	     | NegativeArraySizeException e) {
+      throw new IOException("Malformed vote block", e);
+    }
+  }
+
+  private static int hashLen(byte[] hash) {
+    return hash == null ? 0 : hash.length;
+  }
+
+  private static void putHash(ByteBuffer buf, byte[] hash) {
+    if (hash == null) {
+      buf.putShort((short)0);
+    } else {
+      buf.putShort((short)hash.length);
+      buf.put(hash);
+    }
+  }
+
+  private static byte[] getHash(ByteBuffer buf) {
+    int len = buf.getShort() & 0xffff;
+    if (len == 0) {
+      return ByteArray.EMPTY_BYTE_ARRAY;
+    }
+    byte[] res = new byte[len];
+    buf.get(res);
+    return res;
+  }
   
   /**
    * Return an iterator over the versions of this vote block.
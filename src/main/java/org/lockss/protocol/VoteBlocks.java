@@ -99,6 +99,15 @@ public interface VoteBlocks extends LockssSerializable {
    */
   public long getEstimatedEncodedLength();
 
+  /**
+   * Return a sparse, ordered sample of the URLs in the collection,
+   * suitable for dividing the URL space into ranges.  The default is an
+   * empty list, meaning no sample is available.
+   */
+  default public List<String> getSampleUrls() {
+    return Collections.emptyList();
+  }
+
   /**
    * Close the output file backing the VoteBlocks, if any
    */
@@ -80,6 +80,35 @@ public interface VoteBlocksIterator extends LockssSerializable {
    */
   public VoteBlock peek() throws IOException;
 
+  /**
+   * Advance the iterator past all VoteBlocks whose URL sorts before
+   * url, so that peek() returns the first VoteBlock whose URL is equal to
+   * or after url.  Implementations may use an index to avoid reading the
+   * intervening blocks.
+   *
+   * @param url The URL to seek to.
+   * @throws IOException
+   */
+  default public void seek(String url) throws IOException {
+    VoteBlock vb;
+    while ((vb = peek()) != null &&
+	   VoteBlock.compareUrls(vb.getUrl(), url) < 0) {
+      next();
+    }
+  }
+
+  /**
+   * Return true if the VoteBlocks are known to be in strictly increasing
+   * URL order, so that {@link #seek(String)} may skip blocks without
+   * reading them.  If false, callers that check the order must reach the
+   * target URL with {@link #next()}.
+   *
+   * @throws IOException
+   */
+  default public boolean isKnownOrdered() throws IOException {
+    return false;
+  }
+
   /** Release any resources held by the iterator */
   public void release();
 
@@ -36,6 +36,10 @@ import org.apache.commons.collections4.iterators.*;
 import org.lockss.app.*;
 import org.lockss.config.*;
 import org.lockss.daemon.status.*;
+import org.lockss.rs.BaseLockssRepository;
+import org.lockss.rs.io.storage.ArtifactDataStore;
+import org.lockss.rs.io.storage.warc.FileChannelCache;
+import org.lockss.rs.io.storage.warc.LocalWarcArtifactDataStore;
 import org.lockss.state.ArchivalUnitStatus;
 import org.lockss.util.*;
 import org.lockss.util.os.*;
@@ -282,6 +286,24 @@ public class LockssRepositoryStatus {
       } catch (IOException e) {
 	log.error("Coudln't get RepositoryInfo for " + rs, e);
       }
+      if (repo instanceof BaseLockssRepository) {
+	ArtifactDataStore store =
+	  ((BaseLockssRepository)repo).getArtifactDataStore();
+	if (store instanceof LocalWarcArtifactDataStore) {
+	  FileChannelCache chanCache =
+	    ((LocalWarcArtifactDataStore)store).getChannelCache();
+	  String chanStats =
+	    String.format("%d open, %d hits, %d opens, %d evictions, %d reopens",
+			  chanCache.getOpenChannels(),
+			  chanCache.getHits(),
+			  chanCache.getOpens(),
+			  chanCache.getEvictions(),
+			  chanCache.getReopens());
+	  res.add(new StatusTable.SummaryInfo("WARC channel cache",
+					      ColumnDescriptor.TYPE_STRING,
+					      chanStats));
+	}
+      }
 
       int refetchedForContent = -1;
       if (repo instanceof RestLockssRepository) {
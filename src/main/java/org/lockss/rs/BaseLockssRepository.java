@@ -72,9 +72,10 @@ import java.nio.file.Path;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
@@ -96,6 +97,12 @@ public class BaseLockssRepository implements LockssRepository, JmsFactorySource
   protected ScheduledExecutorService scheduledExecutor =
       Executors.newSingleThreadScheduledExecutor();
 
+  /**
+   * Highest version of each artifact stem that has been assigned to an artifact written by an import batch but not
+   * yet indexed. Consulted, with the index, when assigning versions.
+   */
+  private final Map<ArtifactIdentifier.ArtifactStem, Integer> pendingVersions = new ConcurrentHashMap<>();
+
   private static BuildInfo BUILD_INFO = BuildInfo.getBuildInfoFor("lockss-core")
       .orElseThrow(() -> new IllegalStateException("Could not determine LOCKSS repository version"));
 
@@ -324,33 +331,7 @@ public class BaseLockssRepository implements LockssRepository, JmsFactorySource
     index.acquireVersionLock(artifactId.getArtifactStem());
 
     try {
-      // Retrieve latest version in this URL lineage
-      Artifact latestVersion = index.getArtifact(
-          artifactId.getNamespace(),
-          artifactId.getAuid(),
-          artifactId.getUri(),
-          true
-      );
-
-      // Create a new artifact identifier for this artifact
-      ArtifactIdentifier newId = new ArtifactIdentifier(
-          // Assign a new artifact ID
-          UUID.randomUUID().toString(), // FIXME: Artifact ID collision unlikely but possible
-          artifactId.getNamespace(),
-          artifactId.getAuid(),
-          artifactId.getUri(),
-          // Set the next version
-          (latestVersion == null) ? 1 : latestVersion.getVersion() + 1
-      );
-
-      // Set the new artifact identifier
-      artifactData.setIdentifier(newId);
-
-      // Set collection date if it is not set
-      long collectionDate = artifactData.getCollectionDate();
-      if (collectionDate < 0) {
-        artifactData.setCollectionDate(TimeBase.nowMs());
-      }
+      assignNewIdentifier(artifactData);
 
       // Add the artifact the data store and index
       return store.addArtifactData(artifactData);
@@ -359,6 +340,54 @@ public class BaseLockssRepository implements LockssRepository, JmsFactorySource
     }
   }
 
+  /**
+   * Gives the artifact data a new artifact ID and the next version in its URL lineage, and sets its collection date
+   * if it is not set. Must be called with the artifact stem's version lock held.
+   *
+   * @return The new version.
+   */
+  private int assignNewIdentifier(ArtifactData artifactData) throws IOException {
+    ArtifactIdentifier artifactId = artifactData.getIdentifier();
+
+    // Retrieve latest version in this URL lineage
+    Artifact latestVersion = index.getArtifact(
+        artifactId.getNamespace(),
+        artifactId.getAuid(),
+        artifactId.getUri(),
+        true
+    );
+
+    int version = (latestVersion == null) ? 1 : latestVersion.getVersion() + 1;
+
+    // Versions written by an import batch but not yet indexed
+    Integer pendingVersion = pendingVersions.get(artifactId.getArtifactStem());
+    if (pendingVersion != null && pendingVersion >= version) {
+      version = pendingVersion + 1;
+    }
+
+    // Create a new artifact identifier for this artifact
+    ArtifactIdentifier newId = new ArtifactIdentifier(
+        // Assign a new artifact ID
+        UUID.randomUUID().toString(), // FIXME: Artifact ID collision unlikely but possible
+        artifactId.getNamespace(),
+        artifactId.getAuid(),
+        artifactId.getUri(),
+        // Set the next version
+        version
+    );
+
+    // Set the new artifact identifier
+    artifactData.setIdentifier(newId);
+
+    // Set collection date if it is not set
+    long collectionDate = artifactData.getCollectionDate();
+    if (collectionDate < 0) {
+      artifactData.setCollectionDate(TimeBase.nowMs());
+    }
+
+    return version;
+  }
+
   /**
    * Imports artifacts from an archive into this LOCKSS repository.
    *
@@ -412,75 +441,104 @@ public class BaseLockssRepository implements LockssRepository, JmsFactorySource
         Pattern excludePat =
           StringUtils.isEmpty(excludeStatusPattern) ? null : Pattern.compile(excludeStatusPattern);
 
-        // ArchiveReader is an iterable over ArchiveRecord objects
-        for (ArchiveRecord record : archiveReader) {
-          ImportStatus status = new ImportStatus();
+        // Write many records per temporary WARC checkout and index call, if the data store supports it
+        ImportBatch batch = (store instanceof WarcArtifactDataStore)
+            ? new ImportBatch((WarcArtifactDataStore) store, out, objWriter, storeDuplicate)
+            : null;
 
-          try {
-            ArchiveRecordHeader header = record.getHeader();
-            String realUri = realRecordUri(header.getUrl());
+        try {
+          // ArchiveReader is an iterable over ArchiveRecord objects
+          for (ArchiveRecord record : archiveReader) {
+            if (batch != null && batch.isFull()) {
+              batch.flush();
+            }
 
-            status.setWarcId((String) header.getHeaderValue(WARCConstants.HEADER_KEY_ID));
-            status.setOffset(header.getOffset());
-            status.url(realUri);
+            ImportStatus status = new ImportStatus();
 
-            // Read WARC record type from record headers
-            WARCConstants.WARCRecordType recordType =
-                WARCConstants.WARCRecordType.valueOf((String) header.getHeaderValue(WARCConstants.HEADER_KEY_TYPE));
+            try {
+              ArchiveRecordHeader header = record.getHeader();
+              String realUri = realRecordUri(header.getUrl());
 
-            if (!(recordType == WARCConstants.WARCRecordType.response ||
-                recordType == WARCConstants.WARCRecordType.resource)) {
-              continue;
-            }
+              status.setWarcId((String) header.getHeaderValue(WARCConstants.HEADER_KEY_ID));
+              status.setOffset(header.getOffset());
+              status.url(realUri);
 
-            // Transform WARC record to ArtifactData
-            ArtifactData ad = WarcArtifactData.fromArchiveRecord(record);
-            assert ad != null;
+              // Read WARC record type from record headers
+              WARCConstants.WARCRecordType recordType =
+                  WARCConstants.WARCRecordType.valueOf((String) header.getHeaderValue(WARCConstants.HEADER_KEY_TYPE));
 
-            if (excludePat != null && ad.getHttpStatus() != null)  {
-              String statusCode = Integer.toString(ad.getHttpStatus().getStatusCode());
-              if (excludePat.matcher(statusCode).matches()) {
-                status.setStatus(ImportStatus.StatusEnum.EXCLUDED);
-                objWriter.writeValue(out, status);
+              if (!(recordType == WARCConstants.WARCRecordType.response ||
+                  recordType == WARCConstants.WARCRecordType.resource)) {
                 continue;
               }
-            }
 
-            ArtifactIdentifier aid = ad.getIdentifier();
-            aid.setNamespace(namespace);
-            aid.setAuid(auId);
-            aid.setUri(realUri);
-
-            // TODO: Write to permanent storage directly
-            // (But that conflicts with dup detection)
-            Artifact artifact = addArtifact(ad);
-            Artifact dup = null;
-            if (!storeDuplicate) {
-              dup = LockssRepositoryUtil.getIdenticalPreviousVersion(this, artifact);
-            }
-            if (dup != null) {
-              try {
-                deleteArtifact(artifact);
-                status.setArtifactUuid(dup.getUuid());
-                status.setDigest(dup.getContentDigest());
-                status.setVersion(dup.getVersion());
-                status.setStatus(ImportStatus.StatusEnum.DUPLICATE);
-              } catch (Exception e) {
-                log.error("Error deleting duplicate artifact: {}", artifact, e);
+              // Transform WARC record to ArtifactData
+              ArtifactData ad = WarcArtifactData.fromArchiveRecord(record);
+              assert ad != null;
+
+              if (excludePat != null && ad.getHttpStatus() != null)  {
+                String statusCode = Integer.toString(ad.getHttpStatus().getStatusCode());
+                if (excludePat.matcher(statusCode).matches()) {
+                  status.setStatus(ImportStatus.StatusEnum.EXCLUDED);
+                  if (batch != null) {
+                    batch.writeStatus(status);
+                  } else {
+                    objWriter.writeValue(out, status);
+                  }
+                  continue;
+                }
               }
-            } else {
-              commitArtifact(artifact);
 
-              status.setArtifactUuid(artifact.getUuid());
-              status.setDigest(artifact.getContentDigest());
-              status.setVersion(artifact.getVersion());
-              status.setStatus(ImportStatus.StatusEnum.OK);
+              ArtifactIdentifier aid = ad.getIdentifier();
+              aid.setNamespace(namespace);
+              aid.setAuid(auId);
+              aid.setUri(realUri);
+
+              if (batch != null) {
+                // The batch writes the status once the artifact is indexed and committed
+                batch.add(ad, status);
+                continue;
+              }
+
+              // TODO: Write to permanent storage directly
+              // (But that conflicts with dup detection)
+              Artifact artifact = addArtifact(ad);
+              Artifact dup = null;
+              if (!storeDuplicate) {
+                dup = LockssRepositoryUtil.getIdenticalPreviousVersion(this, artifact);
+              }
+              if (dup != null) {
+                try {
+                  deleteArtifact(artifact);
+                  status.setArtifactUuid(dup.getUuid());
+                  status.setDigest(dup.getContentDigest());
+                  status.setVersion(dup.getVersion());
+                  status.setStatus(ImportStatus.StatusEnum.DUPLICATE);
+                } catch (Exception e) {
+                  log.error("Error deleting duplicate artifact: {}", artifact, e);
+                }
+              } else {
+                commitArtifact(artifact);
+
+                status.setArtifactUuid(artifact.getUuid());
+                status.setDigest(artifact.getContentDigest());
+                status.setVersion(artifact.getVersion());
+                status.setStatus(ImportStatus.StatusEnum.OK);
+              }
+            } catch (Exception e) {
+              log.error("Could not import artifact from archive", e);
+              status.setStatus(ImportStatus.StatusEnum.ERROR);
+            }
+            if (batch != null) {
+              batch.writeStatus(status);
+            } else {
+              objWriter.writeValue(out, status);
             }
-          } catch (Exception e) {
-            log.error("Could not import artifact from archive", e);
-            status.setStatus(ImportStatus.StatusEnum.ERROR);
           }
-          objWriter.writeValue(out, status);
+        } finally {
+          if (batch != null) {
+            batch.close();
+          }
         }
 
         out.flush();
@@ -497,6 +555,163 @@ public class BaseLockssRepository implements LockssRepository, JmsFactorySource
     }
   }
 
+  /**
+   * Imports the records of an archive through a {@link WarcArtifactDataStore.ArtifactBatch}: records are written to
+   * one temporary WARC, indexed in one call per batch, then committed together so that they are copied to permanent
+   * storage in sequential runs. Import statuses are written in archive order once their batch has been processed.
+   */
+  private class ImportBatch {
+    private final WarcArtifactDataStore warcStore;
+    private final WarcArtifactDataStore.ArtifactBatch storeBatch;
+    private final DeferredTempFileOutputStream out;
+    private final ObjectWriter objWriter;
+    private final boolean storeDuplicate;
+
+    /** Statuses not yet written, in archive order */
+    private final List<ImportStatus> statuses = new ArrayList<>();
+    /** Artifacts pending in the store batch, with their statuses */
+    private final Map<Artifact, ImportStatus> added = new IdentityHashMap<>();
+    /** Latest version of each stem pending in the store batch */
+    private final Map<ArtifactIdentifier.ArtifactStem, Artifact> latest = new HashMap<>();
+
+    ImportBatch(WarcArtifactDataStore warcStore, DeferredTempFileOutputStream out, ObjectWriter objWriter,
+                boolean storeDuplicate) {
+      this.warcStore = warcStore;
+      this.storeBatch = warcStore.openArtifactBatch();
+      this.out = out;
+      this.objWriter = objWriter;
+      this.storeDuplicate = storeDuplicate;
+    }
+
+    boolean isFull() {
+      return storeBatch.isFull();
+    }
+
+    /**
+     * Writes the artifact data to the batch. Its status is filled in and written by {@link #flush()}.
+     */
+    void add(ArtifactData ad, ImportStatus status) throws IOException {
+      ArtifactIdentifier.ArtifactStem stem = ad.getIdentifier().getArtifactStem();
+      Artifact artifact;
+
+      index.acquireVersionLock(stem);
+
+      try {
+        int version = assignNewIdentifier(ad);
+        artifact = storeBatch.add(ad);
+        pendingVersions.merge(stem, version, Math::max);
+      } finally {
+        index.releaseVersionLock(stem);
+      }
+
+      Artifact previous = latest.get(stem);
+      Artifact dup = null;
+
+      if (!storeDuplicate) {
+        if (previous != null) {
+          // The previous version is in this batch and not yet indexed
+          if (previous.getVersion() == artifact.getVersion() - 1
+              && Objects.equals(previous.getContentDigest(), artifact.getContentDigest())) {
+            dup = previous;
+          }
+        } else {
+          dup = LockssRepositoryUtil.getIdenticalPreviousVersion(BaseLockssRepository.this, artifact);
+        }
+      }
+
+      if (dup != null) {
+        storeBatch.discard(artifact);
+
+        // Give back the version
+        if (previous != null) {
+          pendingVersions.replace(stem, artifact.getVersion(), previous.getVersion());
+        } else {
+          pendingVersions.remove(stem, artifact.getVersion());
+        }
+
+        status.setArtifactUuid(dup.getUuid());
+        status.setDigest(dup.getContentDigest());
+        status.setVersion(dup.getVersion());
+        status.setStatus(ImportStatus.StatusEnum.DUPLICATE);
+        writeStatus(status);
+        return;
+      }
+
+      latest.put(stem, artifact);
+      added.put(artifact, status);
+      statuses.add(status);
+    }
+
+    /**
+     * Writes the status now if no batched artifact precedes it, otherwise after the batch is flushed.
+     */
+    void writeStatus(ImportStatus status) throws IOException {
+      if (added.isEmpty()) {
+        objWriter.writeValue(out, status);
+      } else {
+        statuses.add(status);
+      }
+    }
+
+    /**
+     * Indexes and commits the artifacts in the batch, then writes the pending statuses.
+     */
+    void flush() throws IOException {
+      if (!added.isEmpty()) {
+        try {
+          List<Artifact> artifacts = storeBatch.flush();
+          List<Future<Artifact>> futures = warcStore.commitArtifactsData(artifacts);
+
+          for (int ix = 0; ix < artifacts.size(); ix++) {
+            Artifact artifact = artifacts.get(ix);
+            ImportStatus status = added.get(artifact);
+
+            if (futures.get(ix) == null) {
+              log.error("Could not commit imported artifact: {}", artifact);
+              status.setStatus(ImportStatus.StatusEnum.ERROR);
+              continue;
+            }
+
+            artifact.setCommitted(true);
+            status.setArtifactUuid(artifact.getUuid());
+            status.setDigest(artifact.getContentDigest());
+            status.setVersion(artifact.getVersion());
+            status.setStatus(ImportStatus.StatusEnum.OK);
+          }
+        } catch (Exception e) {
+          log.error("Could not index or commit imported artifacts", e);
+
+          for (ImportStatus status : added.values()) {
+            if (status.getStatus() != ImportStatus.StatusEnum.OK) {
+              status.setStatus(ImportStatus.StatusEnum.ERROR);
+            }
+          }
+        } finally {
+          // The batch's versions are now in the index (or abandoned)
+          for (Map.Entry<ArtifactIdentifier.ArtifactStem, Artifact> entry : latest.entrySet()) {
+            pendingVersions.remove(entry.getKey(), entry.getValue().getVersion());
+          }
+
+          added.clear();
+          latest.clear();
+        }
+      }
+
+      for (ImportStatus status : statuses) {
+        objWriter.writeValue(out, status);
+      }
+      statuses.clear();
+    }
+
+    void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        storeBatch.close();
+      }
+    }
+  }
+
   /** WARC 1.0 spec has URI enclosed in "< ... >".  Remove them if
    * present. */
   String realRecordUri(String recordUri) {
@@ -0,0 +1,302 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.rs.io.index;
+
+import org.lockss.util.rest.repo.model.Artifact;
+import org.lockss.util.rest.repo.model.ArtifactIdentifier;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Sorted, in-memory namespace &rarr; AUID &rarr; URL &rarr; versions
+ * structure used by {@link VolatileArtifactIndex} to answer AU- and
+ * URL-scoped queries without scanning every artifact in the index.  URLs
+ * within an AU are kept in a sorted map so that prefix queries are range
+ * scans, and the versions of a URL are kept in decreasing version order
+ * so the latest version is found without grouping.
+ *
+ * <p>The tree holds its own copy of each artifact added, which shares the
+ * namespace, AUID and URL strings stored once in the nodes.  AU and
+ * namespace nodes are removed when their last artifact is.
+ *
+ * <p>All operations are thread-safe.  Readers never block; the version
+ * list of a URL is replaced, never modified, when a version is added or
+ * removed.  Adds and removes are serialized so that an empty node isn't
+ * removed while an artifact is being added to it.
+ */
+class ArtifactTree {
+
+  private final ConcurrentSkipListMap<String, NamespaceNode> namespaces =
+    new ConcurrentSkipListMap<>();
+
+  /** The AUs in a namespace */
+  static class NamespaceNode {
+    final String namespace;
+    final ConcurrentSkipListMap<String, AuNode> aus =
+      new ConcurrentSkipListMap<>();
+
+    NamespaceNode(String namespace) {
+      this.namespace = namespace;
+    }
+
+    boolean isEmpty() {
+      return aus.values().stream().allMatch(AuNode::isEmpty);
+    }
+  }
+
+  /** The URLs in an AU, in sorted order */
+  static class AuNode {
+    final String auid;
+    final ConcurrentSkipListMap<String, UrlVersions> urls =
+      new ConcurrentSkipListMap<>();
+
+    AuNode(String auid) {
+      this.auid = auid;
+    }
+
+    boolean isEmpty() {
+      return urls.isEmpty();
+    }
+
+    /** Return the URLs beginning with the prefix, or all the URLs if the
+     * prefix is null, in URL order */
+    Stream<UrlVersions> withPrefix(String prefix) {
+      if (prefix == null) {
+        return urls.values().stream();
+      }
+      return urls.tailMap(prefix, true).values().stream()
+        .takeWhile(uv -> uv.url.startsWith(prefix));
+    }
+  }
+
+  /**
+   * Immutable list of the versions of a URL in an AU, in decreasing
+   * version order.  Versions are held in a primitive array parallel to
+   * the artifacts.  The committed state is read from the artifact itself,
+   * as committing an artifact updates it in place.
+   */
+  static final class UrlVersions {
+    final String url;
+    private final int[] versions;
+    private final Artifact[] artifacts;
+
+    private UrlVersions(String url, int[] versions, Artifact[] artifacts) {
+      this.url = url;
+      this.versions = versions;
+      this.artifacts = artifacts;
+    }
+
+    static UrlVersions of(String url, Artifact artifact) {
+      return new UrlVersions(url,
+                             new int[] {artifact.getVersion()},
+                             new Artifact[] {artifact});
+    }
+
+    /** Return a copy with the artifact inserted after any versions greater
+     * than or equal to its own */
+    UrlVersions with(Artifact artifact) {
+      int ver = artifact.getVersion();
+      int n = versions.length;
+      int pos = 0;
+      while (pos < n && versions[pos] >= ver) {
+        pos++;
+      }
+      int[] nv = new int[n + 1];
+      Artifact[] na = new Artifact[n + 1];
+      System.arraycopy(versions, 0, nv, 0, pos);
+      System.arraycopy(artifacts, 0, na, 0, pos);
+      nv[pos] = ver;
+      na[pos] = artifact;
+      System.arraycopy(versions, pos, nv, pos + 1, n - pos);
+      System.arraycopy(artifacts, pos, na, pos + 1, n - pos);
+      return new UrlVersions(url, nv, na);
+    }
+
+    /** Return a copy without the artifact, this if it isn't present, or
+     * null if it was the only version */
+    UrlVersions without(Artifact artifact) {
+      int n = artifacts.length;
+      for (int ix = 0; ix < n; ix++) {
+        if (artifacts[ix] == artifact) {
+          if (n == 1) {
+            return null;
+          }
+          int[] nv = new int[n - 1];
+          Artifact[] na = new Artifact[n - 1];
+          System.arraycopy(versions, 0, nv, 0, ix);
+          System.arraycopy(artifacts, 0, na, 0, ix);
+          System.arraycopy(versions, ix + 1, nv, ix, n - ix - 1);
+          System.arraycopy(artifacts, ix + 1, na, ix, n - ix - 1);
+          return new UrlVersions(url, nv, na);
+        }
+      }
+      return this;
+    }
+
+    /** Return the highest version, optionally only among committed
+     * versions, or null if none */
+    Artifact latest(boolean includeUncommitted) {
+      for (Artifact art : artifacts) {
+        if (includeUncommitted || art.getCommitted()) {
+          return art;
+        }
+      }
+      return null;
+    }
+
+    /** Return the artifacts with the given version, optionally only if
+     * committed */
+    List<Artifact> version(int version, boolean includeUncommitted) {
+      List<Artifact> res = new ArrayList<>(1);
+      for (int ix = 0; ix < versions.length && versions[ix] >= version; ix++) {
+        if (versions[ix] == version
+            && (includeUncommitted || artifacts[ix].getCommitted())) {
+          res.add(artifacts[ix]);
+        }
+      }
+      return res;
+    }
+
+    /** Return all the versions, optionally only the committed ones, in
+     * decreasing version order */
+    Stream<Artifact> all(boolean includeUncommitted) {
+      Stream<Artifact> res = Arrays.stream(artifacts);
+      return includeUncommitted ? res : res.filter(Artifact::getCommitted);
+    }
+  }
+
+  /**
+   * Add a copy of an artifact, whose namespace, AUID and URL are the equal
+   * instances held by the tree.  The artifact passed in isn't modified.
+   * @return the copy held by the tree
+   */
+  synchronized Artifact add(Artifact artifact) {
+    NamespaceNode nsNode =
+      namespaces.computeIfAbsent(artifact.getNamespace(), NamespaceNode::new);
+    AuNode auNode = nsNode.aus.computeIfAbsent(artifact.getAuid(), AuNode::new);
+    UrlVersions cur = auNode.urls.get(artifact.getUri());
+    String url = cur == null ? artifact.getUri() : cur.url;
+    Artifact copy = copy(artifact, nsNode.namespace, auNode.auid, url);
+    auNode.urls.put(url, cur == null ? UrlVersions.of(url, copy) : cur.with(copy));
+    return copy;
+  }
+
+  /**
+   * Remove an artifact (by identity: it must be one returned by {@link
+   * #add(Artifact)}), and the AU and namespace nodes if it was their last.
+   */
+  synchronized void remove(Artifact artifact) {
+    NamespaceNode nsNode = namespaces.get(artifact.getNamespace());
+    if (nsNode == null) {
+      return;
+    }
+    AuNode auNode = nsNode.aus.get(artifact.getAuid());
+    if (auNode == null) {
+      return;
+    }
+    auNode.urls.computeIfPresent(artifact.getUri(),
+                                 (url, cur) -> cur.without(artifact));
+    if (auNode.isEmpty()) {
+      nsNode.aus.remove(auNode.auid, auNode);
+      if (nsNode.aus.isEmpty()) {
+        namespaces.remove(nsNode.namespace, nsNode);
+      }
+    }
+  }
+
+  synchronized void clear() {
+    namespaces.clear();
+  }
+
+  /** Return the number of namespace nodes, including any empty ones */
+  int namespaceNodeCount() {
+    return namespaces.size();
+  }
+
+  private static Artifact copy(Artifact artifact, String namespace,
+                               String auid, String url) {
+    ArtifactIdentifier id =
+      new ArtifactIdentifier(artifact.getUuid(), namespace, auid, url,
+                             artifact.getVersion());
+    Artifact res = new Artifact(id, artifact.getCommitted(),
+                                artifact.getStorageUrl(),
+                                artifact.getContentLength(),
+                                artifact.getContentDigest());
+    res.setCollectionDate(artifact.getCollectionDate());
+    return res;
+  }
+
+  /** Return the non-empty namespaces, in sorted order */
+  Stream<String> namespaces() {
+    return namespaces.values().stream()
+      .filter(n -> !n.isEmpty())
+      .map(n -> n.namespace);
+  }
+
+  /** Return the non-empty AUs in the namespace, in AUID order */
+  Stream<AuNode> aus(String namespace) {
+    if (namespace == null) {
+      return Stream.empty();
+    }
+    NamespaceNode nsNode = namespaces.get(namespace);
+    if (nsNode == null) {
+      return Stream.empty();
+    }
+    return nsNode.aus.values().stream().filter(au -> !au.isEmpty());
+  }
+
+  /** Return the AU node, or null if the namespace or AU is null or not
+   * present */
+  AuNode getAu(String namespace, String auid) {
+    if (namespace == null || auid == null) {
+      return null;
+    }
+    NamespaceNode nsNode = namespaces.get(namespace);
+    return nsNode == null ? null : nsNode.aus.get(auid);
+  }
+
+  /** Return the URLs in the AU beginning with the prefix (all URLs if the
+   * prefix is null), in URL order */
+  Stream<UrlVersions> urls(String namespace, String auid, String prefix) {
+    AuNode auNode = getAu(namespace, auid);
+    return auNode == null ? Stream.empty() : auNode.withPrefix(prefix);
+  }
+
+  /** Return the versions of a URL in an AU, or null */
+  UrlVersions get(String namespace, String auid, String url) {
+    AuNode auNode = getAu(namespace, auid);
+    return (auNode == null || url == null) ? null : auNode.urls.get(url);
+  }
+}
@@ -30,13 +30,26 @@
 
 package org.lockss.rs.io.index;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import org.lockss.util.LockssUncheckedIOException;
 import org.lockss.util.rest.repo.model.Artifact;
 import org.lockss.util.os.PlatformUtil;
 import org.lockss.util.storage.StorageInfo;
@@ -45,6 +58,27 @@ import org.lockss.log.L4JLogger;
 /**
  * ArtifactData index implemented in memory and persisted in the local
  * filesystem.
+ * <p>
+ * The index is persisted as a snapshot of the whole index plus an
+ * append-only log of the mutations made since the snapshot was written.
+ * Each mutation appends one small record to the log; concurrent
+ * mutations share a single fsync (group commit).  When the log grows
+ * larger than the index (or {@link #MIN_COMPACTION_RECORDS}) it is
+ * compacted into a new snapshot.  At startup the snapshot is loaded, the
+ * log replayed, and the result compacted.  Log replay is idempotent, so
+ * a crash at any point leaves a recoverable state.
+ * <p>
+ * Each mutation of the in-memory index and the append of its log record
+ * happen together under one lock, so the log order is the mutation order.
+ * Compaction switches to a new log under that lock, then copies the index
+ * and writes the copy without holding it.  The copy may include mutations
+ * also in the new log; as each record sets an artifact's state outright,
+ * replaying them again is harmless.  The previous log is kept until the
+ * new snapshot is in place, and is replayed first at startup if present.
+ * <p>
+ * If a mutation can't be appended to the log or synced, a snapshot is
+ * written before the mutation returns; if that fails too, a {@link
+ * LockssUncheckedIOException} is thrown.
  */
 public class LocalArtifactIndex extends VolatileArtifactIndex {
     private final static L4JLogger log = L4JLogger.getLogger();
@@ -52,9 +86,50 @@ public class LocalArtifactIndex extends VolatileArtifactIndex {
     /** Label to describe type of LocalArtifactIndex */
     public static String ARTIFACT_INDEX_TYPE = "Java-persist";
 
+    /** Suffix appended to the persisted index name to name the mutation
+     * log */
+    public static final String LOG_SUFFIX = ".log";
+
+    /** Suffix appended to the mutation log name to name the log being
+     * compacted into a new snapshot */
+    public static final String PREV_LOG_SUFFIX = ".prev";
+
+    /** The log is not compacted until it has at least this many records,
+     * even if the index is smaller */
+    public static final int MIN_COMPACTION_RECORDS = 10000;
+
+    // Log record types
+    static final byte REC_ADD = 1;
+    static final byte REC_REMOVE = 2;
+    static final byte REC_COMMIT = 3;
+    static final byte REC_STORAGE_URL = 4;
+
+    // Sanity limit on the length of a log record, to detect corruption
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
     // The location of persisted index.
     private File persistedIndex = null;
 
+    // The location of the mutation log.
+    private File mutationLog = null;
+
+    // The location of the log being compacted.
+    private File prevLog = null;
+
+    // Serializes compactions
+    private final Object persistLock = new Object();
+
+    // Guards the log stream and the group commit state below
+    private final Object logLock = new Object();
+    private FileOutputStream logFos = null;
+    private DataOutputStream logOut = null;
+    private long appendedSeq = 0;
+    private long durableSeq = 0;
+    private boolean syncing = false;
+    private long recordsSinceSnapshot = 0;
+    // True if a mutation is in the in-memory index but not in the log
+    private volatile boolean snapshotNeeded = false;
+
     /**
      * Constructor.
      *
@@ -73,10 +148,15 @@ public class LocalArtifactIndex extends VolatileArtifactIndex {
 
             // Yes: Get the location of the persisted index.
             persistedIndex = new File(basePath, persistedIndexName);
+            mutationLog = new File(basePath, persistedIndexName + LOG_SUFFIX);
+            prevLog = new File(mutationLog.getPath() + PREV_LOG_SUFFIX);
             log.info("Setup persistence of index to file " + persistedIndex);
 
             // Populate the in-memory index with the persisted copy. 
             populateFromPersistence();
+
+            // Fold the replayed log into a new snapshot and start a new log
+            persist();
         } else {
             log.info("Persistence of index is disabled");
         }
@@ -100,6 +180,12 @@ public class LocalArtifactIndex extends VolatileArtifactIndex {
           .setPath(persistedIndex.toString());
     }
 
+    @Override
+    public void stop() {
+      closeLog();
+      super.stop();
+    }
+
     /**
      * Adds an artifact to the index.
      *
@@ -110,10 +196,24 @@ public class LocalArtifactIndex extends VolatileArtifactIndex {
      */
     @Override
     protected void addToIndex(String id, Artifact artifact) {
-      super.addToIndex(id, artifact);
-
-      // Persist the just modified index.
-      persist();
+      byte[] payload = null;
+      if (persistedIndex != null) {
+        try {
+          ByteArrayOutputStream baos = new ByteArrayOutputStream();
+          DataOutputStream dos = new DataOutputStream(baos);
+          dos.writeUTF(id);
+          ObjectOutputStream oos = new ObjectOutputStream(dos);
+          oos.writeObject(artifact);
+          oos.close();
+          payload = baos.toByteArray();
+        } catch (IOException ioe) {
+          log.error("Exception caught serializing artifact " + id, ioe);
+        }
+      }
+      logMutation(REC_ADD, payload, () -> {
+          super.addToIndex(id, artifact);
+          return artifact;
+        });
     }
 
     /**
@@ -126,11 +226,8 @@ public class LocalArtifactIndex extends VolatileArtifactIndex {
      */
     @Override
     protected Artifact removeFromIndex(String id) {
-      Artifact artifact = super.removeFromIndex(id);
-
-      // Persist the just modified index.
-      persist();
-      return artifact;
+      return logMutation(REC_REMOVE, payload(id, null),
+                         () -> super.removeFromIndex(id));
     }
 
     /**
@@ -142,107 +239,428 @@ public class LocalArtifactIndex extends VolatileArtifactIndex {
      */
     @Override
     public Artifact commitArtifact(String artifactUuid) {
-      Artifact artifact = super.commitArtifact(artifactUuid);
-      if (artifact != null) {
-        persist();
-      }
-      return artifact;
+      return logMutation(REC_COMMIT, payload(artifactUuid, null),
+                         () -> super.commitArtifact(artifactUuid));
     }
 
     @Override
     public Artifact updateStorageUrl(String artifactUuid, String storageUrl) throws IOException {
-      Artifact artifact = super.updateStorageUrl(artifactUuid, storageUrl);
-      if (artifact != null) {
-        persist();
-      }
-      return artifact;
+      return logMutation(REC_STORAGE_URL, payload(artifactUuid, storageUrl),
+                         () -> super.updateStorageUrl(artifactUuid, storageUrl));
     }
 
     /**
-     * Populates the in-memory index with the contents previously persisted.
+     * Populates the in-memory index with the contents previously persisted:
+     * the snapshot, if any, followed by the mutation log, if any.
      */
     protected void populateFromPersistence() {
-        // Do nothing if there is nothing previously persisted to load. 
-        if (persistedIndex == null || !persistedIndex.exists()
-            || !persistedIndex.isFile()) {
+        if (persistedIndex == null) {
 	    return;
         }
 
-        FileInputStream fis = null;
-        ObjectInputStream ois = null;
+        if (persistedIndex.exists() && persistedIndex.isFile()) {
+          loadSnapshot();
+        }
 
-        try {
-            fis = new FileInputStream(persistedIndex);
-            ois = new ObjectInputStream(fis);
+        // A compaction didn't finish; its log precedes the current one
+        if (prevLog.exists() && prevLog.isFile()) {
+          replayLog(prevLog);
+        }
+
+        if (mutationLog.exists() && mutationLog.isFile()) {
+          replayLog(mutationLog);
+        }
+
+        rebuildArtifactTree();
+    }
+
+    private void loadSnapshot() {
+        try (FileInputStream fis = new FileInputStream(persistedIndex);
+             ObjectInputStream ois =
+               new ObjectInputStream(new BufferedInputStream(fis))) {
             indexedByUuid = (ConcurrentHashMap<String, Artifact>)ois.readObject();
-            for (Artifact artifact : indexedByUuid.values()) {
-              indexedByUrlMap.put(artifact.getUri(), artifact);
-            }
             log.info("Index successfully deserialized from file " + persistedIndex);
         } catch(IOException ioe) {
             log.error("Exception caught deserializing index from " + persistedIndex, ioe);
         } catch(ClassNotFoundException cnfe) {
             log.error("Exception caught deserializing index from " + persistedIndex, cnfe);
-        } finally {
-            if (ois != null) {
+        }
+    }
+
+    /**
+     * Applies the records in the mutation log to the in-memory index.
+     * Stops at the first incomplete or corrupt record, which can result
+     * from a crash while appending.
+     */
+    private void replayLog(File logFile) {
+        int count = 0;
+        try (DataInputStream dis =
+               new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            while (true) {
+                int len;
                 try {
-                    ois.close();
-                } catch (IOException ioe) {
-                    log.warn("Ignored exception caught closing ObjectInputStream from "
-                        + persistedIndex);
+                    len = dis.readInt();
+                } catch (EOFException e) {
+                    break;
                 }
+                if (len < 0 || len > MAX_RECORD_LENGTH) {
+                    log.warn("Invalid record length " + len + " in " + logFile
+                        + " after " + count + " records, ignoring remainder");
+                    break;
+                }
+                byte type = dis.readByte();
+                byte[] payload = new byte[len];
+                dis.readFully(payload);
+                long crc = dis.readLong();
+                if (crc != checksum(type, payload)) {
+                    log.warn("Checksum mismatch in " + logFile
+                        + " after " + count + " records, ignoring remainder");
+                    break;
+                }
+                applyRecord(type, payload);
+                count++;
             }
+        } catch (EOFException e) {
+            log.warn("Truncated record in " + logFile + " after " + count
+                + " records, ignoring");
+        } catch (IOException | ClassNotFoundException e) {
+            log.error("Exception caught replaying " + logFile + " after "
+                + count + " records", e);
+        }
+        log.info("Replayed " + count + " records from " + logFile);
+    }
 
-            if (fis != null) {
-                try {
-                    fis.close();
-                } catch (IOException ioe) {
-                    log.warn("Ignored exception caught closing FileInputStream from "
-                        + persistedIndex);
-                }
+    private void applyRecord(byte type, byte[] payload)
+        throws IOException, ClassNotFoundException {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(payload));
+        String id = dis.readUTF();
+        Artifact artifact;
+        switch (type) {
+        case REC_ADD:
+            ObjectInputStream ois = new ObjectInputStream(dis);
+            indexedByUuid.put(id, (Artifact)ois.readObject());
+            break;
+        case REC_REMOVE:
+            indexedByUuid.remove(id);
+            break;
+        case REC_COMMIT:
+            artifact = indexedByUuid.get(id);
+            if (artifact != null) {
+                artifact.setCommitted(true);
+            }
+            break;
+        case REC_STORAGE_URL:
+            String storageUrl = dis.readUTF();
+            artifact = indexedByUuid.get(id);
+            if (artifact != null) {
+                artifact.setStorageUrl(storageUrl);
             }
+            break;
+        default:
+            log.warn("Ignoring unknown record type " + type + " in " + mutationLog);
         }
     }
 
+    private static long checksum(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+        return crc.getValue();
+    }
+
     /**
-     * Persists the contents of the in-memory index.
+     * Returns the payload of a log record for the artifact with the given
+     * id, or null if persistence is not setup or the id is null (which the
+     * mutation will reject).
      */
-    protected void persist() {
-        // Do nothing if persistence is not setup. 
-        if (persistedIndex == null) {
-          return;
+    private byte[] payload(String id, String arg) {
+      if (persistedIndex == null || id == null) {
+        return null;
+      }
+      try {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeUTF(id);
+        if (arg != null) {
+          dos.writeUTF(arg);
         }
+        dos.close();
+        return baos.toByteArray();
+      } catch (IOException ioe) {
+        log.error("Exception caught logging mutation of " + id, ioe);
+        return null;
+      }
+    }
 
-        FileOutputStream fos = null;
-        ObjectOutputStream oos = null;
+    /** A change to the in-memory index.  Returns the artifact changed, or
+     * null if there was none, in which case nothing is logged. */
+    private interface Mutation<E extends Exception> {
+      Artifact apply() throws E;
+    }
 
+    /**
+     * Applies a mutation to the in-memory index and appends its record to
+     * the mutation log, both under the log lock, then waits until the
+     * record is durable.  If the record can't be appended or synced, a
+     * snapshot is written instead.  If payload is null the mutation is
+     * applied but not logged.
+     * @throws LockssUncheckedIOException if the mutation couldn't be made
+     * durable, or the thread was interrupted waiting for it to be
+     */
+    private <E extends Exception> Artifact logMutation(byte type, byte[] payload,
+                                                       Mutation<E> mutation)
+        throws E {
+      if (payload == null) {
+        return mutation.apply();
+      }
+      Artifact artifact;
+      long seq = 0;
+      IOException failure = null;
+      boolean compact;
+      synchronized (logLock) {
+        artifact = mutation.apply();
+        if (artifact == null) {
+          return null;
+        }
         try {
-            fos = new FileOutputStream(persistedIndex);
-            oos = new ObjectOutputStream(fos);
-            oos.writeObject(indexedByUuid);
+          appendRecord(type, payload);
+          seq = ++appendedSeq;
+          recordsSinceSnapshot++;
         } catch (IOException ioe) {
-            log.error("Exception caught serializing index to " + persistedIndex, ioe);
-        } finally {
-            if (oos != null) {
-                try {
-                    oos.close();
-                } catch (IOException ioe) {
-                    log.warn("Ignored exception caught closing ObjectOutputStream to "
-                        + persistedIndex);
-                }
+          log.error("Exception caught appending to " + mutationLog
+                    + ", will write snapshot", ioe);
+          failure = ioe;
+          snapshotNeeded = true;
+        }
+        compact = snapshotNeeded
+          || (recordsSinceSnapshot > MIN_COMPACTION_RECORDS
+              && recordsSinceSnapshot > indexedByUuid.size());
+      }
+      if (failure == null) {
+        try {
+          awaitDurable(seq);
+        } catch (InterruptedIOException iioe) {
+          Thread.currentThread().interrupt();
+          throw new LockssUncheckedIOException("Interrupted before mutation of "
+                                               + artifact.getUuid()
+                                               + " was durable", iioe);
+        } catch (IOException ioe) {
+          log.error("Exception caught syncing " + mutationLog
+                    + ", will write snapshot", ioe);
+          failure = ioe;
+          compact = true;
+        }
+      }
+      if (compact && !persist() && failure != null) {
+        throw new LockssUncheckedIOException("Mutation of " + artifact.getUuid()
+                                             + " not persisted", failure);
+      }
+      return artifact;
+    }
+
+    // Must be called with logLock held
+    private void appendRecord(byte type, byte[] payload) throws IOException {
+      if (logOut == null) {
+        throw new IOException("Mutation log " + mutationLog + " is not open");
+      }
+      logOut.writeInt(payload.length);
+      logOut.writeByte(type);
+      logOut.write(payload);
+      logOut.writeLong(checksum(type, payload));
+    }
+
+    /**
+     * Waits until the log record with the given sequence number has been
+     * forced to disk.  If no other thread is syncing, this thread flushes
+     * and forces everything appended so far; otherwise it waits for that
+     * sync, which may cover its record too.
+     */
+    private void awaitDurable(long seq) throws IOException {
+      FileChannel chan;
+      long target;
+      synchronized (logLock) {
+        while (true) {
+          if (durableSeq >= seq) {
+            return;
+          }
+          if (!syncing) {
+            break;
+          }
+          try {
+            logLock.wait();
+          } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted waiting for index log sync");
+          }
+        }
+        if (logOut == null) {
+          throw new IOException("Mutation log is closed");
+        }
+        logOut.flush();
+        syncing = true;
+        target = appendedSeq;
+        chan = logFos.getChannel();
+      }
+      boolean ok = false;
+      try {
+        // Other threads may append while this one waits for the disk
+        chan.force(false);
+        ok = true;
+      } finally {
+        synchronized (logLock) {
+          syncing = false;
+          if (ok && target > durableSeq) {
+            durableSeq = target;
+          }
+          logLock.notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Persists the contents of the in-memory index as a new snapshot and
+     * starts a new, empty mutation log.  The log is switched with the log
+     * lock held; the index is copied and serialized after releasing it, so
+     * mutations aren't blocked while it's copied or written.
+     * @return true if the snapshot was written (or persistence is not
+     * setup)
+     */
+    protected boolean persist() {
+        // Do nothing if persistence is not setup. 
+        if (persistedIndex == null) {
+          return true;
+        }
+
+        synchronized (persistLock) {
+          boolean unlogged;
+          synchronized (logLock) {
+            // Wait for any sync in progress to finish with the old log
+            while (syncing) {
+              try {
+                logLock.wait();
+              } catch (InterruptedException e) {
+                log.warn("Interrupted waiting to compact " + mutationLog);
+                Thread.currentThread().interrupt();
+                return false;
+              }
             }
 
-            if (fos != null) {
-                try {
-                    fos.close();
-                } catch (IOException ioe) {
-                    log.warn("Ignored exception caught closing FileOutputStream to "
-                        + persistedIndex);
-                }
+            // Everything logged so far will be reflected in the copy.  Keep
+            // it in prevLog until the copy has been written.
+            closeLog();
+            if (!retireLog()) {
+              openLog(true);
+              return false;
             }
+            openLog(false);
+            durableSeq = appendedSeq;
+            recordsSinceSnapshot = 0;
+            // Mutations not logged so far will be in the copy too
+            unlogged = snapshotNeeded;
+            snapshotNeeded = false;
+          }
+
+          // May include mutations made since the switch, which are also in
+          // the new log
+          ConcurrentHashMap<String, Artifact> snapshot =
+            new ConcurrentHashMap<>(indexedByUuid);
+
+          File tmpFile = new File(persistedIndex.getPath() + ".tmp");
+          try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+            ObjectOutputStream oos =
+              new ObjectOutputStream(new BufferedOutputStream(fos));
+            oos.writeObject(snapshot);
+            oos.flush();
+            fos.getFD().sync();
+          } catch (IOException ioe) {
+            // prevLog will be replayed (or compacted again) before the
+            // current log
+            log.error("Exception caught serializing index to " + persistedIndex, ioe);
+            if (unlogged) {
+              snapshotNeeded = true;
+            }
+            return false;
+          }
+          try {
+            Files.move(tmpFile.toPath(), persistedIndex.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+          } catch (IOException ioe) {
+            log.error("Exception caught renaming " + tmpFile + " to "
+                      + persistedIndex, ioe);
+            if (unlogged) {
+              snapshotNeeded = true;
+            }
+            return false;
+          }
+          if (!prevLog.delete() && prevLog.exists()) {
+            log.warn("Couldn't delete " + prevLog);
+          }
+          return true;
         }
     }
 
+    /**
+     * Moves the (closed) mutation log to prevLog, appending it if prevLog
+     * is left from a compaction that didn't finish.  Must be called with
+     * logLock held.
+     * @return true if successful
+     */
+    private boolean retireLog() {
+      if (!mutationLog.exists()) {
+        return true;
+      }
+      try {
+        if (prevLog.exists()) {
+          try (FileOutputStream fos = new FileOutputStream(prevLog, true)) {
+            Files.copy(mutationLog.toPath(), fos);
+            fos.getFD().sync();
+          }
+          Files.delete(mutationLog.toPath());
+        } else {
+          Files.move(mutationLog.toPath(), prevLog.toPath(),
+                     StandardCopyOption.ATOMIC_MOVE);
+        }
+        return true;
+      } catch (IOException ioe) {
+        log.error("Exception caught moving " + mutationLog + " to " + prevLog,
+                  ioe);
+        return false;
+      }
+    }
+
+    // Must be called with logLock held, or from the constructor
+    private void openLog(boolean append) {
+      try {
+        logFos = new FileOutputStream(mutationLog, append);
+        logOut = new DataOutputStream(new BufferedOutputStream(logFos));
+      } catch (IOException ioe) {
+        log.error("Exception caught opening " + mutationLog, ioe);
+        logFos = null;
+        logOut = null;
+      }
+    }
+
+    private void closeLog() {
+      synchronized (logLock) {
+        if (logOut != null) {
+          try {
+            logOut.flush();
+            logFos.getChannel().force(false);
+            durableSeq = appendedSeq;
+          } catch (IOException ioe) {
+            log.warn("Exception caught syncing " + mutationLog, ioe);
+          }
+          try {
+            logOut.close();
+          } catch (IOException ioe) {
+            log.warn("Ignored exception caught closing " + mutationLog, ioe);
+          }
+          logOut = null;
+          logFos = null;
+        }
+      }
+    }
+
     @Override
     public String toString() {
         return "[LocalArtifactIndex persistedIndex=" + persistedIndex
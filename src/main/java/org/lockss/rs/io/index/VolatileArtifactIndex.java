@@ -32,9 +32,6 @@ POSSIBILITY OF SUCH DAMAGE.
 
 package org.lockss.rs.io.index;
 
-import org.apache.commons.collections4.IteratorUtils;
-import org.apache.commons.collections4.MultiValuedMap;
-import org.apache.commons.collections4.multimap.ArrayListValuedHashMap;
 import org.apache.commons.lang3.StringUtils;
 import org.lockss.log.L4JLogger;
 import org.lockss.util.rest.repo.model.Artifact;
@@ -61,11 +58,12 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
     /** Label to describe type of VolatileArtifactIndex */
     public static String ARTIFACT_INDEX_TYPE = "In-memory";
 
-    // Internal map from artifact ID to Artifact
+    // Internal map from artifact ID to the Artifact held by artifactTree
+    // (the same instance, not another copy)
     protected Map<String, Artifact> indexedByUuid = new ConcurrentHashMap<>();
 
-    protected MultiValuedMap<String, Artifact> indexedByUrlMap =
-        new ArrayListValuedHashMap<>(1);
+    // Namespace -> AUID -> sorted URL -> versions, for AU and URL queries
+    protected ArtifactTree artifactTree = new ArtifactTree();
 
     /**
      * Map from artifact stem to semaphore. Used for artifact version locking.
@@ -309,12 +307,7 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
      */
     @Override
     public Iterable<String> getNamespaces() {
-      List<String> res = indexedByUuid.values().stream()
-        .map(x -> x.getNamespace())
-        .distinct()
-        .sorted()
-        .collect(Collectors.toList());
-      return res;
+      return artifactTree.namespaces().collect(Collectors.toList());
     }
 
     /**
@@ -327,15 +320,9 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
      */
     @Override
     public Iterable<String> getAuIds(String namespace) throws IOException {
-      VolatileArtifactPredicateBuilder query = new VolatileArtifactPredicateBuilder();
-      query.filterByNamespace(namespace);
-
-      List<String> res = indexedByUuid.values().stream()
-        .filter(query.build())
-        .map(x -> x.getAuid()).distinct()
-        .sorted()
+      return artifactTree.aus(namespace)
+        .map(au -> au.auid)
         .collect(Collectors.toList());
-      return res;
     }
 
     /**
@@ -350,26 +337,9 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
      */
     @Override
     public Iterable<Artifact> getArtifacts(String namespace, String auid, boolean includeUncommitted) {
-        VolatileArtifactPredicateBuilder q = new VolatileArtifactPredicateBuilder();
-
-        // Filter by committed status equal to true?
-        if (!includeUncommitted)
-            q.filterByCommitStatus(true);
-
-        q.filterByNamespace(namespace);
-        q.filterByAuid(auid);
-
-        // Filter, then group the Artifacts by URI, and pick the Artifacts with max version from each group
-        Map<String, Optional<Artifact>> result = indexedByUuid.values().stream()
-          .filter(q.build())
-          .collect(Collectors.groupingBy(Artifact::getUri,
-                                         Collectors.maxBy(Comparator.comparingInt(Artifact::getVersion))));
-
-        // Return an iterator over the artifact from each group (one per URI), after sorting them by artifact URI then
-        // descending version.
-        return IteratorUtils.asIterable(result.values().stream()
-                                        .filter(Optional::isPresent).map(x -> x.get())
-                                        .sorted(ArtifactComparators.BY_URI).iterator());
+        // Pick the highest (optionally committed) version of each URL in the AU
+        return latestVersions(artifactTree.urls(namespace, auid, null), includeUncommitted,
+                              ArtifactComparators.BY_URI);
     }
 
     /**
@@ -386,18 +356,8 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
      */
     @Override
     public Iterable<Artifact> getArtifactsAllVersions(String namespace, String auid, boolean includeUncommitted) {
-        VolatileArtifactPredicateBuilder query = new VolatileArtifactPredicateBuilder();
-
-        if (!includeUncommitted) {
-            query.filterByCommitStatus(true);
-        }
-
-        query.filterByNamespace(namespace);
-        query.filterByAuid(auid);
-
-        // Apply the filter, sort by artifact URL then descending version, and return an iterator over the Artifacts
-        return IteratorUtils.asIterable(getIterableArtifacts().stream().filter(query.build())
-            .sorted(ArtifactComparators.BY_URI_BY_DECREASING_VERSION).iterator());
+        return allVersions(artifactTree.urls(namespace, auid, null), includeUncommitted,
+                           ArtifactComparators.BY_URI_BY_DECREASING_VERSION);
     }
 
     /**
@@ -415,23 +375,9 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
      */
     @Override
     public Iterable<Artifact> getArtifactsWithPrefix(String namespace, String auid, String prefix) throws IOException {
-        VolatileArtifactPredicateBuilder q = new VolatileArtifactPredicateBuilder();
-        q.filterByURIPrefix(prefix);
-        q.filterByCommitStatus(true);
-        q.filterByNamespace(namespace);
-        q.filterByAuid(auid);
-
-        // Apply the filter, group the Artifacts by URL, then pick the Artifact with highest version from each group
-        Map<String, Optional<Artifact>> result = indexedByUuid.values().stream()
-          .filter(q.build())
-          .collect(Collectors.groupingBy(Artifact::getUri,
-                                         Collectors.maxBy(Comparator.comparingInt(Artifact::getVersion))));
-
-        // Return an iterator over the artifact from each group (one per URI), after sorting them by artifact URI then
-        // descending version.
-        return IteratorUtils.asIterable(result.values().stream()
-                                        .filter(Optional::isPresent).map(x -> x.get())
-                                        .sorted(ArtifactComparators.BY_URI).iterator());
+        // Range scan over the URLs beginning with the prefix
+        return latestVersions(artifactTree.urls(namespace, auid, prefix), false,
+                              ArtifactComparators.BY_URI);
     }
 
     /**
@@ -449,15 +395,8 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
      */
     @Override
     public Iterable<Artifact> getArtifactsWithPrefixAllVersions(String namespace, String auid, String prefix) {
-        VolatileArtifactPredicateBuilder query = new VolatileArtifactPredicateBuilder();
-        query.filterByURIPrefix(prefix);
-        query.filterByCommitStatus(true);
-        query.filterByNamespace(namespace);
-        query.filterByAuid(auid);
-
-	// Apply filter then sort the resulting Artifacts by URL and descending version
-	return IteratorUtils.asIterable(getIterableArtifacts().stream().filter(query.build())
-            .sorted(ArtifactComparators.BY_URI_BY_DECREASING_VERSION).iterator());
+        return allVersions(artifactTree.urls(namespace, auid, prefix), false,
+                           ArtifactComparators.BY_URI_BY_DECREASING_VERSION);
     }
 
     /**
@@ -485,32 +424,15 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
         throw new IllegalArgumentException("Namespace is null");
       }
 
-      VolatileArtifactPredicateBuilder query = new VolatileArtifactPredicateBuilder();
-      if (urlPrefix != null) {
-        query.filterByURIPrefix(urlPrefix);
-      }
-      query.filterByCommitStatus(true);
-      query.filterByNamespace(namespace);
-
-      // Apply predicates filter to Artifact stream
-      Stream<Artifact> allVersions = indexedByUuid.values().stream().filter(query.build());
+      // Range scan over the URLs beginning with the prefix in each AU
+      Stream<ArtifactTree.UrlVersions> urls = artifactTree.aus(namespace)
+        .flatMap(au -> au.withPrefix(urlPrefix));
 
       if (versions == ArtifactVersions.LATEST) {
-        Stream<Artifact> latestVersions = allVersions
-          // Group the Artifacts by URL then pick the Artifact with highest version from each group
-          .collect(Collectors.groupingBy(artifact -> artifact.getIdentifier().getArtifactStem(),
-                                         Collectors.maxBy(Comparator.comparingInt(Artifact::getVersion))))
-          .values()
-          .stream()
-          .filter(Optional::isPresent)
-          .map(Optional::get);
-
-        return IteratorUtils.asIterable(
-                                        latestVersions.sorted(ArtifactComparators.BY_URI_BY_AUID_BY_DECREASING_VERSION).iterator());
+        return latestVersions(urls, false, ArtifactComparators.BY_URI_BY_AUID_BY_DECREASING_VERSION);
       }
 
-      return IteratorUtils.asIterable(
-                                      allVersions.sorted(ArtifactComparators.BY_URI_BY_AUID_BY_DECREASING_VERSION).iterator());
+      return allVersions(urls, false, ArtifactComparators.BY_URI_BY_AUID_BY_DECREASING_VERSION);
     }
 
     /**
@@ -527,24 +449,14 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
      */
     @Override
     public Iterable<Artifact> getArtifactsAllVersions(String namespace, String auid, String url) {
-        VolatileArtifactPredicateBuilder query = new VolatileArtifactPredicateBuilder();
-        query.filterByCommitStatus(true);
-        query.filterByNamespace(namespace);
-        query.filterByAuid(auid);
-
-        // Apply filter then sort the resulting Artifacts by URL and descending version
-        return IteratorUtils.asIterable(getArtifactsWithUrl(url).stream().filter(query.build())
-            .sorted(ArtifactComparators.BY_DECREASING_VERSION).iterator());
-    }
-
-    private Collection<Artifact> getArtifactsWithUrl(String url) {
-      Collection<Artifact> result = indexedByUrlMap.get(url);
+        ArtifactTree.UrlVersions uv = artifactTree.get(namespace, auid, url);
 
-      if (result == null) {
-        result = Collections.emptyList();
-      }
+        if (uv == null) {
+          return Collections.emptyList();
+        }
 
-      return result;
+        // Versions are already in decreasing version order
+        return uv.all(false).collect(Collectors.toList());
     }
 
     /**
@@ -569,27 +481,16 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
         throw new IllegalArgumentException("Namespace or URL is null");
       }
 
-      VolatileArtifactPredicateBuilder query = new VolatileArtifactPredicateBuilder();
-        query.filterByCommitStatus(true);
-        query.filterByNamespace(namespace);
-
-        // Apply predicates filter to Artifact stream
-        Stream<Artifact> allVersions = getArtifactsWithUrl(url).stream().filter(query.build());
-
-        if (versions == ArtifactVersions.LATEST) {
-          Stream<Artifact> latestVersions = allVersions
-              // Group the Artifacts by URL then pick the Artifact with highest version from each group
-              .collect(Collectors.groupingBy(artifact -> artifact.getIdentifier().getArtifactStem(),
-                  Collectors.maxBy(Comparator.comparingInt(Artifact::getVersion))))
-              .values()
-              .stream()
-              .filter(Optional::isPresent)
-              .map(Optional::get);
+      // Look up the URL in each AU in the namespace
+      Stream<ArtifactTree.UrlVersions> urls = artifactTree.aus(namespace)
+        .map(au -> au.urls.get(url))
+        .filter(Objects::nonNull);
 
-          return IteratorUtils.asIterable(latestVersions.sorted(ArtifactComparators.BY_URI_BY_AUID_BY_DECREASING_VERSION).iterator());
-        }
+      if (versions == ArtifactVersions.LATEST) {
+        return latestVersions(urls, false, ArtifactComparators.BY_URI_BY_AUID_BY_DECREASING_VERSION);
+      }
 
-        return IteratorUtils.asIterable(allVersions.sorted(ArtifactComparators.BY_URI_BY_AUID_BY_DECREASING_VERSION).iterator());
+      return allVersions(urls, false, ArtifactComparators.BY_URI_BY_AUID_BY_DECREASING_VERSION);
     }
 
     /**
@@ -609,23 +510,10 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
      */
     @Override
     public Artifact getArtifact(String namespace, String auid, String url, boolean includeUncommitted) {
-        VolatileArtifactPredicateBuilder q = new VolatileArtifactPredicateBuilder();
-
-        if (!includeUncommitted) {
-            q.filterByCommitStatus(true);
-        }
-
-        q.filterByNamespace(namespace);
-        q.filterByAuid(auid);
-
-        // Apply the filter then get the artifact with max version
-        Optional<Artifact> result = getArtifactsWithUrl(url)
-            .stream()
-            .filter(q.build())
-            .max(Comparator.comparingInt(Artifact::getVersion));
+        ArtifactTree.UrlVersions uv = artifactTree.get(namespace, auid, url);
 
         // Return the artifact, or null if one was not found
-        return result.orElse(null);
+        return uv == null ? null : uv.latest(includeUncommitted);
     }
 
     /**
@@ -646,21 +534,15 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
      */
     @Override
     public Artifact getArtifactVersion(String namespace, String auid, String url, Integer version, boolean includeUncommitted) {
-      VolatileArtifactPredicateBuilder q = new VolatileArtifactPredicateBuilder();
+      ArtifactTree.UrlVersions uv = artifactTree.get(namespace, auid, url);
 
-      // Only filter by commit status when no uncommitted artifact is to be returned.
-      if (!includeUncommitted) {
-	q.filterByCommitStatus(true);
+      if (uv == null) {
+        return null;
       }
 
-      q.filterByNamespace(namespace);
-      q.filterByAuid(auid);
-      q.filterByVersion(version);
-
-      List<Artifact> artifacts = getArtifactsWithUrl(url)
-          .stream()
-          .filter(q.build())
-          .toList();
+      List<Artifact> artifacts = (version == null)
+          ? uv.all(includeUncommitted).toList()
+          : uv.version(version, includeUncommitted);
 
       switch (artifacts.size()) {
       case 0:
@@ -691,14 +573,22 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
       auSize.setTotalLatestVersions(0L);
       // auSize.setTotalWarcSize(null);
 
-      VolatileArtifactPredicateBuilder q = new VolatileArtifactPredicateBuilder();
-      q.filterByCommitStatus(true);
-      q.filterByNamespace(namespace);
-      q.filterByAuid(auid);
-
-      boolean isAuEmpty = !indexedByUuid.values()
-          .stream()
-          .anyMatch(q.build());
+      // Sum the committed versions of each URL in one pass over the AU
+      long totalAllVersions = 0;
+      long totalLatestVersions = 0;
+      boolean isAuEmpty = true;
+
+      Iterator<ArtifactTree.UrlVersions> iter =
+          artifactTree.urls(namespace, auid, null).iterator();
+      while (iter.hasNext()) {
+        ArtifactTree.UrlVersions uv = iter.next();
+        Artifact latest = uv.latest(false);
+        if (latest != null) {
+          isAuEmpty = false;
+          totalLatestVersions += latest.getContentLength();
+          totalAllVersions += uv.all(false).mapToLong(Artifact::getContentLength).sum();
+        }
+      }
 
       if (isAuEmpty) {
         auSize.setTotalWarcSize(0L);
@@ -710,28 +600,38 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
           .auWarcSize(namespace, auid);
       auSize.setTotalWarcSize(totalWarcSize);
 
-      auSize.setTotalAllVersions(
-          indexedByUuid.values()
-              .stream()
-              .filter(q.build())
-              .mapToLong(Artifact::getContentLength)
-              .sum());
-
-      Map<String, Optional<Artifact>> latestArtifactVersions =
-          indexedByUuid.values()
-              .stream()
-              .filter(q.build())
-              .collect(Collectors.groupingBy(Artifact::getUri, Collectors.maxBy(Comparator.comparingInt(Artifact::getVersion))));
-
-      auSize.setTotalLatestVersions(
-          latestArtifactVersions.values().stream()
-              .filter(Optional::isPresent)
-              .map(Optional::get)
-              .mapToLong(Artifact::getContentLength)
-              .sum());
+      auSize.setTotalAllVersions(totalAllVersions);
+      auSize.setTotalLatestVersions(totalLatestVersions);
 
       return auSize;
     }
+
+    /**
+     * Returns the latest version of each URL, sorted.  The URLs are
+     * supplied by a range scan so are already nearly in order.
+     */
+    private Iterable<Artifact> latestVersions(Stream<ArtifactTree.UrlVersions> urls,
+                                              boolean includeUncommitted,
+                                              Comparator<Artifact> order) {
+      return urls
+        .map(uv -> uv.latest(includeUncommitted))
+        .filter(Objects::nonNull)
+        .sorted(order)
+        .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns all the versions of each URL, sorted.
+     */
+    private Iterable<Artifact> allVersions(Stream<ArtifactTree.UrlVersions> urls,
+                                           boolean includeUncommitted,
+                                           Comparator<Artifact> order) {
+      return urls
+        .flatMap(uv -> uv.all(includeUncommitted))
+        .sorted(order)
+        .collect(Collectors.toList());
+    }
+
     /**
      * Adds an artifact to the index.
      *
@@ -741,9 +641,13 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
      *          An Artifact with the artifact to be added.
      */
     protected void addToIndex(String id, Artifact artifact) {
-      // Add Artifact to the index.
-      indexedByUuid.put(id, artifact);
-      indexedByUrlMap.put(artifact.getUri(), artifact);
+      // Add a copy of the Artifact to the index, replacing any previous one
+      // with the same id.
+      Artifact previous = indexedByUuid.put(id, artifactTree.add(artifact));
+
+      if (previous != null) {
+        artifactTree.remove(previous);
+      }
     }
 
     /**
@@ -759,17 +663,21 @@ public class VolatileArtifactIndex extends AbstractArtifactIndex {
       Artifact removed = indexedByUuid.remove(id);
 
       if (removed != null) {
-        indexedByUrlMap.removeMapping(removed.getUri(), removed);
+        artifactTree.remove(removed);
         return removed;
       }
 
       return null;
     }
 
-    private Collection<Artifact> getIterableArtifacts() {
-      return indexedByUuid.values();
+    /**
+     * Rebuilds the namespace/AU/URL structure from {@link #indexedByUuid},
+     * after the latter has been loaded or modified directly.
+     */
+    protected void rebuildArtifactTree() {
+      artifactTree.clear();
+      indexedByUuid.replaceAll((id, artifact) -> artifactTree.add(artifact));
     }
-
     @Override
     public String toString() {
       return "[VolatileArtifactIndex index.size() = " + indexedByUuid.size() + "]";
@@ -38,6 +38,7 @@ import org.apache.commons.collections4.IteratorUtils;
 import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.io.filefilter.*;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.solr.client.solrj.*;
 import org.apache.solr.client.solrj.beans.DocumentObjectBinder;
 import org.apache.solr.client.solrj.impl.BaseHttpSolrClient;
@@ -81,6 +82,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -100,6 +102,9 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
   private static final int SOLR_RETRY_SHORT = 5;
   private static final int SOLR_RETRY_LONG = 3600;
 
+  private static final int JOURNAL_LOG_ATTEMPTS = 3;
+  private static final long JOURNAL_LOG_RETRY_DELAY = 1000; // ms
+
   private static final SolrQuery.SortClause SORTURI_ASC = new SolrQuery.SortClause("sortUri", SolrQuery.ORDER.asc);
   private static final SolrQuery.SortClause VERSION_DESC = new SolrQuery.SortClause("version", SolrQuery.ORDER.desc);
   private static final SolrQuery.SortClause AUID_ASC = new SolrQuery.SortClause("auid", SolrQuery.ORDER.asc);
@@ -170,6 +175,46 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
    */
   long hardCommitInterval = DEFAULT_SOLR_HARDCOMMIT_INTERVAL;
 
+  protected static final String ENV_SOLR_COMMIT_WINDOW = "REPO_SOLR_COMMIT_WINDOW";
+  public static final long DEFAULT_SOLR_COMMIT_WINDOW = 0;
+
+  protected static final String ENV_SOLR_COMMIT_BATCH_MAX = "REPO_SOLR_COMMIT_BATCH_MAX";
+  public static final int DEFAULT_SOLR_COMMIT_BATCH_MAX = 500;
+
+  /**
+   * Interval (in ms) over which index updates are coalesced into one Solr update request and soft commit. Zero
+   * disables coalescing: each update is sent and soft committed as it is made.
+   */
+  long commitWindow =
+      NumberUtils.toLong(System.getenv(ENV_SOLR_COMMIT_WINDOW), DEFAULT_SOLR_COMMIT_WINDOW);
+
+  /**
+   * Number of coalesced updates that causes them to be flushed before the commit window ends.
+   */
+  int commitBatchMax =
+      NumberUtils.toInt(System.getenv(ENV_SOLR_COMMIT_BATCH_MAX), DEFAULT_SOLR_COMMIT_BATCH_MAX);
+
+  /**
+   * Guards {@link #pendingUpdates} and {@link #inFlightUpdates}.
+   */
+  private final Object pendingLock = new Object();
+
+  /**
+   * Ensures only one batch of coalesced updates is sent to Solr at a time.
+   */
+  private final Object flushLock = new Object();
+
+  /**
+   * Coalesced updates not yet sent to Solr, by artifact UUID, in the order the artifacts were first updated. Also
+   * serves as an overlay so lookups see updates before Solr does.
+   */
+  private LinkedHashMap<String, PendingUpdate> pendingUpdates = new LinkedHashMap<>();
+
+  /**
+   * Coalesced updates currently being sent to Solr. Consulted by lookups until the batch is soft committed.
+   */
+  private Map<String, PendingUpdate> inFlightUpdates = Collections.emptyMap();
+
   /**
    * Constructor. Creates and uses an internal {@link HttpSolrClient} from the provided Solr collection endpoint.
    *
@@ -355,6 +400,11 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
     // Schedule hard commits
     scheduleHardCommitter();
 
+    // Schedule flushes of coalesced updates
+    if (isCoalescingUpdates()) {
+      scheduleCommitFlusher();
+    }
+
     // Set index state to RUNNING
     setState(ArtifactIndexState.RUNNING);
   }
@@ -543,7 +593,6 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
         lastJournalWriter.close();
 
         // Perform a hard commit
-        hardCommitNeeded = false;
         handleSolrCommit(SolrCommitStrategy.HARD);
 
         // Find all journal files and exclude the active one
@@ -625,6 +674,43 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
     return this;
   }
 
+  public long getCommitWindow() {
+    return commitWindow;
+  }
+
+  /**
+   * Sets the interval over which updates are coalesced. Must be set before {@link #start()}; zero disables
+   * coalescing.
+   */
+  public SolrArtifactIndex setCommitWindow(long window) {
+    if (window < 0) {
+      throw new IllegalArgumentException("Commit window must not be negative");
+    }
+
+    this.commitWindow = window;
+    return this;
+  }
+
+  public int getCommitBatchMax() {
+    return commitBatchMax;
+  }
+
+  public SolrArtifactIndex setCommitBatchMax(int max) {
+    if (max <= 0) {
+      throw new IllegalArgumentException("Commit batch size must be a positive integer");
+    }
+
+    this.commitBatchMax = max;
+    return this;
+  }
+
+  /**
+   * Returns true if index updates are coalesced into batches rather than sent and soft committed one at a time.
+   */
+  public boolean isCoalescingUpdates() {
+    return commitWindow > 0;
+  }
+
   /**
    * Returns a Solr response unchanged, if it has a zero status; throws,
    * otherwise.
@@ -664,6 +750,12 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
 
   @Override
   public void stop() {
+    try {
+      flushPendingUpdates();
+    } catch (IOException e) {
+      log.error("Could not flush coalesced updates; they will be replayed from the journal", e);
+    }
+
     try {
       if (isInternalClient) {
         solrClient.close();
@@ -767,6 +859,21 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
       throw new IllegalArgumentException("Artifact has null identifier");
     }
 
+    if (isCoalescingUpdates()) {
+      String json = new ObjectMapper().writeValueAsString(artifact);
+
+      logPendingUpdate(SolrCommitJournal.SolrOperation.ADD, artifact.getUuid(), json, () -> {
+        PendingUpdate pu = getPendingUpdate(artifact.getUuid(), artifact);
+        pu.artifact = copyArtifact(artifact);
+        pu.added = true;
+        return null;
+      });
+
+      flushPendingUpdatesIfFull();
+      log.debug2("Queued artifact for index [uuid: {}]", artifactId.getUuid());
+      return;
+    }
+
     // Add the Artifact to Solr as a bean
     try {
       // Convert Artifact to SolrInputDocument using the SolrClient's DocumentObjectBinder
@@ -806,6 +913,13 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
   public void indexArtifacts(Iterable<Artifact> artifacts) {
     DocumentObjectBinder objBinder = solrClient.getBinder();
 
+    try {
+      // Earlier coalesced updates must not overwrite these
+      flushPendingUpdates();
+    } catch (IOException e) {
+      log.error("Could not flush coalesced updates", e);
+    }
+
     UpdateRequest req = new UpdateRequest();
     addSolrCredentials(req);
     long docsAdded = 0;
@@ -867,21 +981,288 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
     log.debug("Total documents added = {}", docsAdded);
   }
 
-  private void logSolrUpdate(SolrCommitJournal.SolrOperation op, String artifactUuid, String data) {
-    for (int i = 0; i < 3; i++) {
+  /**
+   * An artifact's coalesced updates that haven't yet been sent to Solr.
+   */
+  private static class PendingUpdate {
+    /** State of the artifact after all updates so far */
+    Artifact artifact;
+
+    /** True if the artifact itself must be added to Solr */
+    boolean added = false;
+
+    /** True if the committed flag must be set */
+    boolean committed = false;
+
+    /** New storage URL, or null if unchanged */
+    String storageUrl;
+
+    /** Folds the unsent updates of an earlier, failed batch into this one */
+    void mergeEarlier(PendingUpdate earlier) {
+      added |= earlier.added;
+      committed |= earlier.committed;
+
+      if (storageUrl == null) {
+        storageUrl = earlier.storageUrl;
+      }
+    }
+
+    SolrInputDocument toSolrInputDocument(DocumentObjectBinder binder) {
+      if (added) {
+        return binder.toSolrInputDocument(ArtifactSolrDocument.fromArtifact(artifact));
+      }
+
+      // Atomic update of the changed fields
+      SolrInputDocument document = new SolrInputDocument();
+      document.addField("id", artifact.getUuid());
+
+      if (committed) {
+        document.addField("committed", Collections.singletonMap("set", true));
+      }
+
+      if (storageUrl != null) {
+        document.addField("storageUrl", Collections.singletonMap("set", storageUrl));
+      }
+
+      return document;
+    }
+  }
+
+  private static Artifact copyArtifact(Artifact artifact) {
+    return ArtifactSolrDocument.fromArtifact(artifact).toArtifact();
+  }
+
+  /**
+   * Returns the current state of an artifact with coalesced updates not yet visible in Solr, or null if there are
+   * none.
+   */
+  private Artifact getPendingArtifact(String artifactUuid) {
+    synchronized (pendingLock) {
+      PendingUpdate pu = pendingUpdates.get(artifactUuid);
+
+      if (pu == null) {
+        pu = inFlightUpdates.get(artifactUuid);
+      }
+
+      return pu == null ? null : copyArtifact(pu.artifact);
+    }
+  }
+
+  /**
+   * Returns the unsent {@link PendingUpdate} for an artifact, creating one from the artifact's current state if
+   * necessary. Must be called with {@link #pendingLock} held.
+   */
+  private PendingUpdate getPendingUpdate(String artifactUuid, Artifact current) {
+    PendingUpdate pu = pendingUpdates.get(artifactUuid);
+
+    if (pu == null) {
+      PendingUpdate inFlight = inFlightUpdates.get(artifactUuid);
+
+      pu = new PendingUpdate();
+      pu.artifact = copyArtifact(inFlight != null ? inFlight.artifact : current);
+      pendingUpdates.put(artifactUuid, pu);
+    }
+
+    return pu;
+  }
+
+  /**
+   * Returns the latest version of an artifact among a Solr query result and the coalesced updates not yet visible in
+   * Solr.
+   *
+   * @param solrResult The {@link Artifact} found by the Solr query, or null.
+   * @param version    The version to match, or null to match any version.
+   */
+  private Artifact mergePendingArtifacts(Artifact solrResult, String namespace, String auid, String url,
+                                         Integer version, boolean includeUncommitted) {
+    synchronized (pendingLock) {
+      if (pendingUpdates.isEmpty() && inFlightUpdates.isEmpty()) {
+        return solrResult;
+      }
+
+      Artifact result = solrResult;
+
+      // A pending update to the Solr result supersedes it
+      if (solrResult != null) {
+        Artifact pending = getPendingArtifact(solrResult.getUuid());
+
+        if (pending != null) {
+          result = pending;
+        }
+      }
+
+      for (Map<String, PendingUpdate> updates : Arrays.asList(inFlightUpdates, pendingUpdates)) {
+        for (PendingUpdate pu : updates.values()) {
+          Artifact a = pu.artifact;
+
+          if (a.getNamespace().equals(namespace) && a.getAuid().equals(auid) && a.getUri().equals(url)
+              && (version == null || version.equals(a.getVersion()))
+              && (includeUncommitted || a.getCommitted())
+              && (result == null || a.getVersion() > result.getVersion())) {
+            result = copyArtifact(a);
+          }
+        }
+      }
+
+      return result;
+    }
+  }
+
+  /**
+   * Sends the coalesced updates if enough have accumulated.
+   */
+  private void flushPendingUpdatesIfFull() throws IOException {
+    boolean isFull;
+
+    synchronized (pendingLock) {
+      isFull = pendingUpdates.size() >= commitBatchMax;
+    }
+
+    if (isFull) {
+      flushPendingUpdates();
+    }
+  }
+
+  /**
+   * Sends all coalesced updates to Solr in one update request, followed by one soft commit. Updates that can't be
+   * sent are kept for the next attempt; they are also in the journal.
+   *
+   * @throws IOException if Solr reports problems.
+   */
+  public void flushPendingUpdates() throws IOException {
+    synchronized (flushLock) {
+      Map<String, PendingUpdate> batch;
+
+      synchronized (pendingLock) {
+        if (pendingUpdates.isEmpty()) {
+          return;
+        }
+
+        batch = pendingUpdates;
+        inFlightUpdates = batch;
+        pendingUpdates = new LinkedHashMap<>();
+      }
+
       try {
-        solrJournalWriter.logOperation(op, artifactUuid, data);
+        DocumentObjectBinder binder = solrClient.getBinder();
+        UpdateRequest req = new UpdateRequest();
+        addSolrCredentials(req);
+
+        for (PendingUpdate pu : batch.values()) {
+          req.add(pu.toSolrInputDocument(binder));
+        }
+
+        handleSolrResponse(req.process(solrClient, solrCollection),
+            "Problem sending batch of " + batch.size() + " updates to Solr");
+
+        handleSolrResponse(handleSolrCommit(SolrCommitStrategy.SOFT),
+            "Problem committing batch of " + batch.size() + " updates to Solr");
+
+        synchronized (pendingLock) {
+          inFlightUpdates = Collections.emptyMap();
+        }
+
+        log.debug2("Flushed coalesced updates [count: {}]", batch.size());
+      } catch (SolrException | SolrResponseErrorException | SolrServerException | IOException e) {
+        // Requeue ahead of anything that arrived meanwhile
+        synchronized (pendingLock) {
+          LinkedHashMap<String, PendingUpdate> requeued = new LinkedHashMap<>(batch);
+
+          for (Map.Entry<String, PendingUpdate> ent : pendingUpdates.entrySet()) {
+            PendingUpdate earlier = requeued.get(ent.getKey());
+
+            if (earlier != null) {
+              ent.getValue().mergeEarlier(earlier);
+            }
+
+            requeued.put(ent.getKey(), ent.getValue());
+          }
+
+          pendingUpdates = requeued;
+          inFlightUpdates = Collections.emptyMap();
+        }
+
+        throw new IOException("Could not flush coalesced updates to Solr", e);
+      }
+    }
+  }
+
+  /**
+   * Arrange for coalesced updates to be flushed once, in commitWindow ms.
+   */
+  private void scheduleCommitFlusher() {
+    ((BaseLockssRepository) repository).getScheduledExecutorService()
+        .schedule(() -> {
+          try {
+            flushPendingUpdates();
+          } catch (IOException e) {
+            log.error("Could not flush coalesced updates", e);
+          } finally {
+            if (getState() != ArtifactIndexState.STOPPED) {
+              scheduleCommitFlusher();
+            }
+          }
+        }, commitWindow, TimeUnit.MILLISECONDS);
+  }
+
+  private void logSolrUpdate(SolrCommitJournal.SolrOperation op, String artifactUuid, String data) {
+    for (int attempt = 1; !tryLogSolrUpdate(op, artifactUuid, data); attempt++) {
+      if (!awaitJournalRetry(op, artifactUuid, attempt)) {
         return;
-      } catch (IOException e) {
-        try {
-          Thread.sleep(1000L);
-        } catch (InterruptedException ex) {
-          break;
+      }
+    }
+  }
+
+  /**
+   * Logs a coalesced update to the Solr update journal and applies it to the pending updates, atomically with respect
+   * to {@link #pendingLock}. The lock is released while waiting to retry a failed journal write. If the update can't
+   * be journaled it is applied anyway.
+   *
+   * @param update Applies the update to the pending updates; called with {@link #pendingLock} held.
+   * @return The value returned by {@code update}.
+   */
+  private <T> T logPendingUpdate(SolrCommitJournal.SolrOperation op, String artifactUuid, String data,
+                                 Supplier<T> update) {
+    boolean retry = true;
+
+    for (int attempt = 1; ; attempt++) {
+      synchronized (pendingLock) {
+        if (!retry || tryLogSolrUpdate(op, artifactUuid, data)) {
+          return update.get();
         }
       }
+
+      retry = awaitJournalRetry(op, artifactUuid, attempt);
+    }
+  }
+
+  private boolean tryLogSolrUpdate(SolrCommitJournal.SolrOperation op, String artifactUuid, String data) {
+    try {
+      solrJournalWriter.logOperation(op, artifactUuid, data);
+      return true;
+    } catch (IOException e) {
+      log.debug("Could not log to Solr update journal [op: {}, artifactUuid: {}]", op, artifactUuid, e);
+      return false;
+    }
+  }
+
+  /**
+   * Waits before retrying a failed Solr update journal write.
+   *
+   * @return false, after logging an error, if the write should not be retried.
+   */
+  private boolean awaitJournalRetry(SolrCommitJournal.SolrOperation op, String artifactUuid, int attempt) {
+    if (attempt < JOURNAL_LOG_ATTEMPTS) {
+      try {
+        Thread.sleep(JOURNAL_LOG_RETRY_DELAY);
+        return true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
     }
 
-    log.error("Could not log to Solr update journal [op: {}, artifactUuid: {}]", op , artifactUuid);
+    log.error("Could not log to Solr update journal [op: {}, artifactUuid: {}]", op, artifactUuid);
+    return false;
   }
 
   /**
@@ -916,6 +1297,11 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
       throw new IllegalArgumentException("Null or empty artifact UUID");
     }
 
+    Artifact pending = getPendingArtifact(artifactUuid);
+    if (pending != null) {
+      return pending;
+    }
+
     // Solr query to perform
     SolrQuery q = new SolrQuery();
     q.setQuery(String.format("id:%s", artifactUuid));
@@ -972,6 +1358,32 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
    */
   @Override
   public Artifact commitArtifact(String artifactUuid) throws IOException {
+    if (isCoalescingUpdates()) {
+      Artifact current = getArtifact(artifactUuid);
+
+      if (current == null) {
+        log.debug("Artifact does not exist [uuid: {}]", artifactUuid);
+        return null;
+      }
+
+      Artifact result =
+          logPendingUpdate(SolrCommitJournal.SolrOperation.UPDATE_COMMITTED, artifactUuid, null, () -> {
+            PendingUpdate pu = getPendingUpdate(artifactUuid, current);
+            pu.artifact.setCommitted(true);
+            pu.committed = true;
+            return copyArtifact(pu.artifact);
+          });
+
+      try {
+        invalidateAuSize(result.getNamespace(), result.getAuid());
+      } catch (DbException e) {
+        throw new IOException("Could not invalidate AU size", e);
+      }
+
+      flushPendingUpdatesIfFull();
+      return result;
+    }
+
     if (!artifactExists(artifactUuid)) {
       log.debug("Artifact does not exist [uuid: {}]", artifactUuid);
       return null;
@@ -1032,6 +1444,11 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
   UpdateResponse handleSolrCommit(SolrCommitStrategy strategy) throws IOException, SolrServerException {
     boolean softCommit = true;
 
+    if (strategy == SolrCommitStrategy.HARD) {
+      // A hard commit is followed by removal of the journal, so must include coalesced updates
+      flushPendingUpdates();
+    }
+
     switch (strategy) {
       case SOFT_ONLY:
         softCommit = true;
@@ -1045,7 +1462,6 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
 
       case HARD:
         softCommit = false;
-        hardCommitNeeded = false;
         break;
     }
 
@@ -1057,7 +1473,14 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
     addSolrCredentials(req);
 
     // Perform commit and return response
-    return req.process(solrClient, solrCollection);
+    UpdateResponse response = req.process(solrClient, solrCollection);
+
+    if (strategy == SolrCommitStrategy.HARD) {
+      // Not before: the flush above soft commits, which sets it
+      hardCommitNeeded = false;
+    }
+
+    return response;
   }
 
   /**
@@ -1087,6 +1510,9 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
       throw new IllegalArgumentException("Null or empty UUID");
     }
 
+    // Deletions aren't coalesced; send any pending updates to this (or any) artifact first
+    flushPendingUpdates();
+
     Artifact artifact = getArtifact(artifactUuid);
 
     if (artifact != null) {
@@ -1165,6 +1591,22 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
       throw new IllegalArgumentException("Invalid storage URL: Must not be null or empty");
     }
 
+    Artifact current = isCoalescingUpdates() ? getArtifact(artifactUuid) : null;
+
+    // Unknown artifacts are left to Solr to report
+    if (current != null) {
+      Artifact result =
+          logPendingUpdate(SolrCommitJournal.SolrOperation.UPDATE_STORAGEURL, artifactUuid, storageUrl, () -> {
+            PendingUpdate pu = getPendingUpdate(artifactUuid, current);
+            pu.artifact.setStorageUrl(storageUrl);
+            pu.storageUrl = storageUrl;
+            return copyArtifact(pu.artifact);
+          });
+
+      flushPendingUpdatesIfFull();
+      return result;
+    }
+
     // Perform a partial update of an existing Solr document
     SolrInputDocument document = new SolrInputDocument();
     document.addField("id", artifactUuid);
@@ -1226,6 +1668,9 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
    */
   @Override
   public Iterable<String> getNamespaces() throws IOException {
+    // Queries see only what has been sent to Solr
+    flushPendingUpdates();
+
     try {
       // Cannot perform facet field query on an empty Solr index
       if (isEmptySolrIndex()) {
@@ -1278,6 +1723,9 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
    */
   @Override
   public Iterable<String> getAuIds(String namespace) throws IOException {
+    // Queries see only what has been sent to Solr
+    flushPendingUpdates();
+
     // We use a Solr facet query but another option is Solr groups. I believe faceting is better in this case,
     // because we are not actually interested in the Solr documents - only aggregate information about them.
     SolrQuery q = new SolrQuery();
@@ -1319,6 +1767,9 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
    */
   @Override
   public Iterable<Artifact> getArtifacts(String namespace, String auid, boolean includeUncommitted) throws IOException {
+    // Queries see only what has been sent to Solr
+    flushPendingUpdates();
+
     // Create Solr query
     SolrQuery q = new SolrQuery();
 
@@ -1363,6 +1814,9 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
    */
   @Override
   public Iterable<Artifact> getArtifactsAllVersions(String namespace, String auid, boolean includeUncommitted) throws IOException {
+    // Queries see only what has been sent to Solr
+    flushPendingUpdates();
+
     // Create a Solr query
     SolrQuery q = new SolrQuery();
 
@@ -1396,6 +1850,8 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
    */
   @Override
   public Iterable<Artifact> getArtifactsWithPrefix(String namespace, String auid, String prefix) throws IOException {
+    // Queries see only what has been sent to Solr
+    flushPendingUpdates();
 
     SolrQuery q = new SolrQuery();
 
@@ -1438,6 +1894,8 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
    */
   @Override
   public Iterable<Artifact> getArtifactsWithPrefixAllVersions(String namespace, String auid, String prefix) throws IOException {
+    // Queries see only what has been sent to Solr
+    flushPendingUpdates();
 
     SolrQuery q = new SolrQuery();
 
@@ -1468,6 +1926,8 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
   @Override
   public Iterable<Artifact> getArtifactsWithUrlPrefixFromAllAus(String namespace, String urlPrefix,
                                                                 ArtifactVersions versions) throws IOException {
+    // Queries see only what has been sent to Solr
+    flushPendingUpdates();
 
     if (!(versions == ArtifactVersions.ALL ||
         versions == ArtifactVersions.LATEST)) {
@@ -1540,6 +2000,9 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
    */
   @Override
   public Iterable<Artifact> getArtifactsAllVersions(String namespace, String auid, String url) throws IOException {
+    // Queries see only what has been sent to Solr
+    flushPendingUpdates();
+
     SolrQuery q = new SolrQuery();
 
     q.setQuery("*:*");
@@ -1568,6 +2031,8 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
   @Override
   public Iterable<Artifact> getArtifactsWithUrlFromAllAus(String namespace, String url, ArtifactVersions versions)
       throws IOException {
+    // Queries see only what has been sent to Solr
+    flushPendingUpdates();
 
     if (!(versions == ArtifactVersions.ALL ||
         versions == ArtifactVersions.LATEST)) {
@@ -1639,6 +2104,12 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
    */
   @Override
   public Artifact getArtifact(String namespace, String auid, String url, boolean includeUncommitted) throws IOException {
+    return mergePendingArtifacts(findLatestArtifact(namespace, auid, url, includeUncommitted),
+        namespace, auid, url, null, includeUncommitted);
+  }
+
+  private Artifact findLatestArtifact(String namespace, String auid, String url, boolean includeUncommitted)
+      throws IOException {
     // Solr query to perform
     SolrQuery q = new SolrQuery();
     q.setQuery("*:*");
@@ -1700,6 +2171,12 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
    */
   @Override
   public Artifact getArtifactVersion(String namespace, String auid, String url, Integer version, boolean includeUncommitted) throws IOException {
+    return mergePendingArtifacts(findArtifactVersion(namespace, auid, url, version, includeUncommitted),
+        namespace, auid, url, version, includeUncommitted);
+  }
+
+  private Artifact findArtifactVersion(String namespace, String auid, String url, Integer version,
+                                       boolean includeUncommitted) throws IOException {
     SolrQuery q = new SolrQuery();
 
     q.setQuery("*:*");
@@ -1794,6 +2271,9 @@ public class SolrArtifactIndex extends AbstractArtifactIndex {
   }
 
   private AuSize computeAuSize(String namespace, String auid) throws IOException {
+    // Queries see only what has been sent to Solr
+    flushPendingUpdates();
+
     log.debug("Starting AU size recalculation [ns: {}, auid: {}]", namespace, auid);
 
     // Create Solr query
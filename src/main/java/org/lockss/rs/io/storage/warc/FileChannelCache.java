@@ -0,0 +1,406 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.rs.io.storage.warc;
+
+import org.lockss.log.L4JLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Cache of read-only {@link FileChannel}s to WARC files, so that reading a WARC record neither opens the file nor
+ * skips to the record. Streams returned by {@link #getInputStream(Path, long, long)} read their region of the file with
+ * positional reads, directly into the caller's buffer, and so may share a channel.
+ * <p>
+ * At most {@code maxOpen} channels are kept; the least recently used channel is evicted when another is opened. A
+ * channel that is evicted (or invalidated) while streams are still reading from it is closed when the last of them is
+ * closed.
+ * <p>
+ * A {@link FileChannel} is closed if a thread is interrupted while reading from it, which would break every other
+ * stream sharing it. A stream whose channel was closed that way discards it from the cache and retries on a newly
+ * opened channel; only the interrupted thread sees the {@link ClosedByInterruptException}.
+ */
+public class FileChannelCache {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  private final int maxOpen;
+
+  // Path -> open channel, in access order.  Guarded by this.
+  private final LinkedHashMap<Path, CachedChannel> channels = new LinkedHashMap<>(16, 0.75f, true);
+
+  // Guarded by this
+  private long hits;
+  private long opens;
+  private long evictions;
+  private long reopens;
+
+  // Number of times a read is retried on a new channel after the shared one was closed
+  private static final int MAX_REOPENS = 3;
+
+  public FileChannelCache(int maxOpen) {
+    if (maxOpen <= 0) {
+      throw new IllegalArgumentException("Maximum number of open channels must be a positive integer");
+    }
+
+    this.maxOpen = maxOpen;
+  }
+
+  private static class CachedChannel {
+    private final Path path;
+    private final FileChannel channel;
+    private int refs;
+    private boolean evicted;
+
+    CachedChannel(Path path, FileChannel channel) {
+      this.path = path;
+      this.channel = channel;
+    }
+  }
+
+  /**
+   * Returns an {@link InputStream} of a region of a file, read through a cached channel.
+   *
+   * @param path   The {@link Path} of the file.
+   * @param offset The offset of the region in the file.
+   * @param length The length of the region, or a negative number to read to the end of the file.
+   * @return An {@link InputStream} of the region, which must be closed.
+   * @throws IOException if the file could not be opened.
+   */
+  public InputStream getInputStream(Path path, long offset, long length) throws IOException {
+    if (offset < 0) {
+      throw new IllegalArgumentException("Negative offset: " + offset);
+    }
+
+    CachedChannel cc = acquire(path);
+    return new ChannelRegionInputStream(cc, offset, length < 0 ? Long.MAX_VALUE : offset + length);
+  }
+
+  private CachedChannel acquire(Path path) throws IOException {
+    synchronized (this) {
+      CachedChannel cc = channels.get(path);
+
+      if (cc != null) {
+        hits++;
+        cc.refs++;
+        return cc;
+      }
+    }
+
+    // Open the file without holding the lock
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    List<FileChannel> toClose = new ArrayList<>();
+    CachedChannel result;
+
+    synchronized (this) {
+      result = channels.get(path);
+
+      if (result != null) {
+        // Another thread opened the file first
+        hits++;
+        toClose.add(channel);
+      } else {
+        opens++;
+        result = new CachedChannel(path, channel);
+        channels.put(path, result);
+
+        // Evict the least recently used channels
+        Iterator<CachedChannel> iter = channels.values().iterator();
+
+        while (channels.size() > maxOpen && iter.hasNext()) {
+          CachedChannel lru = iter.next();
+
+          if (lru == result) {
+            continue;
+          }
+
+          iter.remove();
+          evictions++;
+          lru.evicted = true;
+
+          if (lru.refs == 0) {
+            toClose.add(lru.channel);
+          }
+        }
+      }
+
+      result.refs++;
+    }
+
+    toClose.forEach(FileChannelCache::closeQuietly);
+    return result;
+  }
+
+  private void release(CachedChannel cc) {
+    boolean close;
+
+    synchronized (this) {
+      cc.refs--;
+      close = cc.evicted && cc.refs == 0;
+    }
+
+    if (close) {
+      closeQuietly(cc.channel);
+    }
+  }
+
+  /**
+   * Removes a channel that was closed out from under its streams (by an interrupted reader) from the cache, so that
+   * subsequent reads open a new one.
+   */
+  private void discard(CachedChannel cc) {
+    synchronized (this) {
+      if (channels.get(cc.path) == cc) {
+        channels.remove(cc.path);
+      }
+
+      cc.evicted = true;
+    }
+  }
+
+  /**
+   * Replaces a stream's closed channel with a usable one, opening the file again if necessary.
+   */
+  private CachedChannel reacquire(CachedChannel cc) throws IOException {
+    discard(cc);
+    release(cc);
+
+    synchronized (this) {
+      reopens++;
+    }
+
+    return acquire(cc.path);
+  }
+
+  /**
+   * Closes the cached channel of a file, e.g., before the file is removed or replaced. Streams still reading from it
+   * may finish.
+   *
+   * @param path The {@link Path} of the file.
+   */
+  public void invalidate(Path path) {
+    CachedChannel cc;
+
+    synchronized (this) {
+      cc = channels.remove(path);
+
+      if (cc == null) {
+        return;
+      }
+
+      cc.evicted = true;
+
+      if (cc.refs > 0) {
+        return;
+      }
+    }
+
+    closeQuietly(cc.channel);
+  }
+
+  /**
+   * Closes all the cached channels.
+   */
+  public void closeAll() {
+    List<Path> paths;
+
+    synchronized (this) {
+      paths = new ArrayList<>(channels.keySet());
+    }
+
+    paths.forEach(this::invalidate);
+  }
+
+  /** Returns the number of reads that found the file's channel open */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /** Returns the number of times a file was opened */
+  public synchronized long getOpens() {
+    return opens;
+  }
+
+  /** Returns the number of channels closed to make room for others */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /** Returns the number of times a channel closed by an interrupted reader was replaced */
+  public synchronized long getReopens() {
+    return reopens;
+  }
+
+  /** Returns the number of channels currently cached */
+  public synchronized int getOpenChannels() {
+    return channels.size();
+  }
+
+  private static void closeQuietly(FileChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      log.warn("Could not close channel", e);
+    }
+  }
+
+  /**
+   * An {@link InputStream} of a region of a file, read with positional reads on a shared channel.
+   */
+  private class ChannelRegionInputStream extends InputStream {
+    private CachedChannel cc;
+    private final long end;
+    private long position;
+    private boolean closed;
+
+    ChannelRegionInputStream(CachedChannel cc, long start, long end) {
+      this.cc = cc;
+      this.position = start;
+      this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      int n = read(b, 0, 1);
+      return n <= 0 ? -1 : (b[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+
+      Objects.checkFromIndexSize(off, len, b.length);
+
+      if (len == 0) {
+        return 0;
+      }
+
+      if (position >= end) {
+        return -1;
+      }
+
+      int n = (int) Math.min(len, end - position);
+      int read;
+
+      for (int tries = 0; ; tries++) {
+        try {
+          read = cc.channel.read(ByteBuffer.wrap(b, off, n), position);
+          break;
+        } catch (ClosedChannelException e) {
+          handleClosed(e, tries);
+        }
+      }
+
+      if (read <= 0) {
+        return -1;
+      }
+
+      position += read;
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      if (n <= 0 || position >= end) {
+        return 0;
+      }
+
+      long skipped = Math.min(n, Math.max(0, Math.min(end, size()) - position));
+      position += skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      if (closed) {
+        return 0;
+      }
+
+      long remaining = Math.min(end, size()) - position;
+      return (int) Math.max(0, Math.min(Integer.MAX_VALUE, remaining));
+    }
+
+    private long size() throws IOException {
+      for (int tries = 0; ; tries++) {
+        try {
+          return cc.channel.size();
+        } catch (ClosedChannelException e) {
+          handleClosed(e, tries);
+        }
+      }
+    }
+
+    /**
+     * Handles the shared channel having been closed. If this thread was interrupted, the channel is discarded and the
+     * exception rethrown; otherwise another reader was interrupted, so switch to a new channel and let the caller
+     * retry.
+     */
+    private void handleClosed(ClosedChannelException e, int tries) throws IOException {
+      if (e instanceof ClosedByInterruptException || Thread.currentThread().isInterrupted()) {
+        discard(cc);
+        throw e;
+      }
+
+      if (tries >= MAX_REOPENS) {
+        throw e;
+      }
+
+      log.debug2("Channel to {} closed by another reader, reopening", cc.path);
+
+      try {
+        cc = reacquire(cc);
+      } catch (IOException ioe) {
+        // The old channel has been released; this stream is unusable
+        closed = true;
+        throw ioe;
+      }
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        release(cc);
+      }
+    }
+  }
+}
@@ -31,6 +31,7 @@
 package org.lockss.rs.io.storage.warc;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.archive.format.warc.WARCConstants;
 import org.lockss.log.L4JLogger;
 import org.lockss.rs.io.storage.ArtifactDataStore;
@@ -58,6 +59,12 @@ public class LocalWarcArtifactDataStore extends WarcArtifactDataStore {
 
   public final static long DEFAULT_BLOCKSIZE = FileUtils.ONE_KB * 4;
 
+  protected static final String ENV_MAX_OPEN_WARC_CHANNELS = "REPO_MAX_OPEN_WARC_CHANNELS";
+  public static final int DEFAULT_MAX_OPEN_WARC_CHANNELS = 64;
+
+  /** Open channels to uncompressed WARCs, for reading artifact data */
+  protected FileChannelCache channelCache;
+
   // *******************************************************************************************************************
   // * CONSTRUCTORS
   // *******************************************************************************************************************
@@ -83,6 +90,10 @@ public class LocalWarcArtifactDataStore extends WarcArtifactDataStore {
     // Set local base paths
     this.basePaths = basePaths;
 
+    // Cache of open channels for reading uncompressed WARC records
+    this.channelCache = new FileChannelCache(
+        NumberUtils.toInt(System.getenv(ENV_MAX_OPEN_WARC_CHANNELS), DEFAULT_MAX_OPEN_WARC_CHANNELS));
+
     // Start temporary WARC file pool
     this.tmpWarcPool = new WarcFilePool(this);
 
@@ -337,15 +348,60 @@ public class LocalWarcArtifactDataStore extends WarcArtifactDataStore {
     }
   }
 
+  @Override
+  protected void initFile(Path filePath) throws IOException {
+    initFile(filePath.toFile());
+  }
+
   protected void initFile(File file) throws IOException {
     FileUtils.touch(file);
   }
 
   @Override
   public boolean removeWarc(Path filePath) {
+    if (channelCache != null) {
+      channelCache.invalidate(filePath);
+    }
+
     return filePath.toFile().delete();
   }
 
+  @Override
+  protected boolean removeFile(Path filePath) {
+    return filePath.toFile().delete();
+  }
+
+  /**
+   * Returns an {@link InputStream} of a WARC record. Records in uncompressed WARCs are read through a cached
+   * {@link java.nio.channels.FileChannel} to the WARC, bounded by the record's length; records in compressed WARCs
+   * are read as in {@link WarcArtifactDataStore}.
+   */
+  @Override
+  protected InputStream getInputStreamFromStorageUrl(URI storageUrl) throws IOException {
+    WarcRecordLocation loc = WarcRecordLocation.fromStorageUrl(storageUrl);
+
+    if (isCompressedWarcFile(loc.getPath())) {
+      return super.getInputStreamFromStorageUrl(storageUrl);
+    }
+
+    // Large reads go directly into the caller's buffer; WARC header lines are read through the buffer
+    return new BufferedInputStream(
+        channelCache.getInputStream(loc.getPath(), loc.getOffset(), loc.getLength()));
+  }
+
+  /**
+   * Returns the cache of channels to uncompressed WARCs, e.g., for its hit and open counts.
+   */
+  public FileChannelCache getChannelCache() {
+    return channelCache;
+  }
+
+  @Override
+  public void stop() {
+    super.stop();
+    channelCache.closeAll();
+  }
+
   /**
    * Returns information about the storage size and free space
    *
@@ -110,6 +110,7 @@ public class VolatileWarcArtifactDataStore extends WarcArtifactDataStore {
     }
   }
 
+  @Override
   protected void initFile(Path filePath) {
     synchronized (warcs) {
       warcs.putIfAbsent(filePath, new ByteArrayOutputStream());
@@ -124,6 +125,11 @@ public class VolatileWarcArtifactDataStore extends WarcArtifactDataStore {
     }
   }
 
+  @Override
+  protected boolean removeFile(Path filePath) {
+    return removeWarc(filePath);
+  }
+
   @Override
   protected long getBlockSize() {
     return DEFAULT_BLOCKSIZE;
@@ -43,6 +43,7 @@ import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.http.HttpException;
@@ -156,6 +157,14 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
   public static final int DEFAULT_THRESHOLD_ARTIFACTS = 1000;
   protected int thresholdArtifacts;
 
+  protected static final String ENV_BATCH_MAX_ARTIFACTS = "REPO_BATCH_MAX_ARTIFACTS";
+  public static final int DEFAULT_BATCH_MAX_ARTIFACTS = 100;
+  protected int batchMaxArtifacts;
+
+  protected static final String ENV_REINDEX_THREADS = "REPO_REINDEX_THREADS";
+  public static final int DEFAULT_REINDEX_THREADS = 4;
+  protected int reindexThreads;
+
   protected static final String ENV_UNCOMMITTED_ARTIFACT_EXPIRATION = "REPO_UNCOMMITTED_ARTIFACT_EXPIRATION";
   protected static final long DEFAULT_UNCOMMITTED_ARTIFACT_EXPIRATION = 4 * TimeUtil.HOUR;
   protected long uncommittedArtifactExpiration;
@@ -204,6 +213,10 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
 
   protected abstract boolean removeWarc(Path warcPath) throws IOException;
 
+  protected abstract boolean removeFile(Path filePath) throws IOException;
+
+  protected abstract void initFile(Path filePath) throws IOException;
+
   protected abstract long getBlockSize();
 
   protected abstract long getFreeSpace(Path fsPath);
@@ -237,6 +250,12 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
     // Set WARC artifacts threshold to use
     setThresholdArtifacts(NumberUtils.toInt(System.getenv(ENV_THRESHOLD_ARTIFACTS), DEFAULT_THRESHOLD_ARTIFACTS));
 
+    // Set maximum number of artifacts in an ArtifactBatch
+    setBatchMaxArtifacts(NumberUtils.toInt(System.getenv(ENV_BATCH_MAX_ARTIFACTS), DEFAULT_BATCH_MAX_ARTIFACTS));
+
+    // Set number of threads used to reindex artifacts from WARCs
+    setReindexThreads(NumberUtils.toInt(System.getenv(ENV_REINDEX_THREADS), DEFAULT_REINDEX_THREADS));
+
     // Set uncommitted artifact expiration interval
     setUncommittedArtifactExpiration(
         NumberUtils.toLong(System.getenv(ENV_UNCOMMITTED_ARTIFACT_EXPIRATION), DEFAULT_UNCOMMITTED_ARTIFACT_EXPIRATION)
@@ -998,75 +1017,63 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
 
     boolean isWarcFileRemovable = true;
 
-    // Open WARC file
-    try (InputStream warcStream = markAndGetInputStream(tmpWarc)) {
+    // Use the temporary WARC's record index if it covers the WARC
+    List<WarcRecordIndex.Entry> indexEntries = readWarcRecordIndex(tmpWarc);
+
+    if (indexEntries != null) {
+      for (WarcRecordIndex.Entry entry : indexEntries) {
+        if (entry.isArtifact()) {
+          isWarcFileRemovable &= reloadTemporaryArtifact(index, tmpWarc, entry.getArtifactIdentifier(),
+              isArtifactExpired(entry.getDate()));
+        }
+      }
+    } else {
+      // Entries of a record index rebuilt from the WARC records
+      List<WarcRecordIndex.Entry> scannedEntries = new ArrayList<>();
+      boolean isScanComplete = false;
 
-      ArchiveReader archiveReader =
-          getArchiveReader(tmpWarc, new IgnoreCloseInputStream(warcStream));
+      // Open WARC file
+      try (InputStream warcStream = markAndGetInputStream(tmpWarc)) {
 
-      // Do not perform digest calculations
-      archiveReader.setDigest(false);
+        ArchiveReader archiveReader =
+            getArchiveReader(tmpWarc, new IgnoreCloseInputStream(warcStream));
 
-      // ArchiveReader is an iterable over ArchiveRecord objects
-      for (ArchiveRecord record : archiveReader) {
-        boolean isRecordRemovable = false;
-
-        // Read WARC record header for artifact ID
-        ArtifactIdentifier aid = WarcArtifactDataUtil.buildArtifactIdentifier(record.getHeader());
-
-        // Resume artifact lifecycle based on the artifact's state
-        // Acquire artifact lock: Operations below alter artifact state
-        try (SemaphoreLock lock = lockArtifact(aid)) {
-          Artifact artifact = index.getArtifact(aid);
-          WarcArtifactState state = getArtifactState(artifact, isArtifactExpired(record.getHeader()));
-
-          switch (state) {
-            case UNCOMMITTED:
-              break;
-
-            case PENDING_COPY:
-              // Requeue the copy of this artifact from temporary to permanent storage
-              CopyArtifactTask task = new CopyArtifactTask(artifact);
-              queuedCopyTasks.put(artifact.getIdentifier(), task);
-              stripedExecutor.submit(task);
-              break;
-
-            case EXPIRED:
-              // Remove artifact reference from index if it exists
-              if (!index.deleteArtifact(aid.getUuid())) {
-                log.warn("Could not remove expired artifact from index [uuid: {}]", aid.getUuid());
-              }
+        // Do not perform digest calculations
+        archiveReader.setDigest(false);
 
-            case UNKNOWN:
-            case NOT_INDEXED:
-            case COPIED:
-            case DELETED:
-              log.debug2("WARC record is removable [state: {}, warcId: {}, tmpWarc: {}]",
-                  state, record.getHeader().getHeaderValue(WARCConstants.HEADER_KEY_ID), tmpWarc);
+        // ArchiveReader is an iterable over ArchiveRecord objects
+        for (ArchiveRecord record : archiveReader) {
+          ArchiveRecordHeader headers = record.getHeader();
 
-              // Mark this temporary WARC record as removable
-              isRecordRemovable = true;
-              break;
+          // Read WARC record header for artifact ID
+          ArtifactIdentifier aid = WarcArtifactDataUtil.buildArtifactIdentifier(headers);
 
-            default:
-              log.warn("Unknown artifact state [uuid: {}, state: {}]", artifact.getUuid(), state);
-              break;
-          }
+          scannedEntries.add(new WarcRecordIndex.Entry(
+              (String) headers.getHeaderValue(WARCConstants.HEADER_KEY_TYPE), aid,
+              Instant.from(DateTimeFormatter.ISO_INSTANT.parse(headers.getDate())).toEpochMilli(),
+              headers.getOffset(), 0));
+
+          // All records must be removable for temporary WARC file to be removable
+          isWarcFileRemovable &= reloadTemporaryArtifact(index, tmpWarc, aid, isArtifactExpired(headers));
         }
 
-        // All records must be removable for temporary WARC file to be removable
-        isWarcFileRemovable &= isRecordRemovable;
-      }
-    } catch (IOException e) {
-      log.error("Could not reload temporary WARC [tmpWarc: {}]", tmpWarc);
-      throw e;
-    } catch (RuntimeException e) {
-      Throwable cause = e.getCause();
-      if ((cause instanceof EOFException || cause instanceof ZipException) && isWarcFileRemovable) {
-        log.warn("About to remove temporary WARC with unreadable record");
-      } else {
-        // Rethrow
+        isScanComplete = true;
+      } catch (IOException e) {
+        log.error("Could not reload temporary WARC [tmpWarc: {}]", tmpWarc);
         throw e;
+      } catch (RuntimeException e) {
+        Throwable cause = e.getCause();
+        if ((cause instanceof EOFException || cause instanceof ZipException) && isWarcFileRemovable) {
+          log.warn("About to remove temporary WARC with unreadable record");
+        } else {
+          // Rethrow
+          throw e;
+        }
+      }
+
+      // Rebuild the record index of a temporary WARC that is kept, so that it need not be read again
+      if (isScanComplete && !isWarcFileRemovable) {
+        rebuildWarcRecordIndex(tmpWarc, scannedEntries);
       }
     }
 
@@ -1080,7 +1087,7 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
     if (isWarcFileRemovable && !isInUse) {
       try {
         log.debug("Removing temporary WARC file [tmpWarc: {}]", tmpWarc);
-        removeWarc(tmpWarc);
+        removeTmpWarc(tmpWarc);
       } catch (IOException e) {
         log.warn("Could not remove a removable temporary WARC file", e);
         // Try again later - avoid reprocessing by marking as already processed and removable?
@@ -1088,6 +1095,58 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
     }
   }
 
+  /**
+   * Resumes the lifecycle of an artifact found in a temporary WARC, based on its state.
+   *
+   * @return A {@code boolean} indicating whether the artifact's WARC record is removable.
+   */
+  private boolean reloadTemporaryArtifact(ArtifactIndex index, Path tmpWarc, ArtifactIdentifier aid,
+                                          boolean isExpired) throws IOException {
+    boolean isRecordRemovable = false;
+
+    // Resume artifact lifecycle based on the artifact's state
+    // Acquire artifact lock: Operations below alter artifact state
+    try (SemaphoreLock lock = lockArtifact(aid)) {
+      Artifact artifact = index.getArtifact(aid);
+      WarcArtifactState state = getArtifactState(artifact, isExpired);
+
+      switch (state) {
+        case UNCOMMITTED:
+          break;
+
+        case PENDING_COPY:
+          // Requeue the copy of this artifact from temporary to permanent storage
+          CopyArtifactTask task = new CopyArtifactTask(artifact);
+          queuedCopyTasks.put(artifact.getIdentifier(), task);
+          stripedExecutor.submit(task);
+          break;
+
+        case EXPIRED:
+          // Remove artifact reference from index if it exists
+          if (!index.deleteArtifact(aid.getUuid())) {
+            log.warn("Could not remove expired artifact from index [uuid: {}]", aid.getUuid());
+          }
+
+        case UNKNOWN:
+        case NOT_INDEXED:
+        case COPIED:
+        case DELETED:
+          log.debug2("WARC record is removable [state: {}, uuid: {}, tmpWarc: {}]",
+              state, aid.getUuid(), tmpWarc);
+
+          // Mark this temporary WARC record as removable
+          isRecordRemovable = true;
+          break;
+
+        default:
+          log.warn("Unknown artifact state [uuid: {}, state: {}]", artifact.getUuid(), state);
+          break;
+      }
+    }
+
+    return isRecordRemovable;
+  }
+
   /**
    * Determines whether a temporary WARC file is removable.
    * <p>
@@ -1101,6 +1160,20 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
    * @throws IOException
    */
   protected boolean isTempWarcRemovable(Path tmpWarc) throws IOException {
+    // Use the temporary WARC's record index if it covers the WARC
+    List<WarcRecordIndex.Entry> indexEntries = readWarcRecordIndex(tmpWarc);
+
+    if (indexEntries != null) {
+      for (WarcRecordIndex.Entry entry : indexEntries) {
+        if (!isTempWarcRecordRemovable(entry)) {
+          // Temporary WARC contains a WARC record that is still needed
+          return false;
+        }
+      }
+
+      return true;
+    }
+
     try (InputStream warcStream = markAndGetInputStream(tmpWarc)) {
       // Get a WARCReader to the temporary WARC
       ArchiveReader archiveReader = getArchiveReader(tmpWarc, warcStream);
@@ -1140,26 +1213,7 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
     switch (WARCRecordType.valueOf(recordType)) {
       case response:
       case resource:
-        // Lock artifact
-        try (SemaphoreLock lock = lockArtifact(aid)) {
-          Artifact indexed = getArtifactIndex().getArtifact(aid);
-          WarcArtifactState state = getArtifactState(indexed, isArtifactExpired(record.getHeader()));
-
-          switch (state) {
-            case NOT_INDEXED:
-            case COPIED:
-            case EXPIRED:
-            case DELETED:
-              return true;
-
-            case UNKNOWN:
-              log.warn("Unknown artifact state [artifact: {}, state: {}]", indexed, state);
-            case UNCOMMITTED:
-            case PENDING_COPY:
-            default:
-              return false;
-          }
-        }
+        return isTempWarcArtifactRemovable(aid, isArtifactExpired(headers));
 
       default:
         // All other WARC record types may be removed
@@ -1167,6 +1221,163 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
     }
   }
 
+  /**
+   * Determines whether a single WARC record is removable, from its entry in the temporary WARC's record index. See
+   * {@link #isTempWarcRecordRemovable(ArchiveRecord)}.
+   *
+   * @param entry The {@link WarcRecordIndex.Entry} of a WARC record in a temporary WARC file.
+   * @return A {@code boolean} indicating whether this WARC record is removable.
+   */
+  protected boolean isTempWarcRecordRemovable(WarcRecordIndex.Entry entry) throws IOException {
+    if (!entry.isArtifact()) {
+      // All other WARC record types may be removed
+      return true;
+    }
+
+    return isTempWarcArtifactRemovable(entry.getArtifactIdentifier(), isArtifactExpired(entry.getDate()));
+  }
+
+  private boolean isTempWarcArtifactRemovable(ArtifactIdentifier aid, boolean isExpired) throws IOException {
+    // Lock artifact
+    try (SemaphoreLock lock = lockArtifact(aid)) {
+      Artifact indexed = getArtifactIndex().getArtifact(aid);
+      WarcArtifactState state = getArtifactState(indexed, isExpired);
+
+      switch (state) {
+        case NOT_INDEXED:
+        case COPIED:
+        case EXPIRED:
+        case DELETED:
+          return true;
+
+        case UNKNOWN:
+          log.warn("Unknown artifact state [artifact: {}, state: {}]", indexed, state);
+        case UNCOMMITTED:
+        case PENDING_COPY:
+        default:
+          return false;
+      }
+    }
+  }
+
+  // *******************************************************************************************************************
+  // * TEMPORARY WARC RECORD INDEX
+  // *******************************************************************************************************************
+
+  /**
+   * Creates the record index of a new temporary WARC, with an entry for the warcinfo record written by
+   * {@link #initWarc(Path)}.
+   *
+   * @param tmpWarc A newly initialized temporary {@link WarcFile}.
+   * @throws IOException
+   */
+  protected void initWarcRecordIndex(WarcFile tmpWarc) throws IOException {
+    initFile(WarcRecordIndex.getIndexPath(tmpWarc.getPath()));
+
+    appendWarcRecordIndex(tmpWarc, Collections.singletonList(
+        new WarcRecordIndex.Entry(WARCRecordType.warcinfo.name(), null, null, null, null, 0,
+            TimeBase.nowMs(), 0L, getWarcLength(tmpWarc.getPath()))));
+  }
+
+  /**
+   * Appends entries to the record index of a temporary WARC, after their records have been written to the WARC. The
+   * index is kept open by the {@link WarcFile} until it is full or removed. A failure is logged but is otherwise
+   * harmless: the index no longer covers the WARC, which will be read instead.
+   *
+   * @param tmpWarc A temporary {@link WarcFile}.
+   * @param entries The {@link WarcRecordIndex.Entry}s to append, in the order their records were written.
+   */
+  protected void appendWarcRecordIndex(WarcFile tmpWarc, List<WarcRecordIndex.Entry> entries) {
+    synchronized (tmpWarc) {
+      try {
+        WarcRecordIndex.Appender appender = tmpWarc.getIndexAppender();
+
+        if (appender == null) {
+          appender = new WarcRecordIndex.Appender(
+              getAppendableOutputStream(WarcRecordIndex.getIndexPath(tmpWarc.getPath())));
+          tmpWarc.setIndexAppender(appender);
+        }
+
+        appender.append(entries);
+      } catch (IOException e) {
+        log.warn("Could not append to temporary WARC record index [tmpWarc: {}]", tmpWarc.getPath(), e);
+        tmpWarc.closeIndexAppender();
+      }
+    }
+  }
+
+  /**
+   * Returns the entries of the record index of a temporary WARC, or {@code null} if there is none or it does not
+   * cover the WARC (in which case the WARC must be read).
+   *
+   * @param tmpWarc A {@link Path} to a temporary WARC.
+   * @return A {@link List} of the WARC's {@link WarcRecordIndex.Entry}s, or {@code null}.
+   */
+  protected List<WarcRecordIndex.Entry> readWarcRecordIndex(Path tmpWarc) {
+    try (InputStream input = getInputStreamAndSeek(WarcRecordIndex.getIndexPath(tmpWarc), 0L)) {
+      List<WarcRecordIndex.Entry> entries = WarcRecordIndex.read(input);
+
+      if (WarcRecordIndex.isComplete(entries, getWarcLength(tmpWarc))) {
+        return entries;
+      }
+
+      log.debug("Temporary WARC record index does not cover the WARC [tmpWarc: {}]", tmpWarc);
+    } catch (FileNotFoundException e) {
+      log.debug2("Temporary WARC has no record index [tmpWarc: {}]", tmpWarc);
+    } catch (IOException e) {
+      log.warn("Could not read temporary WARC record index [tmpWarc: {}]", tmpWarc, e);
+    }
+
+    return null;
+  }
+
+  /**
+   * Replaces the record index of a temporary WARC with one built from a complete read of its records. The lengths of
+   * the entries are determined from the offsets of the records that follow them.
+   *
+   * @param tmpWarc A {@link Path} to a temporary WARC.
+   * @param entries The {@link WarcRecordIndex.Entry}s of all the records in the WARC, in order, with any length.
+   */
+  private void rebuildWarcRecordIndex(Path tmpWarc, List<WarcRecordIndex.Entry> entries) {
+    try {
+      List<WarcRecordIndex.Entry> rebuilt = new ArrayList<>(entries.size());
+      long end = getWarcLength(tmpWarc);
+
+      for (int i = entries.size() - 1; i >= 0; i--) {
+        WarcRecordIndex.Entry entry = entries.get(i);
+        rebuilt.add(entry.withLength(end - entry.getOffset()));
+        end = entry.getOffset();
+      }
+
+      Collections.reverse(rebuilt);
+
+      Path indexPath = WarcRecordIndex.getIndexPath(tmpWarc);
+      removeFile(indexPath);
+      initFile(indexPath);
+
+      try (OutputStream output = getAppendableOutputStream(indexPath)) {
+        WarcRecordIndex.write(rebuilt, output);
+      }
+
+      log.debug("Rebuilt temporary WARC record index [tmpWarc: {}, records: {}]", tmpWarc, rebuilt.size());
+    } catch (IOException e) {
+      log.warn("Could not rebuild temporary WARC record index [tmpWarc: {}]", tmpWarc, e);
+    }
+  }
+
+  /**
+   * Removes a temporary WARC and its record index.
+   *
+   * @param tmpWarc A {@link Path} to a temporary WARC.
+   * @return A {@code boolean} indicating whether the WARC was removed.
+   * @throws IOException
+   */
+  protected boolean removeTmpWarc(Path tmpWarc) throws IOException {
+    // Remove the index first: a WARC left without its index is read instead
+    removeFile(WarcRecordIndex.getIndexPath(tmpWarc));
+    return removeWarc(tmpWarc);
+  }
+
   // *******************************************************************************************************************
   // * ARTIFACT LIFECYCLE
   // *******************************************************************************************************************
@@ -1227,6 +1438,16 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
     return Instant.ofEpochMilli(TimeBase.nowMs()).isAfter(expiration);
   }
 
+  /**
+   * Returns a boolean indicating whether an artifact, whose WARC record has the given WARC-Date, is expired.
+   *
+   * @param warcDate The WARC-Date of the artifact's record, in milliseconds since the epoch.
+   */
+  protected boolean isArtifactExpired(long warcDate) {
+    Instant expiration = Instant.ofEpochMilli(warcDate).plus(getUncommittedArtifactExpiration(), ChronoUnit.MILLIS);
+    return Instant.ofEpochMilli(TimeBase.nowMs()).isAfter(expiration);
+  }
+
   /**
    * Returns a boolean indicating whether an artifact is marked as deleted in the journal.
    *
@@ -1350,6 +1571,36 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
     thresholdArtifacts = artifacts;
   }
 
+  /**
+   * Returns the number of artifacts an {@link ArtifactBatch} accumulates before it reports itself full.
+   */
+  public int getBatchMaxArtifacts() {
+    return batchMaxArtifacts;
+  }
+
+  public void setBatchMaxArtifacts(int artifacts) {
+    if (artifacts <= 0) {
+      throw new IllegalArgumentException("Maximum number of artifacts in a batch must be a positive integer");
+    }
+
+    batchMaxArtifacts = artifacts;
+  }
+
+  /**
+   * Returns the number of threads used to search for and index WARCs during a reindex.
+   */
+  public int getReindexThreads() {
+    return reindexThreads;
+  }
+
+  public void setReindexThreads(int threads) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Number of reindex threads must be a positive integer");
+    }
+
+    reindexThreads = threads;
+  }
+
   public void setLockssRepository(BaseLockssRepository repository) {
     this.repo = repository;
   }
@@ -1451,6 +1702,10 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
           tmpWarcStats.setLatestExpiration(TimeBase.nowMs() + getUncommittedArtifactExpiration());
         }
 
+        // Record the WARC record in the temporary WARC's record index
+        appendWarcRecordIndex(tmpWarc,
+            Collections.singletonList(makeWarcRecordIndexEntry(artifactData, offset, storedRecordLength)));
+
         // Debugging
         log.debug2("Wrote {} bytes offset {} to {}; size is now {}",
             storedRecordLength, offset, tmpWarcPath, offset + recordLength);
@@ -1488,18 +1743,7 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
       // *******************************
 
       // Write journal entry to journal file under an existing AU path
-      List<Path> auPaths = getAuPaths(artifactId.getNamespace(), artifactId.getAuid());
-
-      Path auPath = auPaths.stream()
-          .sorted((a, b) -> (int) (getFreeSpace(b) - getFreeSpace(a)))
-          .findFirst()
-          .orElse(null); // should never happen
-
-      Path auBasePath = Arrays.stream(getBasePaths())
-          .sorted()
-          .filter(bp -> auPath.startsWith(bp))
-          .findFirst()
-          .orElse(null); // should never happen
+      Path auBasePath = getAuJournalBasePath(artifactId.getNamespace(), artifactId.getAuid());
 
       // Write journal entry
       updateArtifactStateJournal(auBasePath, artifactId,
@@ -1519,80 +1763,335 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
   }
 
   /**
-   * Retrieves the {@link ArtifactData} of an {@link Artifact} by resolving its storage URL.
-   *
-   * @param artifact An {@link Artifact} instance containing a reference to the artifact data to retrieve from storage.
-   * @return The {@link ArtifactData} of the artifact.
-   * @throws IOException
+   * Returns the temporary WARC record index entry of an artifact's WARC record.
    */
-  @Override
-  public ArtifactData getArtifactData(Artifact artifact) throws IOException {
-    if (artifact == null) {
-      throw new IllegalArgumentException("Artifact is null");
-    }
-
-    String artifactUuid = artifact.getUuid();
-    Artifact indexedArtifact;
-    URI storageUrl;
+  private static WarcRecordIndex.Entry makeWarcRecordIndexEntry(ArtifactData artifactData, long offset, long length) {
+    WARCRecordType recordType = artifactData.isHttpResponse() ? WARCRecordType.response : WARCRecordType.resource;
 
-    Path warcFilePath = null;
-    boolean isTmpStorage = false;
-    InputStream warcStream = null;
+    return new WarcRecordIndex.Entry(recordType.name(), artifactData.getIdentifier(),
+        getWarcRecordDate(artifactData), offset, length);
+  }
 
-    try {
-      // This could interact with two other processes:
-      // 1. The GC process could remove the temporary WARC file from under this method
-      // 2. The copy process could change the storage URL to point to permanent storage
+  /**
+   * Returns the base path of the AU path with the most free space, under which new artifact state journal entries of
+   * the AU are written.
+   */
+  private Path getAuJournalBasePath(String namespace, String auid) throws IOException {
+    List<Path> auPaths = getAuPaths(namespace, auid);
 
-      // Retrieve artifact reference from index
-      indexedArtifact = getArtifactIndex().getArtifact(artifactUuid);
+    Path auPath = auPaths.stream()
+        .sorted((a, b) -> (int) (getFreeSpace(b) - getFreeSpace(a)))
+        .findFirst()
+        .orElse(null); // should never happen
 
-      if (indexedArtifact == null) {
-        // Yes: Artifact reference not found in index
-        log.debug("Artifact not found in index [uuid: {}]", artifactUuid);
-        throw new LockssNoSuchArtifactIdException("Artifact not found");
-      }
+    return Arrays.stream(getBasePaths())
+        .sorted()
+        .filter(bp -> auPath.startsWith(bp))
+        .findFirst()
+        .orElse(null); // should never happen
+  }
 
-      ArtifactIdentifier artifactId = indexedArtifact.getIdentifier();
+  /**
+   * Opens an {@link ArtifactBatch} for adding many artifacts to this data store.
+   */
+  public ArtifactBatch openArtifactBatch() {
+    if (basePaths.length <= 0) {
+      throw new IllegalStateException("No data store base paths configured");
+    }
 
-      try (SemaphoreLock lock = lockArtifact(artifactId)) {
-        // Get storage URL and WARC path of artifact's WARC record
-        storageUrl = new URI(indexedArtifact.getStorageUrl());
-        warcFilePath = getPathFromStorageUrl(storageUrl);
-        isTmpStorage = isTmpStorage(warcFilePath);
+    return new ArtifactBatch();
+  }
 
-        if (isTmpStorage) {
-          String expiredErrorMsg = "Artifact expired and was GCed";
+  /**
+   * Adds artifacts to this data store in bulk. Unlike {@link #addArtifactData(ArtifactData)}, which checks out a
+   * temporary WARC, writes one record and indexes one artifact per call, a batch keeps one temporary WARC checked out
+   * and open across calls to {@link #add(ArtifactData)}, and indexes the artifacts written since the last
+   * {@link #flush()} with a single call to {@link ArtifactIndex#indexArtifacts(Iterable)}.
+   * <p>
+   * Artifacts returned by {@link #add(ArtifactData)} are not visible in the index, nor readable, until the batch is
+   * flushed. A batch is used by a single thread.
+   */
+  public class ArtifactBatch implements Closeable {
+    private WarcFile tmpWarc;
+    private OutputStream output;
+    private long warcLength;
+    private final List<Artifact> pending = new ArrayList<>();
+    private final List<WarcRecordIndex.Entry> pendingIndexEntries = new ArrayList<>();
+
+    private ArtifactBatch() {
+    }
 
-          WarcFile warcFile = tmpWarcPool.getWarcFile(warcFilePath);
+    /**
+     * Writes an artifact's data to this batch's temporary WARC.
+     *
+     * @param artifactData The {@link ArtifactData} to add.
+     * @return The {@link Artifact}, not yet indexed.
+     * @throws IOException
+     */
+    public Artifact add(ArtifactData artifactData) throws IOException {
+      if (artifactData == null) {
+        throw new IllegalArgumentException("Null artifact data");
+      }
 
-          // If the WARC file is now gone, it means that the temp WARC GC decided it could be delete
-          // in which case this artifact must be expired:
-          if (warcFile == null) {
-            log.error(expiredErrorMsg);
-            throw new LockssNoSuchArtifactIdException(expiredErrorMsg);
-          }
+      if (artifactData.getIdentifier() == null) {
+        throw new IllegalArgumentException("Artifact data has null identifier");
+      }
 
-          synchronized (warcFile) {
-            if (warcFile.isMarkedForGC()) {
-              log.error(expiredErrorMsg);
-              throw new LockssNoSuchArtifactIdException(expiredErrorMsg);
-            } else {
-              // Increment usage counter of temporary WARC -- cannot now mark for GC
-              TempWarcInUseTracker.INSTANCE.markUseStart(warcFilePath);
-            }
-          }
+      if (tmpWarc == null) {
+        tmpWarc = tmpWarcPool.checkoutWarcFileForWrite();
+        try {
+          warcLength = getWarcLength(tmpWarc.getPath());
+          output = getAppendableOutputStream(tmpWarc.getPath());
+        } catch (IOException e) {
+          returnTmpWarc();
+          throw e;
         }
-      } catch (URISyntaxException e) {
-        // This should never happen since storage URLs are internal
-        log.error("Malformed storage URL [storageUrl: {}]", indexedArtifact.getStorageUrl());
-        throw new IllegalArgumentException("Malformed storage URL");
       }
 
-      log.debug2("uuid: {}, storageUrl: {}", artifactUuid, storageUrl);
+      Path tmpWarcPath = tmpWarc.getPath();
+      long offset = warcLength;
+      long storedRecordLength;
 
-      // Open an InputStream from the WARC file and get the WARC record representing this artifact data
-      warcStream = getInputStreamFromStorageUrl(storageUrl);
+      try {
+        // Write the record through a shield so that the temporary WARC stays open for the next record
+        CountingOutputStream cos = new CountingOutputStream(new CloseShieldOutputStream(output));
+
+        if (useCompression) {
+          try (GZIPOutputStream gzipOutput = new GZIPOutputStream(cos)) {
+            writeArtifactData(artifactData, gzipOutput);
+          }
+        } else {
+          writeArtifactData(artifactData, cos);
+        }
+
+        storedRecordLength = cos.getCount();
+      } catch (IOException e) {
+        // Error writing artifact to WARC: Close WARC from further writes. The records written before this one are
+        // intact and are still indexed by the next flush.
+        log.error("Could not write artifact to temporary WARC", e);
+        tmpWarc.release();
+        returnTmpWarc();
+        throw e;
+      }
+
+      warcLength += storedRecordLength;
+
+      // Update WARC file stats
+      synchronized (tmpWarc) {
+        tmpWarc.incrementLength(storedRecordLength);
+        ArtifactContainerStats tmpWarcStats = tmpWarc.getStats();
+        tmpWarcStats.incArtifactsTotal();
+        tmpWarcStats.incArtifactsUncommitted();
+        tmpWarcStats.setLatestExpiration(TimeBase.nowMs() + getUncommittedArtifactExpiration());
+      }
+
+      log.debug2("Wrote {} bytes offset {} to {}", storedRecordLength, offset, tmpWarcPath);
+
+      pendingIndexEntries.add(makeWarcRecordIndexEntry(artifactData, offset, storedRecordLength));
+
+      artifactData.setStorageUrl(makeWarcRecordStorageUrl(tmpWarcPath, offset, storedRecordLength));
+      Artifact artifact = WarcArtifactDataUtil.getArtifact(artifactData);
+      pending.add(artifact);
+
+      return artifact;
+    }
+
+    /**
+     * Drops an artifact added since the last flush; it is never indexed. Its record remains in the temporary WARC and
+     * is removed with it.
+     *
+     * @param artifact An {@link Artifact} returned by {@link #add(ArtifactData)}.
+     */
+    public void discard(Artifact artifact) throws IOException {
+      if (!pending.removeIf(a -> a == artifact)) {
+        throw new IllegalArgumentException("Artifact is not pending in this batch: " + artifact);
+      }
+
+      try {
+        WarcFile warcFile = tmpWarcPool.getWarcFile(getPathFromStorageUrl(new URI(artifact.getStorageUrl())));
+
+        if (warcFile != null) {
+          synchronized (warcFile) {
+            warcFile.getStats().decArtifactsUncommitted();
+          }
+        }
+      } catch (URISyntaxException e) {
+        // This should never happen since storage URLs are internal
+        throw new IllegalStateException(e);
+      }
+    }
+
+    /**
+     * Returns true if the batch has reached its maximum number of artifacts, or its temporary WARC is full, and so
+     * should be flushed.
+     */
+    public boolean isFull() {
+      return pending.size() >= getBatchMaxArtifacts()
+          || (tmpWarc != null
+              && (tmpWarc.getLength() >= getThresholdWarcSize()
+                  || tmpWarc.getStats().getArtifactsTotal() >= getMaxArtifactsThreshold()));
+    }
+
+    /**
+     * Makes the artifacts added since the last flush readable, indexes them in one call and records them as
+     * uncommitted in their AUs' journals.
+     *
+     * @return The {@link List} of artifacts indexed, in the order they were added.
+     * @throws IOException
+     */
+    public List<Artifact> flush() throws IOException {
+      if (output != null) {
+        output.flush();
+        appendPendingIndexEntries();
+      }
+
+      // Move on to another temporary WARC if this one is full
+      if (tmpWarc != null
+          && (tmpWarc.getLength() >= getThresholdWarcSize()
+              || tmpWarc.getStats().getArtifactsTotal() >= getMaxArtifactsThreshold())) {
+        returnTmpWarc();
+      }
+
+      if (pending.isEmpty()) {
+        return Collections.emptyList();
+      }
+
+      List<Artifact> batch = new ArrayList<>(pending);
+      pending.clear();
+
+      getArtifactIndex().indexArtifacts(batch);
+
+      JournalBatch journal = new JournalBatch();
+      Map<ArchivalUnitStem, Path> auBasePaths = new HashMap<>();
+
+      for (Artifact artifact : batch) {
+        ArtifactIdentifier artifactId = artifact.getIdentifier();
+        ArchivalUnitStem au = new ArchivalUnitStem(artifactId.getNamespace(), artifactId.getAuid());
+        Path auBasePath = auBasePaths.get(au);
+
+        if (auBasePath == null) {
+          auBasePath = getAuJournalBasePath(artifactId.getNamespace(), artifactId.getAuid());
+          auBasePaths.put(au, auBasePath);
+        }
+
+        journal.add(auBasePath, artifactId, new WarcArtifactStateEntry(artifactId, WarcArtifactState.UNCOMMITTED));
+      }
+
+      journal.write();
+
+      log.debug("Added {} artifacts", batch.size());
+      return batch;
+    }
+
+    /**
+     * Flushes the batch and returns its temporary WARC to the pool.
+     */
+    @Override
+    public void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        returnTmpWarc();
+      }
+    }
+
+    /**
+     * Records the WARC records written since the last call in the temporary WARC's record index. The records must
+     * have been flushed to the WARC.
+     */
+    private void appendPendingIndexEntries() {
+      if (!pendingIndexEntries.isEmpty()) {
+        appendWarcRecordIndex(tmpWarc, pendingIndexEntries);
+        pendingIndexEntries.clear();
+      }
+    }
+
+    private void returnTmpWarc() {
+      if (tmpWarc != null) {
+        IOUtils.closeQuietly(output);
+        appendPendingIndexEntries();
+        tmpWarcPool.returnWarcFile(tmpWarc);
+        tmpWarc = null;
+        output = null;
+      }
+    }
+  }
+
+  /**
+   * Retrieves the {@link ArtifactData} of an {@link Artifact} by resolving its storage URL.
+   *
+   * @param artifact An {@link Artifact} instance containing a reference to the artifact data to retrieve from storage.
+   * @return The {@link ArtifactData} of the artifact.
+   * @throws IOException
+   */
+  @Override
+  public ArtifactData getArtifactData(Artifact artifact) throws IOException {
+    if (artifact == null) {
+      throw new IllegalArgumentException("Artifact is null");
+    }
+
+    String artifactUuid = artifact.getUuid();
+    Artifact indexedArtifact;
+    URI storageUrl;
+
+    Path warcFilePath = null;
+    boolean isTmpStorage = false;
+    InputStream warcStream = null;
+
+    try {
+      // This could interact with two other processes:
+      // 1. The GC process could remove the temporary WARC file from under this method
+      // 2. The copy process could change the storage URL to point to permanent storage
+
+      // Retrieve artifact reference from index
+      indexedArtifact = getArtifactIndex().getArtifact(artifactUuid);
+
+      if (indexedArtifact == null) {
+        // Yes: Artifact reference not found in index
+        log.debug("Artifact not found in index [uuid: {}]", artifactUuid);
+        throw new LockssNoSuchArtifactIdException("Artifact not found");
+      }
+
+      ArtifactIdentifier artifactId = indexedArtifact.getIdentifier();
+
+      try (SemaphoreLock lock = lockArtifact(artifactId)) {
+        // Get storage URL and WARC path of artifact's WARC record
+        storageUrl = new URI(indexedArtifact.getStorageUrl());
+        warcFilePath = getPathFromStorageUrl(storageUrl);
+        isTmpStorage = isTmpStorage(warcFilePath);
+
+        if (isTmpStorage) {
+          String expiredErrorMsg = "Artifact expired and was GCed";
+
+          WarcFile warcFile = tmpWarcPool.getWarcFile(warcFilePath);
+
+          // If the WARC file is now gone, it means that the temp WARC GC decided it could be delete
+          // in which case this artifact must be expired:
+          if (warcFile == null) {
+            log.error(expiredErrorMsg);
+            throw new LockssNoSuchArtifactIdException(expiredErrorMsg);
+          }
+
+          synchronized (warcFile) {
+            if (warcFile.isMarkedForGC()) {
+              log.error(expiredErrorMsg);
+              throw new LockssNoSuchArtifactIdException(expiredErrorMsg);
+            } else {
+              // Increment usage counter of temporary WARC -- cannot now mark for GC
+              TempWarcInUseTracker.INSTANCE.markUseStart(warcFilePath);
+            }
+          }
+        }
+      } catch (URISyntaxException e) {
+        // This should never happen since storage URLs are internal
+        log.error("Malformed storage URL [storageUrl: {}]", indexedArtifact.getStorageUrl());
+        throw new IllegalArgumentException("Malformed storage URL");
+      }
+
+      log.debug2("uuid: {}, storageUrl: {}", artifactUuid, storageUrl);
+
+      // Open an InputStream from the WARC file and get the WARC record representing this artifact data
+      warcStream = getInputStreamFromStorageUrl(storageUrl);
 
       // Wrap uncompressed stream in GZIPInputStream if the file is compressed
       if (isCompressedWarcFile(warcFilePath)) {
@@ -1662,6 +2161,87 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
    */
   @Override
   public Future<Artifact> commitArtifactData(Artifact artifact) throws IOException {
+    return commitArtifactData(artifact, null);
+  }
+
+  /**
+   * Commits several artifacts from temporary to permanent storage. The journal entries of the artifacts are written
+   * together, and the copies of each AU's artifacts into permanent storage are made by one task, which reads each
+   * temporary WARC sequentially and appends runs of records to the AU's active WARC.
+   *
+   * @param artifacts The {@link Artifact}s to commit to permanent storage.
+   * @return A {@link List} of {@link Future<Artifact>}, one per artifact (null where
+   * {@link #commitArtifactData(Artifact)} would return null), reflecting the new committed state and storage URL.
+   * @throws IOException
+   */
+  public List<Future<Artifact>> commitArtifactsData(List<Artifact> artifacts) throws IOException {
+    if (artifacts == null) {
+      throw new IllegalArgumentException("Artifacts is null");
+    }
+
+    CommitBatch batch = new CommitBatch();
+    List<Future<Artifact>> res = new ArrayList<>(artifacts.size());
+
+    try {
+      for (Artifact artifact : artifacts) {
+        res.add(commitArtifactData(artifact, batch));
+      }
+    } catch (IOException | RuntimeException e) {
+      // The artifacts committed before the failure are marked committed in the index: journal and copy them
+      try {
+        submitCommitBatch(batch);
+      } catch (IOException | RuntimeException e2) {
+        e.addSuppressed(e2);
+      }
+
+      throw e;
+    }
+
+    submitCommitBatch(batch);
+
+    return res;
+  }
+
+  /**
+   * Writes the journal entries of a {@link CommitBatch} and submits its copy tasks. If the journal cannot be written,
+   * the batch's tasks are dequeued and their futures completed exceptionally.
+   */
+  private void submitCommitBatch(CommitBatch batch) throws IOException {
+    if (batch.tasks.isEmpty()) {
+      return;
+    }
+
+    try {
+      // Record the pending copies before any copy task can record a copy
+      batch.journal.write();
+    } catch (IOException | RuntimeException e) {
+      log.error("Could not write journal entries of committed artifacts", e);
+
+      for (List<CopyArtifactTask> tasks : batch.tasks.values()) {
+        for (CopyArtifactTask task : tasks) {
+          queuedCopyTasks.remove(task.artifact.getIdentifier());
+          ((CompletableFuture<Artifact>) task.getFuture()).completeExceptionally(e);
+        }
+      }
+
+      batch.tasks.clear();
+      throw e;
+    }
+
+    for (Map.Entry<NamespacedAuid, List<CopyArtifactTask>> entry : batch.tasks.entrySet()) {
+      stripedExecutor.submit(new CopyArtifactRunTask(entry.getKey(), entry.getValue()));
+    }
+
+    batch.tasks.clear();
+  }
+
+  /** Copy tasks and journal entries accumulated by {@link #commitArtifactsData(List)} */
+  private class CommitBatch {
+    final JournalBatch journal = new JournalBatch();
+    final Map<NamespacedAuid, List<CopyArtifactTask>> tasks = new LinkedHashMap<>();
+  }
+
+  private Future<Artifact> commitArtifactData(Artifact artifact, CommitBatch batch) throws IOException {
     if (artifact == null) {
       throw new IllegalArgumentException("Artifact is null");
     }
@@ -1709,6 +2289,22 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
           WarcArtifactStateEntry artifactRepoState =
               new WarcArtifactStateEntry(artifact.getIdentifier(), WarcArtifactState.PENDING_COPY);
 
+          CopyArtifactTask task = new CopyArtifactTask(artifact);
+
+          if (batch != null) {
+            // Defer the journal entry and copy to commitArtifactsData()
+            batch.journal.add(
+                getBasePathFromStorageUrl(new URI(artifact.getStorageUrl())),
+                artifact.getIdentifier(),
+                artifactRepoState);
+
+            CompletableFuture<Artifact> future = new CompletableFuture<>();
+            task.setFuture(future);
+            queuedCopyTasks.put(artifactId, task);
+            batch.tasks.computeIfAbsent((NamespacedAuid) task.getStripe(), k -> new ArrayList<>()).add(task);
+            return future;
+          }
+
           // Write new state to journal
           updateArtifactStateJournal(
               getBasePathFromStorageUrl(new URI(artifact.getStorageUrl())),
@@ -1716,7 +2312,6 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
               artifactRepoState);
 
           // Submit the task to copy the artifact data from temporary to permanent storage
-          CopyArtifactTask task = new CopyArtifactTask(artifact);
           queuedCopyTasks.put(artifactId, task);
           return stripedExecutor.submit(task);
 
@@ -1787,6 +2382,12 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
       super.execute(rf);
       return rf;
     }
+
+    public Future<Void> submit(CopyArtifactRunTask task) {
+      RunnableFuture<Void> rf = newTaskFor(task);
+      super.execute(rf);
+      return rf;
+    }
   }
 
   /**
@@ -1996,6 +2597,205 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
     }
   }
 
+  /**
+   * Copies the artifacts of one AU, committed together by {@link #commitArtifactsData(List)}, from temporary to
+   * permanent storage. Records are copied in order of temporary WARC and offset, so each temporary WARC is opened once
+   * and read sequentially, and runs of records are appended to the AU's active WARC through one output stream.
+   * Storage URLs are updated, and the copies journaled, after each run has been written.
+   */
+  protected class CopyArtifactRunTask implements StripedCallable<Void> {
+    private final NamespacedAuid stripe;
+    private final String namespace;
+    private final String auid;
+    private final List<CopyArtifactTask> tasks;
+    private final Map<CopyArtifactTask, WarcRecordLocation> locs = new HashMap<>();
+
+    public CopyArtifactRunTask(NamespacedAuid stripe, List<CopyArtifactTask> tasks) {
+      if (tasks == null || tasks.isEmpty()) {
+        throw new IllegalArgumentException("No artifacts to copy");
+      }
+
+      this.stripe = stripe;
+      this.tasks = tasks;
+      this.namespace = tasks.get(0).artifact.getNamespace();
+      this.auid = tasks.get(0).artifact.getAuid();
+    }
+
+    @Override
+    public Object getStripe() {
+      return stripe;
+    }
+
+    @Override
+    public Void call() throws Exception {
+      log.trace("Starting CopyArtifactRunTask: {} [artifacts: {}]", stripe, tasks.size());
+
+      try {
+        copyArtifacts();
+      } finally {
+        for (CopyArtifactTask task : tasks) {
+          queuedCopyTasks.remove(task.artifact.getIdentifier());
+          // Should only happen if an unexpected exception was thrown
+          completeExceptionally(task, new IOException("Copy task aborted"));
+        }
+      }
+
+      return null;
+    }
+
+    private void copyArtifacts() throws URISyntaxException {
+      // Order the records by temporary WARC and offset
+      for (CopyArtifactTask task : tasks) {
+        locs.put(task, WarcRecordLocation.fromStorageUrl(new URI(task.artifact.getStorageUrl())));
+      }
+
+      tasks.sort(Comparator
+          .comparing((CopyArtifactTask t) -> locs.get(t).getPath())
+          .thenComparingLong(t -> locs.get(t).getOffset()));
+
+      int start = 0;
+      while (start < tasks.size()) {
+        Path src = locs.get(tasks.get(start)).getPath();
+        int end = start;
+
+        while (end < tasks.size() && locs.get(tasks.get(end)).getPath().equals(src)) {
+          end++;
+        }
+
+        copyFromTmpWarc(src, tasks.subList(start, end));
+        start = end;
+      }
+    }
+
+    /**
+     * Copies the records of the tasks, all of which are in the same temporary WARC, in offset order.
+     */
+    private void copyFromTmpWarc(Path src, List<CopyArtifactTask> srcTasks) throws URISyntaxException {
+      // Used to match source and target WARC compression
+      boolean warcCompressionTarget = isCompressedWarcFile(src);
+
+      long pos = locs.get(srcTasks.get(0)).getOffset();
+      int ix = 0;
+
+      try (InputStream is = markAndGetInputStreamAndSeek(src, pos)) {
+        while (ix < srcTasks.size()) {
+          // Get an active WARC of this AU with room for at least the next record, to append the next run of
+          // records to
+          long minSize = locs.get(srcTasks.get(ix)).getLength();
+          Path dst = getAuActiveWarcPath(namespace, auid, minSize, warcCompressionTarget);
+          long warcLength = getWarcLength(dst);
+          List<CopyArtifactTask> copied = new ArrayList<>();
+          List<Long> copiedOffsets = new ArrayList<>();
+
+          try (OutputStream output = getAppendableOutputStream(dst)) {
+            while (ix < srcTasks.size() && warcLength < getThresholdWarcSize()) {
+              CopyArtifactTask task = srcTasks.get(ix++);
+              WarcRecordLocation loc = locs.get(task);
+
+              if (!isTmpStorage(loc.getPath())) {
+                log.warn("Artifact is already copied [uuid: {}]", task.artifact.getUuid());
+                complete(task, task.artifact);
+                continue;
+              }
+
+              // Skip copy into permanent storage if artifact was deleted while this task was sitting in the queue
+              if (task.isDeleted()) {
+                finishCopy(task, src);
+                continue;
+              }
+
+              IOUtils.skipFully(is, loc.getOffset() - pos);
+              long bytesWritten = StreamUtils.copyRange(is, output, 0, loc.getLength() - 1);
+              pos = loc.getOffset() + loc.getLength();
+
+              log.debug2("Copied artifact [uuid: {}]: Wrote {} bytes at offset {} to {}",
+                  task.artifact.getUuid(), bytesWritten, warcLength, dst);
+
+              copied.add(task);
+              copiedOffsets.add(warcLength);
+              warcLength += loc.getLength();
+            }
+          } catch (IOException e) {
+            // There is a good chance the WARC record is corrupted so "seal" the WARC file from further writes
+            sealActiveWarc(namespace, auid, dst);
+            throw e;
+          }
+
+          // The run is now in the active WARC: update the storage URLs and journal the copies
+          JournalBatch journal = new JournalBatch();
+          List<CopyArtifactTask> updated = new ArrayList<>();
+
+          for (int jx = 0; jx < copied.size(); jx++) {
+            CopyArtifactTask task = copied.get(jx);
+            Artifact artifact = task.artifact;
+            long recordLength = locs.get(task).getLength();
+
+            try (SemaphoreLock lock = lockArtifact(artifact.getIdentifier())) {
+              artifact.setStorageUrl(makeWarcRecordStorageUrl(dst, copiedOffsets.get(jx), recordLength).toString());
+              getArtifactIndex().updateStorageUrl(artifact.getUuid(), artifact.getStorageUrl());
+
+              journal.add(getBasePathFromStorageUrl(new URI(artifact.getStorageUrl())), artifact.getIdentifier(),
+                  new WarcArtifactStateEntry(artifact.getIdentifier(), WarcArtifactState.COPIED));
+              updated.add(task);
+            } catch (IOException e) {
+              // Could not update storage URL so leave its state untouched and allow a re-copy
+              if (!task.isDeleted()) {
+                log.error("Error updating storage URL for artifact", e);
+                complete(task, artifact);
+              } else {
+                updated.add(task);
+              }
+            }
+          }
+
+          // Seal active permanent WARC if we've gone over the size threshold
+          if (warcLength >= getThresholdWarcSize()) {
+            sealActiveWarc(namespace, auid, dst);
+          }
+
+          journal.write();
+
+          for (CopyArtifactTask task : updated) {
+            finishCopy(task, src);
+          }
+        }
+      } catch (IOException e) {
+        // Leave the artifacts of this temporary WARC that were not copied pending copy; they are requeued on restart
+        log.error("Could not copy artifacts from {}", src, e);
+
+        for (CopyArtifactTask task : srcTasks) {
+          completeExceptionally(task, e);
+        }
+      }
+    }
+
+    /**
+     * Updates the temporary WARC's stats to count the artifact as copied, and completes its task.
+     */
+    private void finishCopy(CopyArtifactTask task, Path tmpWarcPath) {
+      // tmpWarcFile could be null if the copy was queued by the reload process
+      WarcFile tmpWarcFile = tmpWarcPool.getWarcFile(tmpWarcPath);
+
+      if (tmpWarcFile != null) {
+        synchronized (tmpWarcFile) {
+          tmpWarcFile.getStats().incArtifactsCopied();
+        }
+      }
+
+      // Save an index lookup by just setting committed to true
+      task.artifact.setCommitted(true);
+      complete(task, task.artifact);
+    }
+
+    private void complete(CopyArtifactTask task, Artifact artifact) {
+      ((CompletableFuture<Artifact>) task.getFuture()).complete(artifact);
+    }
+
+    private void completeExceptionally(CopyArtifactTask task, Throwable t) {
+      ((CompletableFuture<Artifact>) task.getFuture()).completeExceptionally(t);
+    }
+  }
+
   /**
    * Removes an artifact from this data store. Since cutting and splicing WARC files is expensive and there's
    * wariness about actually destroying data, this method currently:
@@ -2205,143 +3005,98 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
     // Enable usage of MapDB for large structures
     enableRepoDB();
 
-    // Q: Make this multithreaded? Note: Writes to state file would need to be synchronized
-    for (Path basePath : getBasePaths()) {
-      indexArtifactsFromWarcs(index, basePath);
+    try {
+      indexArtifactsFromWarcs(index, Arrays.asList(getBasePaths()));
+    } finally {
+      // Disable MapDB
+      disableRepoDB();
     }
-
-    // Disable MapDB
-    disableRepoDB();
   }
 
   String[] REINDEX_STATE_HEADERS = {"start", "end", "indexed", "warc"};
 
   /**
-   * Rebuilds an artifact index from WARCs within this WARC artifact data store.
+   * Rebuilds an artifact index from WARCs under a base path of this WARC artifact data store.
    *
    * @param index    The {@link ArtifactIndex} to index artifacts into.
    * @param basePath {@link Path} containing a data store base path
    * @throws IOException
    */
   protected void indexArtifactsFromWarcs(ArtifactIndex index, Path basePath) throws IOException {
+    indexArtifactsFromWarcs(index, Collections.singletonList(basePath));
+  }
+
+  /**
+   * Rebuilds an artifact index from WARCs under the given base paths of this WARC artifact data store.
+   * <p>
+   * Base paths are searched, and WARCs indexed, by up to {@link #getReindexThreads()} threads. All the WARCs in
+   * permanent storage are indexed before any WARC in temporary storage, so that temporary copies of artifacts already
+   * copied to permanent storage are recognized and skipped. The repository state journals are replayed last.
+   * <p>
+   * Each WARC that is indexed successfully is recorded in the reindex state file; WARCs recorded there by a previous,
+   * interrupted reindex are skipped.
+   *
+   * @param index     The {@link ArtifactIndex} to index artifacts into.
+   * @param basePaths A {@link Collection} of data store base paths.
+   * @throws IOException
+   */
+  protected void indexArtifactsFromWarcs(ArtifactIndex index, Collection<Path> basePaths) throws IOException {
     if (dataStoreState == DataStoreState.RUNNING) {
       throw new IllegalStateException("Index rebuild only allowed while the data store is stopped");
     }
 
-    log.debug("Reindexing WARCs under data store directory [path: {}]", basePath);
-
-    // List of WARCs that have already been indexed
-    List<Path> indexedWarcs = new ArrayList<>();
-
     // Path to reindex state file
     Path reindexStatePath = repo.getRepositoryStateDir()
         .toPath()
         .resolve(REINDEX_STATE_FILE);
 
-    File reindexStateFile = reindexStatePath.toFile();
+    // WARCs that have already been indexed
+    ReindexCheckpoint checkpoint = new ReindexCheckpoint(reindexStatePath);
 
-    // Read reindex state file as CSV
-    try (FileReader reader = new FileReader(reindexStateFile)) {
-      Iterable<CSVRecord> records = CSVFormat.DEFAULT
-          .withHeader(REINDEX_STATE_HEADERS)
-          .withSkipHeaderRecord()
-          .parse(reader);
-
-      // Add indexed WARC path to list
-      records.forEach(record ->
-          indexedWarcs.add(Paths.get(record.get("warc"))));
-    }
-
-    // Search under data store base path for WARCs
-    Collection<Path> warcPaths = findWarcs(basePath);
-
-    // Find WARCs in permanent storage (exclude journal files, temp WARCs, and processed WARCs)
-    Stream<Path> permanentWarcs = warcPaths
-        .stream()
-        .filter(path -> !isTmpStorage(path))
-        .filter(path -> !path.endsWith("lockss-repo" + WARCConstants.DOT_WARC_FILE_EXTENSION))
-        .filter(path -> !path.endsWith(WarcArtifactStateEntry.LOCKSS_JOURNAL_ID + WARCConstants.DOT_WARC_FILE_EXTENSION))
-        .filter(path -> !indexedWarcs.contains(path));
-
-    // Find WARCS in temporary storage
-    Stream<Path> temporaryWarcs = warcPaths
-        .stream()
-        .filter(this::isTmpStorage)
-        .filter(path -> !indexedWarcs.contains(path));
-
-    //// Reindex artifacts
-
-    // Process WARCs in permanent storage before WARCs in temporary storage
-    permanentWarcs.forEach((warcPath) -> {
-          try {
-            // Reindex artifacts in WARC file
-            long start = Instant.now().getEpochSecond();
-            long artifactsIndexed = indexArtifactsFromPermanentWarc(index, warcPath);
-            long end = Instant.now().getEpochSecond();
-
-            // WARC index successful - append record to state file
-            // Open writer to state file in append mode
-            try (BufferedWriter out = Files.newBufferedWriter(
-                reindexStatePath,
-                StandardOpenOption.APPEND,
-                StandardOpenOption.CREATE)) {
-
-              // Write CSV record
-              try (CSVPrinter printer = new CSVPrinter(out, CSVFormat.DEFAULT
-                  .withHeader(REINDEX_STATE_HEADERS)
-                  .withSkipHeaderRecord(!indexedWarcs.isEmpty()))) {
-
-                printer.printRecord(start, end, artifactsIndexed, warcPath);
-              }
-            } catch (IOException e) {
-              log.warn("Could not append record of having indexed WARC file [warc: {}]", warcPath, e);
-              // Q: Do something else? The worst that will happen if restarted is reindexArtifactsFromWarc will
-              //    be invoked again and iterate over WARC records / artifacts, but it won't index any that are
-              //    already indexed.
-              //    NOTE: The number of artifacts that were indexed may be lower than the number of artifacts in
-              //    the WARC file, if processing of that WARC file was previously interrupted. This does not
-              //    necessarily indicate an error.
-            }
-          } catch (Exception e) {
-            log.error("Error reindexing artifacts from WARC [warc: {}]", warcPath, e);
-          }
-        });
-
-    // Process WARCs in permanent storage before WARCs in temporary storage
-    temporaryWarcs.forEach((warcPath) -> {
-          try {
-            // Reindex artifacts in WARC file
-            long start = Instant.now().getEpochSecond();
-            long artifactsIndexed = indexArtifactsFromWarc(index, warcPath);
-            long end = Instant.now().getEpochSecond();
-
-            // WARC index successful - append record to state file
-            // Open writer to state file in append mode
-            try (BufferedWriter out = Files.newBufferedWriter(
-                reindexStatePath,
-                StandardOpenOption.APPEND,
-                StandardOpenOption.CREATE)) {
-
-              // Write CSV record
-              try (CSVPrinter printer = new CSVPrinter(out, CSVFormat.DEFAULT
-                  .withHeader(REINDEX_STATE_HEADERS)
-                  .withSkipHeaderRecord(!indexedWarcs.isEmpty()))) {
-
-                printer.printRecord(start, end, artifactsIndexed, warcPath);
-              }
-            } catch (IOException e) {
-              log.warn("Could not append record of having indexed WARC file [warc: {}]", warcPath, e);
-              // Q: Do something else? The worst that will happen if restarted is reindexArtifactsFromWarc will
-              //    be invoked again and iterate over WARC records / artifacts, but it won't index any that are
-              //    already indexed.
-              //    NOTE: The number of artifacts that were indexed may be lower than the number of artifacts in
-              //    the WARC file, if processing of that WARC file was previously interrupted. This does not
-              //    necessarily indicate an error.
-            }
-          } catch (Exception e) {
-            log.error("Error reindexing artifacts from WARC [warc: {}]", warcPath, e);
-          }
-        });
+    ExecutorService executor = Executors.newFixedThreadPool(getReindexThreads());
+
+    try {
+      // Search under data store base paths for WARCs
+      List<Future<Collection<Path>>> searches = new ArrayList<>();
+
+      for (Path basePath : basePaths) {
+        log.debug("Reindexing WARCs under data store directory [path: {}]", basePath);
+        searches.add(executor.submit(() -> findWarcs(basePath)));
+      }
+
+      List<Path> warcPaths = new ArrayList<>();
+
+      for (Future<Collection<Path>> search : searches) {
+        warcPaths.addAll(awaitReindexTask(search));
+      }
+
+      // Find WARCs in permanent storage (exclude journal files, temp WARCs, and processed WARCs)
+      List<Path> permanentWarcs = warcPaths
+          .stream()
+          .filter(path -> !isTmpStorage(path))
+          .filter(path -> !path.endsWith("lockss-repo" + WARCConstants.DOT_WARC_FILE_EXTENSION))
+          .filter(path -> !path.endsWith(WarcArtifactStateEntry.LOCKSS_JOURNAL_ID + WARCConstants.DOT_WARC_FILE_EXTENSION))
+          .filter(path -> !checkpoint.isIndexed(path))
+          .collect(Collectors.toList());
+
+      // Find WARCS in temporary storage
+      List<Path> temporaryWarcs = warcPaths
+          .stream()
+          .filter(this::isTmpStorage)
+          .filter(path -> !checkpoint.isIndexed(path))
+          .collect(Collectors.toList());
+
+      log.info("Reindexing {} permanent and {} temporary WARCs ({} previously indexed)",
+          permanentWarcs.size(), temporaryWarcs.size(), checkpoint.size());
+
+      //// Reindex artifacts
+
+      // Process WARCs in permanent storage before WARCs in temporary storage
+      indexWarcsInParallel(executor, permanentWarcs,
+          warcPath -> indexArtifactsFromPermanentWarc(index, warcPath), checkpoint);
+
+      indexWarcsInParallel(executor, temporaryWarcs,
+          warcPath -> indexArtifactsFromWarc(index, warcPath), checkpoint);
 
       // Paths to journals containing repository state
       Collection<Path> repositoryStateJournals = warcPaths
@@ -2353,6 +3108,136 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
       for (Path journalPath : repositoryStateJournals) {
         replayArtifactRepositoryStateJournal(index, journalPath);
       }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Indexes artifacts from a single WARC file, returning the number of artifacts indexed.
+   */
+  @FunctionalInterface
+  private interface WarcIndexer {
+    long indexWarc(Path warcPath) throws IOException;
+  }
+
+  /**
+   * Indexes a list of WARCs using the executor, and waits for all of them to finish. WARCs that are indexed
+   * successfully are recorded in the checkpoint; errors are logged and do not stop the remaining WARCs from being
+   * indexed.
+   */
+  private void indexWarcsInParallel(ExecutorService executor, List<Path> warcPaths, WarcIndexer indexer,
+                                    ReindexCheckpoint checkpoint) throws IOException {
+
+    List<Future<?>> futures = new ArrayList<>(warcPaths.size());
+
+    for (Path warcPath : warcPaths) {
+      futures.add(executor.submit(() -> {
+        try {
+          // Reindex artifacts in WARC file
+          long start = Instant.now().getEpochSecond();
+          long artifactsIndexed = indexer.indexWarc(warcPath);
+          long end = Instant.now().getEpochSecond();
+
+          // WARC index successful - append record to state file
+          checkpoint.record(start, end, artifactsIndexed, warcPath);
+        } catch (Exception e) {
+          log.error("Error reindexing artifacts from WARC [warc: {}]", warcPath, e);
+        }
+      }));
+    }
+
+    for (Future<?> future : futures) {
+      awaitReindexTask(future);
+    }
+  }
+
+  /**
+   * Waits for a reindex task to finish, and returns its result.
+   */
+  private <T> T awaitReindexTask(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reindexing artifacts");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+
+      throw new IOException("Error reindexing artifacts", e.getCause());
+    }
+  }
+
+  /**
+   * Progress of a reindex, kept in the reindex state file as a CSV record per WARC that has been indexed. Records are
+   * appended as WARCs finish indexing, by whichever thread indexed them.
+   */
+  private class ReindexCheckpoint {
+    private final Path statePath;
+    private final Set<Path> indexedWarcs = new HashSet<>();
+    private boolean needsHeader = true;
+
+    ReindexCheckpoint(Path statePath) throws IOException {
+      this.statePath = statePath;
+
+      File stateFile = statePath.toFile();
+
+      if (!stateFile.exists() || stateFile.length() == 0) {
+        return;
+      }
+
+      // Read reindex state file as CSV
+      try (FileReader reader = new FileReader(stateFile)) {
+        Iterable<CSVRecord> records = CSVFormat.DEFAULT
+            .withHeader(REINDEX_STATE_HEADERS)
+            .withSkipHeaderRecord()
+            .parse(reader);
+
+        // Add indexed WARC path to set
+        records.forEach(record ->
+            indexedWarcs.add(Paths.get(record.get("warc"))));
+      }
+
+      needsHeader = false;
+    }
+
+    synchronized boolean isIndexed(Path warcPath) {
+      return indexedWarcs.contains(warcPath);
+    }
+
+    synchronized int size() {
+      return indexedWarcs.size();
+    }
+
+    synchronized void record(long start, long end, long artifactsIndexed, Path warcPath) {
+      // Open writer to state file in append mode
+      try (BufferedWriter out = Files.newBufferedWriter(
+          statePath,
+          StandardOpenOption.APPEND,
+          StandardOpenOption.CREATE)) {
+
+        // Write CSV record
+        try (CSVPrinter printer = new CSVPrinter(out, CSVFormat.DEFAULT
+            .withHeader(REINDEX_STATE_HEADERS)
+            .withSkipHeaderRecord(!needsHeader))) {
+
+          printer.printRecord(start, end, artifactsIndexed, warcPath);
+        }
+
+        needsHeader = false;
+        indexedWarcs.add(warcPath);
+      } catch (IOException e) {
+        log.warn("Could not append record of having indexed WARC file [warc: {}]", warcPath, e);
+        // Q: Do something else? The worst that will happen if restarted is reindexArtifactsFromWarc will
+        //    be invoked again and iterate over WARC records / artifacts, but it won't index any that are
+        //    already indexed.
+        //    NOTE: The number of artifacts that were indexed may be lower than the number of artifacts in
+        //    the WARC file, if processing of that WARC file was previously interrupted. This does not
+        //    necessarily indicate an error.
+      }
+    }
   }
 
   /**
@@ -2476,6 +3361,8 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
       // Get an ArchiveReader from the WARC file input stream
       ArchiveReader archiveReader = getArchiveReader(warcFile, new BufferedInputStream(warcStream));
 
+      List<Artifact> batch = new ArrayList<>(BATCH_SIZE);
+
       // Process each WARC record found by the ArchiveReader
       for (ArchiveRecord record : archiveReader) {
         log.debug2("Re-indexing artifact from WARC {} record {} from {}",
@@ -2551,8 +3438,14 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
             Artifact artifact = WarcArtifactDataUtil.getArtifact(artifactData);
 
             //// Add artifact to the index
-            index.indexArtifact(artifact);
             artifactsIndexed++;
+            batch.add(artifact);
+
+            // Index batch if size equals batch size
+            if (batch.size() == BATCH_SIZE) {
+              index.indexArtifacts(batch);
+              batch.clear();
+            }
           }
         } catch (IOException e) {
           log.error("Could not index artifact from WARC record [WARC-Record-ID: {}, warcFile: {}]",
@@ -2562,6 +3455,12 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
           throw e;
         }
       }
+
+      // Index whatever is left in the buffer
+      if (batch.size() > 0) {
+        index.indexArtifacts(batch);
+        batch.clear();
+      }
     } catch (IOException e) {
       log.error("Could not open WARC file [warcFile: {}]", warcFile, e);
       throw e;
@@ -2652,6 +3551,67 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
     return stateEntry;
   }
 
+  /**
+   * Accumulates artifact state journal entries and appends them with one open of each AU's journal.
+   */
+  private class JournalBatch {
+    private final Map<Path, Map<ArchivalUnitStem, List<WarcArtifactStateEntry>>> entries = new LinkedHashMap<>();
+
+    void add(Path basePath, ArtifactIdentifier artifactId, WarcArtifactStateEntry stateEntry) {
+      entries.computeIfAbsent(basePath, k -> new LinkedHashMap<>())
+          .computeIfAbsent(new ArchivalUnitStem(artifactId.getNamespace(), artifactId.getAuid()),
+              k -> new ArrayList<>())
+          .add(stateEntry);
+    }
+
+    void write() throws IOException {
+      for (Map.Entry<Path, Map<ArchivalUnitStem, List<WarcArtifactStateEntry>>> bpEntry : entries.entrySet()) {
+        for (Map.Entry<ArchivalUnitStem, List<WarcArtifactStateEntry>> auEntry : bpEntry.getValue().entrySet()) {
+          ArchivalUnitStem au = auEntry.getKey();
+          appendArtifactStateJournal(bpEntry.getKey(), au.namespace, au.auid, auEntry.getValue());
+        }
+      }
+      entries.clear();
+    }
+  }
+
+  /**
+   * Appends several entries to an AU's artifact state journal.
+   *
+   * @param basePath    A {@link Path} containing the repository base path.
+   * @param namespace   A {@link String} containing the namespace of the AU.
+   * @param auid        A {@link String} containing the AUID of the AU.
+   * @param stateEntries The {@link WarcArtifactStateEntry}s to record, in order.
+   * @throws IOException
+   */
+  protected void appendArtifactStateJournal(Path basePath, String namespace, String auid,
+                                            List<WarcArtifactStateEntry> stateEntries) throws IOException {
+
+    Objects.requireNonNull(basePath, "A repository base path must be provided");
+
+    ArchivalUnitStem auStem = new ArchivalUnitStem(namespace, auid);
+
+    try {
+      auLocks.getLock(auStem);
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while waiting to acquire AU lock");
+    }
+
+    Path auJournalPath = getAuJournalPath(basePath, namespace, auid, WarcArtifactStateEntry.LOCKSS_JOURNAL_ID);
+
+    try {
+      try (OutputStream output = initWarcAndGetAppendableOutputStream(auJournalPath)) {
+        for (WarcArtifactStateEntry stateEntry : stateEntries) {
+          writeWarcRecord(createWarcMetadataRecord(stateEntry.getArtifactUuid(), stateEntry), output);
+        }
+      }
+    } finally {
+      auLocks.releaseLock(auStem);
+    }
+
+    log.debug2("Appended {} artifact state entries to {}", stateEntries.size(), auJournalPath);
+  }
+
   /**
    * Returns an appendable {@link OutputStream} or initializes the WARC first if a {@link FileNotFoundException}
    * is thrown trying to open it.
@@ -2954,6 +3914,37 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
   // * WARC
   // *******************************************************************************************************************
 
+  /**
+   * Returns the WARC-Date of the record of an artifact: the fetch time property of the artifact if present, otherwise
+   * its collection date, otherwise now.
+   *
+   * @param artifactData The {@link ArtifactData} of the artifact.
+   * @return The WARC-Date, in milliseconds since the epoch.
+   */
+  public static long getWarcRecordDate(ArtifactData artifactData) {
+    // Use fetch time property from artifact for WARC-Date if present
+    String fetchTimeValue =
+        artifactData.getHttpHeaders().getFirst(Constants.X_LOCKSS_FETCH_TIME);
+
+    long fetchTime = -1;
+
+    if (fetchTimeValue != null) {
+      try {
+        fetchTime = Long.valueOf(fetchTimeValue);
+      } catch (NumberFormatException e) {
+        // Ignore
+      }
+    }
+
+    // Fallback to collection date from artifact if fetch time property is missing
+    if (fetchTime < 0) {
+      fetchTime = artifactData.getCollectionDate();
+    }
+
+    // Default to now() if fetch time property and collection date not present
+    return fetchTime < 0 ? TimeBase.nowMs() : fetchTime;
+  }
+
   /**
    * Writes an artifact as a WARC response record to a given OutputStream.
    *
@@ -2979,31 +3970,10 @@ public abstract class WarcArtifactDataStore implements ArtifactDataStore<Artifac
     record.setType(artifactData.isHttpResponse() ?
         WARCRecordType.response : WARCRecordType.resource);
 
-    // Use fetch time property from artifact for WARC-Date if present
-    String fetchTimeValue =
-        artifactData.getHttpHeaders().getFirst(Constants.X_LOCKSS_FETCH_TIME);
-
-    long fetchTime = -1;
-
-    if (fetchTimeValue != null) {
-      try {
-        fetchTime = Long.valueOf(fetchTimeValue);
-      } catch (NumberFormatException e) {
-        // Ignore
-      }
-    }
-
-    // Fallback to collection date from artifact if fetch time property is missing
-    if (fetchTime < 0) {
-      fetchTime = artifactData.getCollectionDate();
-    }
-
-    // Set WARC-Date field; default to now() if fetch time property and collection date not present
+    // Set WARC-Date field
     record.setCreate14DigitDate(
         DateTimeFormatter.ISO_INSTANT.format(
-            fetchTime < 0 ?
-                Instant.ofEpochMilli(TimeBase.nowMs()).atZone(ZoneOffset.UTC) :
-                Instant.ofEpochMilli(fetchTime).atZone(ZoneOffset.UTC)));
+            Instant.ofEpochMilli(getWarcRecordDate(artifactData)).atZone(ZoneOffset.UTC)));
 
     //// Optional WARC record headers
 
@@ -32,6 +32,7 @@ POSSIBILITY OF SUCH DAMAGE.
 
 package org.lockss.rs.io.storage.warc;
 
+import org.apache.commons.io.IOUtils;
 import org.lockss.rs.io.ArtifactContainerStats;
 
 import java.nio.file.Path;
@@ -50,6 +51,7 @@ public class WarcFile {
   private boolean isCheckedOut = false;
   private final ArtifactContainerStats stats = new ArtifactContainerStats();
   private boolean isReleased = false;
+  private WarcRecordIndex.Appender indexAppender;
 
   public boolean isCheckedOut() {
     return isCheckedOut;
@@ -113,6 +115,26 @@ public class WarcFile {
     return isReleased;
   }
 
+  /**
+   * Returns the open {@link WarcRecordIndex.Appender} to this WARC's record index, or {@code null} if there is none.
+   */
+  public WarcRecordIndex.Appender getIndexAppender() {
+    return indexAppender;
+  }
+
+  public WarcFile setIndexAppender(WarcRecordIndex.Appender indexAppender) {
+    this.indexAppender = indexAppender;
+    return this;
+  }
+
+  /**
+   * Closes the {@link WarcRecordIndex.Appender} to this WARC's record index, if it is open.
+   */
+  public void closeIndexAppender() {
+    IOUtils.closeQuietly(indexAppender);
+    indexAppender = null;
+  }
+
   @Override
   public String toString() {
     return "WarcFile{" +
@@ -77,6 +77,7 @@ public class WarcFilePool {
         new WarcFile(tmpWarcDir.resolve(generateTmpWarcFileName()), store.getUseWarcCompression());
 
     store.initWarc(warcFile.getPath());
+    store.initWarcRecordIndex(warcFile);
 
     allWarcs.add(warcFile);
 
@@ -139,6 +140,8 @@ public class WarcFilePool {
       warcFile.setCheckedOut(false);
 
       if (readyForGC) {
+        // No more records will be written to it
+        warcFile.closeIndexAppender();
         fullWarcs.add(warcFile);
         allWarcs.remove(warcFile);
       }
@@ -282,7 +285,8 @@ public class WarcFilePool {
           }
 
           // Remove WARC file from the data store
-          store.removeWarc(warc.getPath());
+          warc.closeIndexAppender();
+          store.removeTmpWarc(warc.getPath());
         } catch (IOException e) {
           // Log error and leave to reload
           log.error("Could not remove WARC file " + warc.getPath(), e);
@@ -306,6 +310,23 @@ public class WarcFilePool {
   private Map<ArtifactIdentifier, Artifact> scanForIndexedArtifacts(Path warcPath, ArtifactIndex index) throws IOException {
     Map<ArtifactIdentifier, Artifact> indexedArtifacts = new HashMap<>();
 
+    // Use the WARC's record index if it covers the WARC
+    List<WarcRecordIndex.Entry> indexEntries = store.readWarcRecordIndex(warcPath);
+
+    if (indexEntries != null) {
+      for (WarcRecordIndex.Entry entry : indexEntries) {
+        if (entry.isArtifact()) {
+          ArtifactIdentifier artifactId = entry.getArtifactIdentifier();
+          Artifact indexed = index.getArtifact(artifactId);
+          if (indexed != null) {
+            indexedArtifacts.put(artifactId, indexed);
+          }
+        }
+      }
+
+      return indexedArtifacts;
+    }
+
     try (InputStream warcStream = new BufferedInputStream(store.getInputStreamAndSeek(warcPath, 0L))) {
       ArchiveReader reader = store.getArchiveReader(warcPath, warcStream);
       reader.setDigest(false);
@@ -0,0 +1,325 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.rs.io.storage.warc;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.StringUtils;
+import org.archive.format.warc.WARCConstants.WARCRecordType;
+import org.lockss.util.rest.repo.model.ArtifactIdentifier;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Sidecar index of the records in a temporary WARC file, kept in a CSV file next to the WARC (the WARC's file name
+ * with {@link #INDEX_FILE_EXTENSION} appended). An entry is appended as each record is written, and carries what is
+ * otherwise learned by reading the record's headers: its type, artifact identifier, WARC-Date, offset and length.
+ * <p>
+ * Records in a temporary WARC mostly come from a few AUs with long common URL prefixes, so an entry's namespace and
+ * AUID are written as {@value #SAME_AS_PREVIOUS} when they are the same as the previous entry's, and its URI as the
+ * length of the prefix it shares with the previous entry's URI followed by the rest. The first entry written by an
+ * {@link Appender} is always written in full, so that appends by different writers (e.g., after a restart) can be
+ * read.
+ * <p>
+ * The index is only trusted if its entries cover the WARC file exactly, from offset zero to its current length without
+ * gaps; see {@link #isComplete(List, long)}. Otherwise, e.g., if a write to the WARC or the index was interrupted, the
+ * WARC must be read.
+ */
+public class WarcRecordIndex {
+  public static final String INDEX_FILE_EXTENSION = ".idx";
+
+  private static final CSVFormat INDEX_FORMAT = CSVFormat.DEFAULT;
+
+  /** Field value of a namespace or AUID that is the same as the previous entry's */
+  static final String SAME_AS_PREVIOUS = "=";
+
+  private static final int NUM_FIELDS = 10;
+
+  /**
+   * Returns the path of the index of a WARC file.
+   */
+  public static Path getIndexPath(Path warcPath) {
+    return warcPath.resolveSibling(warcPath.getFileName() + INDEX_FILE_EXTENSION);
+  }
+
+  /**
+   * An index entry for a single WARC record.
+   */
+  public static class Entry {
+    private final String type;
+    private final String uuid;
+    private final String namespace;
+    private final String auid;
+    private final String uri;
+    private final int version;
+    private final long date;
+    private final long offset;
+    private final long length;
+
+    public Entry(String type, ArtifactIdentifier aid, long date, long offset, long length) {
+      this(type, aid.getUuid(), aid.getNamespace(), aid.getAuid(), aid.getUri(), aid.getVersion(),
+          date, offset, length);
+    }
+
+    Entry(String type, String uuid, String namespace, String auid, String uri, int version,
+          long date, long offset, long length) {
+      this.type = type;
+      this.uuid = uuid;
+      this.namespace = namespace;
+      this.auid = auid;
+      this.uri = uri;
+      this.version = version;
+      this.date = date;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    /**
+     * Returns a copy of this entry with the given record length.
+     */
+    Entry withLength(long length) {
+      return new Entry(type, uuid, namespace, auid, uri, version, date, offset, length);
+    }
+
+    /**
+     * Returns the WARC-Type of the record.
+     */
+    public String getType() {
+      return type;
+    }
+
+    /**
+     * Returns true if the record is the serialization of an artifact.
+     */
+    public boolean isArtifact() {
+      return WARCRecordType.response.name().equals(type) || WARCRecordType.resource.name().equals(type);
+    }
+
+    /**
+     * Returns the identifier of the artifact in the record, built as
+     * {@link WarcArtifactDataUtil#buildArtifactIdentifier(org.archive.io.ArchiveRecordHeader)} would from its headers.
+     */
+    public ArtifactIdentifier getArtifactIdentifier() {
+      return new ArtifactIdentifier(uuid, namespace, auid, uri, version);
+    }
+
+    /**
+     * Returns the WARC-Date of the record, in milliseconds since the epoch.
+     */
+    public long getDate() {
+      return date;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    public long getLength() {
+      return length;
+    }
+
+    @Override
+    public String toString() {
+      return "[WarcRecordIndex.Entry type=" + type + ", uuid=" + uuid + ", offset=" + offset
+          + ", length=" + length + "]";
+    }
+  }
+
+  /**
+   * Appends index entries to an output stream, which is kept open between calls to {@link #append(List)}.
+   */
+  public static class Appender implements Closeable {
+    private final CSVPrinter printer;
+    private Entry previous;
+
+    public Appender(OutputStream output) throws IOException {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+      printer = new CSVPrinter(writer, INDEX_FORMAT);
+    }
+
+    /**
+     * Writes the entries and flushes them to the output stream.
+     */
+    public void append(List<Entry> entries) throws IOException {
+      for (Entry entry : entries) {
+        String prevUri = previous == null ? null : previous.uri;
+        int prefix = commonPrefixLength(prevUri, entry.uri);
+
+        printer.printRecord(entry.type, entry.uuid,
+            encodeField(entry.namespace, previous == null ? null : previous.namespace),
+            encodeField(entry.auid, previous == null ? null : previous.auid),
+            entry.uri == null ? null : prefix,
+            entry.uri == null ? null : entry.uri.substring(prefix),
+            entry.version, entry.date, entry.offset, entry.length);
+
+        previous = entry;
+      }
+
+      printer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      printer.close();
+    }
+  }
+
+  /**
+   * Writes index entries to an output stream.
+   */
+  public static void write(List<Entry> entries, OutputStream output) throws IOException {
+    new Appender(output).append(entries);
+  }
+
+  private static String encodeField(String value, String previousValue) {
+    if (value == null) {
+      return null;
+    } else if (value.equals(previousValue)) {
+      return SAME_AS_PREVIOUS;
+    } else if (value.startsWith(SAME_AS_PREVIOUS)) {
+      // Escape a literal value that starts with the marker
+      return SAME_AS_PREVIOUS + value;
+    }
+
+    return value;
+  }
+
+  private static String decodeField(String field, String previousValue) throws IOException {
+    if (field.isEmpty()) {
+      return null;
+    } else if (field.equals(SAME_AS_PREVIOUS)) {
+      if (previousValue == null) {
+        throw new IOException("Malformed WARC record index: no previous value");
+      }
+      return previousValue;
+    } else if (field.startsWith(SAME_AS_PREVIOUS)) {
+      return field.substring(SAME_AS_PREVIOUS.length());
+    }
+
+    return field;
+  }
+
+  /**
+   * Returns the length of the common prefix of two strings, not splitting a surrogate pair.
+   */
+  private static int commonPrefixLength(String a, String b) {
+    if (a == null || b == null) {
+      return 0;
+    }
+
+    int max = Math.min(a.length(), b.length());
+    int len = 0;
+
+    while (len < max && a.charAt(len) == b.charAt(len)) {
+      len++;
+    }
+
+    if (len > 0 && Character.isHighSurrogate(a.charAt(len - 1))) {
+      len--;
+    }
+
+    return len;
+  }
+
+  /**
+   * Reads index entries from an input stream.
+   *
+   * @throws IOException if the index could not be read or is malformed.
+   */
+  public static List<Entry> read(InputStream input) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    Reader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+    try {
+      Entry previous = null;
+
+      for (CSVRecord record : INDEX_FORMAT.parse(reader)) {
+        if (record.size() != NUM_FIELDS) {
+          throw new IOException("Malformed WARC record index: " + record.size() + " fields");
+        }
+
+        String uri = null;
+
+        if (!record.get(4).isEmpty()) {
+          int prefix = Integer.parseInt(record.get(4));
+          String prevUri = previous == null ? "" : StringUtils.defaultString(previous.uri);
+          uri = prevUri.substring(0, prefix) + record.get(5);
+        }
+
+        Entry entry = new Entry(
+            record.get(0),
+            StringUtils.defaultIfEmpty(record.get(1), null),
+            decodeField(record.get(2), previous == null ? null : previous.namespace),
+            decodeField(record.get(3), previous == null ? null : previous.auid),
+            uri,
+            Integer.parseInt(record.get(6)),
+            Long.parseLong(record.get(7)),
+            Long.parseLong(record.get(8)),
+            Long.parseLong(record.get(9)));
+
+        entries.add(entry);
+        previous = entry;
+      }
+    } catch (RuntimeException e) {
+      // A record was truncated (e.g., by an interrupted write) or is otherwise malformed
+      throw new IOException("Malformed WARC record index", e);
+    }
+
+    return entries;
+  }
+
+  /**
+   * Returns true if the entries cover a WARC file of the given length exactly: sorted by offset, the first starts at
+   * zero, each starts where the previous one ends, and the last ends at the end of the file.
+   */
+  public static boolean isComplete(List<Entry> entries, long warcLength) {
+    List<Entry> sorted = new ArrayList<>(entries);
+    sorted.sort(Comparator.comparingLong(Entry::getOffset));
+
+    long end = 0;
+
+    for (Entry entry : sorted) {
+      if (entry.getOffset() != end || entry.getLength() <= 0) {
+        return false;
+      }
+
+      end += entry.getLength();
+    }
+
+    return end == warcLength;
+  }
+}
@@ -36,9 +36,13 @@ import org.lockss.config.*;
 import org.lockss.util.*;
 
 /**
- * SchedService schedules and executes requests for computations.
- * Currently a single TaskRunner is used; this could be changed to take
- * advantage of multiprocessors.
+ * SchedService schedules and executes requests for computations.  By
+ * default a single TaskRunner is used.  If {@link #PARAM_NUM_RUNNERS} is
+ * greater than one, StepTasks are distributed among that many
+ * TaskRunners, each with its own schedule and stepper thread, so that
+ * several tasks (<i>eg</i>, hashes) can run concurrently on a
+ * multiprocessor.  Background tasks, which model load on the whole
+ * machine, are always scheduled on the first runner.
  */
 public class SchedService extends BaseLockssDaemonManager {
   protected static Logger log = Logger.getLogger();
@@ -54,7 +58,18 @@ public class SchedService extends BaseLockssDaemonManager {
   private static final long DEFAULT_INITIAL_OFFSET =
     1 * Constants.MINUTE;
 
+  /**
+   * Number of TaskRunners (each with its own schedule and stepper thread)
+   * among which StepTasks are distributed.  Read only at startup.
+   */
+  public static final String PARAM_NUM_RUNNERS = PREFIX + "numRunners";
+  public static final int DEFAULT_NUM_RUNNERS = 1;
+
+  static final String STATUS_TABLE_NAME = "SchedQ";
+
   private TaskRunner runner = null;
+  // All runners, runner is runners[0]
+  private TaskRunner[] runners = null;
   private long initialOffset = DEFAULT_INITIAL_OFFSET;
 
   public SchedService() {}
@@ -66,14 +81,33 @@ public class SchedService extends BaseLockssDaemonManager {
   public void startService() {
     super.startService();
     log.debug("startService()");
-    runner = new TaskRunner(new TaskRunner.SchedulerFactory () {
-	public Scheduler createScheduler() {
-	  return new SortScheduler();
-	}});
-    runner.initService(getDaemon());
-    runner.startService();
-    getApp().getStatusService().
-      registerStatusAccessor("SchedQ", runner.getStatusAccessor());
+    int nRunners =
+      Math.max(1, CurrentConfig.getIntParam(PARAM_NUM_RUNNERS,
+					    DEFAULT_NUM_RUNNERS));
+    TaskRunner[] newRunners = new TaskRunner[nRunners];
+    for (int ix = 0; ix < nRunners; ix++) {
+      TaskRunner tr = new TaskRunner(new TaskRunner.SchedulerFactory () {
+	  public Scheduler createScheduler() {
+	    return new SortScheduler();
+	  }});
+      if (nRunners > 1) {
+	tr.setName("TaskRunner-" + ix);
+      }
+      tr.initService(getDaemon());
+      tr.startService();
+      getApp().getStatusService().
+	registerStatusAccessor(statusTableName(ix), tr.getStatusAccessor());
+      newRunners[ix] = tr;
+    }
+    runners = newRunners;
+    runner = runners[0];
+    if (nRunners > 1) {
+      log.info("Started " + nRunners + " task runners");
+    }
+  }
+
+  static String statusTableName(int ix) {
+    return ix == 0 ? STATUS_TABLE_NAME : STATUS_TABLE_NAME + ix;
   }
 
   /**
@@ -82,11 +116,14 @@ public class SchedService extends BaseLockssDaemonManager {
    */
   public void stopService() {
     // TODO: checkpoint here.
-    if (runner != null) {
-      getApp().getStatusService().unregisterStatusAccessor("SchedQ");
-      runner.stopService();
+    if (runners != null) {
+      for (int ix = 0; ix < runners.length; ix++) {
+	getApp().getStatusService().unregisterStatusAccessor(statusTableName(ix));
+	runners[ix].stopService();
+      }
     }
     runner = null;
+    runners = null;
 
     super.stopService();
   }
@@ -106,7 +143,15 @@ public class SchedService extends BaseLockssDaemonManager {
    */
   public boolean scheduleTask(SchedulableTask task) {
     checkRunner();
-    return runner.scheduleTask(task);
+    if (runners.length == 1 || task.isBackgroundTask()) {
+      return runner.scheduleTask(task);
+    }
+    for (TaskRunner tr : runnersByLoad()) {
+      if (tr.scheduleTask(task)) {
+	return true;
+      }
+    }
+    return false;
   }
 
   /** Return true iff the task could be scheduled, but doesn't actually
@@ -116,7 +161,37 @@ public class SchedService extends BaseLockssDaemonManager {
    */
   public boolean isTaskSchedulable(SchedulableTask task) {
     checkRunner();
-    return runner.isTaskSchedulable(task);
+    if (runners.length == 1 || task.isBackgroundTask()) {
+      return runner.isTaskSchedulable(task);
+    }
+    for (TaskRunner tr : runnersByLoad()) {
+      if (tr.isTaskSchedulable(task)) {
+	return true;
+      }
+    }
+    return false;
+  }
+
+  /** Return the number of TaskRunners, <i>ie</i>, the number of
+   * StepTasks that may run concurrently. */
+  public int getNumRunners() {
+    checkRunner();
+    return runners.length;
+  }
+
+  /** Return the runners in order of increasing number of accepted tasks,
+   * so that new tasks are spread among them */
+  private List<TaskRunner> runnersByLoad() {
+    List<TaskRunner> res = new ArrayList<TaskRunner>(Arrays.asList(runners));
+    final Map<TaskRunner,Integer> loads = new HashMap<TaskRunner,Integer>();
+    for (TaskRunner tr : res) {
+      loads.put(tr, tr.getNumAcceptedTasks());
+    }
+    Collections.sort(res, new Comparator<TaskRunner>() {
+	public int compare(TaskRunner tr1, TaskRunner tr2) {
+	  return loads.get(tr1).compareTo(loads.get(tr2));
+	}});
+    return res;
   }
 
   /** Find the earliest possible time a background task could be scheduled.
@@ -133,7 +208,12 @@ public class SchedService extends BaseLockssDaemonManager {
   /** Return true if the SchedService has nothing to do.  Useful in unit
    * tests. */
   public boolean isIdle() {
-    return runner.isIdle();
+    for (TaskRunner tr : runners) {
+      if (!tr.isIdle()) {
+	return false;
+      }
+    }
+    return true;
   }
 
   private void checkRunner() {
@@ -99,6 +99,7 @@ class TaskRunner {
 
   private LockssDaemon daemon;
   private final SchedulerFactory schedulerFactory;
+  private String name = "TaskRunner";
 
   // config params
   private int maxDrop = DEFAULT_DROP_TASK_MAX;
@@ -146,6 +147,12 @@ class TaskRunner {
     this.schedulerFactory = schedFactory;
   }
 
+  /** Set the name used for the stepper thread.  Used to distinguish
+   * runners when SchedService has more than one. */
+  void setName(String name) {
+    this.name = name;
+  }
+
   // This isn't a LockssManager; these are called from SchedService
 
   void initService(LockssDaemon daemon) {
@@ -490,7 +497,7 @@ class TaskRunner {
     StepThread th = stepThread;
     if (th == null) {
       log.info("Starting Q runner");
-      th = new StepThread("TaskRunner");
+      th = new StepThread(name);
       stepThread = th;
       th.start();
       th.waitRunning();
@@ -576,6 +583,10 @@ class TaskRunner {
     return acceptedTasks.isEmpty() && notifyQueue.isEmpty();
   }
 
+  synchronized int getNumAcceptedTasks() {
+    return acceptedTasks.size();
+  }
+
   // *******************************************************************
   // Following code is normally called only from the stepper thread.  It
   // resides in the main class for ease of synchronization and unit testing.
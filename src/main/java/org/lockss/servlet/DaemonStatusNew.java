@@ -128,6 +128,11 @@ public class DaemonStatusNew extends BaseDaemonStatus {
 	tableOptions.set(StatusTable.OPTION_NO_ROWS);
       }
     }
+    if (outputFmt != OUTPUT_HTML) {
+      // Machine-readable output gets all the rows of tables that are
+      // otherwise paged, unless numrows is specified
+      tableOptions.set(StatusTable.OPTION_ALL_ROWS);
+    }
 
     tableKey = req.getParameter("key");
     if (StringUtil.isNullString(tableName)) {
@@ -226,6 +231,10 @@ public class DaemonStatusNew extends BaseDaemonStatus {
 	table.setProperty(name, req.getParameter(name));
       }
     }
+    if (sortKey != null) {
+      // Carried to the Previous and Next links of paged tables
+      table.setProperty("sort", sortKey);
+    }
     statSvc.fillInTable(table);
     return table;
   }
@@ -296,6 +305,21 @@ public class DaemonStatusNew extends BaseDaemonStatus {
     return rowList;
   }
 
+  // Like getRowList(), but rows of a table with a RowSource are generated
+  // as they're written, if they don't need to be sorted
+  private Iterator<Map> getRowCursor(StatusTable statTable) {
+    if (sortKey != null) {
+      try {
+	rules = makeSortRules(statTable, sortKey);
+	return statTable.getRowCursor(rules);
+      } catch (Exception e) {
+	log.warning("Error sorting table by: " + rules, e);
+	rules = null;
+      }
+    }
+    return statTable.getRowCursor();
+  }
+
   // Build the table, adding elements to page
   private Page doHtmlStatusTable0() throws IOException {
     Page page;
@@ -438,27 +462,24 @@ public class DaemonStatusNew extends BaseDaemonStatus {
     }
     wrtr.println();
 
-    java.util.List rowList = getRowList(statTable);
-    if (rowList != null) {
-      // output rows
-      for (Iterator rowIter = rowList.iterator(); rowIter.hasNext(); ) {
-	Map rowMap = (Map)rowIter.next();
-	for (Iterator iter = rowMap.keySet().iterator(); iter.hasNext(); ) {
-	  Object o = iter.next();
-	  if (!(o instanceof String)) {
-	    // ignore special markers (eg, StatusTable.ROW_SEPARATOR)
-	    continue;
-	  }
-	  String key = (String)o;
-	  Object val = rowMap.get(key);
-	  Object dispVal = getTextDisplayString(val);
-	  String valStr = dispVal != null ? dispVal.toString() : "(null)";
-	  wrtr.print(key + "=" + StringUtil.ckvEscape(valStr));
-	  if (iter.hasNext()) {
-	    wrtr.print(",");
-	  } else {
-	    wrtr.println();
-	  }
+    // output rows
+    for (Iterator rowIter = getRowCursor(statTable); rowIter.hasNext(); ) {
+      Map rowMap = (Map)rowIter.next();
+      for (Iterator iter = rowMap.keySet().iterator(); iter.hasNext(); ) {
+	Object o = iter.next();
+	if (!(o instanceof String)) {
+	  // ignore special markers (eg, StatusTable.ROW_SEPARATOR)
+	  continue;
+	}
+	String key = (String)o;
+	Object val = rowMap.get(key);
+	Object dispVal = getTextDisplayString(val);
+	String valStr = dispVal != null ? dispVal.toString() : "(null)";
+	wrtr.print(key + "=" + StringUtil.ckvEscape(valStr));
+	if (iter.hasNext()) {
+	  wrtr.print(",");
+	} else {
+	  wrtr.println();
 	}
       }
     }
@@ -481,7 +502,7 @@ public class DaemonStatusNew extends BaseDaemonStatus {
     }
     java.util.List<ColumnDescriptor> colList =
       statTable.getColumnDescriptors();
-    java.util.List<Map> rowList = getRowList(statTable);
+    Iterator<Map> rowIter = getRowCursor(statTable);
     if (colList != null) {
       for (Iterator colIter = colList.iterator(); colIter.hasNext(); ) {
 	ColumnDescriptor cd = (ColumnDescriptor)colIter.next();
@@ -492,20 +513,19 @@ public class DaemonStatusNew extends BaseDaemonStatus {
 	  wrtr.println();
 	}
       }
-      if (rowList != null) {
-	// output rows
-	for (Map rowMap : rowList) {
-	  for (Iterator colIter = colList.iterator(); colIter.hasNext(); ) {
-	    ColumnDescriptor cd = (ColumnDescriptor)colIter.next();
-	    Object val = rowMap.get(cd.getColumnName());
-	    Object dispVal = getTextDisplayString(val);
-	    String valStr = dispVal != null ? dispVal.toString() : "(null)";
-	    wrtr.print(StringUtil.csvEncode(valStr));
-	    if (colIter.hasNext()) {
-	      wrtr.print(",");
-	    } else {
-	      wrtr.println();
-	    }
+      // output rows
+      while (rowIter.hasNext()) {
+	Map rowMap = rowIter.next();
+	for (Iterator colIter = colList.iterator(); colIter.hasNext(); ) {
+	  ColumnDescriptor cd = (ColumnDescriptor)colIter.next();
+	  Object val = rowMap.get(cd.getColumnName());
+	  Object dispVal = getTextDisplayString(val);
+	  String valStr = dispVal != null ? dispVal.toString() : "(null)";
+	  wrtr.print(StringUtil.csvEncode(valStr));
+	  if (colIter.hasNext()) {
+	    wrtr.print(",");
+	  } else {
+	    wrtr.println();
 	  }
 	}
       }
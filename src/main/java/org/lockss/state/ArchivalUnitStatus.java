@@ -68,6 +68,13 @@ public class ArchivalUnitStatus
       PREFIX + "nodesPerPage";
   static final int DEFAULT_MAX_NODES_TO_DISPLAY = 1000;
 
+  /**
+   * The number of AUs to display in a single page of the Archival Units
+   * table.  If zero, all AUs are displayed on one page.
+   */
+  public static final String PARAM_AUS_PER_PAGE = PREFIX + "ausPerPage";
+  static final int DEFAULT_AUS_PER_PAGE = 1000;
+
   /**
    * Node URLs are links to cached content page if true
    */
@@ -108,6 +115,7 @@ public class ArchivalUnitStatus
   private static final Logger logger = Logger.getLogger();
 
   private static int defaultNumRows = DEFAULT_MAX_NODES_TO_DISPLAY;
+  private static int ausPerPage = DEFAULT_AUS_PER_PAGE;
   private static boolean isContentIsLink = DEFAULT_CONTENT_IS_LINK;
   private static boolean includeNeedsRecrawl = DEFAULT_INCLUDE_NEEDS_RECRAWL;
   private static boolean peerArgeementsUseReputationTransfers =
@@ -176,6 +184,7 @@ public class ArchivalUnitStatus
       Configuration.Differences changedKeys) {
     defaultNumRows = config.getInt(PARAM_MAX_NODES_TO_DISPLAY,
         DEFAULT_MAX_NODES_TO_DISPLAY);
+    ausPerPage = config.getInt(PARAM_AUS_PER_PAGE, DEFAULT_AUS_PER_PAGE);
     isContentIsLink = config.getBoolean(PARAM_CONTENT_IS_LINK,
         DEFAULT_CONTENT_IS_LINK);
     includeNeedsRecrawl = config.getBoolean(PARAM_INCLUDE_NEEDS_RECRAWL,
@@ -289,11 +298,17 @@ public class ArchivalUnitStatus
         inclCols.add(cd.getColumnName());
       }
       Stats stats = new Stats();
-      table.setRows(getRows(table, inclCols, stats));
+      table.setRowSource(getRowSource(table, inclCols, stats),
+                         COL_AU_NAME, ausPerPage);
       table.setSummaryInfo(getSummaryInfo(table, inclCols, stats));
     }
 
-    private List getRows(StatusTable table, Set<String> inclCols, Stats stats)
+    // Rows are made only as the table is read, and only the displayed
+    // page is retained, so a box with very many AUs doesn't build a row
+    // Map for each of them.
+    private StatusTable.RowSource getRowSource(StatusTable table,
+                                               Set<String> inclCols,
+                                               Stats stats)
         throws StatusService.NoSuchTableException {
       PluginManager pluginMgr = theDaemon.getPluginManager();
 
@@ -319,26 +334,29 @@ public class ArchivalUnitStatus
       }
       boolean includeInternalAus =
           table.getOptions().get(StatusTable.OPTION_DEBUG_USER);
-      List rowL = new ArrayList();
-      Collection<ArchivalUnit> aus;
+      Collection<ArchivalUnit> allAus;
       if (onlyPlug != null) {
-        aus = onlyPlug.getAllAus();
+        allAus = onlyPlug.getAllAus();
       } else {
-        aus = pluginMgr.getAllAus();
+        allAus = pluginMgr.getAllAus();
       }
-      for (ArchivalUnit au : aus) {
+      List<ArchivalUnit> aus = new ArrayList<ArchivalUnit>(allAus.size());
+      for (ArchivalUnit au : allAus) {
         if (!includeInternalAus && pluginMgr.isInternalAu(au)) {
           continue;
         }
-        try {
-          rowL.add(makeRow(au, inclCols));
-          stats.aus++;
-        } catch (Exception e) {
-          logger.warning("Unexpected exception building row", e);
-        }
+        aus.add(au);
       }
+      stats.aus = aus.size();
       stats.restarting = pluginMgr.getNumAusRestarting();
-      return rowL;
+      return new StatusTable.IterableRowSource<ArchivalUnit>(aus, au -> {
+          try {
+            return makeRow(au, inclCols);
+          } catch (Exception e) {
+            logger.warning("Unexpected exception building row", e);
+            return null;
+          }
+        });
     }
 
     private Map makeRow(ArchivalUnit au, Set inclCols) {
@@ -683,7 +701,7 @@ public class ArchivalUnitStatus
 
         long size = cu.getContentSize();
         Object val =
-            new StatusTable.SrvLink(cu.getContentSize(),
+            new StatusTable.SrvLink(size,
                 AdminServletManager.SERVLET_DISPLAY_CONTENT,
                 PropUtil.fromArgs("auid", au.getAuId(),
                     "url", cu.getUrl()));
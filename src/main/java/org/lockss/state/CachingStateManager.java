@@ -31,10 +31,14 @@ package org.lockss.state;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
 
 import org.lockss.account.AccountManager;
 import org.lockss.account.UserAccount;
 import org.lockss.app.*;
+import org.lockss.config.*;
+import org.lockss.daemon.status.*;
 import org.lockss.log.*;
 import org.lockss.util.*;
 import org.lockss.plugin.*;
@@ -49,6 +53,13 @@ import org.lockss.state.AuSuspectUrlVersions.SuspectUrlVersion;
  * accessing AuState in the course of their work with an AU, and the state
  * service, where not all AUs will necessarily exist (so AuState cannot
  * exist) but still want to cache bean data to avoid extra DB accesses.
+ *
+ * Per-AU operations are serialized by a lock chosen from a fixed set of
+ * stripes by hashing the auid, rather than by the manager's monitor, so
+ * that a cache miss that goes to the backing store blocks only other
+ * operations on AUs in the same stripe.  A miss for a given auid is still
+ * loaded exactly once, as the load happens while holding that auid's
+ * stripe.
  */
 public abstract class CachingStateManager extends BaseStateManager {
 
@@ -75,11 +86,38 @@ public abstract class CachingStateManager extends BaseStateManager {
     = PREFIX + "noPeerSetMapsCacheSize";
   public static final int DEFAULT_NO_PEER_SET_MAPS_CACHE_SIZE = 50;
 
+  /**
+   * The number of locks across which per-AU operations are striped.  Only
+   * read at startup.
+   */
+  public static final String PARAM_LOCK_STRIPES = PREFIX + "lockStripes";
+  public static final int DEFAULT_LOCK_STRIPES = 64;
+
+  public static final String LOCK_STATUS_TABLE = "StateManagerLocks";
+
   protected AuEventHandler auEventHandler;
 
+  private ReentrantLock[] stripes;
+  private AtomicLongArray stripeContentions;
+
+  // Contention and cache miss statistics, for the status table
+  private final AtomicLong lockAcquisitions = new AtomicLong();
+  private final AtomicLong lockContentions = new AtomicLong();
+  private final AtomicLong lockWaitNanos = new AtomicLong();
+  private final AtomicLong maxLockWaitNanos = new AtomicLong();
+  private final AtomicLong cacheMisses = new AtomicLong();
+  private final AtomicLong cacheMissNanos = new AtomicLong();
+
   @Override
   public void initService(LockssDaemon daemon) throws LockssAppException {
     super.initService(daemon);
+    int nStripes = Math.max(1, CurrentConfig.getIntParam(PARAM_LOCK_STRIPES,
+							 DEFAULT_LOCK_STRIPES));
+    stripes = new ReentrantLock[nStripes];
+    for (int ix = 0; ix < nStripes; ix++) {
+      stripes[ix] = new ReentrantLock();
+    }
+    stripeContentions = new AtomicLongArray(nStripes);
     auStates = newAuStateMap();
     auStateBeans = newAuStateBeanMap();
     agmnts = newAuAgreementsMap();
@@ -101,9 +139,12 @@ public abstract class CachingStateManager extends BaseStateManager {
     if (pluginMgr != null) {
       pluginMgr.registerAuEventHandler(auEventHandler);
     }
+    getDaemon().getStatusService().registerStatusAccessor(LOCK_STATUS_TABLE,
+							  new LockStatus());
   }
 
   public void stopService() {
+    getDaemon().getStatusService().unregisterStatusAccessor(LOCK_STATUS_TABLE);
     stopJms();
     if (auEventHandler != null) {
       if (pluginMgr != null) {
@@ -115,10 +156,45 @@ public abstract class CachingStateManager extends BaseStateManager {
   }
 
   protected void handleAuDeleted(ArchivalUnit au) {
-    handleAuDeletedAuState(au);
-    handleAuDeletedAuAgreements(au);
-    handleAuDeletedAuSuspectUrlVersions(au);
-    handleAuDeletedNoAuPeerSet(au);
+    Lock lock = lockAu(auKey(au));
+    try {
+      handleAuDeletedAuState(au);
+      handleAuDeletedAuAgreements(au);
+      handleAuDeletedAuSuspectUrlVersions(au);
+      handleAuDeletedNoAuPeerSet(au);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // /////////////////////////////////////////////////////////////////
+  // Per-AU lock stripes
+  // /////////////////////////////////////////////////////////////////
+
+  /** Acquire and return the lock that guards the state of the AU with the
+   * given auid.  Caller must unlock it. */
+  protected Lock lockAu(String key) {
+    int ix = Math.floorMod(Objects.hashCode(key), stripes.length);
+    ReentrantLock lock = stripes[ix];
+    lockAcquisitions.incrementAndGet();
+    if (!lock.tryLock()) {
+      long start = System.nanoTime();
+      lock.lock();
+      long wait = System.nanoTime() - start;
+      lockContentions.incrementAndGet();
+      stripeContentions.incrementAndGet(ix);
+      lockWaitNanos.addAndGet(wait);
+      maxLockWaitNanos.accumulateAndGet(wait, Math::max);
+      log.debug2("Waited {} ns for stripe {} ({})", wait, ix, key);
+    }
+    return lock;
+  }
+
+  /** Record the time spent handling a cache miss that started at
+   * <code>startNanos</code> */
+  private void recordCacheMiss(long startNanos) {
+    cacheMisses.incrementAndGet();
+    cacheMissNanos.addAndGet(System.nanoTime() - startNanos);
   }
 
 
@@ -136,53 +212,68 @@ public abstract class CachingStateManager extends BaseStateManager {
   /** Return the current singleton AuState for the AU, creating one if
    * necessary. */
   @Override
-  public synchronized AuState getAuState(ArchivalUnit au) {
+  public AuState getAuState(ArchivalUnit au) {
     String key = auKey(au);
-    AuState aus = auStates.get(key);
-    if (aus == null) {
-      AuStateBean ausb = auStateBeans.get(key);
-      if (ausb != null) {
-	// Create an AuState, move the item from bean to main cache.  No
-	// store needed here has been exists and has been stored
-	aus = new AuState(au, this, ausb);
-	putAuState(key, aus);
+    Lock lock = lockAu(key);
+    try {
+      AuState aus = auStates.get(key);
+      if (aus == null) {
+	AuStateBean ausb = auStateBeans.get(key);
+	if (ausb != null) {
+	  // Create an AuState, move the item from bean to main cache.  No
+	  // store needed here has been exists and has been stored
+	  aus = new AuState(au, this, ausb);
+	  putAuState(key, aus);
+	}
       }
+      log.debug2("getAuState({}) [{}] = {}", au, key, aus);
+      if (aus == null) {
+	long start = System.nanoTime();
+	aus = handleAuStateCacheMiss(au);
+	recordCacheMiss(start);
+      }
+      return aus;
+    } finally {
+      lock.unlock();
     }
-    log.debug2("getAuState({}) [{}] = {}", au, key, aus);
-    if (aus == null) {
-      aus = handleAuStateCacheMiss(au);
-    }
-    return aus;
   }
 
   /** Return the current singleton AuStateBean for the auid, creating one
    * if necessary. */
   @Override
-  public synchronized AuStateBean getAuStateBean(String key) {
-    // first look for a cached AuState, return its bean
-    AuState aus = auStates.get(key);
-    if (aus != null) {
-      log.debug2("getAuStateBean({}) = {}", key, aus);
-      return aus.getBean();
-    }
+  public AuStateBean getAuStateBean(String key) {
+    Lock lock = lockAu(key);
+    try {
+      // first look for a cached AuState, return its bean
+      AuState aus = auStates.get(key);
+      if (aus != null) {
+	log.debug2("getAuStateBean({}) = {}", key, aus);
+	return aus.getBean();
+      }
 
-    AuStateBean ausb = auStateBeans.get(key);
-    log.debug2("getAuStateBean({}) = {}", key, ausb);
-    if (ausb == null) {
-      ausb = handleAuStateBeanCacheMiss(key);
+      AuStateBean ausb = auStateBeans.get(key);
+      log.debug2("getAuStateBean({}) = {}", key, ausb);
+      if (ausb == null) {
+	long start = System.nanoTime();
+	ausb = handleAuStateBeanCacheMiss(key);
+	recordCacheMiss(start);
+      }
+      return ausb;
+    } finally {
+      lock.unlock();
     }
-    return ausb;
   }
 
   /** Update the stored AuState with the values of the listed fields.
    * @param aus The source of the new values.
    */
   @Override
-  public synchronized void updateAuState(AuState aus, Set<String> fields) {
+  public void updateAuState(AuState aus, Set<String> fields) {
     String key = auKey(aus.getArchivalUnit());
     log.debug2("updateAuState: {}: {}", key, fields);
-    AuState cur = auStates.get(key);
+    Lock lock = lockAu(key);
     try {
+      AuState cur = auStates.get(key);
       if (cur != null) {
 	if (cur != aus) {
 	  throw new IllegalStateException("Attempt to store from wrong AuState instance");
@@ -205,6 +296,8 @@ public abstract class CachingStateManager extends BaseStateManager {
     } catch (IOException e) {
       log.error("Couldn't serialize AuState: {}", aus, e);
       throw new StateLoadStoreException("Couldn't serialize AuState: " + aus);
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -212,25 +305,26 @@ public abstract class CachingStateManager extends BaseStateManager {
    * @param ausb The source of the new values.
    */
   @Override
-  public synchronized void updateAuStateBean(String key,
+  public void updateAuStateBean(String key,
 					     AuStateBean ausb,
 					     Set<String> fields) {
     updateAuStateBean(key, ausb, fields, null);
   }
 
-  public synchronized void updateAuStateBean(String key,
-					     AuStateBean ausb,
-					     Set<String> fields,
-					     String cookie) {
+  public void updateAuStateBean(String key,
+				AuStateBean ausb,
+				Set<String> fields,
+				String cookie) {
     log.debug2("Updating AuState: {}: {}", key, fields);
-    AuState curaus = auStates.get(key);
-    AuStateBean curausb;
-    if (curaus != null) {
-      curausb = curaus.getBean();
-    } else {
-      curausb = auStateBeans.get(key);
-    }
+    Lock lock = lockAu(key);
     try {
+      AuState curaus = auStates.get(key);
+      AuStateBean curausb;
+      if (curaus != null) {
+	curausb = curaus.getBean();
+      } else {
+	curausb = auStateBeans.get(key);
+      }
       if (curausb != null) {
 	if (curausb != ausb) {
 	  throw new IllegalStateException("Attempt to store from wrong AuStateBean instance");
@@ -249,6 +343,8 @@ public abstract class CachingStateManager extends BaseStateManager {
       log.error("Couldn't serialize AuStateBean: {}", ausb, e);
       throw new StateLoadStoreException("Couldn't serialize AuStateBean: " +
 					ausb);
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -281,24 +377,34 @@ public abstract class CachingStateManager extends BaseStateManager {
   /** Store an AuState not obtained from StateManager.  Useful in tests.
    * Can only be called once per AU. */
   @Override
-  public synchronized void storeAuState(AuState aus) {
+  public void storeAuState(AuState aus) {
     String key = auKey(aus.getArchivalUnit());
-    if (auStates.containsKey(key)) {
-      throw new IllegalStateException("Storing 2nd AuState: " + key);
+    Lock lock = lockAu(key);
+    try {
+      if (auStates.containsKey(key)) {
+	throw new IllegalStateException("Storing 2nd AuState: " + key);
+      }
+      putAuState(key, aus);
+      doStoreAuStateBean(key, aus.getBean(), null);
+    } finally {
+      lock.unlock();
     }
-    putAuState(key, aus);
-    doStoreAuStateBean(key, aus.getBean(), null);
   }
 
   /** Store an AuStateBean not obtained from StateManager.  Useful in
    * tests.  Can only be called once per AU. */
   @Override
-  public synchronized void storeAuStateBean(String key, AuStateBean ausb) {
-    if (hasAuState(key)) {
-      throw new IllegalStateException("Storing 2nd AuState: " + key);
+  public void storeAuStateBean(String key, AuStateBean ausb) {
+    Lock lock = lockAu(key);
+    try {
+      if (hasAuState(key)) {
+	throw new IllegalStateException("Storing 2nd AuState: " + key);
+      }
+      auStateBeans.put(key, ausb);
+      doStoreAuStateBean(key, ausb, null);
+    } finally {
+      lock.unlock();
     }
-    auStateBeans.put(key, ausb);
-    doStoreAuStateBean(key, ausb, null);
   }
 
   /** Return true if an AuState(Bean) exists for the given auid
@@ -312,9 +418,15 @@ public abstract class CachingStateManager extends BaseStateManager {
   /** Default behavior when AU is deleted/deactivated is to remove AuState
    * from cache.  Persistent implementations should not remove it from
    * storage. */
-  protected synchronized void handleAuDeletedAuState(ArchivalUnit au) {
-    auStates.remove(auKey(au));
-    auStateBeans.remove(auKey(au));
+  protected void handleAuDeletedAuState(ArchivalUnit au) {
+    String key = auKey(au);
+    Lock lock = lockAu(key);
+    try {
+      auStates.remove(key);
+      auStateBeans.remove(key);
+    } finally {
+      lock.unlock();
+    }
   }
 
   /** Handle a cache miss.  Call hooks to load an object from backing
@@ -359,16 +471,18 @@ public abstract class CachingStateManager extends BaseStateManager {
     auStateBeans.remove(key);
   }
 
-  /** @return a Map suitable for an AuState cache.  By default a HashMap,
-   * for a complete cache. */
+  /** @return a Map suitable for an AuState cache.  Must be safe for
+   * concurrent access by operations on different AUs.  By default a
+   * ConcurrentHashMap, for a complete cache. */
   protected Map<String,AuState> newAuStateMap() {
-    return new HashMap<>();
+    return new ConcurrentHashMap<>();
   }
 
-  /** @return a Map suitable for an AuStateBean cache.  By default a
-   * HashMap, for a complete cache. */
+  /** @return a Map suitable for an AuStateBean cache.  Must be safe for
+   * concurrent access by operations on different AUs.  By default a
+   * ConcurrentHashMap, for a complete cache. */
   protected Map<String,AuStateBean> newAuStateBeanMap() {
-    return new HashMap<>();
+    return new ConcurrentHashMap<>();
   }
 
   /** Return true if an update call for an unknown AuState should be
@@ -388,28 +502,36 @@ public abstract class CachingStateManager extends BaseStateManager {
 
   /** Return the current singleton AuAgreements for the auid, creating one
    * if necessary. */
-  public synchronized AuAgreements getAuAgreements(String key) {
-    AuAgreements aua = agmnts.get(key);
-    log.debug2("getAuAgreements({}) = {}", key, aua);
-    if (aua == null) {
-      aua = handleAuAgreementsCacheMiss(key);
+  public AuAgreements getAuAgreements(String key) {
+    Lock lock = lockAu(key);
+    try {
+      AuAgreements aua = agmnts.get(key);
+      log.debug2("getAuAgreements({}) = {}", key, aua);
+      if (aua == null) {
+	long start = System.nanoTime();
+	aua = handleAuAgreementsCacheMiss(key);
+	recordCacheMiss(start);
+      }
+      return aua;
+    } finally {
+      lock.unlock();
     }
-    return aua;
   }
 
-  public synchronized void updateAuAgreements(String key,
+  public void updateAuAgreements(String key,
 					      AuAgreements aua,
 					      Set<PeerIdentity> peers) {
     updateAuAgreements(key, aua, peers, null);
   }
 
-  public synchronized void updateAuAgreements(String key,
-					      AuAgreements aua,
-					      Set<PeerIdentity> peers,
-					      String cookie) {
+  public void updateAuAgreements(String key,
+				 AuAgreements aua,
+				 Set<PeerIdentity> peers,
+				 String cookie) {
     log.debug2("Updating AuAgreements: {}: {}", key, peers);
-    AuAgreements curaua = agmnts.get(key);
+    Lock lock = lockAu(key);
     try {
+      AuAgreements curaua = agmnts.get(key);
       if (curaua != null) {
 	if (curaua != aua) {
 	  throw new IllegalStateException("Attempt to store from wrong AuAgreements instance");
@@ -427,6 +549,8 @@ public abstract class CachingStateManager extends BaseStateManager {
       log.error("Couldn't serialize AuAgreements: {}", aua, e);
       throw new StateLoadStoreException("Couldn't serialize AuAgreements: " +
 					aua);
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -447,15 +571,21 @@ public abstract class CachingStateManager extends BaseStateManager {
 
   /** Store an AuAgreements not obtained from StateManager.  Useful in tests.
    * Can only be called once per AU. */
-  public synchronized void storeAuAgreements(String key, AuAgreements aua) {
+  public void storeAuAgreements(String key, AuAgreements aua) {
     updateAuAgreements(key, aua, null);
   }
 
   /** Default behavior when AU is deleted/deactivated is to remove
    * AuAgreements from cache.  Persistent implementations should not remove
    * it from storage. */
-  protected synchronized void handleAuDeletedAuAgreements(ArchivalUnit au) {
-    agmnts.remove(auKey(au));
+  protected void handleAuDeletedAuAgreements(ArchivalUnit au) {
+    String key = auKey(au);
+    Lock lock = lockAu(key);
+    try {
+      agmnts.remove(key);
+    } finally {
+      lock.unlock();
+    }
   }
 
   /** Handle a cache miss.  Call hooks to load an object from backing
@@ -507,20 +637,27 @@ public abstract class CachingStateManager extends BaseStateManager {
 
   /** Return the current singleton AuSuspectUrlVersions for the auid,
    * creating one if necessary. */
-  public synchronized AuSuspectUrlVersions getAuSuspectUrlVersions(String key) {
-    AuSuspectUrlVersions asuv = suspectVers.get(key);
-    log.debug2("getAuSuspectUrlVersions({}) = {}", key, asuv);
-    if (asuv == null) {
-      asuv = handleAuSuspectUrlVersionsCacheMiss(key);
+  public AuSuspectUrlVersions getAuSuspectUrlVersions(String key) {
+    Lock lock = lockAu(key);
+    try {
+      AuSuspectUrlVersions asuv = suspectVers.get(key);
+      log.debug2("getAuSuspectUrlVersions({}) = {}", key, asuv);
+      if (asuv == null) {
+	long start = System.nanoTime();
+	asuv = handleAuSuspectUrlVersionsCacheMiss(key);
+	recordCacheMiss(start);
+      }
+      return asuv;
+    } finally {
+      lock.unlock();
     }
-    return asuv;
   }
 
   /** Completely replace the stored AuSuspectUrlVersions with the data from
    * this one.
    */
-  public synchronized void updateAuSuspectUrlVersions(String key,
-					     AuSuspectUrlVersions asuv) {
+  public void updateAuSuspectUrlVersions(String key,
+					 AuSuspectUrlVersions asuv) {
     updateAuSuspectUrlVersions(key, asuv, null);
   }
 
@@ -528,19 +665,20 @@ public abstract class CachingStateManager extends BaseStateManager {
    * this one.  The versions arg is intended for future use, to support
    * incremental udpate.  It's currently always null.
    */
-  public synchronized void updateAuSuspectUrlVersions(String key,
-					      AuSuspectUrlVersions asuv,
-					      Set<SuspectUrlVersion> versions) {
+  public void updateAuSuspectUrlVersions(String key,
+					 AuSuspectUrlVersions asuv,
+					 Set<SuspectUrlVersion> versions) {
     updateAuSuspectUrlVersions(key, asuv, versions, null);
   }
 
-  public synchronized void updateAuSuspectUrlVersions(String key,
-					      AuSuspectUrlVersions asuv,
-					      Set<SuspectUrlVersion> versions,
-					      String cookie) {
+  public void updateAuSuspectUrlVersions(String key,
+					 AuSuspectUrlVersions asuv,
+					 Set<SuspectUrlVersion> versions,
+					 String cookie) {
     log.debug2("Updating suspectUrlVersions: {}: {}", key, asuv);
-    AuSuspectUrlVersions curasuv = suspectVers.get(key);
+    Lock lock = lockAu(key);
     try {
+      AuSuspectUrlVersions curasuv = suspectVers.get(key);
       if (curasuv != null) {
 	if (curasuv != asuv) {
 	  throw new IllegalStateException("Attempt to store from wrong AuSuspectUrlVersions instance");
@@ -558,6 +696,8 @@ public abstract class CachingStateManager extends BaseStateManager {
       log.error("Couldn't serialize AuSuspectUrlVersions: {}", asuv, e);
       throw new StateLoadStoreException("Couldn't serialize AuSuspectUrlVersions: " +
 	  asuv);
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -578,7 +718,7 @@ public abstract class CachingStateManager extends BaseStateManager {
 
   /** Store an AuSuspectUrlVersions not obtained from StateManager.  Useful in tests.
    * Can only be called once per AU. */
-  public synchronized void storeAuSuspectUrlVersions(String key,
+  public void storeAuSuspectUrlVersions(String key,
       AuSuspectUrlVersions asuv) {
     updateAuSuspectUrlVersions(key, asuv, null);
   }
@@ -586,8 +726,14 @@ public abstract class CachingStateManager extends BaseStateManager {
   /** Default behavior when AU is deleted/deactivated is to remove
    * AuSuspectUrlVersions from cache.  Persistent implementations should not remove
    * it from storage. */
-  protected synchronized void handleAuDeletedAuSuspectUrlVersions(ArchivalUnit au) {
-    suspectVers.remove(auKey(au));
+  protected void handleAuDeletedAuSuspectUrlVersions(ArchivalUnit au) {
+    String key = auKey(au);
+    Lock lock = lockAu(key);
+    try {
+      suspectVers.remove(key);
+    } finally {
+      lock.unlock();
+    }
   }
 
   /** Handle a cache miss.  Call hooks to load an object from backing
@@ -640,33 +786,41 @@ public abstract class CachingStateManager extends BaseStateManager {
 
   /** Return the current singleton NoAuPeerSet for the auid,
    * creating one if necessary. */
-  public synchronized DatedPeerIdSet getNoAuPeerSet(String key) {
-    DatedPeerIdSet naps = noAuPeerSets.get(key);
-    log.debug2("getNoAuPeerSet({}) = {}", key, naps);
-    if (naps == null) {
-      naps = handleNoAuPeerSetCacheMiss(key);
+  public DatedPeerIdSet getNoAuPeerSet(String key) {
+    Lock lock = lockAu(key);
+    try {
+      DatedPeerIdSet naps = noAuPeerSets.get(key);
+      log.debug2("getNoAuPeerSet({}) = {}", key, naps);
+      if (naps == null) {
+	long start = System.nanoTime();
+	naps = handleNoAuPeerSetCacheMiss(key);
+	recordCacheMiss(start);
+      }
+      return naps;
+    } finally {
+      lock.unlock();
     }
-    return naps;
   }
 
-  public synchronized void updateNoAuPeerSet(String key,
-					     DatedPeerIdSet naps) {
+  public void updateNoAuPeerSet(String key,
+				DatedPeerIdSet naps) {
     updateNoAuPeerSet(key, naps, null);
   }
 
-  public synchronized void updateNoAuPeerSet(String key,
-					     DatedPeerIdSet naps,
-					     Set<PeerIdentity> peers) {
+  public void updateNoAuPeerSet(String key,
+				DatedPeerIdSet naps,
+				Set<PeerIdentity> peers) {
     updateNoAuPeerSet(key, naps, peers, null);
   }
 
-  public synchronized void updateNoAuPeerSet(String key,
-					     DatedPeerIdSet naps,
-					     Set<PeerIdentity> peers,
-					     String cookie) {
+  public void updateNoAuPeerSet(String key,
+				DatedPeerIdSet naps,
+				Set<PeerIdentity> peers,
+				String cookie) {
     log.debug2("Updating NoAuPeerSet: {}: {})", key, naps);
-    DatedPeerIdSet curnaps = noAuPeerSets.get(key);
+    Lock lock = lockAu(key);
     try {
+      DatedPeerIdSet curnaps = noAuPeerSets.get(key);
       if (curnaps != null) {
 	if (curnaps != naps) {
 	  throw new IllegalStateException("Attempt to store from wrong NoAuPeerSet instance");
@@ -684,6 +838,8 @@ public abstract class CachingStateManager extends BaseStateManager {
       log.error("Couldn't serialize NoAuPeerSet: {}", naps, e);
       throw new StateLoadStoreException("Couldn't serialize NoAuPeerSet: " +
 					naps);
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -703,15 +859,21 @@ public abstract class CachingStateManager extends BaseStateManager {
 
   /** Store an NoAuPeerSet not obtained from StateManager.  Useful in tests.
    * Can only be called once per AU. */
-  public synchronized void storeNoAuPeerSet(String key, DatedPeerIdSet naps) {
+  public void storeNoAuPeerSet(String key, DatedPeerIdSet naps) {
     updateNoAuPeerSet(key, naps, null);
   }
 
   /** Default behavior when AU is deleted/deactivated is to remove
    * NoAuPeerSet from cache.  Persistent implementations should not remove
    * it from storage. */
-  protected synchronized void handleAuDeletedNoAuPeerSet(ArchivalUnit au) {
-    noAuPeerSets.remove(auKey(au));
+  protected void handleAuDeletedNoAuPeerSet(ArchivalUnit au) {
+    String key = auKey(au);
+    Lock lock = lockAu(key);
+    try {
+      noAuPeerSets.remove(key);
+    } finally {
+      lock.unlock();
+    }
   }
 
   /** Handle a cache miss.  Call hooks to load an object from backing
@@ -935,4 +1097,105 @@ public abstract class CachingStateManager extends BaseStateManager {
 
     return false;
   }
+
+  // /////////////////////////////////////////////////////////////////
+  // Lock contention status
+  // /////////////////////////////////////////////////////////////////
+
+  private static final List lockColDescs =
+    ListUtil.list(new ColumnDescriptor("Stripe", "Stripe",
+				       ColumnDescriptor.TYPE_INT),
+		  new ColumnDescriptor("Contended", "Contended",
+				       ColumnDescriptor.TYPE_INT,
+				       "Number of times a thread had to wait for this stripe"),
+		  new ColumnDescriptor("Waiting", "Waiting",
+				       ColumnDescriptor.TYPE_INT,
+				       "Number of threads currently waiting for this stripe"),
+		  new ColumnDescriptor("Held", "Held",
+				       ColumnDescriptor.TYPE_STRING));
+
+  private static final List lockSortRules =
+    ListUtil.list(new StatusTable.SortRule("Contended", false),
+		  new StatusTable.SortRule("Stripe", true));
+
+  /** Displays the per-AU lock stripe contention and cache miss load
+   * times.  Only stripes that have seen contention, or are currently
+   * held, are listed. */
+  class LockStatus implements StatusAccessor {
+
+    public String getDisplayName() {
+      return "State Manager Locks";
+    }
+
+    public boolean requiresKey() {
+      return false;
+    }
+
+    public void populateTable(StatusTable table) {
+      if (!table.getOptions().get(StatusTable.OPTION_NO_ROWS)) {
+	table.setColumnDescriptors(lockColDescs);
+	table.setDefaultSortRules(lockSortRules);
+	table.setRows(getRows());
+      }
+      table.setSummaryInfo(getSummaryInfo());
+    }
+
+    private List<Map<String,Object>> getRows() {
+      List<Map<String,Object>> rows = new ArrayList<>();
+      for (int ix = 0; ix < stripes.length; ix++) {
+	long contended = stripeContentions.get(ix);
+	ReentrantLock lock = stripes[ix];
+	if (contended == 0 && !lock.isLocked()) {
+	  continue;
+	}
+	Map<String,Object> row = new HashMap<>();
+	row.put("Stripe", ix);
+	row.put("Contended", contended);
+	row.put("Waiting", lock.getQueueLength());
+	row.put("Held", lock.isLocked() ? "Yes" : "No");
+	rows.add(row);
+      }
+      return rows;
+    }
+
+    private List<StatusTable.SummaryInfo> getSummaryInfo() {
+      List<StatusTable.SummaryInfo> res = new ArrayList<>();
+      long acquired = lockAcquisitions.get();
+      long contended = lockContentions.get();
+      long misses = cacheMisses.get();
+      res.add(new StatusTable.SummaryInfo("Lock stripes",
+					  ColumnDescriptor.TYPE_INT,
+					  stripes.length));
+      res.add(new StatusTable.SummaryInfo("Lock acquisitions",
+					  ColumnDescriptor.TYPE_INT,
+					  acquired));
+      res.add(new StatusTable.SummaryInfo("Contended acquisitions",
+					  ColumnDescriptor.TYPE_INT,
+					  contended));
+      if (acquired > 0) {
+	res.add(new StatusTable.SummaryInfo("Contention rate",
+					    ColumnDescriptor.TYPE_PERCENT,
+					    (double)contended / acquired));
+      }
+      res.add(new StatusTable.SummaryInfo("Total lock wait",
+					  ColumnDescriptor.TYPE_TIME_INTERVAL,
+					  nanosToMillis(lockWaitNanos.get())));
+      res.add(new StatusTable.SummaryInfo("Max lock wait",
+					  ColumnDescriptor.TYPE_TIME_INTERVAL,
+					  nanosToMillis(maxLockWaitNanos.get())));
+      res.add(new StatusTable.SummaryInfo("Cache misses",
+					  ColumnDescriptor.TYPE_INT,
+					  misses));
+      if (misses > 0) {
+	res.add(new StatusTable.SummaryInfo("Mean cache miss load time",
+					    ColumnDescriptor.TYPE_TIME_INTERVAL,
+					    nanosToMillis(cacheMissNanos.get() / misses)));
+      }
+      return res;
+    }
+
+    private long nanosToMillis(long nanos) {
+      return nanos / 1000000;
+    }
+  }
 }
@@ -48,11 +48,12 @@ public class InMemoryStateManager extends CachingStateManager {
   // Serialized AuState instances for AUs that have been
   // deleted/deactivated.  Serializing is a more realistic way to
   // save/restore the state, plus it provides a convenient way to restore
-  // the data into an AuState object with a different AU.
-  protected Map<String,String> deletedAuStates = new HashMap<>();
-  protected Map<String,String> deletedAuAgreementses = new HashMap<>();
-  protected Map<String,String> deletedAuSuspectUrlVersionses = new HashMap<>();
-  protected Map<String,String> deletedNoAuPeerSets = new HashMap<>();
+  // the data into an AuState object with a different AU.  Concurrent, as
+  // they're read by cache misses, which hold only the AU's lock stripe.
+  protected Map<String,String> deletedAuStates = new ConcurrentHashMap<>();
+  protected Map<String,String> deletedAuAgreementses = new ConcurrentHashMap<>();
+  protected Map<String,String> deletedAuSuspectUrlVersionses = new ConcurrentHashMap<>();
+  protected Map<String,String> deletedNoAuPeerSets = new ConcurrentHashMap<>();
 
   protected Map<String,UserAccount> deletedUserAccounts = new ConcurrentHashMap<>();
 
@@ -112,6 +112,21 @@ public class IOUtil {
       f.close();
     } catch (Exception e) {}
   }
+
+  /** Call close() on the nio Channel, ignoring any errors */
+  public static void safeClose(java.nio.channels.Channel ch) {
+    try {
+      ch.close();
+    } catch (Exception e) {}
+  }
+
+  /** Call close() on the Selector, ignoring any errors */
+  public static void safeClose(java.nio.channels.Selector sel) {
+    try {
+      sel.close();
+    } catch (Exception e) {}
+  }
+
   /** Call release() on the LockssUrlConnection, ignoring any errors */
   public static void safeRelease(LockssUrlConnection conn) {
     try {
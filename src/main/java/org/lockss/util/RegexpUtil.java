@@ -171,6 +171,115 @@ public class RegexpUtil {
     return p1.flags() == p2.flags() && p1.pattern().equals(p2.pattern());
   }
 
+  /** Escapes whose meaning is the same in Perl5Compiler and
+   * java.util.regex.  Any other alphanumeric escape prevents translation. */
+  static final String SAFE_ESCAPES = "dDsSwWbBAZntrfex123456789";
+
+  /** Return a java.util.regex Pattern equivalent to a Perl5 regexp, or
+   * null if the regexp uses syntax that the two engines might interpret
+   * differently.  Unlike ORO Patterns, the result may be used by multiple
+   * threads concurrently.
+   * @param re Perl5 regular expression
+   * @param oroOptions Perl5Compiler options the regexp was compiled with;
+   * only CASE_INSENSITIVE_MASK and READ_ONLY_MASK are supported */
+  public static java.util.regex.Pattern toJavaPattern(String re,
+						      int oroOptions) {
+    if ((oroOptions & ~(Perl5Compiler.CASE_INSENSITIVE_MASK |
+			Perl5Compiler.READ_ONLY_MASK)) != 0) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder(re.length() + 8);
+    boolean inClass = false;
+    int classStart = -1;
+    int len = re.length();
+    for (int ix = 0; ix < len; ix++) {
+      char c = re.charAt(ix);
+      if (c == '\\') {
+	if (++ix >= len) {
+	  return null;
+	}
+	char n = re.charAt(ix);
+	if (Character.isLetterOrDigit(n) && SAFE_ESCAPES.indexOf(n) < 0) {
+	  return null;
+	}
+	sb.append(c).append(n);
+      } else if (inClass) {
+	if (c == ']' && ix != classStart) {
+	  inClass = false;
+	  sb.append(c);
+	} else if (c == '[') {
+	  // POSIX classes, or java.util.regex nested classes
+	  if (ix + 1 < len && re.charAt(ix + 1) == ':') {
+	    return null;
+	  }
+	  sb.append("\\[");
+	} else if (c == '&' || c == ']') {
+	  // Intersection operator, or literal ']' first in class
+	  sb.append('\\').append(c);
+	} else {
+	  sb.append(c);
+	}
+      } else {
+	if (c == '[') {
+	  inClass = true;
+	  classStart = ix + 1;
+	  if (classStart < len && re.charAt(classStart) == '^') {
+	    sb.append("[^");
+	    ix++;
+	    classStart++;
+	    continue;
+	  }
+	}
+	sb.append(c);
+      }
+    }
+    int flags = 0;
+    if ((oroOptions & Perl5Compiler.CASE_INSENSITIVE_MASK) != 0) {
+      flags |= java.util.regex.Pattern.CASE_INSENSITIVE |
+	java.util.regex.Pattern.UNICODE_CASE;
+    }
+    try {
+      return java.util.regex.Pattern.compile(sb.toString(), flags);
+    } catch (java.util.regex.PatternSyntaxException e) {
+      return null;
+    }
+  }
+
+  /** Return the literal string that every match of a start-anchored,
+   * case-sensitive regexp must begin with, or null if there isn't one.
+   * Allows a cheap String.startsWith() test to reject most non-matching
+   * strings without running the regexp. */
+  public static String getLiteralPrefix(String re, int oroOptions) {
+    if ((oroOptions & (Perl5Compiler.CASE_INSENSITIVE_MASK |
+		       Perl5Compiler.MULTILINE_MASK |
+		       Perl5Compiler.EXTENDED_MASK)) != 0
+	|| !re.startsWith("^")
+	|| re.indexOf('|') >= 0) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    int len = re.length();
+    int ix;
+    for (ix = 1; ix < len; ix++) {
+      char c = re.charAt(ix);
+      if (c == '\\') {
+	if (ix + 1 >= len || Character.isLetterOrDigit(re.charAt(ix + 1))) {
+	  break;
+	}
+	sb.append(re.charAt(++ix));
+      } else if (".[]()*+?{}^$".indexOf(c) >= 0) {
+	break;
+      } else {
+	sb.append(c);
+      }
+    }
+    // A following quantifier may make the last character optional
+    if (ix < len && "*?{".indexOf(re.charAt(ix)) >= 0 && sb.length() > 0) {
+      sb.setLength(sb.length() - 1);
+    }
+    return sb.length() > 0 ? sb.toString() : null;
+  }
+
   /** Quote any meta-chars in the string, so that it matches literally when
    * used in a regexp */
   public static String quotemeta(String val) {
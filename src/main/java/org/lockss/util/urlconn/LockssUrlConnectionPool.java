@@ -88,7 +88,7 @@ public class LockssUrlConnectionPool {
 //HC3   }
 
   /** Return (creating if necessary) an HttpClientContext */
-  public HttpClientContext getHttpClientContext() {
+  public synchronized HttpClientContext getHttpClientContext() {
     final String DEBUG_HEADER = "getHttpClientContext(): ";
     if (log.isDebug3()) log.debug3(DEBUG_HEADER + "context = " + context);
     if (context == null) {
@@ -207,7 +207,7 @@ public class LockssUrlConnectionPool {
 
   /** Return the HttpClientConnectionManager, creating it if it does not exist.
    */
-  public HttpClientConnectionManager getHttpClientConnectionManager(
+  public synchronized HttpClientConnectionManager getHttpClientConnectionManager(
       Registry<ConnectionSocketFactory> rcsf) {
     if (hcConnManager == null) {
       setupNewHttpClientConnectionManager(rcsf);
@@ -1693,6 +1693,43 @@ public class TestConfigManager extends LockssTestCase4 {
     assertEquals(1, tdb.getTdbAuCount());
   }
 
+  @Test
+  public void testReloadReusesTitleDb() throws IOException {
+    String props =
+      "org.lockss.title.title1.title=Air & Space volume 3\n" +
+      "org.lockss.title.title1.plugin=org.lockss.testplugin1\n" +
+      "org.lockss.title.title1.param.1.key=volume\n" +
+      "org.lockss.title.title1.param.1.value=3\n";
+    String u2 = FileTestUtil.urlOfString(props);
+    File f1 = FileTestUtil.writeTempFile("cfg", ".txt", "a=1\norg.lockss.titleDbs="+u2);
+    String u1 = f1.toURI().toURL().toString();
+    assertTrue(mgr.updateConfig(ListUtil.list(u1)));
+    Tdb tdb1 = mgr.getCurrentConfig().getTdb();
+    assertEquals(1, tdb1.getTdbAuCount());
+
+    // Change only the params file, Tdb should be reused
+    long lastMod = f1.lastModified();
+    FileTestUtil.writeFile(f1, "a=2\norg.lockss.titleDbs="+u2);
+    f1.setLastModified(lastMod + 10 * Constants.SECOND);
+    assertTrue(mgr.updateConfig(ListUtil.list(u1)));
+    Configuration config = mgr.getCurrentConfig();
+    assertEquals("2", config.get("a"));
+    assertSame(tdb1, config.getTdb());
+
+    // Change the title DB file, Tdb should be rebuilt
+    String u3 = FileTestUtil.urlOfString(props +
+      "org.lockss.title.title2.title=Air & Space volume 4\n" +
+      "org.lockss.title.title2.plugin=org.lockss.testplugin1\n" +
+      "org.lockss.title.title2.param.1.key=volume\n" +
+      "org.lockss.title.title2.param.1.value=4\n");
+    FileTestUtil.writeFile(f1, "a=2\norg.lockss.titleDbs="+u3);
+    f1.setLastModified(lastMod + 20 * Constants.SECOND);
+    assertTrue(mgr.updateConfig(ListUtil.list(u1)));
+    config = mgr.getCurrentConfig();
+    assertNotSame(tdb1, config.getTdb());
+    assertEquals(2, config.getTdb().getTdbAuCount());
+  }
+
   @Test
   public void testExcludedTitleDb() throws IOException {
     String props =
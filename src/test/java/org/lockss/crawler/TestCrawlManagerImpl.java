@@ -1594,6 +1594,88 @@ public class TestCrawlManagerImpl extends LockssTestCase {
 
     }
 
+    public void testPoolBacklog() throws Exception {
+      Properties p = new Properties();
+      p.put(CrawlManagerImpl.PARAM_START_CRAWLS_INTERVAL, "-1");
+      p.put(CrawlManagerImpl.PARAM_SHARED_QUEUE_MAX, "2");
+      p.put(CrawlManagerImpl.PARAM_UNSHARED_QUEUE_MAX, "2");
+      p.put(CrawlManagerImpl.PARAM_CRAWLER_THREAD_POOL_MAX, "3");
+      theDaemon.setAusStarted(true);
+      ConfigurationUtil.addFromProps(p);
+      crawlManager.startService();
+
+      MockArchivalUnit[] aus = makeMockAus(7);
+      registerAus(aus);
+      // Five AUs in pool foo, whose queue holds only two
+      setAu(aus[0], 0, 0, 1001, "foo");
+      setAu(aus[1], 0, 0, 1002, "foo");
+      setAu(aus[2], 0, 0, 1003, "foo");
+      setAu(aus[3], 0, 0, 1004, "foo");
+      setAu(aus[4], 0, 0, 1005, "foo");
+      setAu(aus[5], 0, 0, 2001, "bar");
+      setAu(aus[6], 0, 0, 2002, "bar");
+
+      // Not added to the queues until they've been built
+      MockArchivalUnit auNew = newMockArchivalUnit("auNew");
+      setAu(auNew, 0, 0, 500, "foo");
+      assertFalse(crawlManager.enqueueNewAu(auNew));
+
+      assertEquals(aus[0], crawlManager.nextReq().getAu());
+      assertEquals(1, crawlManager.rebuildCount);
+      crawlManager.addToRunningRateKeys(aus[0]);
+      aus[0].setShouldCrawlForNewContent(false);
+
+      // foo's backlog doesn't hold up bar
+      assertEquals(aus[5], crawlManager.nextReq().getAu());
+      crawlManager.addToRunningRateKeys(aus[5]);
+      aus[5].setShouldCrawlForNewContent(false);
+      // Both pools busy; foo's backlog isn't worth a rebuild
+      assertNull(crawlManager.nextReq());
+      assertEquals(1, crawlManager.rebuildCount);
+
+      // An AU found by a full rebuild, but not by a top up from the backlog
+      MockArchivalUnit auLate = newMockArchivalUnit("auLate");
+      setAu(auLate, 0, 0, 100, "foo");
+      PluginTestUtil.registerArchivalUnit(plugin, auLate);
+
+      // A new AU goes into foo's queue, which has room, without a rebuild
+      PluginTestUtil.registerArchivalUnit(plugin, auNew);
+      crawlManager.auEventCreated(AuEvent.forAu(auNew, AuEvent.Type.Create),
+                                  auNew);
+
+      crawlManager.delFromRunningRateKeys(aus[0]);
+      assertEquals(auNew, crawlManager.nextReq().getAu());
+      crawlManager.addToRunningRateKeys(auNew);
+      auNew.setShouldCrawlForNewContent(false);
+      crawlManager.delFromRunningRateKeys(auNew);
+      assertEquals(aus[1], crawlManager.nextReq().getAu());
+      crawlManager.addToRunningRateKeys(aus[1]);
+      aus[1].setShouldCrawlForNewContent(false);
+      assertEquals(1, crawlManager.rebuildCount);
+
+      // Finishing the crawl tops up foo's empty queue from its backlog,
+      // skipping AUs that no longer need a crawl
+      aus[2].setShouldCrawlForNewContent(false);
+      crawlManager.delFromRunningRateKeys(aus[1]);
+      assertEquals(aus[3], crawlManager.nextReq().getAu());
+      assertEquals(2, crawlManager.rebuildCount);
+      crawlManager.addToRunningRateKeys(aus[3]);
+      aus[3].setShouldCrawlForNewContent(false);
+      crawlManager.delFromRunningRateKeys(aus[3]);
+      assertEquals(aus[4], crawlManager.nextReq().getAu());
+      crawlManager.addToRunningRateKeys(aus[4]);
+      aus[4].setShouldCrawlForNewContent(false);
+      crawlManager.delFromRunningRateKeys(aus[4]);
+      // Backlog empty, not worth a rebuild
+      assertNull(crawlManager.nextReqFromBuiltQueue());
+      assertFalse(crawlManager.isWorthRebuildingQueue());
+
+      // A full rebuild finds auLate
+      crawlManager.rebuildQueueSoon();
+      assertEquals(auLate, crawlManager.nextReq().getAu());
+      assertEquals(3, crawlManager.rebuildCount);
+    }
+
     public void testCrawlPriorityAuidPatterns() {
       ConfigurationUtil.addFromArgs(CrawlManagerImpl.PARAM_CRAWL_PRIORITY_AUID_MAP,
           "foo(4|5),3;bar,5;baz,-1");
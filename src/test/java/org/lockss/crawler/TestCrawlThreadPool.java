@@ -0,0 +1,194 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.crawler;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.lockss.test.*;
+
+public class TestCrawlThreadPool extends LockssTestCase {
+
+  CrawlThreadPool pool;
+
+  public void tearDown() throws Exception {
+    if (pool != null) {
+      pool.shutdownNow();
+    }
+    super.tearDown();
+  }
+
+  /** Runnable that signals when it starts, then waits to be released */
+  static class Hang implements Runnable {
+    final int order;
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Integer> runOrder;
+
+    Hang(int order, List<Integer> runOrder) {
+      this.order = order;
+      this.runOrder = runOrder;
+    }
+
+    Hang() {
+      this(0, null);
+    }
+
+    public void run() {
+      if (runOrder != null) {
+	runOrder.add(order);
+      }
+      started.countDown();
+      try {
+	release.await();
+      } catch (InterruptedException e) {
+      }
+    }
+
+    boolean awaitStarted() throws InterruptedException {
+      return started.await(TIMEOUT_SHOULDNT, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  static Comparator<Runnable> BY_ORDER = new Comparator<Runnable>() {
+      public int compare(Runnable a, Runnable b) {
+	return ((Hang)a).order - ((Hang)b).order;
+      }
+    };
+
+  public void testUnqueued() throws Exception {
+    pool = CrawlThreadPool.makeUnqueued(2, 0);
+    assertFalse(pool.isQueued());
+    Hang h1 = new Hang();
+    Hang h2 = new Hang();
+    pool.execute(h1);
+    pool.execute(h2);
+    assertTrue(h1.awaitStarted());
+    assertTrue(h2.awaitStarted());
+    try {
+      pool.execute(new Hang());
+      fail("Should have rejected when all threads busy");
+    } catch (RejectedExecutionException e) {
+    }
+    h1.release.countDown();
+    // Thread is returned to the pool asynchronously
+    Hang h3 = new Hang();
+    long deadline = System.currentTimeMillis() + TIMEOUT_SHOULDNT;
+    while (true) {
+      try {
+	pool.execute(h3);
+	break;
+      } catch (RejectedExecutionException e) {
+	assertTrue("Thread not returned to pool",
+		   System.currentTimeMillis() < deadline);
+	Thread.sleep(10);
+      }
+    }
+    assertTrue(h3.awaitStarted());
+  }
+
+  public void testBlocking() throws Exception {
+    pool = CrawlThreadPool.makeBlocking(2, 0);
+    Hang h1 = new Hang();
+    Hang h2 = new Hang();
+    pool.execute(h1);
+    assertTrue(h1.awaitStarted());
+    // Second execute() doesn't return until a thread is free
+    final CountDownLatch returned = new CountDownLatch(1);
+    final Hang hh2 = h2;
+    Thread th = new Thread() {
+	public void run() {
+	  try {
+	    pool.execute(hh2);
+	    returned.countDown();
+	  } catch (InterruptedException e) {
+	  }
+	}
+      };
+    th.start();
+    assertTrue(h2.awaitStarted());
+    assertFalse(returned.await(100, TimeUnit.MILLISECONDS));
+    h1.release.countDown();
+    assertTrue(returned.await(TIMEOUT_SHOULDNT, TimeUnit.MILLISECONDS));
+    h2.release.countDown();
+  }
+
+  public void testQueued() throws Exception {
+    List<Integer> runOrder = Collections.synchronizedList(new ArrayList());
+    pool = CrawlThreadPool.makeQueued(1, 0, 3, BY_ORDER);
+    assertTrue(pool.isQueued());
+    assertEquals(3, pool.getQueueCapacity());
+    Hang h0 = new Hang(0, runOrder);
+    pool.execute(h0);
+    assertTrue(h0.awaitStarted());
+    Hang h3 = new Hang(3, runOrder);
+    Hang h1 = new Hang(1, runOrder);
+    Hang h2 = new Hang(2, runOrder);
+    pool.execute(h3);
+    pool.execute(h1);
+    pool.execute(h2);
+    assertEquals(3, pool.getQueueSize());
+    try {
+      pool.execute(new Hang(4, runOrder));
+      fail("Should have rejected when queue full");
+    } catch (RejectedExecutionException e) {
+    }
+    h0.release.countDown();
+    assertTrue(h1.awaitStarted());
+    h1.release.countDown();
+    assertTrue(h2.awaitStarted());
+    h2.release.countDown();
+    assertTrue(h3.awaitStarted());
+    h3.release.countDown();
+    assertEquals(Arrays.asList(0, 1, 2, 3), runOrder);
+  }
+
+  public void testSetMaxThreads() throws Exception {
+    pool = CrawlThreadPool.makeUnqueued(1, 0);
+    Hang h1 = new Hang();
+    pool.execute(h1);
+    assertTrue(h1.awaitStarted());
+    try {
+      pool.execute(new Hang());
+      fail("Should have rejected when all threads busy");
+    } catch (RejectedExecutionException e) {
+    }
+    pool.setMaxThreads(2);
+    assertEquals(2, pool.getMaxThreads());
+    Hang h2 = new Hang();
+    pool.execute(h2);
+    assertTrue(h2.awaitStarted());
+    h1.release.countDown();
+    h2.release.countDown();
+  }
+}
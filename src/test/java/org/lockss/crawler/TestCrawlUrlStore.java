@@ -0,0 +1,133 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package org.lockss.crawler;
+
+import java.io.*;
+import java.lang.ref.*;
+import java.util.*;
+import org.lockss.test.*;
+import org.lockss.util.*;
+
+public class TestCrawlUrlStore extends LockssTestCase {
+
+  File parentDir;
+
+  public void setUp() throws Exception {
+    super.setUp();
+    parentDir = getTempDir();
+  }
+
+  static long fp(String url) {
+    return UrlFingerprintMap.fingerprint(url);
+  }
+
+  void doTest(CrawlUrlStore store) {
+    assertEquals(0, store.size());
+    for (int ix = 0; ix < 100; ix++) {
+      CrawlUrlData curl = new CrawlUrlData("http://x.com/" + ix, ix % 5);
+      if (ix % 2 == 0) {
+	curl.setReferrer("http://x.com/ref" + ix);
+      }
+      curl.setFetched(ix % 3 == 0);
+      store.put(curl);
+    }
+    assertEquals(100, store.size());
+    assertTrue(store.contains("http://x.com/7"));
+    assertFalse(store.contains("http://x.com/100"));
+    // Replace one
+    store.put(new CrawlUrlData("http://x.com/7", 1));
+    assertEquals(100, store.size());
+    for (int ix = 99; ix >= 0; ix--) {
+      String url = "http://x.com/" + ix;
+      CrawlUrlData curl = store.remove(fp(url));
+      assertEquals(url, curl.getUrl());
+      if (ix == 7) {
+	assertEquals(1, curl.getDepth());
+	assertNull(curl.getReferrer());
+	continue;
+      }
+      assertEquals(ix % 5, curl.getDepth());
+      assertEquals(ix % 2 == 0 ? "http://x.com/ref" + ix : null,
+		   curl.getReferrer());
+      assertEquals(ix % 3 == 0, curl.isFetched());
+      assertFalse(store.contains(url));
+      assertNull(store.remove(fp(url)));
+    }
+    assertEquals(0, store.size());
+  }
+
+  public void testInMemory() {
+    CrawlUrlStore store = new CrawlUrlStore(false, parentDir);
+    CrawlUrlData curl = new CrawlUrlData("http://x.com/", 2);
+    store.put(curl);
+    assertSame(curl, store.remove(fp("http://x.com/")));
+    doTest(store);
+    assertEquals(0, store.getSpilledCount());
+    assertEquals(0, parentDir.list().length);
+  }
+
+  public void testSpilled() {
+    CrawlUrlStore store = new CrawlUrlStore(true, parentDir);
+    CrawlUrlData curl = new CrawlUrlData("http://x.com/", 2);
+    store.put(curl);
+    assertEquals(1, store.getSpilledCount());
+    CrawlUrlData res = store.remove(fp("http://x.com/"));
+    assertNotSame(curl, res);
+    assertEquals("http://x.com/", res.getUrl());
+    doTest(store);
+    assertEquals(1, parentDir.list().length);
+    store.release();
+    assertEquals(0, parentDir.list().length);
+  }
+
+  // Stored CrawlUrlData are not retained
+  public void testNotRetained() throws Exception {
+    CrawlUrlStore store = new CrawlUrlStore(true, parentDir);
+    List<Reference<CrawlUrlData>> refs = putWeaklyReferenced(store, 100);
+    assertEquals(100, store.getSpilledCount());
+    TestSpillingCrawlQueue.assertAllCollected(refs);
+    store.release();
+  }
+
+  // Separate method so no stack slot holds the last CrawlUrlData
+  List<Reference<CrawlUrlData>> putWeaklyReferenced(CrawlUrlStore store,
+						    int n) {
+    List<Reference<CrawlUrlData>> refs =
+      new ArrayList<Reference<CrawlUrlData>>();
+    for (int ix = 0; ix < n; ix++) {
+      CrawlUrlData curl = new CrawlUrlData("http://x.com/" + ix, 3);
+      store.put(curl);
+      refs.add(new WeakReference<CrawlUrlData>(curl));
+    }
+    return refs;
+  }
+}
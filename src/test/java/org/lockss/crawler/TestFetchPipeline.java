@@ -0,0 +1,181 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.crawler;
+
+import java.util.concurrent.*;
+
+import org.lockss.plugin.*;
+import org.lockss.plugin.UrlFetcher.FetchResult;
+import org.lockss.test.*;
+import org.lockss.util.urlconn.CacheException;
+
+public class TestFetchPipeline extends LockssTestCase {
+
+  MockArchivalUnit mau;
+  Crawler.CrawlerFacade facade;
+  FetchPipeline pipeline;
+
+  public void setUp() throws Exception {
+    super.setUp();
+    mau = new MockArchivalUnit();
+    facade = new MockCrawler().new MockCrawlerFacade(mau);
+  }
+
+  public void tearDown() throws Exception {
+    if (pipeline != null) {
+      pipeline.shutdown();
+    }
+    super.tearDown();
+  }
+
+  FetchPipeline.Task task(String url, UrlFetcher uf) {
+    return new FetchPipeline.Task(new CrawlUrlData(url, 1), uf);
+  }
+
+  public void testHostOf() {
+    assertEquals("foo.bar", FetchPipeline.hostOf("http://Foo.BAR/x/y"));
+    assertEquals("foo.bar", FetchPipeline.hostOf("https://foo.bar:8080/"));
+    assertEquals("", FetchPipeline.hostOf("not a url"));
+  }
+
+  public void testDecision() throws Exception {
+    FetchPipeline.Task t = new FetchPipeline.Task(new CrawlUrlData("u", 1),
+						  true);
+    assertFalse(t.needsFetch());
+    assertTrue(t.getDecision());
+    pipeline = new FetchPipeline(2, 1);
+    try {
+      pipeline.start(t);
+      fail("Should not be able to start a task with no fetcher");
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  public void testFailed() throws Exception {
+    RuntimeException ex = new RuntimeException("foo");
+    FetchPipeline.Task t =
+      FetchPipeline.Task.failed(new CrawlUrlData("u", 1), ex);
+    assertFalse(t.needsFetch());
+    assertNull(t.getDecision());
+    try {
+      t.getResult();
+      fail("Should have thrown");
+    } catch (RuntimeException e) {
+      assertSame(ex, e);
+    }
+  }
+
+  public void testRunDirectly() throws Exception {
+    FetchPipeline.Task t =
+      task("http://a.com/1", new MyFetcher("http://a.com/1", null));
+    assertTrue(t.needsFetch());
+    assertNull(t.getDecision());
+    t.run();
+    assertEquals(FetchResult.FETCHED, t.getResult());
+  }
+
+  public void testCacheException() throws Exception {
+    MyFetcher uf = new MyFetcher("http://a.com/1", null);
+    uf.ex = new CacheException.RetryableNetworkException_3_30S("net");
+    pipeline = new FetchPipeline(2, 1);
+    FetchPipeline.Task t = task("http://a.com/1", uf);
+    pipeline.start(t);
+    assertSame(t, pipeline.awaitCompletion(TIMEOUT_SHOULDNT));
+    assertTrue(pipeline.isIdle());
+    try {
+      t.getResult();
+      fail("Should have thrown");
+    } catch (CacheException e) {
+      assertSame(uf.ex, e);
+    }
+  }
+
+  // Fetches of three hosts must all be in progress at once for any of
+  // them to finish
+  public void testConcurrent() throws Exception {
+    CyclicBarrier barrier = new CyclicBarrier(3);
+    pipeline = new FetchPipeline(3, 1);
+    String[] urls = {"http://a.com/1", "http://b.com/1", "http://c.com/1"};
+    for (String url : urls) {
+      assertTrue(pipeline.canStart(url));
+      pipeline.start(task(url, new MyFetcher(url, barrier)));
+    }
+    assertEquals(3, pipeline.getInFlight());
+    assertFalse(pipeline.canStart("http://d.com/1"));
+    for (int ix = 0; ix < 3; ix++) {
+      FetchPipeline.Task t = pipeline.awaitCompletion(TIMEOUT_SHOULDNT);
+      assertNotNull(t);
+      assertEquals(FetchResult.FETCHED, t.getResult());
+    }
+    assertTrue(pipeline.isIdle());
+  }
+
+  public void testPerHostLimit() throws Exception {
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    pipeline = new FetchPipeline(4, 1);
+    pipeline.start(task("http://a.com/1",
+			new MyFetcher("http://a.com/1", barrier)));
+    assertFalse(pipeline.canStart("http://a.com/2"));
+    assertFalse(pipeline.canStart("http://A.com/3"));
+    assertTrue(pipeline.canStart("http://b.com/1"));
+    assertNull(pipeline.awaitCompletion(10));
+    barrier.await(TIMEOUT_SHOULDNT, TimeUnit.MILLISECONDS);
+    assertNotNull(pipeline.awaitCompletion(TIMEOUT_SHOULDNT));
+    assertTrue(pipeline.canStart("http://a.com/2"));
+  }
+
+  class MyFetcher extends MockUrlFetcher {
+    CyclicBarrier barrier;
+    CacheException ex;
+
+    MyFetcher(String url, CyclicBarrier barrier) {
+      super(facade, url);
+      this.barrier = barrier;
+    }
+
+    @Override
+    public FetchResult fetch() throws CacheException {
+      if (barrier != null) {
+	try {
+	  barrier.await(TIMEOUT_SHOULDNT, TimeUnit.MILLISECONDS);
+	} catch (Exception e) {
+	  throw new RuntimeException(e);
+	}
+      }
+      if (ex != null) {
+	throw ex;
+      }
+      return FetchResult.FETCHED;
+    }
+  }
+}
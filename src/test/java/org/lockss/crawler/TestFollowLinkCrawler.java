@@ -35,6 +35,8 @@ package org.lockss.crawler;
 import java.util.*;
 import java.util.stream.*;
 import java.io.*;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
 
 import org.apache.commons.collections4.set.*;
 import org.apache.oro.text.regex.*;
@@ -952,6 +954,22 @@ public class TestFollowLinkCrawler extends LockssTestCase {
 		 crawlUrls(ListUtil.list(url1, url2, url3)));
   }
 
+  public void testConcurrentFetch() {
+    ConfigurationUtil.addFromArgs(FollowLinkCrawler.PARAM_FETCH_THREADS, "3");
+    String url1= "http://www.example.com/link1.html";
+    String url2= "http://www.example.com/link2.html";
+    String url3= "http://www.example.com/link3.html";
+    String url4= "http://www.example.com/link4.html";
+    String url5= "http://www.example.com/link5.html";
+
+    crawler.setUrlsToFollow(ListUtil.list(url1, url2));
+    extractor.addUrlsToReturn(url1, SetUtil.set(url2, url3, url4));
+    extractor.addUrlsToReturn(url2, SetUtil.set(url1, url4, url5));
+    extractor.addUrlsToReturn(url4, SetUtil.set(startUrl, url5));
+    assertEquals(SetUtil.set(startUrl, url1, url2, url3, url4, url5),
+		 crawlUrls(ListUtil.list(url1, url2, url3, url4, url5)));
+  }
+
 //   public void testCrawlListPreservesUncrawledUrls() {
 //     setProperty(TestableFollowLinkCrawler.PARAM_PERSIST_CRAWL_LIST, "true");
 //     String url1= "http://www.example.com/link1.html";
@@ -1124,7 +1142,8 @@ public class TestFollowLinkCrawler extends LockssTestCase {
     CrawlUrlData curl = new CrawlUrlData("referring.url", 0);
     CrawlQueue cq = new CrawlQueue(null);
     TestableFollowLinkCrawler.MyLinkExtractorCallback mfuc =
-      crawler.newFoundUrlCallback(mau, curl, cq, new HashMap(), new HashMap());
+      crawler.newFoundUrlCallback(mau, curl, cq, new UrlFingerprintMap(),
+				  new UrlFingerprintMap());
 
     mfuc.foundLink("http://www.example.com/foo.bar");
     mfuc.foundLink("http://www.example.com/SESSION/foo.bar");
@@ -1152,6 +1171,41 @@ public class TestFollowLinkCrawler extends LockssTestCase {
     }
   }
 
+  // Neither the parent nor the link graph should keep spilled fetch
+  // queue entries on the heap
+  public void testSpilledUrlsNotRetained() throws Exception {
+    final String prefix = "http://www.example.com/";
+    MockArchivalUnit mau = new MockArchivalUnit(plug) {
+	public boolean shouldBeCached(String url) {
+	  return StringUtil.startsWithIgnoreCase(url, prefix);
+	}
+      };
+    final List<Reference<CrawlUrlData>> refs =
+      new ArrayList<Reference<CrawlUrlData>>();
+    SpillingCrawlQueue cq =
+      new SpillingCrawlQueue(null, 10, 8, getTempDir()) {
+	@Override
+	public void add(CrawlUrlData curl) {
+	  refs.add(new WeakReference<CrawlUrlData>(curl));
+	  super.add(curl);
+	}
+      };
+    CrawlUrlData curl = new CrawlUrlData(prefix + "index.html", 1);
+    TestableFollowLinkCrawler.MyLinkExtractorCallback mfuc =
+      crawler.newFoundUrlCallback(mau, curl, cq, new UrlFingerprintMap(),
+				  new UrlFingerprintMap());
+    for (int ix = 0; ix < 1000; ix++) {
+      mfuc.foundLink(prefix + "page" + ix + ".html");
+    }
+    assertEquals(1000, cq.size());
+    int spilled = cq.getSpilledCount();
+    assertTrue(spilled > 900);
+    assertEquals(spilled,
+		 TestSpillingCrawlQueue.awaitCollected(refs, spilled));
+    assertEquals(1000, crawler.urlGraph.numChildren(prefix + "index.html"));
+    assertEquals(2, crawler.urlGraph.getDepth(prefix + "page999.html"));
+  }
+
   //test that we don't cache a file that our crawl rules reject
   public void testDoesNotCacheFileWhichShouldNotBeCached() {
     MockCachedUrlSet cus = (MockCachedUrlSet)mau.getAuCachedUrlSet();
@@ -1439,8 +1493,8 @@ public class TestFollowLinkCrawler extends LockssTestCase {
       newFoundUrlCallback(ArchivalUnit au,
 			  CrawlUrlData curl,
 			  CrawlQueue fetchQueue,
-			  Map<String,CrawlUrlData> processedUrls,
-			  Map<String,CrawlUrlData> maxDepthUrls) {
+			  UrlFingerprintMap processedUrls,
+			  UrlFingerprintMap maxDepthUrls) {
       return new MyLinkExtractorCallback(au, curl, fetchQueue,
 					 processedUrls, maxDepthUrls);
     }
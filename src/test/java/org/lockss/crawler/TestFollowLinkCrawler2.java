@@ -1175,8 +1175,8 @@ public class TestFollowLinkCrawler2 extends LockssTestCase {
     }
 
     @Override
-    protected CrawlUrlData newCrawlUrlData(String url, int depth) {
-      return new MyCrawlUrlData(url, depth);
+    protected UrlDepthGraph newUrlDepthGraph() {
+      return new MyUrlDepthGraph();
     }
 
     @Override
@@ -1201,19 +1201,16 @@ public class TestFollowLinkCrawler2 extends LockssTestCase {
 
   }
 
-  static class MyCrawlUrlData extends CrawlUrlData {
-    public MyCrawlUrlData(String url, int depth) {
-      super(url, depth);
-    }
-
+  static class MyUrlDepthGraph extends UrlDepthGraph {
     // Cause an error if a child is added twice.  Ensures that the child
     // list is cleared before reparse.
     @Override
-    public void addChild(CrawlUrlData child, ReducedDepthHandler rdh) {
-      if (isChild(child)) {
+    public void addChild(String parentUrl, String childUrl,
+			 ReducedDepthHandler rdh) {
+      if (isChild(parentUrl, childUrl)) {
 	throw new IllegalStateException("Attempt to add existing child");
       }
-      super.addChild(child, rdh);
+      super.addChild(parentUrl, childUrl, rdh);
     }
   }
 
@@ -0,0 +1,268 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.crawler;
+
+import java.io.*;
+import java.lang.ref.*;
+import java.util.*;
+import org.lockss.test.*;
+import org.lockss.util.*;
+
+public class TestSpillingCrawlQueue extends LockssTestCase {
+
+  File parentDir;
+
+  public void setUp() throws Exception {
+    super.setUp();
+    parentDir = getTempDir();
+  }
+
+  SpillingCrawlQueue newQueue(Comparator<CrawlUrl> cmp, int hotMax,
+			      int maxRuns) {
+    return new SpillingCrawlQueue(cmp, hotMax, maxRuns, parentDir);
+  }
+
+  List<CrawlUrlData> makeCurls(int n) {
+    List<CrawlUrlData> res = new ArrayList<CrawlUrlData>();
+    Random rnd = new Random(42);
+    for (int ix = 0; ix < n; ix++) {
+      CrawlUrlData curl =
+	new CrawlUrlData("http://example.com/" + rnd.nextInt(1000000) + "/" + ix,
+			 rnd.nextInt(5));
+      curl.setReferrer("http://example.com/ref" + ix);
+      res.add(curl);
+    }
+    return res;
+  }
+
+  List<String> drain(CrawlQueue cq) {
+    List<String> res = new ArrayList<String>();
+    while (!cq.isEmpty()) {
+      res.add(cq.remove().getUrl());
+    }
+    return res;
+  }
+
+  void assertSameOrder(Comparator<CrawlUrl> cmp) {
+    List<CrawlUrlData> curls = makeCurls(500);
+    CrawlQueue ref = new CrawlQueue(cmp);
+    SpillingCrawlQueue cq = newQueue(cmp, 20, 4);
+    for (CrawlUrlData curl : curls) {
+      ref.add(curl);
+      cq.add(curl);
+    }
+    assertEquals(500, cq.size());
+    assertTrue(cq.getSpilledCount() > 0);
+    assertTrue(cq.getRunCount() <= 5);
+    assertEquals(ref.first().getUrl(), cq.first().getUrl());
+    // CrawlQueue.asList() is in heap order if there's a comparator
+    List<CrawlUrlData> refList = new ArrayList<CrawlUrlData>(ref.asList());
+    if (cmp != null) {
+      Collections.sort(refList, cmp);
+    }
+    List<String> exp = new ArrayList<String>();
+    for (CrawlUrlData curl : refList) {
+      exp.add(curl.getUrl());
+    }
+    List<String> act = new ArrayList<String>();
+    for (CrawlUrlData curl : cq.asList()) {
+      act.add(curl.getUrl());
+    }
+    assertEquals(exp, act);
+    assertEquals(drain(ref), drain(cq));
+    assertEquals(0, cq.getSpilledCount());
+  }
+
+  public void testBreadthFirstOrder() {
+    assertSameOrder(null);
+  }
+
+  public void testAlphabeticalBreadthFirstOrder() {
+    assertSameOrder(new CrawlQueue.AlphabeticalBreadthFirstUrlComparator());
+  }
+
+  public void testInterleaved() {
+    Comparator<CrawlUrl> cmp =
+      new CrawlQueue.AlphabeticalBreadthFirstUrlComparator();
+    List<CrawlUrlData> curls = makeCurls(300);
+    CrawlQueue ref = new CrawlQueue(cmp);
+    SpillingCrawlQueue cq = newQueue(cmp, 10, 3);
+    List<String> exp = new ArrayList<String>();
+    List<String> act = new ArrayList<String>();
+    int ix = 0;
+    for (CrawlUrlData curl : curls) {
+      ref.add(curl);
+      cq.add(curl);
+      if (++ix % 3 == 0) {
+	exp.add(ref.remove().getUrl());
+	act.add(cq.remove().getUrl());
+      }
+    }
+    exp.addAll(drain(ref));
+    act.addAll(drain(cq));
+    assertEquals(exp, act);
+  }
+
+  public void testIll() {
+    SpillingCrawlQueue cq = newQueue(null, 2, 2);
+    CrawlUrlData c1 = new CrawlUrlData("u1", 0);
+    cq.add(c1);
+    cq.add(new CrawlUrlData("u2", 0));
+    cq.add(new CrawlUrlData("u3", 0));
+    assertTrue(cq.getSpilledCount() > 0);
+    try {
+      cq.add(c1);
+      fail("Should not be able to re-add element");
+    } catch (IllegalArgumentException e) {
+    }
+    CrawlUrlData c3 = cq.get("u3");
+    assertNotNull(c3);
+    try {
+      cq.add(c3);
+      fail("Should not be able to re-add spilled element");
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      newQueue(null, 1, 2);
+      fail("hotMax of 1 should be illegal");
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  public void testSpilledCopies() {
+    SpillingCrawlQueue cq = newQueue(null, 4, 8);
+    List<CrawlUrlData> curls = makeCurls(20);
+    for (CrawlUrlData curl : curls) {
+      cq.add(curl);
+    }
+    assertTrue(cq.getSpilledCount() > 0);
+    CrawlUrlData first = curls.get(0);
+    assertSame(first, cq.get(first.getUrl()));
+    // Spilled entries are returned as copies, which the queue doesn't see
+    CrawlUrlData last = curls.get(19);
+    CrawlUrlData copy = cq.get(last.getUrl());
+    assertNotSame(last, copy);
+    assertEquals(last.getUrl(), copy.getUrl());
+    assertEquals(last.getDepth(), copy.getDepth());
+    copy.setReferrer("http://example.com/changed");
+    for (CrawlUrlData curl : curls) {
+      CrawlUrlData res = cq.remove();
+      assertEquals(curl.getUrl(), res.getUrl());
+      assertEquals(curl.getDepth(), res.getDepth());
+      assertEquals(curl.getReferrer(), res.getReferrer());
+    }
+    assertNull(cq.get(last.getUrl()));
+  }
+
+  public void testSpilledNotRetained() throws Exception {
+    SpillingCrawlQueue cq = newQueue(null, 10, 8);
+    List<Reference<CrawlUrlData>> refs = addWeaklyReferenced(cq, 1000);
+    int spilled = cq.getSpilledCount();
+    assertTrue(spilled > 900);
+    // Every spilled object is collectable, only those in the hot set
+    // are retained
+    assertEquals(spilled, awaitCollected(refs, spilled));
+    assertEquals(1000, cq.size());
+    for (int ix = 0; ix < 1000; ix++) {
+      assertEquals("http://x.com/" + ix, cq.remove().getUrl());
+    }
+  }
+
+  // Separate method so no stack slot holds the last CrawlUrlData
+  List<Reference<CrawlUrlData>> addWeaklyReferenced(CrawlQueue cq, int n) {
+    List<Reference<CrawlUrlData>> refs =
+      new ArrayList<Reference<CrawlUrlData>>();
+    for (int ix = 0; ix < n; ix++) {
+      CrawlUrlData curl = new CrawlUrlData("http://x.com/" + ix, 3);
+      cq.add(curl);
+      refs.add(new WeakReference<CrawlUrlData>(curl));
+    }
+    return refs;
+  }
+
+  /** Run the garbage collector until at least n of the referents have
+   * been collected, or give up.  Returns the number collected. */
+  static int awaitCollected(List<? extends Reference<?>> refs, int n)
+      throws InterruptedException {
+    int collected = 0;
+    for (int tries = 0; tries < 50; tries++) {
+      System.gc();
+      collected = 0;
+      for (Reference<?> ref : refs) {
+	if (ref.get() == null) {
+	  collected++;
+	}
+      }
+      if (collected >= n) {
+	break;
+      }
+      Thread.sleep(20);
+    }
+    return collected;
+  }
+
+  static void assertAllCollected(List<? extends Reference<?>> refs)
+      throws InterruptedException {
+    assertEquals("Objects not garbage collected",
+		 refs.size(), awaitCollected(refs, refs.size()));
+  }
+
+  public void testMergeRuns() {
+    SpillingCrawlQueue cq = newQueue(null, 4, 2);
+    for (int ix = 0; ix < 100; ix++) {
+      cq.add(new CrawlUrlData("http://x.com/" + ix, 1));
+      assertTrue(cq.getRunCount() <= 3);
+    }
+    assertEquals(100, cq.size());
+    for (int ix = 0; ix < 100; ix++) {
+      assertEquals("http://x.com/" + ix, cq.remove().getUrl());
+    }
+    assertTrue(cq.isEmpty());
+    assertTrue(cq.getTotalSpilled() > 0);
+  }
+
+  public void testRelease() {
+    SpillingCrawlQueue cq = newQueue(null, 4, 8);
+    for (int ix = 0; ix < 20; ix++) {
+      cq.add(new CrawlUrlData("http://x.com/" + ix, 1));
+    }
+    assertTrue(cq.getSpilledCount() > 0);
+    assertEquals(1, parentDir.list().length);
+    File spillDir = parentDir.listFiles()[0];
+    assertNotEquals(0, spillDir.list().length);
+    cq.release();
+    assertFalse(spillDir.exists());
+    assertEquals(0, cq.getSpilledCount());
+    assertEquals(cq.size(), cq.asList().size());
+  }
+}
@@ -0,0 +1,175 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package org.lockss.crawler;
+
+import java.util.*;
+import org.lockss.test.*;
+import org.lockss.util.*;
+
+public class TestUrlDepthGraph extends LockssTestCase {
+
+  static long fp(String url) {
+    return UrlFingerprintMap.fingerprint(url);
+  }
+
+  class EventRecorder implements UrlDepthGraph.ReducedDepthHandler {
+    List<String> events = new ArrayList<String>();
+    Map<Long,String> urls = new HashMap<Long,String>();
+
+    EventRecorder(String... urls) {
+      for (String url : urls) {
+	this.urls.put(fp(url), url);
+      }
+    }
+
+    public void depthReduced(long fp, int from, int to) {
+      events.add(urls.get(fp) + ":" + from + "->" + to);
+    }
+  }
+
+  public void testIll() {
+    UrlDepthGraph g = new UrlDepthGraph();
+    try {
+      g.add("foo", -1);
+      fail("negative depth should throw");
+    } catch (IllegalArgumentException e) {
+    }
+    g.add("foo", 1);
+    try {
+      g.addChild("foo", "bar", null);
+      fail("Child not in graph should throw");
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      g.addChild("bar", "foo", null);
+      fail("Parent not in graph should throw");
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  public void testAdd() {
+    UrlDepthGraph g = new UrlDepthGraph();
+    assertEquals(0, g.size());
+    assertFalse(g.contains("foo"));
+    assertEquals(-1, g.getDepth("foo"));
+    assertTrue(g.add("foo", 3));
+    assertTrue(g.contains("foo"));
+    assertEquals(3, g.getDepth("foo"));
+    assertFalse(g.add("foo", 1));
+    assertEquals(3, g.getDepth("foo"));
+    assertEquals(1, g.size());
+    for (int ix = 0; ix < 5000; ix++) {
+      g.add("http://x.com/" + ix, ix % 7);
+    }
+    assertEquals(5001, g.size());
+    for (int ix = 0; ix < 5000; ix++) {
+      assertEquals(ix % 7, g.getDepth("http://x.com/" + ix));
+    }
+  }
+
+  public void testChildren() {
+    UrlDepthGraph g = new UrlDepthGraph();
+    g.add("c0", 0);
+    g.add("c1", 0);
+    g.add("c2", 0);
+    assertEquals(0, g.numChildren("c0"));
+    g.addChild("c0", "c1", null);
+    assertEquals(1, g.numChildren("c0"));
+    assertTrue(g.isChild("c0", "c1"));
+    assertFalse(g.isChild("c0", "c2"));
+    for (int ix = 0; ix < 10; ix++) {
+      g.addChild("c0", "c2", null);
+    }
+    assertEquals(11, g.numChildren("c0"));
+    g.trimChildren("c0");
+    assertEquals(11, g.numChildren("c0"));
+    assertTrue(g.isChild("c0", "c2"));
+    g.clearChildren("c0");
+    assertEquals(0, g.numChildren("c0"));
+    assertFalse(g.isChild("c0", "c1"));
+  }
+
+  // Same graph and expected events as TestCrawlUrlData.testAddChild()
+  public void testAddChild() {
+    UrlDepthGraph g = new UrlDepthGraph();
+    EventRecorder er = new EventRecorder("c1", "c2", "c3", "c4", "c5",
+					 "c6", "c7");
+    g.add("c1", 0);
+    g.add("c2", 2);
+    g.add("c3", 4);
+    g.add("c4", 5);
+    g.add("c5", 6);
+    g.add("c6", 8);
+    g.add("c7", 2);
+
+    g.addChild("c2", "c3", er);
+    assertEquals(ListUtil.list("c3:4->3"), er.events);
+    g.addChild("c3", "c4", er);
+    g.addChild("c3", "c5", er);
+    g.addChild("c3", "c6", er);
+    g.addChild("c3", "c7", er);
+    assertEquals(ListUtil.list("c3:4->3", "c4:5->4", "c5:6->4", "c6:8->4"),
+		 er.events);
+
+    g.addChild("c1", "c2", er);
+    assertEquals(ListUtil.list("c3:4->3", "c4:5->4", "c5:6->4", "c6:8->4",
+			       "c4:4->3", "c5:4->3", "c6:4->3",
+			       "c3:3->2", "c2:2->1"),
+		 er.events);
+
+    assertEquals(0, g.getDepth("c1"));
+    assertEquals(1, g.getDepth("c2"));
+    assertEquals(2, g.getDepth("c3"));
+    assertEquals(3, g.getDepth("c4"));
+    assertEquals(3, g.getDepth("c5"));
+    assertEquals(3, g.getDepth("c6"));
+    assertEquals(2, g.getDepth("c7"));
+  }
+
+  public void testCycle() {
+    UrlDepthGraph g = new UrlDepthGraph();
+    EventRecorder er = new EventRecorder("a", "b", "c");
+    g.add("a", 5);
+    g.add("b", 6);
+    g.add("c", 7);
+    g.addChild("a", "b", er);
+    g.addChild("b", "c", er);
+    g.addChild("c", "a", er);
+    assertEmpty(er.events);
+    g.add("root", 0);
+    g.addChild("root", "b", er);
+    assertEquals(ListUtil.list("a:5->3", "c:7->2", "b:6->1"), er.events);
+    assertEquals(3, g.getDepth("a"));
+    assertEquals(1, g.getDepth("b"));
+    assertEquals(2, g.getDepth("c"));
+  }
+}
@@ -0,0 +1,89 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.crawler;
+
+import java.util.*;
+import org.lockss.test.*;
+
+public class TestUrlFingerprintMap extends LockssTestCase {
+
+  public void testFingerprint() {
+    assertEquals(UrlFingerprintMap.fingerprint("http://foo.bar/x"),
+		 UrlFingerprintMap.fingerprint("http://foo.bar/x"));
+    assertNotEquals(UrlFingerprintMap.fingerprint("http://foo.bar/x"),
+		    UrlFingerprintMap.fingerprint("http://foo.bar/y"));
+    assertNotEquals(0L, UrlFingerprintMap.fingerprint(""));
+  }
+
+  public void testPutGetRemove() {
+    UrlFingerprintMap map = new UrlFingerprintMap(4);
+    assertTrue(map.isEmpty());
+    assertEquals(-1, map.get("u1", -1));
+    assertFalse(map.containsKey("u1"));
+    map.put("u1", 3);
+    map.put("u2", 0);
+    assertEquals(2, map.size());
+    assertEquals(3, map.get("u1", -1));
+    assertEquals(0, map.get("u2", -1));
+    assertTrue(map.containsKey("u2"));
+    map.put("u1", 1);
+    assertEquals(2, map.size());
+    assertEquals(1, map.get("u1", -1));
+    assertTrue(map.remove("u1"));
+    assertFalse(map.remove("u1"));
+    assertEquals(-1, map.get("u1", -1));
+    assertEquals(1, map.size());
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertEquals(-1, map.get("u2", -1));
+  }
+
+  public void testGrowAndRemoveMany() {
+    UrlFingerprintMap map = new UrlFingerprintMap(4);
+    int n = 10000;
+    for (int ix = 0; ix < n; ix++) {
+      map.put("http://x.org/" + ix, ix % 100);
+    }
+    assertEquals(n, map.size());
+    // Remove every other one, checking the rest are still found after
+    // the backward-shift deletions
+    for (int ix = 0; ix < n; ix += 2) {
+      assertTrue(map.remove("http://x.org/" + ix));
+    }
+    assertEquals(n / 2, map.size());
+    for (int ix = 0; ix < n; ix++) {
+      assertEquals((ix % 2 == 0) ? -1 : ix % 100,
+		   map.get("http://x.org/" + ix, -1));
+    }
+  }
+}
@@ -509,6 +509,74 @@ public class TestCrawlRules extends LockssTestCase {
     assertEquals(CrawlRule.EXCLUDE, cr.match("/issue/frog/bar"));
   }
 
+  public void testLockFree() throws Exception {
+    CrawlRules.RE cr =
+      new CrawlRules.RE("^http://foo\\.com/", CrawlRules.RE.MATCH_INCLUDE);
+    assertTrue(cr.isLockFree());
+    assertEquals(CrawlRule.INCLUDE, cr.match("http://foo.com/bar"));
+    assertEquals(CrawlRule.IGNORE, cr.match("http://foo.org/bar"));
+    // Untranslatable REs still match, using ORO
+    cr = new CrawlRules.RE("^http://[a-z]+\\.com/{x}",
+			   CrawlRules.RE.MATCH_INCLUDE);
+    assertFalse(cr.isLockFree());
+    assertEquals(CrawlRule.INCLUDE, cr.match("http://foo.com/{x}"));
+    assertEquals(CrawlRule.IGNORE, cr.match("http://f00.com/{x}"));
+    assertEquals(CrawlRule.IGNORE, cr.match("ftp://foo.com/{x}"));
+  }
+
+  public void testMatchConditionGroups() throws Exception {
+    CrawlRule cr =
+      new CrawlRules.REMatchRange("^http://foo\\.com/(?:vol|issue)(\\d+)/",
+				  CrawlRules.RE.MATCH_INCLUDE_ELSE_EXCLUDE,
+				  3, 5);
+    assertEquals(CrawlRule.INCLUDE, cr.match("http://foo.com/vol4/x"));
+    assertEquals(CrawlRule.INCLUDE, cr.match("http://foo.com/issue5/"));
+    assertEquals(CrawlRule.EXCLUDE, cr.match("http://foo.com/vol6/x"));
+    assertEquals(CrawlRule.EXCLUDE, cr.match("http://bar.com/vol4/x"));
+    // Optional group that didn't participate in the match
+    cr = new CrawlRules.REMatchSet("^http://foo\\.com/(a)?b",
+				   CrawlRules.RE.MATCH_INCLUDE_ELSE_EXCLUDE,
+				   SetUtil.set("a"));
+    assertEquals(CrawlRule.INCLUDE, cr.match("http://foo.com/ab"));
+    assertEquals(CrawlRule.EXCLUDE, cr.match("http://foo.com/b"));
+  }
+
+  public void testConcurrentMatch() throws Exception {
+    final CrawlRule cr =
+      new CrawlRules.FirstMatch(ListUtil.list(
+	  new CrawlRules.RE("\\.pdf$", CrawlRules.RE.MATCH_EXCLUDE),
+	  new CrawlRules.REMatchRange("^http://foo\\.com/vol(\\d+)/",
+				      CrawlRules.RE.MATCH_INCLUDE, 1, 10)));
+    final List<Throwable> errors =
+      Collections.synchronizedList(new ArrayList<Throwable>());
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 8; t++) {
+      final int tnum = t;
+      Thread th = new Thread() {
+	  public void run() {
+	    try {
+	      for (int ix = 0; ix < 2000; ix++) {
+		int vol = (ix + tnum) % 20;
+		String url = "http://foo.com/vol" + vol + "/art" + ix;
+		assertEquals(url,
+			     vol >= 1 && vol <= 10
+			     ? CrawlRule.INCLUDE : CrawlRule.IGNORE,
+			     cr.match(url));
+		assertEquals(CrawlRule.EXCLUDE, cr.match(url + ".pdf"));
+	      }
+	    } catch (Throwable e) {
+	      errors.add(e);
+	    }
+	  }};
+      threads.add(th);
+      th.start();
+    }
+    for (Thread th : threads) {
+      th.join(TIMEOUT_SHOULDNT);
+    }
+    assertEmpty(errors);
+  }
+
   public void testMatchSetWSlashes() throws Exception {
     CrawlRule cr =
       new CrawlRules.REMatchSet("/(.*)/",
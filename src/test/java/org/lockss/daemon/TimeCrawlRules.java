@@ -0,0 +1,130 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.lockss.daemon;
+
+import java.util.*;
+
+import org.lockss.test.*;
+import org.lockss.util.*;
+
+/**
+ * Measures CrawlRules.FirstMatch throughput against the number of
+ * concurrent threads, with lock-free (java.util.regex) rules and with the
+ * synchronized ORO rules they replace.  Not run as part of the unit tests.
+ */
+public class TimeCrawlRules extends LockssTiming {
+  static final String BASE = "http://www.example.com/";
+  static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+  static final int MATCHES_PER_THREAD = 20000;
+
+  // Typical plugin rules: start-anchored host patterns followed by
+  // unanchored exclusions and a volume range
+  static final String[][] RULES = {
+    {"\\.(css|js|gif|jpe?g|png)(\\?.*)?$", "1"},
+    {"^https?://www\\.example\\.com/(action|help)/", "2"},
+    {"^https?://www\\.example\\.com/lockss/manifest", "1"},
+    {"^https?://www\\.example\\.com/toc/jnl/\\d+/\\d+", "1"},
+    {"^https?://www\\.example\\.com/doi/(abs|full|pdf)/10\\.\\d+/", "1"},
+    {"^https?://cdn\\.example\\.com/", "1"},
+  };
+
+  List<String> urls;
+
+  public void setUp() throws Exception {
+    super.setUp();
+    urls = new ArrayList<String>();
+    for (int ix = 0; ix < 100; ix++) {
+      urls.add(BASE + "doi/full/10.1234/art" + ix);
+      urls.add(BASE + "toc/jnl/" + ix + "/1");
+      urls.add(BASE + "images/fig" + ix + ".png");
+      urls.add(BASE + "action/showCitation?doi=" + ix);
+      urls.add("http://www.elsewhere.org/page" + ix);
+    }
+  }
+
+  CrawlRule makeRules(boolean lockFree) throws Exception {
+    List<CrawlRule> rules = new ArrayList<CrawlRule>();
+    for (String[] rule : RULES) {
+      int action = Integer.parseInt(rule[1]);
+      if (lockFree) {
+	rules.add(new CrawlRules.RE(rule[0], action));
+      } else {
+	// Previous implementation: every match locks the rule
+	rules.add(new CrawlRules.RE(rule[0], action) {
+	    protected boolean isMatch(String url) {
+	      return isMatch(RegexpUtil.getMatcher(), url);
+	    }});
+      }
+    }
+    return new CrawlRules.FirstMatch(rules);
+  }
+
+  void timeThreads(final int nThreads, boolean lockFree) throws Exception {
+    final CrawlRule rule = makeRules(lockFree);
+    time(null, (lockFree ? "Lock-free, " : "Synchronized, ") +
+	 nThreads + " threads",
+	 new Computation() {
+	   public void execute() throws Exception {
+	     List<Thread> threads = new ArrayList<Thread>();
+	     for (int t = 0; t < nThreads; t++) {
+	       Thread th = new Thread() {
+		   public void run() {
+		     int n = urls.size();
+		     for (int ix = 0; ix < MATCHES_PER_THREAD; ix++) {
+		       rule.match(urls.get(ix % n));
+		     }
+		   }};
+	       threads.add(th);
+	       th.start();
+	     }
+	     for (Thread th : threads) {
+	       th.join();
+	     }
+	   }});
+  }
+
+  public void testSynchronized() throws Exception {
+    for (int nThreads : THREAD_COUNTS) {
+      timeThreads(nThreads, false);
+    }
+  }
+
+  public void testLockFree() throws Exception {
+    for (int nThreads : THREAD_COUNTS) {
+      timeThreads(nThreads, true);
+    }
+  }
+
+  public static void main(String[] argv) {
+    String[] testCaseList = { TimeCrawlRules.class.getName()};
+    junit.textui.TestRunner.main(testCaseList);
+  }
+}
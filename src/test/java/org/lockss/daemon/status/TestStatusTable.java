@@ -310,6 +310,147 @@ public class TestStatusTable extends LockssTestCase {
     assertTrue(src.compare(r2, r4) < 0);
   }
 
+  // Rows with column "a" = the ints in vals, and "n" = the source index
+  List<Map> rowsOf(int... vals) {
+    List<Map> res = new ArrayList<Map>();
+    for (int ix = 0; ix < vals.length; ix++) {
+      res.add(testMap("a", vals[ix], "n", ix));
+    }
+    return res;
+  }
+
+  List colVals(List<Map> rows, String col) {
+    List res = new ArrayList();
+    for (Map row : rows) {
+      res.add(row.get(col));
+    }
+    return res;
+  }
+
+  void setRowSource(StatusTable tbl, List<Map> rows, int numRows) {
+    tbl.setColumnDescriptors(ListUtil.list(new ColumnDescriptor("a", "A",
+								ColumnDescriptor.TYPE_INT)));
+    tbl.setRowSource(new StatusTable.IterableRowSource<Map>(rows, r -> r),
+		     "a", numRows);
+  }
+
+  void assertLink(boolean isNext, int skip, Map row) {
+    assertEquals(isNext ? Integer.MAX_VALUE : -1, row.get("sort"));
+    StatusTable.Reference ref = (StatusTable.Reference)row.get("a");
+    assertEquals(Integer.toString(skip), ref.getProperties().get("skiprows"));
+  }
+
+  public void testRowSourcePaged() {
+    setRowSource(table, rowsOf(7, 3, 9, 1, 5, 8, 2, 6, 4, 0), 4);
+    assertTrue(table.hasRowSource());
+    List<Map> rows = table.getSortedRows();
+    assertEquals(5, rows.size());
+    assertEquals(ListUtil.list(0, 1, 2, 3), colVals(rows.subList(0, 4), "a"));
+    assertLink(true, 4, rows.get(4));
+
+    table.setProperty("skiprows", "4");
+    rows = table.getSortedRows();
+    assertEquals(6, rows.size());
+    assertLink(false, 0, rows.get(0));
+    assertEquals(ListUtil.list(4, 5, 6, 7), colVals(rows.subList(1, 5), "a"));
+    assertLink(true, 8, rows.get(5));
+
+    table.setProperty("skiprows", "8");
+    rows = table.getSortedRows();
+    assertEquals(3, rows.size());
+    assertLink(false, 4, rows.get(0));
+    assertEquals(ListUtil.list(8, 9), colVals(rows.subList(1, 3), "a"));
+
+    List rules = ListUtil.list(new StatusTable.SortRule("a", false));
+    rows = table.getSortedRows(rules);
+    assertEquals(ListUtil.list(1, 0), colVals(rows.subList(1, 3), "a"));
+  }
+
+  // Pages must agree with a stable sort of all the rows
+  public void testRowSourcePagedTies() {
+    setRowSource(table, rowsOf(2, 1, 2, 1, 2, 1, 2, 1), 3);
+    List res = new ArrayList();
+    for (int skip = 0; skip < 8; skip += 3) {
+      table.setProperty("skiprows", Integer.toString(skip));
+      for (Map row : table.getSortedRows()) {
+	if (row.get("n") != null) {
+	  res.add(row.get("n"));
+	}
+      }
+    }
+    assertEquals(ListUtil.list(1, 3, 5, 7, 0, 2, 4, 6), res);
+  }
+
+  public void testRowSourceAllRows() {
+    setRowSource(table, rowsOf(3, 1, 2, 0), 2);
+    BitSet opts = new BitSet();
+    opts.set(StatusTable.OPTION_ALL_ROWS);
+    table.setOptions(opts);
+    assertEquals(ListUtil.list(0, 1, 2, 3),
+		 colVals(table.getSortedRows(), "a"));
+    // explicit numrows overrides OPTION_ALL_ROWS
+    table.setProperty("numrows", "3");
+    List<Map> rows = table.getSortedRows();
+    assertEquals(4, rows.size());
+    assertLink(true, 3, rows.get(3));
+    // zero default page size returns all rows
+    StatusTable tbl = new StatusTable("tab");
+    setRowSource(tbl, rowsOf(3, 1, 2, 0), 0);
+    assertEquals(ListUtil.list(0, 1, 2, 3),
+		 colVals(tbl.getSortedRows(), "a"));
+  }
+
+  public void testRowCursor() {
+    // Source claims to be in default order; cursor should not sort
+    List<Map> src = rowsOf(3, 1, 2, 0);
+    table.setColumnDescriptors(ListUtil.list(new ColumnDescriptor("a", "A",
+								  ColumnDescriptor.TYPE_INT)));
+    table.setRowSource(new StatusTable.IterableRowSource<Map>(src, r -> r)
+		       .setInDefaultOrder(true),
+		       "a", 0);
+    List<Map> rows = ListUtil.fromIterator(table.getRowCursor());
+    assertEquals(ListUtil.list(3, 1, 2, 0), colVals(rows, "a"));
+    List rules = ListUtil.list(new StatusTable.SortRule("a", true));
+    rows = ListUtil.fromIterator(table.getRowCursor(rules));
+    assertEquals(ListUtil.list(0, 1, 2, 3), colVals(rows, "a"));
+
+    // Page of an ordered source is taken without sorting
+    table.setProperty("skiprows", "1");
+    table.setProperty("numrows", "2");
+    rows = table.getSortedRows();
+    assertEquals(4, rows.size());
+    assertEquals(ListUtil.list(1, 2), colVals(rows.subList(1, 3), "a"));
+
+    // Table with rows but no source
+    StatusTable tbl = new StatusTable("tab");
+    assertFalse(tbl.getRowCursor().hasNext());
+    tbl.setRows(rowsOf(2, 1));
+    assertFalse(tbl.hasRowSource());
+    assertEquals(ListUtil.list(1, 2),
+		 colVals(ListUtil.fromIterator(tbl.getRowCursor(rules)), "a"));
+  }
+
+  public void testIterableRowSourceOmitsNull() {
+    StatusTable.RowSource src =
+      new StatusTable.IterableRowSource<Integer>(ListUtil.list(1, 2, 3, 4),
+						 i -> (i % 2 == 0)
+						 ? testMap("a", i) : null);
+    assertFalse(src.isInDefaultOrder());
+    assertEquals(ListUtil.list(2, 4),
+		 colVals(ListUtil.fromIterator(src.rowIterator()), "a"));
+  }
+
+  public void testPageLinksCarryProps() {
+    setRowSource(table, rowsOf(3, 1, 2, 0), 2);
+    table.setProperty("sort", "a");
+    table.setProperty("skiprows", "2");
+    List<Map> rows = table.getSortedRows();
+    StatusTable.Reference ref = (StatusTable.Reference)rows.get(0).get("a");
+    assertEquals("a", ref.getProperties().get("sort"));
+    assertEquals("0", ref.getProperties().get("skiprows"));
+    assertEquals("2", ref.getProperties().get("numrows"));
+  }
+
   class MyComparator implements Comparator {
     private boolean reverse = false;
     public int compare(Object o1, Object o2) {
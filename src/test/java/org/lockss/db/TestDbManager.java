@@ -29,6 +29,8 @@ package org.lockss.db;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import org.lockss.db.DbException;
 import org.lockss.test.*;
 import org.lockss.util.Logger;
@@ -116,6 +118,68 @@ public class TestDbManager extends LockssTestCase {
     }
   }
 
+  /**
+   * Tests the recording of statement statistics.
+   * 
+   * @throws Exception
+   */
+  public void testStatementStats() throws Exception {
+    createTable();
+    DbStatementStats stats = dbManager.getStatementStats();
+    assertFalse(stats.isEnabled());
+    ConfigurationUtil.addFromArgs(DbManager.PARAM_STATEMENT_STATS, "true");
+    assertTrue(stats.isEnabled());
+    stats.reset();
+
+    String insertSql = "insert into testtable (id, name) values (?, ?)";
+    String selectSql = "select id, name from testtable where id < ?";
+    Connection conn = dbManager.getConnection();
+
+    for (int i = 0; i < 5; i++) {
+      PreparedStatement insert = dbManager.prepareStatement(conn, insertSql);
+      insert.setLong(1, i);
+      insert.setString(2, "name" + i);
+      assertEquals(1, dbManager.executeUpdate(insert));
+      DbManager.safeCloseStatement(insert);
+    }
+
+    PreparedStatement select = dbManager.prepareStatement(conn, selectSql);
+    select.setLong(1, 3);
+    ResultSet resultSet = dbManager.executeQuery(select);
+    int count = 0;
+    while (resultSet.next()) {
+      count++;
+    }
+    assertEquals(3, count);
+    DbManager.safeCloseResultSet(resultSet);
+    DbManager.safeCloseStatement(select);
+    DbManager.commitOrRollback(conn, log);
+    DbManager.safeCloseConnection(conn);
+
+    DbStatementStats.SqlStats insertStats = stats.getStats(insertSql);
+    assertEquals(5, insertStats.getExecutions());
+    assertEquals(0, insertStats.getErrors());
+    assertEquals(5, insertStats.getRows());
+    long total = 0;
+    for (long n : insertStats.getHistogram()) {
+      total += n;
+    }
+    assertEquals(5, total);
+
+    DbStatementStats.SqlStats selectStats = stats.getStats(selectSql);
+    assertEquals(1, selectStats.getExecutions());
+    assertEquals(3, selectStats.getRows());
+
+    stats.setEnabled(false);
+    conn = dbManager.getConnection();
+    select = dbManager.prepareStatement(conn, selectSql);
+    select.setLong(1, 3);
+    DbManager.safeCloseResultSet(dbManager.executeQuery(select));
+    DbManager.safeCloseStatement(select);
+    DbManager.safeRollbackAndClose(conn);
+    assertEquals(1, selectStats.getExecutions());
+  }
+
   @Override
   public void tearDown() throws Exception {
     dbManager.waitForThreadsToFinish(500);
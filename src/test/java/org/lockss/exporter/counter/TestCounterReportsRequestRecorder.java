@@ -33,6 +33,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import org.lockss.config.ConfigManager;
 import org.lockss.daemon.Cron;
 import org.lockss.db.DbException;
 import org.lockss.db.DbManager;
@@ -70,6 +71,7 @@ public class TestCounterReportsRequestRecorder extends LockssTestCase4 {
   private MetadataManager metadataManager;
   private CounterReportsManager counterReportsManager;
   private String dbPort;
+  private Long fullTextMdItemSeq;
 
   @Override
   public void setUp() throws Exception {
@@ -173,6 +175,7 @@ public class TestCounterReportsRequestRecorder extends LockssTestCase4 {
 
       metadataManager.addMdItemUrl(conn, mdItemSeq, ROLE_FULL_TEXT_HTML,
                                    RECORDABLE_URL);
+      fullTextMdItemSeq = mdItemSeq;
     } finally {
       DbManager.commitOrRollback(conn, log);
       DbManager.safeCloseConnection(conn);
@@ -188,6 +191,7 @@ public class TestCounterReportsRequestRecorder extends LockssTestCase4 {
 
     CounterReportsRequestRecorder recorder =
 	CounterReportsRequestRecorder.getInstance();
+    recorder.clearUrlCache();
 
     recorder.recordRequest(IGNORABLE_URL,
 	CounterReportsRequestRecorder.PublisherContacted.FALSE, 200, null);
@@ -272,21 +276,118 @@ public class TestCounterReportsRequestRecorder extends LockssTestCase4 {
     checkRequestByPublisherInvolvementRowCount(true, 2);
   }
 
+  /**
+   * Tests that a URL found not to be a full-text URL is remembered until the
+   * cache is cleared.
+   * 
+   * @throws Exception if there are problems running the test.
+   */
+  public void testNegativeUrlCache() throws Exception {
+    String laterUrl = "http://example.com/later.pdf";
+    CounterReportsRequestRecorder recorder =
+	CounterReportsRequestRecorder.getInstance();
+    recorder.clearUrlCache();
+
+    recorder.recordRequest(laterUrl,
+	CounterReportsRequestRecorder.PublisherContacted.FALSE, 200, null);
+    checkRequestRowCount(0);
+
+    // Make the URL a full-text URL.
+    Connection conn = null;
+
+    try {
+      conn = dbManager.getConnection();
+      metadataManager.addMdItemUrl(conn, fullTextMdItemSeq,
+	  ROLE_FULL_TEXT_PDF, laterUrl);
+    } finally {
+      DbManager.commitOrRollback(conn, log);
+      DbManager.safeCloseConnection(conn);
+    }
+
+    // The negative result is still cached.
+    recorder.recordRequest(laterUrl,
+	CounterReportsRequestRecorder.PublisherContacted.FALSE, 200, null);
+    checkRequestRowCount(0);
+
+    recorder.clearUrlCache();
+    recorder.recordRequest(laterUrl,
+	CounterReportsRequestRecorder.PublisherContacted.FALSE, 200, null);
+    checkRequestRowCount(1);
+  }
+
+  /**
+   * Tests that stopping the recorder writes the queued requests, and that
+   * requests recorded after it has stopped are written directly.
+   * 
+   * @throws Exception if there are problems running the test.
+   */
+  public void testStop() throws Exception {
+    CounterReportsRequestRecorder recorder =
+	CounterReportsRequestRecorder.getInstance();
+    recorder.clearUrlCache();
+
+    for (int i = 0; i < 10; i++) {
+      recorder.recordRequest(RECORDABLE_URL,
+	  CounterReportsRequestRecorder.PublisherContacted.FALSE, 200, null);
+    }
+
+    recorder.stop();
+    checkRequestRowCount(10);
+
+    recorder.recordRequest(RECORDABLE_URL,
+	CounterReportsRequestRecorder.PublisherContacted.FALSE, 200, null);
+    checkRequestRowCount(11);
+  }
+
+  /**
+   * Tests that flush() returns after the recorder has been restarted.
+   * 
+   * @throws Exception if there are problems running the test.
+   */
+  public void testFlushAfterRestart() throws Exception {
+    CounterReportsRequestRecorder recorder =
+	CounterReportsRequestRecorder.getInstance();
+    recorder.clearUrlCache();
+
+    recorder.recordRequest(RECORDABLE_URL,
+	CounterReportsRequestRecorder.PublisherContacted.FALSE, 200, null);
+    recorder.stop();
+    recorder.start(ConfigManager.getCurrentConfig());
+
+    Interrupter intr = null;
+    try {
+      intr = interruptMeIn(TIMEOUT_SHOULDNT, true);
+      // Nothing queued since the restart
+      recorder.flush();
+      recorder.recordRequest(RECORDABLE_URL,
+	  CounterReportsRequestRecorder.PublisherContacted.FALSE, 200, null);
+      checkRequestRowCount(2);
+      intr.cancel();
+    } finally {
+      if (intr.did()) {
+	fail("flush() didn't return after restart");
+      }
+    }
+  }
+
   /**
    * Checks the expected count of rows in the request table.
    * 
    * @param expected
    *          An int with the expected number of rows in the table.
-   * @throws SQLException, DbException
+   * @throws SQLException, DbException, InterruptedException
    */
   private void checkRequestRowCount(int expected)
-      throws SQLException, DbException {
+      throws SQLException, DbException, InterruptedException {
     Connection conn = null;
     PreparedStatement statement = null;
     ResultSet resultSet = null;
     int count = -1;
     String sql = SQL_QUERY_REQUEST_COUNT;
 
+    // Wait for the queued requests to be written.
+    CounterReportsRequestRecorder.getInstance().flush();
+
     try {
       conn = dbManager.getConnection();
 
@@ -314,17 +415,20 @@ public class TestCounterReportsRequestRecorder extends LockssTestCase4 {
    *          involved.
    * @param expected
    *          An int with the expected number of rows in the table.
-   * @throws SQLException, DbException
+   * @throws SQLException, DbException, InterruptedException
    */
   private void checkRequestByPublisherInvolvementRowCount(
       boolean isPublisherInvolved, int expected)
-	  throws SQLException, DbException {
+	  throws SQLException, DbException, InterruptedException {
     Connection conn = null;
     PreparedStatement statement = null;
     ResultSet resultSet = null;
     int count = -1;
     String sql = SQL_QUERY_REQUEST_BY_INVOLVEMENT_COUNT;
 
+    // Wait for the queued requests to be written.
+    CounterReportsRequestRecorder.getInstance().flush();
+
     try {
       conn = dbManager.getConnection();
 
@@ -453,6 +453,198 @@ public class TestHtmlFilterInputStream extends LockssTestCase {
     }
   }
 
+  static final String STREAM_INPUT =
+    "<html><head><meta http-equiv=\"refresh\" content=\"5\">" +
+    "<!-- head comment --><title>A title</title>" +
+    "<style>p { color: red } /* <!-- not a comment --> */</style>" +
+    "</head>\n<body class=\"main\">" +
+    "<div id=\"d1\">text <img src=\"a.gif\" class=\"ad\">" +
+    "<img src=\"b.gif\"><br><!-- ad start -->" +
+    "<ul><li>l1<li>l2 <input type=\"hidden\" value=\"123\"></ul>" +
+    "<div id=\"d2\"><p>para<br/>more</div>" +
+    "<script>document.write(\"<img src='c.gif'><!-- x -->\");</script>" +
+    "<!-- ad end --></div>\n<p>unclosed <b>bold" +
+    "</body></html>";
+
+  HtmlFilterInputStream newFilt(String input, HtmlTransform xform) {
+    return new HtmlFilterInputStream(new StringInputStream(input), xform);
+  }
+
+  String filterString(String input, HtmlTransform xform, boolean streaming)
+      throws IOException {
+    ConfigurationUtil.addFromArgs(HtmlFilterInputStream.PARAM_STREAMING,
+				  Boolean.toString(streaming));
+    HtmlFilterInputStream filt = newFilt(input, xform);
+    assertEquals(streaming && filt.isStreamable(xform), filt.isStreamable());
+    try {
+      return StringUtil.fromInputStream(filt);
+    } finally {
+      filt.close();
+    }
+  }
+
+  /** Check that the transform is (or isn't) streamable, and that streaming
+   * and non-streaming modes produce the expected output */
+  void assertStreamFilter(String expected, String input,
+			  HtmlTransform xform, boolean isStreamable)
+      throws IOException {
+    assertEquals(isStreamable, newFilt(input, xform).isStreamable(xform));
+    assertEquals(expected, filterString(input, xform, false));
+    assertEquals(expected, filterString(input, xform, true));
+  }
+
+  public void testStreamable() throws IOException {
+    HtmlFilterInputStream filt = newFilt("", new IdentityXform());
+    assertFalse(filt.isStreamable(new IdentityXform()));
+    assertTrue(filt.isStreamable(HtmlNodeFilterTransform.exclude(HtmlNodeFilters.comment())));
+    assertTrue(filt.isStreamable(HtmlNodeFilterTransform.include(HtmlNodeFilters.commentWithString("foo"))));
+    assertTrue(filt.isStreamable(HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tag("img"))));
+    assertTrue(filt.isStreamable(HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tagWithAttributeRegex("input", "type", "hidden"))));
+    assertTrue(filt.isStreamable(HtmlNodeFilterTransform.exclude(new org.htmlparser.filters.OrFilter(HtmlNodeFilters.tag("br"), HtmlNodeFilters.comment()))));
+    assertTrue(filt.isStreamable(new HtmlCompoundTransform(HtmlNodeFilterTransform.exclude(HtmlNodeFilters.comment()), HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tag("meta")))));
+
+    // Composite tags and non-local filters require the parse tree
+    assertFalse(filt.isStreamable(HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tag("div"))));
+    assertFalse(filt.isStreamable(HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tag("script"))));
+    assertFalse(filt.isStreamable(HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tagWithAttribute("div", "id", "d1"))));
+    assertFalse(filt.isStreamable(HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tagWithText("p", "para"))));
+    assertFalse(filt.isStreamable(HtmlNodeFilterTransform.exclude(new org.htmlparser.filters.HasAttributeFilter("class"))));
+    assertFalse(filt.isStreamable(HtmlNodeFilterTransform.exclude(new org.htmlparser.filters.OrFilter(HtmlNodeFilters.tag("br"), HtmlNodeFilters.tag("div")))));
+    assertFalse(filt.isStreamable(new HtmlCompoundTransform(HtmlNodeFilterTransform.exclude(HtmlNodeFilters.comment()), HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tag("div")))));
+
+    // Tags registered by HtmlFilterInputStream are composite
+    assertFalse(filt.isStreamable(HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tag("font"))));
+  }
+
+  public void testStreamableConditions() throws IOException {
+    HtmlTransform xform =
+      HtmlNodeFilterTransform.exclude(HtmlNodeFilters.comment());
+    assertTrue(newFilt("", xform).isStreamable());
+    ConfigurationUtil.addFromArgs(HtmlFilterInputStream.PARAM_VERBATIM,
+				  "false");
+    assertFalse(newFilt("", xform).isStreamable());
+    ConfigurationUtil.addFromArgs(HtmlFilterInputStream.PARAM_VERBATIM,
+				  "true");
+    // Output charset might change mid-stream
+    assertFalse(new HtmlFilterInputStream(new StringInputStream(""),
+					  ISO, UTF8, xform).isStreamable());
+    ConfigurationUtil.addFromArgs(HtmlFilterInputStream.PARAM_ADAPT_ENCODING,
+				  "false");
+    assertTrue(new HtmlFilterInputStream(new StringInputStream(""),
+					 ISO, UTF8, xform).isStreamable());
+    ConfigurationUtil.addFromArgs(HtmlFilterInputStream.PARAM_STREAMING,
+				  "false");
+    assertFalse(newFilt("", xform).isStreamable());
+  }
+
+  public void testStreamComments() throws IOException {
+    assertStreamFilter(STREAM_INPUT
+		       .replace("<!-- head comment -->", "")
+		       .replace("<!-- ad start -->", "")
+		       .replace("<!-- ad end -->", ""),
+		       STREAM_INPUT,
+		       HtmlNodeFilterTransform.exclude(HtmlNodeFilters.comment()),
+		       true);
+    assertStreamFilter(STREAM_INPUT.replace("<!-- ad start -->", ""),
+		       STREAM_INPUT,
+		       HtmlNodeFilterTransform.exclude(HtmlNodeFilters.commentWithRegex("ad s")),
+		       true);
+    assertStreamFilter("<!-- head comment --><!-- ad start --><!-- ad end -->",
+		       STREAM_INPUT,
+		       HtmlNodeFilterTransform.include(HtmlNodeFilters.comment()),
+		       true);
+  }
+
+  public void testStreamLeafTags() throws IOException {
+    assertStreamFilter(STREAM_INPUT
+		       .replace("<img src=\"a.gif\" class=\"ad\">", "")
+		       .replace("<img src=\"b.gif\">", ""),
+		       STREAM_INPUT,
+		       HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tag("img")),
+		       true);
+    assertStreamFilter(STREAM_INPUT
+		       .replace("<img src=\"a.gif\" class=\"ad\">", "")
+		       .replace("<input type=\"hidden\" value=\"123\">", ""),
+		       STREAM_INPUT,
+		       new HtmlCompoundTransform(
+                         HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tagWithAttribute("img", "class", "ad")),
+                         HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tagWithAttributeRegex("input", "type", "hid"))),
+		       true);
+    assertStreamFilter("<meta http-equiv=\"refresh\" content=\"5\">" +
+		       "<br><br/>",
+		       STREAM_INPUT,
+		       HtmlNodeFilterTransform.include(new org.htmlparser.filters.OrFilter(HtmlNodeFilters.tag("meta"), HtmlNodeFilters.tag("br"))),
+		       true);
+  }
+
+  public void testStreamFallback() throws IOException {
+    assertStreamFilter("<html><head><meta http-equiv=\"refresh\" content=\"5\">" +
+		       "<!-- head comment --><title>A title</title>" +
+		       "<style>p { color: red } /* <!-- not a comment --> */</style>" +
+		       "</head>\n<body class=\"main\">" +
+		       "\n<p>unclosed <b>bold" +
+		       "</body></html>",
+		       STREAM_INPUT,
+		       HtmlNodeFilterTransform.exclude(HtmlNodeFilters.tagWithAttribute("div", "id", "d1")),
+		       false);
+  }
+
+  static class PositionInputStream extends ByteArrayInputStream {
+    PositionInputStream(byte[] buf) {
+      super(buf);
+    }
+    int getPosition() {
+      return pos;
+    }
+  }
+
+  public void testStreamIncremental() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int ix = 0; ix < 20000; ix++) {
+      sb.append("<p>para " + ix + "<!-- comment " + ix + " --></p>\n");
+    }
+    byte[] bytes = sb.toString().getBytes(ISO);
+    PositionInputStream in = new PositionInputStream(bytes);
+    HtmlFilterInputStream filt =
+      new HtmlFilterInputStream(in, HtmlNodeFilterTransform.exclude(HtmlNodeFilters.comment()));
+    byte[] buf = new byte[100];
+    assertEquals(100, StreamUtil.readBytes(filt, buf, buf.length));
+    assertEquals("<p>para 0</p>\n<p>para 1</p>\n",
+		 new String(buf, 0, 28, ISO));
+    // Only a small amount of input should have been consumed
+    assertTrue("Input consumed: " + in.getPosition(),
+	       in.getPosition() < bytes.length / 4);
+    String rest = StringUtil.fromInputStream(filt);
+    assertTrue(rest.endsWith("<p>para 19999</p>\n"));
+    assertEquals(-1, filt.read());
+    filt.close();
+  }
+
+  // A charset <meta> after non-ASCII text requires the text already lexed
+  // to be decoded again.  Both paths must start over in the new charset.
+  public void testStreamLateCharset() throws IOException {
+    ConfigurationUtil.addFromArgs(HtmlFilterInputStream.PARAM_ADAPT_ENCODING,
+				  "false");
+    String input = "<html><head><title>caf\u00e9</title><!-- c1 -->" +
+      "<meta http-equiv=\"Content-Type\" content=\"text/html; charset=utf-8\">" +
+      "</head><body>\u00e9t\u00e9<!-- c2 --></body></html>";
+    String exp = input.replace("<!-- c1 -->", "").replace("<!-- c2 -->", "");
+    HtmlTransform xform =
+      HtmlNodeFilterTransform.exclude(HtmlNodeFilters.comment());
+    for (boolean streaming : new boolean[] {false, true}) {
+      ConfigurationUtil.addFromArgs(HtmlFilterInputStream.PARAM_STREAMING,
+				    Boolean.toString(streaming));
+      HtmlFilterInputStream filt =
+	new HtmlFilterInputStream(new ByteArrayInputStream(input.getBytes(UTF8)),
+				  ISO, UTF8, xform);
+      assertEquals(streaming, filt.isStreamable());
+      try {
+	assertInputStreamMatchesString(exp, filt, UTF8);
+      } finally {
+	filt.close();
+      }
+    }
+  }
 
   class IdentityXform implements HtmlTransform {
     public NodeList transform(NodeList nl) {
@@ -1404,6 +1404,32 @@ public class TestBlockHasher extends LockssTestCase {
     testSeveralContentSeveralVersionsWithThrowing(10000);
   }
 
+  void enableReadAhead() {
+    ConfigurationUtil.addFromArgs(BlockHasher.PARAM_READ_AHEAD_BYTES, "21",
+				  BlockHasher.PARAM_READ_AHEAD_BUFFER_SIZE, "7");
+  }
+
+  public void testOneContentThreeVersionsReadAhead() throws Exception {
+    enableReadAhead();
+    testOneContentThreeVersions(1, false);
+    testOneContentThreeVersions(100, true);
+  }
+
+  public void testSeveralContentSeveralVersionsReadAhead() throws Exception {
+    enableReadAhead();
+    testSeveralContentSeveralVersions(1);
+    testSeveralContentSeveralVersions(3);
+    testSeveralContentSeveralVersions(10000);
+  }
+
+  public void testSeveralContentSeveralVersionsWithThrowingReadAhead()
+      throws Exception {
+    enableReadAhead();
+    testSeveralContentSeveralVersionsWithThrowing(1);
+    testSeveralContentSeveralVersionsWithThrowing(100);
+    testSeveralContentSeveralVersionsWithThrowing(10000);
+  }
+
   public void testInitBytes(int stepSize) throws Exception {
     String chal = "challenge";
     RecordingEventHandler handRec = new RecordingEventHandler();
@@ -1514,6 +1540,15 @@ public class TestBlockHasher extends LockssTestCase {
     testMultipleDigestsWithInit(1000);
   }
 
+  public void testMultipleDigestsWithInitFanout() throws Exception {
+    ConfigurationUtil.addFromArgs(BlockHasher.PARAM_DIGEST_FANOUT_MIN_PEERS,
+				  "2",
+				  BlockHasher.PARAM_DIGEST_FANOUT_MIN_BYTES,
+				  "1");
+    testMultipleDigestsWithInit(1);
+    testMultipleDigestsWithInit(1000);
+  }
+
 //  static byte[] bytes = ByteArray.makeRandomBytes(40);
 //  static final int multiple = 100000000;
 //
@@ -142,6 +142,26 @@ public class TestHashSvcSchedImpl extends LockssTestCase {
     assertClass(SchedService.Timeout.class, cbex);
   }
 
+  public void testOneRunner() throws Exception {
+    TimeBase.setSimulated();
+    assertTrue(hashContent("1", 300, -100, 500, null));
+    assertFalse(hashContent("2", 300, -100, 500, null));
+  }
+
+  public void testConcurrentRunners() throws Exception {
+    SchedService schedSvc = theDaemon.getSchedService();
+    schedSvc.stopService();
+    ConfigurationUtil.addFromArgs(SchedService.PARAM_NUM_RUNNERS, "2");
+    schedSvc.startService();
+    assertEquals(2, schedSvc.getNumRunners());
+    TimeBase.setSimulated();
+    assertTrue(hashContent("1", 300, -100, 500, null));
+    assertTrue(svc.canHashBeScheduledBefore(300, Deadline.at(500)));
+    assertTrue(hashContent("2", 300, -100, 500, null));
+    assertFalse(svc.canHashBeScheduledBefore(300, Deadline.at(500)));
+    assertFalse(hashContent("3", 300, -100, 500, null));
+  }
+
   public class MyMockCUSH extends MockCachedUrlSetHasher {
     CachedUrlSet cus;
 
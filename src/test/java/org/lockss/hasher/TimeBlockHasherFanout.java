@@ -0,0 +1,104 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.hasher;
+
+import java.util.*;
+import java.security.MessageDigest;
+
+import org.lockss.test.*;
+import org.lockss.util.*;
+import org.lockss.plugin.*;
+import org.lockss.repository.*;
+
+/**
+ * Measures BlockHasher throughput against the number of peer digests,
+ * with and without digest fan-out.  Not run as part of the unit tests.
+ */
+public class TimeBlockHasherFanout extends LockssTiming {
+  static final String URL = "http://www.example.com/big";
+  static final int CONTENT_SIZE = 4 * 1024 * 1024;
+  static final int[] PEER_COUNTS = {1, 5, 10, 20, 40};
+
+  MockArchivalUnit mau;
+  MockCachedUrlSet cus;
+
+  public void setUp() throws Exception {
+    super.setUp();
+    setUpDiskSpace();
+    MockLockssDaemon daemon = getMockLockssDaemon();
+    daemon.startManagers(RepositoryManager.class);
+    mau = new MockArchivalUnit(new MockPlugin(daemon));
+    AuTestUtil.setUpMockAus(mau);
+    cus = (MockCachedUrlSet)mau.getAuCachedUrlSet();
+    MockCachedUrl cu = mau.addUrl(URL, true, true);
+    cu.setContent(new String(ByteArray.makeRandomBytes(CONTENT_SIZE),
+			     "ISO-8859-1"));
+    cus.setHashItSource(ListUtil.list(cu));
+  }
+
+  void timePeers(final int nPeers, boolean fanout) throws Exception {
+    ConfigurationUtil.addFromArgs(BlockHasher.PARAM_DIGEST_FANOUT_MIN_PEERS,
+				  fanout ? "2" : "0");
+    time(null, (fanout ? "Fan-out, " : "Serial, ") + nPeers + " peers",
+	 new Computation() {
+	   public void execute() throws Exception {
+	     MessageDigest[] digs = new MessageDigest[nPeers];
+	     byte[][] inits = new byte[nPeers][];
+	     for (int ix = 0; ix < nPeers; ix++) {
+	       digs[ix] = MessageDigest.getInstance("SHA-1");
+	       inits[ix] = ByteArray.makeRandomBytes(20);
+	     }
+	     BlockHasher hasher =
+	       new BlockHasher(cus, digs, inits, null);
+	     long cnt = 0;
+	     while (!hasher.finished()) {
+	       cnt += hasher.hashStep(64 * 1024);
+	     }
+	     incrBytesProcessed(cnt / nPeers);
+	   }});
+  }
+
+  public void testSerial() throws Exception {
+    for (int nPeers : PEER_COUNTS) {
+      timePeers(nPeers, false);
+    }
+  }
+
+  public void testFanout() throws Exception {
+    for (int nPeers : PEER_COUNTS) {
+      timePeers(nPeers, true);
+    }
+  }
+
+  public static void main(String[] argv) {
+    String[] testCaseList = { TimeBlockHasherFanout.class.getName()};
+    junit.textui.TestRunner.main(testCaseList);
+  }
+}
@@ -880,6 +880,37 @@ public class TestPluginManager extends LockssTestCase4 {
     assertEquals(cod_tc2.getConfig(), au2.getConfiguration());
   }
 
+  @Test
+  public void testCreateAusAtStartupParallel() throws Exception {
+    ConfigurationUtil.addFromArgs(PluginManager.PARAM_AU_STARTUP_THREADS, "2",
+				  PluginManager.PARAM_AU_STARTUP_PARALLEL_MIN,
+				  "1",
+				  PluginManager.PARAM_AU_STARTUP_BATCH_SIZE,
+				  "1");
+    startAllSetup();
+    mgr.registerAuEventHandler(new MyAuEventHandler());
+    String auid1 = cod_tc1.getAuId(mgr);
+    mgr.updateAuInDatabase(auid1, cod_tc1.getConfig());
+    String auid2 = cod_tc2.getAuId(mgr);
+    mgr.updateAuInDatabase(auid2, cod_tc2.getConfig());
+    assertNull(mgr.getAuFromIdIfExists(auid1));
+    assertNull(mgr.getAuFromIdIfExists(auid2));
+    mgr.setLoadablePluginsReady(false);
+    mgr.startLoadablePlugins();
+    ArchivalUnit au1 = mgr.getAuFromIdIfExists(auid1);
+    assertNotNull(au1);
+    assertSame(cod_mpi, au1.getPlugin());
+    assertEquals(cod_tc1.getConfig(), au1.getConfiguration());
+    ArchivalUnit au2 = mgr.getAuFromIdIfExists(auid2);
+    assertNotNull(au2);
+    assertSame(cod_mpi, au2.getPlugin());
+    assertEquals(cod_tc2.getConfig(), au2.getConfiguration());
+    assertSameElements(ListUtil.list(au1, au2), createEvents);
+    assertEquals(2, mgr.getAuStartupTotal());
+    assertEquals(2, mgr.getAuStartupCount());
+    assertFalse(mgr.isAuStartupRunning());
+  }
+
   @Test
   public void testDontCreateAusAtStartup() throws Exception {
     onDemandSetup();
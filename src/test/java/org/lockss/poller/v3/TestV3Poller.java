@@ -30,6 +30,8 @@ package org.lockss.poller.v3;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.security.*;
 import org.lockss.app.*;
 import org.lockss.config.ConfigManager;
@@ -1109,6 +1111,156 @@ public class TestV3Poller extends LockssTestCase {
     assertEquals(0.8, v3Poller.getWeightedPercentAgreement(), 0.001);
   }
 
+  // Tally the same blocks with one thread and with several; the
+  // per-participant counts and tallied URLs must be identical.
+  public void testParallelTallyMatchesSerial() throws Exception {
+    V3Poller serial = makeTallyComparisonPoller(1);
+    V3Poller parallel = makeTallyComparisonPoller(3);
+    assertEquals(3, parallel.getQuorum());
+
+    tallyComparisonBlocks(serial, parallel);
+    assertTallyMatches(serial, parallel);
+  }
+
+  // A voter whose blocks are misordered across a range boundary must be
+  // spoiled from the same URL on in every range as in a serial tally.
+  public void testParallelTallySpoiledVoterMatchesSerial() throws Exception {
+    V3Poller serial = makeTallyComparisonPoller(1, true);
+    V3Poller parallel = makeTallyComparisonPoller(3, true);
+
+    tallyComparisonBlocks(serial, parallel);
+    List<ParticipantUserData> serialParts =
+        new ArrayList<ParticipantUserData>(serial.theParticipants.values());
+    assertTrue(serialParts.get(1).getVoteCounts().getSpoiledVotes() > 0);
+    assertTallyMatches(serial, parallel);
+  }
+
+  // The first voter-only URL of the first range is held until a later
+  // range tallies a poller URL, which it can do only if the ranges are
+  // tallied at the same time.
+  public void testParallelTallyPartitionsConcurrent() throws Exception {
+    ConfigurationUtil.addFromArgs(V3Poller.PARAM_TALLY_THREADS, "3");
+    final CountDownLatch laterRangeTallied = new CountDownLatch(1);
+    final boolean[] released = {false};
+    PollSpec ps = new MockPollSpec(testau.getAuCachedUrlSet(), null, null,
+        Poll.V3_POLL);
+    V3Poller serial = makeTallyComparisonPoller(1);
+    V3Poller parallel =
+        new MyV3Poller(ps, theDaemon, pollerId, "testing poll key 3", 20000,
+            "SHA-1") {
+          @Override
+          boolean shouldTallyVoterUrl(String url) {
+            if ("http://test.com/foo000a".equals(url)) {
+              try {
+                released[0] = laterRangeTallied.await(TIMEOUT_SHOULDNT,
+                    TimeUnit.MILLISECONDS);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+            return super.shouldTallyVoterUrl(url);
+          }
+
+          @Override
+          VoteBlockTallier getPollerUrlTally(HashBlock hashBlock,
+              VoteBlockTallier.VoteCallback hashStats,
+              VoteBlockTallier.VoteBlockTally voteTally) {
+            if (VoteBlock.compareUrls(hashBlock.getUrl(),
+                "http://test.com/foo200") >= 0) {
+              laterRangeTallied.countDown();
+            }
+            return super.getPollerUrlTally(hashBlock, hashStats, voteTally);
+          }
+        };
+    addTallyComparisonParticipants(parallel, false);
+
+    tallyComparisonBlocks(serial, parallel);
+    assertTrue("First range wasn't released by a later one", released[0]);
+    assertTallyMatches(serial, parallel);
+  }
+
+  private void tallyComparisonBlocks(V3Poller serial, V3Poller parallel)
+      throws Exception {
+    for (int ix = 0; ix < 300; ix++) {
+      if (ix % 7 != 0) {
+        String url = String.format("http://test.com/foo%03d", ix);
+        assertNotNull(serial.tallyBlock(makeHashBlock(url, "content " + ix)));
+        assertNull(parallel.tallyBlock(makeHashBlock(url, "content " + ix)));
+      }
+    }
+    serial.tallyRemainingUrls();
+    parallel.tallyRemainingUrls();
+  }
+
+  // The per-participant counts and tallied URLs must be identical.
+  private void assertTallyMatches(V3Poller serial, V3Poller parallel)
+      throws Exception {
+    List<ParticipantUserData> serialParts =
+        new ArrayList<ParticipantUserData>(serial.theParticipants.values());
+    List<ParticipantUserData> parallelParts =
+        new ArrayList<ParticipantUserData>(parallel.theParticipants.values());
+    for (int ix = 0; ix < serialParts.size(); ix++) {
+      assertEquals(serialParts.get(ix).getVoteCounts().votes(),
+          parallelParts.get(ix).getVoteCounts().votes());
+    }
+    assertEquals(serial.getAgreedUrls(), parallel.getAgreedUrls());
+    assertEquals(serial.getDisagreedUrls(), parallel.getDisagreedUrls());
+    assertEquals(serial.getTooCloseUrls(), parallel.getTooCloseUrls());
+    assertEquals(serial.getNoQuorumUrls(), parallel.getNoQuorumUrls());
+    assertEquals(serial.getPercentAgreement(),
+        parallel.getPercentAgreement(), 0.0001);
+    serial.release();
+    parallel.release();
+  }
+
+  private V3Poller makeTallyComparisonPoller(int threads) throws Exception {
+    return makeTallyComparisonPoller(threads, false);
+  }
+
+  private V3Poller makeTallyComparisonPoller(int threads, boolean misordered)
+      throws Exception {
+    ConfigurationUtil.addFromArgs(V3Poller.PARAM_TALLY_THREADS,
+        Integer.toString(threads));
+    V3Poller v3Poller = makeV3Poller("testing poll key " + threads);
+    addTallyComparisonParticipants(v3Poller, misordered);
+    return v3Poller;
+  }
+
+  // If misordered, two of the second voter's blocks, in the first and
+  // second of three ranges, are swapped.
+  private void addTallyComparisonParticipants(V3Poller v3Poller,
+      boolean misordered) throws Exception {
+    List<VoteBlock> votes1 = new ArrayList<VoteBlock>();
+    List<VoteBlock> votes2 = new ArrayList<VoteBlock>();
+    List<VoteBlock> votes3 = new ArrayList<VoteBlock>();
+    for (int ix = 0; ix < 310; ix++) {
+      String url = String.format("http://test.com/foo%03d", ix);
+      votes1.add(makeVoteBlock(url, "content " + ix));
+      if (ix % 5 != 0) {
+        votes2.add(makeVoteBlock(url,
+            ix % 3 == 0 ? "other content " + ix : "content " + ix));
+      }
+      votes3.add(makeVoteBlock(url, "content " + ix));
+      if (ix % 11 == 0) {
+        votes3.add(makeVoteBlock(url + "a", "content " + ix + "a"));
+      }
+    }
+    if (misordered) {
+      // foo101 and foo201
+      Collections.swap(votes2, 80, 160);
+    }
+    PeerIdentity id1 = findPeerIdentity("TCP:[127.0.0.1]:8990");
+    PeerIdentity id2 = findPeerIdentity("TCP:[127.0.0.1]:8991");
+    PeerIdentity id3 = findPeerIdentity("TCP:[127.0.0.1]:8992");
+    v3Poller.theParticipants.put(id1, makeParticipant(id1, v3Poller,
+        votes1.toArray(new VoteBlock[0])));
+    v3Poller.theParticipants.put(id2, makeParticipant(id2, v3Poller,
+        votes2.toArray(new VoteBlock[0])));
+    v3Poller.theParticipants.put(id3, makeParticipant(id3, v3Poller,
+        votes3.toArray(new VoteBlock[0])));
+    v3Poller.lockParticipants();
+  }
+
   public void testTallyBlocksSucceedsWithNoVersionVote() throws Exception {
 
     V3Poller v3Poller = makeV3Poller("testing poll key");
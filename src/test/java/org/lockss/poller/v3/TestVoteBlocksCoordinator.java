@@ -273,6 +273,38 @@ public class TestVoteBlocksCoordinator extends LockssTestCase {
     assertEquals(null, coordinator.peekUrl());
   }
 
+  public void testSeekOutOfOrderUrl() throws Exception {
+    VoteBlock[][] voteBlocks = {
+      {
+	makeVoteBlock("http://test.com/foo1", "content for foo1"),
+	makeVoteBlock("http://test.com/foo2", "content for foo2"),
+	makeVoteBlock("http://test.com/foo3", "content for foo3"),
+	makeVoteBlock("http://test.com/foo4", "content for foo4"),
+	makeVoteBlock("http://test.com/foo5", "content for foo5")
+      },
+      {
+	// NOTE: these URLs are not in the canonical order.
+	makeVoteBlock("http://test.com/foo1", "content for foo1"),
+	makeVoteBlock("http://test.com/foo3", "content for foo3"),
+	makeVoteBlock("http://test.com/foo2", "content for foo2"),
+	makeVoteBlock("http://test.com/foo4", "content for foo4"),
+	makeVoteBlock("http://test.com/foo5", "content for foo5")
+      }
+    };
+
+    iterators = makeIterators(voteBlocks);
+    VoteBlocksCoordinator coordinator = new VoteBlocksCoordinator(iterators);
+    assertFalse(coordinator.isSpoiled(1));
+
+    // The misordered blocks are skipped by the seek, but still detected
+    coordinator.seek("http://test.com/foo5");
+    assertEquals("http://test.com/foo5", coordinator.peekUrl());
+    assertFalse(coordinator.isSpoiled(0));
+    assertTrue(coordinator.isSpoiled(1));
+    assertEquals(findVoteBlock("http://test.com/foo5", voteBlocks[0]),
+		 coordinator.getVoteBlock("http://test.com/foo5", 0));
+  }
+
   public void testOutOfOrderUrl() throws Exception {
     VoteBlock[][] voteBlocks = {
       {
@@ -0,0 +1,66 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.protocol;
+
+import org.lockss.test.*;
+
+public class TestChannelStats extends LockssTestCase {
+
+  public void testSentTimed() {
+    ChannelStats stats = new ChannelStats();
+    assertNull(stats.getSendMBPerSec());
+    assertNull(stats.getSendCpuMsPerMB());
+    // 4MB in 2 seconds using 100ms CPU
+    stats.sentTimed(4 * 1024 * 1024, 2000000000L, 100000000L);
+    assertEquals(2.0, stats.getSendMBPerSec(), 0.0001);
+    Double cpu = stats.getSendCpuMsPerMB();
+    if (cpu != null) {
+      assertEquals(25.0, cpu, 0.0001);
+    }
+  }
+
+  public void testAdd() {
+    ChannelStats s1 = new ChannelStats();
+    ChannelStats s2 = new ChannelStats();
+    s1.sentTimed(1024 * 1024, 1000000000L, 0);
+    s2.sentTimed(1024 * 1024, 1000000000L, 0);
+    s2.getOutCount().addBytes(10);
+    s2.rcvdMsg();
+    s1.add(s2);
+    // Concurrent sends' times don't sum, so there's no aggregate rate
+    assertNull(s1.getSendMBPerSec());
+    assertEquals(2 * 1024 * 1024, s1.sendTimedBytes);
+    assertEquals(10, s1.getOutCount().getBytes());
+    assertEquals(1, s1.getOutCount().getMsgs());
+  }
+}
@@ -36,6 +36,7 @@ import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 import org.junit.runners.Parameterized.Parameter;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 import org.lockss.test.LockssTestCase4;
 import org.lockss.log.*;
@@ -302,6 +303,197 @@ public class TestDiskVoteBlocks extends LockssTestCase4 {
     assertTrue(is instanceof InputStream);
   }
   
+  // Blocks with URLs in canonical order
+  private List<VoteBlock> makeOrderedVoteBlockList(int count) {
+    List<VoteBlock> res = new ArrayList<VoteBlock>();
+    for (int ix = 0; ix < count; ix++) {
+      res.add(V3TestUtils.makeVoteBlock(String.format("/test-%05d.html", ix),
+					ix % 3 + 1));
+    }
+    return res;
+  }
+
+  private byte[] encodeWireFormat(List<VoteBlock> voteBlockList)
+      throws IOException {
+    UnsynchronizedByteArrayOutputStream bos =
+      new UnsynchronizedByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(bos);
+    for (VoteBlock vb : voteBlockList) {
+      byte[] enc = vb.getEncoded();
+      dos.writeShort(enc.length);
+      dos.write(enc);
+    }
+    dos.close();
+    return bos.toByteArray();
+  }
+
+  private void assertIterates(List<VoteBlock> expected, DiskVoteBlocks dvb)
+      throws IOException {
+    VoteBlocksIterator iter = dvb.iterator();
+    try {
+      for (VoteBlock vb : expected) {
+	assertEquals(vb, iter.next());
+      }
+      assertFalse(iter.hasNext());
+    } finally {
+      iter.release();
+    }
+  }
+
+  @Test
+  public void testBinaryEncoding() throws Exception {
+    VoteBlock vb = V3TestUtils.makeVoteBlock("http://example.com/\u00e9", 3);
+    vb.getVersion(1).setHashError(true);
+    VoteBlock dec =
+      VoteBlock.decodeBinary(java.nio.ByteBuffer.wrap(vb.getBinaryEncoded()));
+    assertEquals(vb, dec);
+    assertEquals(vb.getUrl(), dec.getUrl());
+    assertTrue(dec.getVersion(1).getHashError());
+    assertFalse(dec.getVersion(0).getHashError());
+
+    byte[] enc = vb.getBinaryEncoded();
+    try {
+      VoteBlock.decodeBinary(java.nio.ByteBuffer.wrap(enc, 0, enc.length - 1));
+      fail("Truncated encoding should throw");
+    } catch (IOException e) {
+    }
+  }
+
+  @Test
+  public void testBinaryFormat() throws Exception {
+    List<VoteBlock> voteBlockList = makeOrderedVoteBlockList(5);
+    DiskVoteBlocks dvb = makeDiskVoteBlocks(voteBlockList);
+    assertEquals(DiskVoteBlocks.FORMAT_BINARY,
+		 dvb.getFormat());
+    assertIterates(voteBlockList, dvb);
+    // Sent in the wire format
+    InputStream is = dvb.getInputStream();
+    try {
+      assertEquals(encodeWireFormat(voteBlockList),
+		   IOUtils.toByteArray(is));
+    } finally {
+      is.close();
+    }
+  }
+
+  @Test
+  public void testReceivedConverted() throws Exception {
+    List<VoteBlock> voteBlockList = makeOrderedVoteBlockList(100);
+    byte[] wire = encodeWireFormat(voteBlockList);
+    DiskVoteBlocks dvb =
+      new MyDiskVoteBlocks(100, new ByteArrayInputStream(wire), tempDir);
+    assertEquals(100, dvb.size());
+    assertEquals(DiskVoteBlocks.FORMAT_BINARY,
+		 dvb.getFormat());
+    assertIterates(voteBlockList, dvb);
+    assertEquals(voteBlockList.get(77), dvb.getVoteBlock("/test-00077.html"));
+    InputStream is = dvb.getInputStream();
+    try {
+      assertEquals(wire, IOUtils.toByteArray(is));
+    } finally {
+      is.close();
+    }
+  }
+
+  // If the received blocks can't all be read they're left in the legacy
+  // format, which must still be readable
+  @Test
+  public void testReceivedLegacy() throws Exception {
+    List<VoteBlock> voteBlockList = makeOrderedVoteBlockList(10);
+    byte[] wire = encodeWireFormat(voteBlockList);
+    DiskVoteBlocks dvb =
+      new MyDiskVoteBlocks(11, new ByteArrayInputStream(wire), tempDir);
+    assertEquals(DiskVoteBlocks.FORMAT_LEGACY,
+		 dvb.getFormat());
+    assertIterates(voteBlockList, dvb);
+    assertEquals(voteBlockList.get(7), dvb.getVoteBlock("/test-00007.html"));
+    VoteBlocksIterator iter = dvb.iterator();
+    iter.seek("/test-00005.html");
+    assertEquals(voteBlockList.get(5), iter.next());
+    iter.release();
+    InputStream is = dvb.getInputStream();
+    try {
+      assertEquals(wire, IOUtils.toByteArray(is));
+    } finally {
+      is.close();
+    }
+  }
+
+  @Test
+  public void testSeek() throws Exception {
+    int n = 10 * DiskVoteBlocks.INDEX_INTERVAL;
+    List<VoteBlock> voteBlockList = makeOrderedVoteBlockList(n);
+    DiskVoteBlocks dvb = makeDiskVoteBlocks(voteBlockList);
+
+    MyDiskVoteBlocks.MyIterator iter =
+      (MyDiskVoteBlocks.MyIterator)dvb.iterator();
+    iter.seek("/test-00300.html");
+    assertEquals(voteBlockList.get(300), iter.peek());
+    // Used the index rather than reading everything before
+    assertTrue("Read " + iter.getReadCount(),
+	       iter.getReadCount() <= DiskVoteBlocks.INDEX_INTERVAL + 2);
+    // Seeking backwards does nothing
+    iter.seek("/test-00100.html");
+    assertEquals(voteBlockList.get(300), iter.peek());
+    // Between two URLs
+    iter.seek("/test-00400.htmlx");
+    assertEquals(voteBlockList.get(401), iter.next());
+    assertEquals(voteBlockList.get(402), iter.next());
+    iter.seek("/test-00402.html");
+    assertEquals(voteBlockList.get(403), iter.next());
+    iter.seek("/zzz");
+    assertNull(iter.peek());
+    assertFalse(iter.hasNext());
+    assertTrue(iter.isKnownOrdered());
+    iter.release();
+  }
+
+  // Blocks not in URL order aren't skipped by an index seek
+  @Test
+  public void testSeekUnordered() throws Exception {
+    List<VoteBlock> voteBlockList =
+      makeOrderedVoteBlockList(3 * DiskVoteBlocks.INDEX_INTERVAL);
+    Collections.swap(voteBlockList, 10, 100);
+    DiskVoteBlocks dvb = makeDiskVoteBlocks(voteBlockList);
+    VoteBlocksIterator iter = dvb.iterator();
+    assertFalse(iter.isKnownOrdered());
+    iter.release();
+
+    iter = new OrderedVoteBlocksIterator(dvb.iterator());
+    try {
+      iter.seek("/test-00150.html");
+      fail("Expected Exception not thrown.");
+    } catch (OrderedVoteBlocksIterator.OrderException ex) {
+      // expected
+    } finally {
+      iter.release();
+    }
+  }
+
+  @Test
+  public void testGetVoteBlock() throws Exception {
+    List<VoteBlock> voteBlockList = makeOrderedVoteBlockList(200);
+    DiskVoteBlocks dvb = makeDiskVoteBlocks(voteBlockList);
+    for (int ix : new int[] {0, 63, 64, 65, 150, 199}) {
+      VoteBlock vb = voteBlockList.get(ix);
+      assertEquals(vb, dvb.getVoteBlock(vb.getUrl()));
+    }
+    assertNull(dvb.getVoteBlock("/test-00150.htmlx"));
+    assertNull(dvb.getVoteBlock("/a"));
+    assertNull(dvb.getVoteBlock("/zzz"));
+  }
+
+  // Blocks not in URL order can still be found
+  @Test
+  public void testGetVoteBlockUnordered() throws Exception {
+    List<VoteBlock> voteBlockList = V3TestUtils.makeVoteBlockList(30);
+    DiskVoteBlocks dvb = makeDiskVoteBlocks(voteBlockList);
+    for (VoteBlock vb : voteBlockList) {
+      assertEquals(vb, dvb.getVoteBlock(vb.getUrl()));
+    }
+    assertNull(dvb.getVoteBlock("/test-99.html"));
+  }
+
   private DiskVoteBlocks makeDiskVoteBlocks(List voteBlockList)
       throws Exception {
     DiskVoteBlocks dvb = new MyDiskVoteBlocks(tempDir, false);
@@ -0,0 +1,87 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.protocol;
+
+import java.io.*;
+import java.util.*;
+
+import org.lockss.daemon.*;
+import org.lockss.util.*;
+import org.lockss.test.*;
+
+/**
+ * Runs the TestNioStreamComm tests over SSL, with client authentication
+ */
+public class TestNioSslStreamComm extends TestNioStreamComm {
+
+  static String KS_NAME = "ks1";
+
+  String keyStorePassword = "Bad Password";
+  String keyPassword = "No Donut!";
+  String keyStoreFileName = null;
+
+  protected boolean isSsl() {
+    return true;
+  }
+
+  public void setUp() throws Exception {
+    File keyStoreDir = getTempDir("TestNioSslStreamComm");
+    keyStoreFileName = new File(keyStoreDir, "test.keystore").toString();
+    super.setUp();
+    setupKeyStore();
+    getMockLockssDaemon().getKeystoreManager().startService();
+  }
+
+  @Override
+  void addSuiteProps(Properties p) {
+    p.setProperty(BlockingStreamComm.PARAM_USE_V3_OVER_SSL, "true");
+    p.setProperty(BlockingStreamComm.PARAM_SSL_KEYSTORE_NAME, KS_NAME);
+    p.setProperty(BlockingStreamComm.PARAM_USE_SSL_CLIENT_AUTH, "true");
+    String pref = LockssKeyStoreManager.PARAM_KEYSTORE + ".id1.";
+    p.put(pref + LockssKeyStoreManager.KEYSTORE_PARAM_NAME, KS_NAME);
+    p.put(pref + LockssKeyStoreManager.KEYSTORE_PARAM_FILE, keyStoreFileName);
+    p.put(pref + LockssKeyStoreManager.KEYSTORE_PARAM_TYPE, "PKCS12");
+    p.put(pref + LockssKeyStoreManager.KEYSTORE_PARAM_PASSWORD,
+	  keyStorePassword);
+    p.put(pref + LockssKeyStoreManager.KEYSTORE_PARAM_KEY_PASSWORD,
+	  keyPassword);
+  }
+
+  private void setupKeyStore() throws Exception {
+    Properties p = new Properties();
+    p.put(KeyStoreUtil.PROP_KEYSTORE_FILE, keyStoreFileName);
+    p.put(KeyStoreUtil.PROP_KEYSTORE_PASSWORD, keyStorePassword);
+    p.put(KeyStoreUtil.PROP_KEY_PASSWORD, keyPassword);
+    KeyStoreUtil.createKeyStore(p);
+  }
+}
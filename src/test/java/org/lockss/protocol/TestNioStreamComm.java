@@ -0,0 +1,489 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.protocol;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import org.lockss.config.*;
+import org.lockss.util.*;
+import org.lockss.test.*;
+
+/**
+ * Tests for NioStreamComm, including interoperation with
+ * BlockingStreamComm.
+ */
+public class TestNioStreamComm extends LockssTestCase {
+  static Logger log = Logger.getLogger();
+
+  static final int MAX_COMMS = 3;
+
+  static final int HEADER_LEN = PeerChannel.HEADER_LEN;
+  static final byte OP_PEERID = PeerChannel.OP_PEERID;
+  static final byte OP_DATA = PeerChannel.OP_DATA;
+
+  private MockLockssDaemon daemon;
+  private Properties cprops;
+
+  int[] ports = new int[MAX_COMMS];
+  PeerIdentity[] pids = new PeerIdentity[MAX_COMMS];
+  BlockingStreamComm[] comms = new BlockingStreamComm[MAX_COMMS];
+  SimpleQueue[] rcvdMsgss = new SimpleQueue[MAX_COMMS];
+  int createCounter = 0;
+
+  String testStr1 = "This is test data 1";
+  String testStr2 = "This message contains a null \000 character";
+
+  protected boolean isSsl() {
+    return false;
+  }
+
+  void addSuiteProps(Properties p) {
+  }
+
+  public void setUp() throws Exception {
+    super.setUp();
+    daemon = getMockLockssDaemon();
+    String tempDirPath = getTempDir().getAbsolutePath() + File.separator;
+    cprops = new Properties();
+    addSuiteProps(cprops);
+    cprops.setProperty(IdentityManager.PARAM_IDDB_DIR, tempDirPath + "iddb");
+    cprops.setProperty(IdentityManager.PARAM_LOCAL_IP, "127.0.0.1");
+    cprops.setProperty(LcapStreamComm.PARAM_ENABLED, "true");
+    cprops.setProperty(NioStreamComm.PARAM_TIMER_INTERVAL, "100");
+    ConfigurationUtil.setCurrentConfigFromProps(cprops);
+    daemon.setDaemonInited(true);
+  }
+
+  public void tearDown() throws Exception {
+    for (int ix = 0; ix < MAX_COMMS; ix++) {
+      if (comms[ix] != null) {
+	comms[ix].stopService();
+	comms[ix] = null;
+      }
+    }
+    super.tearDown();
+  }
+
+  PeerIdentity setupPid(int ix) throws IOException {
+    if (pids[ix] == null) {
+      ports[ix] = TcpTestUtil.findUnboundTcpPort();
+      String id = IDUtil.ipAddrToKey("127.0.0.1", ports[ix]);
+      pids[ix] = V3TestUtils.findPeerIdentity(daemon, id);
+    }
+    return pids[ix];
+  }
+
+  void setupComm(int ix, boolean nio) throws IOException {
+    setupPid(ix);
+    BlockingStreamComm comm =
+      nio ? new MyNioStreamComm(pids[ix]) : new MyBlockingStreamComm(pids[ix]);
+    comms[ix] = comm;
+    comm.initService(daemon);
+    comm.startService();
+    rcvdMsgss[ix] = new SimpleQueue.Fifo();
+    for (int proto = 1; proto <= 3; proto++) {
+      comm.registerMessageHandler(proto, new MessageHandler(rcvdMsgss[ix]));
+    }
+  }
+
+  PeerMessage makePeerMessage(int proto, String data, int rpt)
+      throws IOException {
+    PeerMessage pm = new MyMemoryPeerMessage();
+    pm.setProtocol(proto);
+    byte[] bdata = data.getBytes();
+    OutputStream os = pm.getOutputStream();
+    for (int ix = rpt; ix > 0; ix--) {
+      os.write(bdata);
+    }
+    os.close();
+    return pm;
+  }
+
+  PeerMessage makePeerMessage(int proto, String data) throws IOException {
+    return makePeerMessage(proto, data, 1);
+  }
+
+  void assertEqualsMessageFrom(PeerMessage expectedMsg,
+			       PeerIdentity expectedPid,
+			       PeerMessage actualMsg) {
+    assertNotNull("Null message", actualMsg);
+    assertEquals(expectedPid, actualMsg.getSender());
+    assertTrue("Expected " + expectedMsg + " but was " + actualMsg,
+	       expectedMsg.equalsButSender(actualMsg));
+  }
+
+  void assertSendAndReceive(int from, int to) throws IOException {
+    PeerMessage msg1 = makePeerMessage(1, testStr1);
+    PeerMessage msg2 = makePeerMessage(2, testStr2);
+    comms[from].sendTo(msg1, pids[to]);
+    comms[from].sendTo(msg2, pids[to]);
+    PeerMessage in1 = (PeerMessage)rcvdMsgss[to].get(TIMEOUT_SHOULDNT);
+    PeerMessage in2 = (PeerMessage)rcvdMsgss[to].get(TIMEOUT_SHOULDNT);
+    assertEqualsMessageFrom(msg1, pids[from], in1);
+    assertEqualsMessageFrom(msg2, pids[from], in2);
+  }
+
+  public void testSendReceive() throws IOException {
+    setupComm(1, true);
+    setupComm(2, true);
+    assertSendAndReceive(1, 2);
+    assertSendAndReceive(2, 1);
+  }
+
+  public void testOneSelectorThread() throws IOException {
+    cprops.setProperty(NioStreamComm.PARAM_SELECTOR_THREADS, "1");
+    ConfigurationUtil.setCurrentConfigFromProps(cprops);
+    setupComm(1, true);
+    setupComm(2, true);
+    assertSendAndReceive(1, 2);
+    assertSendAndReceive(2, 1);
+  }
+
+  // Message larger than the channel buffers, received into a
+  // FilePeerMessage
+  public void testLargeMessage() throws IOException {
+    cprops.setProperty(BlockingStreamComm.PARAM_MIN_FILE_MESSAGE_SIZE, "1000");
+    cprops.setProperty(NioStreamComm.PARAM_BUFFER_SIZE, "1024");
+    ConfigurationUtil.setCurrentConfigFromProps(cprops);
+    setupComm(1, true);
+    setupComm(2, true);
+    PeerMessage msg =
+      makePeerMessage(1, "1234567890123456789012345678901234567890", 1000);
+    comms[1].sendTo(msg, pids[2]);
+    PeerMessage in = (PeerMessage)rcvdMsgss[2].get(TIMEOUT_SHOULDNT);
+    try {
+      assertEqualsMessageFrom(msg, pids[1], in);
+      assertTrue(in.toString(), in instanceof FilePeerMessage);
+    } finally {
+      in.delete();
+    }
+    ChannelStats.Count out = getChannel(comms[1], pids[2]).getStats().getOutCount();
+    assertEquals(1, out.getMsgs());
+    assertEquals(40000, out.getBytes());
+  }
+
+  PeerMessage makeFilePeerMessage(int proto, String data, int rpt)
+      throws IOException {
+    PeerMessage pm = new MyFilePeerMessage(getTempDir());
+    pm.setProtocol(proto);
+    byte[] bdata = data.getBytes();
+    OutputStream os = pm.getOutputStream();
+    for (int ix = rpt; ix > 0; ix--) {
+      os.write(bdata);
+    }
+    os.close();
+    return pm;
+  }
+
+  void assertSendFile(int from, int to) throws IOException {
+    PeerMessage msg =
+      makeFilePeerMessage(1, "1234567890123456789012345678901234567890",
+			  10000);
+    comms[from].sendTo(msg, pids[to]);
+    PeerMessage in = (PeerMessage)rcvdMsgss[to].get(TIMEOUT_SHOULDNT);
+    try {
+      assertEqualsMessageFrom(msg, pids[from], in);
+    } finally {
+      in.delete();
+    }
+    ChannelStats stats = getChannel(comms[from], pids[to]).getStats();
+    assertEquals(400000, stats.getOutCount().getBytes());
+  }
+
+  // File message body sent with transferTo()
+  public void testZeroCopySend() throws IOException {
+    cprops.setProperty(NioStreamComm.PARAM_BUFFER_SIZE, "1024");
+    ConfigurationUtil.setCurrentConfigFromProps(cprops);
+    setupComm(1, true);
+    setupComm(2, true);
+    assertSendFile(1, 2);
+  }
+
+  public void testNoZeroCopySend() throws IOException {
+    cprops.setProperty(BlockingStreamComm.PARAM_ZERO_COPY_SEND, "false");
+    ConfigurationUtil.setCurrentConfigFromProps(cprops);
+    setupComm(1, true);
+    setupComm(2, true);
+    assertSendFile(1, 2);
+  }
+
+  public void testBlockingSendFile() throws IOException {
+    cprops.setProperty(BlockingStreamComm.PARAM_FILE_SEND_BUFFER_SIZE,
+		       "100000");
+    ConfigurationUtil.setCurrentConfigFromProps(cprops);
+    setupComm(1, false);
+    setupComm(2, true);
+    assertSendFile(1, 2);
+  }
+
+  public void testNioToBlocking() throws IOException {
+    setupComm(1, true);
+    setupComm(2, false);
+    assertSendAndReceive(1, 2);
+    assertSendAndReceive(2, 1);
+  }
+
+  public void testBlockingToNio() throws IOException {
+    setupComm(1, false);
+    setupComm(2, true);
+    assertSendAndReceive(1, 2);
+    assertSendAndReceive(2, 1);
+  }
+
+  // Idle channels shut down output, then close when the other side sees
+  // EOF and closes.  Neither side should abort.
+  public void testIdleClose() throws IOException {
+    cprops.setProperty(BlockingStreamComm.PARAM_CHANNEL_IDLE_TIME, "500");
+    ConfigurationUtil.setCurrentConfigFromProps(cprops);
+    setupComm(1, true);
+    setupComm(2, true);
+    assertSendAndReceive(1, 2);
+    List<MyNioPeerChannel> chans = new ArrayList<MyNioPeerChannel>();
+    chans.addAll(((MyNioStreamComm)comms[1]).channels);
+    chans.addAll(((MyNioStreamComm)comms[2]).channels);
+    assertEquals(2, chans.size());
+    for (MyNioPeerChannel chan : chans) {
+      assertTrue("Idle channel didn't close",
+		 chan.stopSem.take(TIMEOUT_SHOULDNT));
+      assertFalse("Idle channel aborted: " + chan.abortMsg, chan.aborted);
+    }
+    assertTrue("Neither side drained input",
+	       chans.get(0).drained || chans.get(1).drained);
+    assertNull(getChannel(comms[1], pids[2]));
+    // New channel is opened for the next message
+    assertSendAndReceive(1, 2);
+  }
+
+  // Outgoing channel sends our peerid first
+  public void testOriginate() throws IOException {
+    if (isSsl()) {
+      // Plaintext peer
+      return;
+    }
+    setupComm(1, true);
+    setupPid(2);
+    ServerSocket server = new ServerSocket(ports[2]);
+    try {
+      comms[1].findOrMakeChannel(pids[2]);
+      server.setSoTimeout((int)TIMEOUT_SHOULDNT);
+      Socket sock = server.accept();
+      try {
+	sock.setSoTimeout((int)TIMEOUT_SHOULDNT);
+	InputStream ins = sock.getInputStream();
+	byte[] hdr = new byte[HEADER_LEN];
+	StreamUtil.readBytes(ins, hdr, HEADER_LEN);
+	assertEquals(PeerChannel.HEADER_CHECK, hdr[PeerChannel.HEADER_OFF_CHECK]);
+	assertEquals(OP_PEERID, hdr[PeerChannel.HEADER_OFF_OP]);
+	int len = (int)ByteArray.decodeLong(hdr, PeerChannel.HEADER_OFF_LEN);
+	byte[] buf = new byte[len];
+	StreamUtil.readBytes(ins, buf, len);
+	assertEquals(pids[1].getIdString(), new String(buf));
+      } finally {
+	IOUtil.safeClose(sock);
+      }
+    } finally {
+      IOUtil.safeClose(server);
+    }
+  }
+
+  // Incoming connection that sends data before its peerid is closed
+  public void testIncomingNoPeerId() throws IOException {
+    if (isSsl()) {
+      // Plaintext peer
+      return;
+    }
+    setupComm(1, true);
+    Socket sock = new Socket("127.0.0.1", ports[1]);
+    try {
+      sock.setSoTimeout((int)TIMEOUT_SHOULDNT);
+      OutputStream outs = sock.getOutputStream();
+      writeHeader(outs, OP_DATA, 0, 1);
+      outs.flush();
+      InputStream ins = sock.getInputStream();
+      // Read our peerid message, then EOF
+      byte[] hdr = new byte[HEADER_LEN];
+      StreamUtil.readBytes(ins, hdr, HEADER_LEN);
+      int len = (int)ByteArray.decodeLong(hdr, PeerChannel.HEADER_OFF_LEN);
+      StreamUtil.readBytes(ins, new byte[len], len);
+      try {
+	assertEquals(-1, ins.read());
+      } catch (SocketException e) {
+	// connection reset is also ok
+      }
+      assertTrue(rcvdMsgss[1].isEmpty());
+    } finally {
+      IOUtil.safeClose(sock);
+    }
+  }
+
+  void writeHeader(OutputStream outs, int op, long len, int proto)
+      throws IOException {
+    byte[] hdr = new byte[HEADER_LEN];
+    hdr[PeerChannel.HEADER_OFF_CHECK] = PeerChannel.HEADER_CHECK;
+    hdr[PeerChannel.HEADER_OFF_OP] = (byte)op;
+    ByteArray.encodeLong(len, hdr, PeerChannel.HEADER_OFF_LEN);
+    ByteArray.encodeInt(proto, hdr, PeerChannel.HEADER_OFF_PROTO);
+    outs.write(hdr);
+  }
+
+  BlockingPeerChannel getChannel(BlockingStreamComm comm, PeerIdentity pid) {
+    BlockingStreamComm.PeerData pdata = comm.getPeerData(pid);
+    return pdata == null ? null : pdata.getPrimaryChannel();
+  }
+
+  class MyNioStreamComm extends NioStreamComm {
+    PeerIdentity localId;
+    int uniqueId;
+    List<MyNioPeerChannel> channels =
+      Collections.synchronizedList(new ArrayList<MyNioPeerChannel>());
+
+    MyNioStreamComm(PeerIdentity localId) {
+      this.localId = localId;
+      uniqueId = createCounter++;
+    }
+
+    @Override
+    BlockingPeerChannel newPeerChannel(PeerIdentity pid) throws IOException {
+      MyNioPeerChannel chan = new MyNioPeerChannel(this, pid, chooseSelector());
+      channels.add(chan);
+      return chan;
+    }
+
+    @Override
+    void processIncomingConnection(SocketChannel sc) throws IOException {
+      sc.configureBlocking(false);
+      setupOpenSocket(sc.socket());
+      MyNioPeerChannel chan = new MyNioPeerChannel(this, sc, chooseSelector());
+      channels.add(chan);
+      chan.startIncoming();
+    }
+
+    @Override
+    protected String getTransportPeerKey() {
+      return localId.getIdString();
+    }
+
+    @Override
+    protected String getStatusAccessorName(String base) {
+      return base + uniqueId;
+    }
+  }
+
+  // Records how the channel was stopped
+  static class MyNioPeerChannel extends NioPeerChannel {
+    SimpleBinarySemaphore stopSem = new SimpleBinarySemaphore();
+    volatile boolean aborted = false;
+    volatile boolean drained = false;
+    volatile String abortMsg;
+
+    MyNioPeerChannel(NioStreamComm scomm, PeerIdentity peer,
+		     NioStreamComm.SelectorThread selThread) {
+      super(scomm, peer, selThread);
+    }
+
+    MyNioPeerChannel(NioStreamComm scomm, SocketChannel sc,
+		     NioStreamComm.SelectorThread selThread) {
+      super(scomm, sc, selThread);
+    }
+
+    @Override
+    boolean notStateTrans(ChannelState[] notFrom, ChannelState to) {
+      boolean res = super.notStateTrans(notFrom, to);
+      if (res && to == ChannelState.DRAIN_INPUT) {
+	drained = true;
+      }
+      return res;
+    }
+
+    @Override
+    void stopChannel(boolean abort, String msg, Throwable t) {
+      if (abort && !isClosed()) {
+	aborted = true;
+	abortMsg = msg;
+      }
+      super.stopChannel(abort, msg, t);
+      if (isClosed()) {
+	stopSem.give();
+      }
+    }
+  }
+
+  class MyBlockingStreamComm extends BlockingStreamComm {
+    PeerIdentity localId;
+    int uniqueId;
+
+    MyBlockingStreamComm(PeerIdentity localId) {
+      this.localId = localId;
+      uniqueId = createCounter++;
+    }
+
+    @Override
+    protected String getTransportPeerKey() {
+      return localId.getIdString();
+    }
+
+    @Override
+    protected String getStatusAccessorName(String base) {
+      return base + uniqueId;
+    }
+  }
+
+  class MessageHandler implements LcapStreamComm.MessageHandler {
+    SimpleQueue queue;
+    public MessageHandler(SimpleQueue queue) {
+      this.queue = queue;
+    }
+    public void handleMessage(PeerMessage msg) {
+      log.debug("handleMessage(" + msg + ")");
+      queue.put(msg);
+    }
+  }
+
+  // Suppress delete() so sent messages can be compared with those received
+  static class MyMemoryPeerMessage extends MemoryPeerMessage {
+    public void delete() {
+    }
+  }
+
+  static class MyFilePeerMessage extends FilePeerMessage {
+    MyFilePeerMessage(File dir) {
+      super(dir);
+    }
+
+    public void delete() {
+    }
+  }
+}
@@ -155,4 +155,30 @@ public class TestOrderedVoteBlocksIterator extends LockssTestCase {
     sizedMisorderedTest(2, 0, 1);
     sizedMisorderedTest(10, 3, 5);
   }
+
+  public void testSeek() throws Exception {
+    List<VoteBlock> voteBlockList = V3TestUtils.makeVoteBlockList(10);
+    VoteBlocksIterator iterator =
+      new OrderedVoteBlocksIterator(new ListVoteBlocksIterator(voteBlockList));
+    assertFalse(iterator.isKnownOrdered());
+    iterator.seek(voteBlockList.get(4).getUrl());
+    assertEquals(voteBlockList.get(4), iterator.next());
+    iterator.seek(voteBlockList.get(9).getUrl());
+    assertEquals(voteBlockList.get(9), iterator.next());
+    assertFalse(iterator.hasNext());
+  }
+
+  // Test that misorder is detected in blocks skipped by seek()
+  public void testSeekMisordered() throws Exception {
+    List<VoteBlock> voteBlockList = V3TestUtils.makeVoteBlockList(10);
+    swap(voteBlockList, 3, 5);
+    VoteBlocksIterator iterator =
+      new OrderedVoteBlocksIterator(new ListVoteBlocksIterator(voteBlockList));
+    try {
+      iterator.seek(voteBlockList.get(8).getUrl());
+      fail("Expected Exception not thrown.");
+    } catch (OrderedVoteBlocksIterator.OrderException ex) {
+      // expected
+    }
+  }
 }
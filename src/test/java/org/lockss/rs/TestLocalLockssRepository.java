@@ -30,18 +30,29 @@
 
 package org.lockss.rs;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.lockss.log.L4JLogger;
 import org.lockss.rs.io.index.VolatileArtifactIndex;
+import org.lockss.rs.io.storage.warc.AbstractWarcArtifactDataStoreTest;
 import org.lockss.rs.io.storage.warc.LocalWarcArtifactDataStore;
+import org.lockss.rs.io.storage.warc.WarcArtifactDataStore;
 import org.lockss.util.io.FileUtil;
 import org.lockss.util.rest.repo.LockssRepository;
+import org.lockss.util.rest.repo.model.Artifact;
+import org.lockss.util.rest.repo.model.ArtifactData;
+import org.lockss.util.rest.repo.model.ImportStatus;
 import org.lockss.util.rest.repo.model.RepositoryInfo;
+import org.lockss.util.rest.repo.util.ArtifactSpec;
 import org.lockss.util.storage.StorageInfo;
 import org.springframework.util.FileSystemUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Test class for {@link LocalLockssRepository}
@@ -94,6 +105,82 @@ public class TestLocalLockssRepository extends AbstractBaseLockssRepositoryTest
       getLockssRepository().getArtifactDataStore().getStorageInfo();
   }
 
+  /**
+   * Imports a WARC through several {@link WarcArtifactDataStore} batches, with duplicates of artifacts in the same
+   * batch and in an earlier one.
+   */
+  @Test
+  public void testAddArtifactsBatched() throws Exception {
+    BaseLockssRepository repo = getLockssRepository();
+    WarcArtifactDataStore store = (WarcArtifactDataStore) repo.getArtifactDataStore();
+
+    // Force several batches
+    store.setBatchMaxArtifacts(2);
+
+    String[][] records = {
+        {URL1, "content a"},
+        {URL2, "content b"},
+        {URL2, "content b"},
+        {URL3, "content c"},
+        {URL1, "content a"},
+        {URL1, "content a2"},
+    };
+
+    ArtifactSpec[] specs = new ArtifactSpec[records.length];
+    for (int ix = 0; ix < records.length; ix++) {
+      specs[ix] = ArtifactSpec.forNsAuUrl(NS1, AUID1, records[ix][0])
+          .setContent(records[ix][1])
+          .setCollectionDate(1234);
+    }
+
+    byte[] warc = AbstractWarcArtifactDataStoreTest.createWarcFileFromSpecs(false, specs);
+
+    List<ImportStatus> statuses = new ArrayList<>();
+    for (ImportStatus status :
+        repo.addArtifacts(NS1, AUID1, new ByteArrayInputStream(warc), LockssRepository.ArchiveType.WARC, false, null)) {
+      statuses.add(status);
+    }
+
+    // Statuses are in archive order
+    ImportStatus.StatusEnum[] expStatus = {
+        ImportStatus.StatusEnum.OK,
+        ImportStatus.StatusEnum.OK,
+        ImportStatus.StatusEnum.DUPLICATE,
+        ImportStatus.StatusEnum.OK,
+        ImportStatus.StatusEnum.DUPLICATE,
+        ImportStatus.StatusEnum.OK,
+    };
+    int[] expVersion = {1, 1, 1, 1, 1, 2};
+
+    assertEquals(records.length, statuses.size());
+
+    for (int ix = 0; ix < records.length; ix++) {
+      ImportStatus status = statuses.get(ix);
+      assertEquals(expStatus[ix], status.getStatus(), "status " + ix);
+      assertEquals(expVersion[ix], (int) status.getVersion(), "version " + ix);
+
+      // Duplicates refer to the committed artifact with the same content
+      try (ArtifactData ad = repo.getArtifactData(NS1, status.getArtifactUuid())) {
+        assertEquals(records[ix][1], IOUtils.toString(ad.getInputStream(), StandardCharsets.UTF_8));
+      }
+    }
+
+    // Only the artifacts reported OK were committed
+    assertEquals(2, countVersions(repo.getArtifactsAllVersions(NS1, AUID1, URL1)));
+    assertEquals(1, countVersions(repo.getArtifactsAllVersions(NS1, AUID1, URL2)));
+    assertEquals(1, countVersions(repo.getArtifactsAllVersions(NS1, AUID1, URL3)));
+    assertEquals(statuses.get(5).getArtifactUuid(), repo.getArtifact(NS1, AUID1, URL1).getUuid());
+  }
+
+  private static int countVersions(Iterable<Artifact> artifacts) {
+    int res = 0;
+    for (Artifact artifact : artifacts) {
+      assertTrue(artifact.isCommitted());
+      res++;
+    }
+    return res;
+  }
+
   @Test
   public void testRealRecordUri() {
     BaseLockssRepository repo = (BaseLockssRepository)repository;
@@ -0,0 +1,216 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.rs.io.index;
+
+import org.junit.jupiter.api.*;
+import org.lockss.util.rest.repo.model.Artifact;
+import org.lockss.util.rest.repo.model.ArtifactIdentifier;
+import org.lockss.util.test.LockssTestCase5;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Test class for {@link ArtifactTree}
+ */
+public class TestArtifactTree extends LockssTestCase5 {
+
+  ArtifactTree tree;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    tree = new ArtifactTree();
+  }
+
+  Artifact makeArtifact(String ns, String auid, String url, int version,
+                        boolean committed) {
+    ArtifactIdentifier id =
+      new ArtifactIdentifier(UUID.randomUUID().toString(),
+                             ns, auid, url, version);
+    return new Artifact(id, committed, "volatile://test.warc?offset=0",
+                        1024, "sha1");
+  }
+
+  List<String> urls(String ns, String auid, String prefix) {
+    return tree.urls(ns, auid, prefix)
+      .map(uv -> uv.url)
+      .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testEmpty() {
+    assertEmpty(tree.namespaces().collect(Collectors.toList()));
+    assertEmpty(tree.aus("ns1").collect(Collectors.toList()));
+    assertEmpty(tree.aus(null).collect(Collectors.toList()));
+    assertEmpty(urls("ns1", "au1", null));
+    assertEmpty(urls(null, null, "http"));
+    assertNull(tree.get("ns1", "au1", "http://a/"));
+    assertNull(tree.get(null, null, null));
+  }
+
+  @Test
+  public void testPrefix() {
+    for (String url : new String[] {"http://b/2", "http://a/1", "http://b/",
+                                    "http://a/", "http://ab/", "http://c/"}) {
+      tree.add(makeArtifact("ns1", "au1", url, 1, true));
+    }
+    tree.add(makeArtifact("ns1", "au2", "http://a/other", 1, true));
+    tree.add(makeArtifact("ns2", "au1", "http://a/other", 1, true));
+
+    assertEquals(List.of("http://a/", "http://a/1", "http://ab/",
+                         "http://b/", "http://b/2", "http://c/"),
+                 urls("ns1", "au1", null));
+    assertEquals(List.of("http://a/", "http://a/1", "http://ab/"),
+                 urls("ns1", "au1", "http://a"));
+    assertEquals(List.of("http://a/", "http://a/1"),
+                 urls("ns1", "au1", "http://a/"));
+    assertEquals(List.of("http://b/2"), urls("ns1", "au1", "http://b/2"));
+    assertEmpty(urls("ns1", "au1", "http://b/3"));
+    assertEmpty(urls("ns1", "au1", "http://d"));
+    assertEmpty(urls("ns1", "au3", "http://a"));
+
+    assertEquals(List.of("ns1", "ns2"),
+                 tree.namespaces().collect(Collectors.toList()));
+    assertEquals(List.of("au1", "au2"),
+                 tree.aus("ns1").map(au -> au.auid)
+                 .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testVersions() {
+    Artifact v1 = tree.add(makeArtifact("ns1", "au1", "http://a/", 1, true));
+    Artifact v3 = tree.add(makeArtifact("ns1", "au1", "http://a/", 3, false));
+    Artifact v2 = tree.add(makeArtifact("ns1", "au1", "http://a/", 2, true));
+
+    ArtifactTree.UrlVersions uv = tree.get("ns1", "au1", "http://a/");
+    assertEquals(List.of(v3, v2, v1),
+                 uv.all(true).collect(Collectors.toList()));
+    assertEquals(List.of(v2, v1), uv.all(false).collect(Collectors.toList()));
+    assertSame(v3, uv.latest(true));
+    assertSame(v2, uv.latest(false));
+    assertEquals(List.of(v3), uv.version(3, true));
+    assertEmpty(uv.version(3, false));
+    assertEmpty(uv.version(4, true));
+
+    // Committing in place is seen without re-adding
+    v3.setCommitted(true);
+    assertSame(v3, uv.latest(false));
+
+    tree.remove(v3);
+    uv = tree.get("ns1", "au1", "http://a/");
+    assertEquals(List.of(v2, v1), uv.all(true).collect(Collectors.toList()));
+    tree.remove(v1);
+    tree.remove(v2);
+    assertNull(tree.get("ns1", "au1", "http://a/"));
+
+    // Empty namespaces and AUs are removed
+    assertEmpty(tree.namespaces().collect(Collectors.toList()));
+    assertEmpty(tree.aus("ns1").collect(Collectors.toList()));
+    assertNull(tree.getAu("ns1", "au1"));
+    assertEquals(0, tree.namespaceNodeCount());
+  }
+
+  @Test
+  public void testPrune() {
+    Artifact a1 = tree.add(makeArtifact("ns1", "au1", "http://a/", 1, true));
+    Artifact a2 = tree.add(makeArtifact("ns1", "au2", "http://a/", 1, true));
+    Artifact a3 = tree.add(makeArtifact("ns2", "au1", "http://a/", 1, true));
+
+    tree.remove(a1);
+    assertNull(tree.getAu("ns1", "au1"));
+    assertNotNull(tree.getAu("ns1", "au2"));
+    assertEquals(2, tree.namespaceNodeCount());
+
+    tree.remove(a2);
+    assertNull(tree.getAu("ns1", "au2"));
+    assertEquals(List.of("ns2"),
+                 tree.namespaces().collect(Collectors.toList()));
+    assertEquals(1, tree.namespaceNodeCount());
+
+    // Removing an artifact that isn't in the tree changes nothing
+    tree.remove(a1);
+    tree.remove(makeArtifact("ns2", "au1", "http://a/", 1, true));
+    assertEquals(1, tree.namespaceNodeCount());
+
+    tree.remove(a3);
+    assertEquals(0, tree.namespaceNodeCount());
+
+    // The AU can be added again
+    tree.add(makeArtifact("ns1", "au1", "http://a/", 2, true));
+    assertEquals(List.of("http://a/"), urls("ns1", "au1", null));
+  }
+
+  @Test
+  public void testSharedStrings() {
+    Artifact a1 = tree.add(makeArtifact(new String("ns1"), new String("au1"),
+                                        new String("http://a/"), 1, true));
+    Artifact a2 = tree.add(makeArtifact(new String("ns1"), new String("au1"),
+                                        new String("http://a/"), 2, true));
+    assertSame(a1.getNamespace(), a2.getNamespace());
+    assertSame(a1.getAuid(), a2.getAuid());
+    assertSame(a1.getUri(), a2.getUri());
+  }
+
+  @Test
+  public void testCopy() {
+    String ns = new String("ns1");
+    String auid = new String("au1");
+    String url = new String("http://a/");
+    tree.add(makeArtifact("ns1", "au1", "http://a/", 1, true));
+    Artifact art = makeArtifact(ns, auid, url, 2, false);
+    art.setCollectionDate(1234);
+    Artifact copy = tree.add(art);
+
+    // The caller's artifact isn't modified
+    assertNotSame(art, copy);
+    assertSame(ns, art.getNamespace());
+    assertSame(auid, art.getAuid());
+    assertSame(url, art.getUri());
+
+    assertEquals(art.getUuid(), copy.getUuid());
+    assertEquals("ns1", copy.getNamespace());
+    assertEquals("au1", copy.getAuid());
+    assertEquals("http://a/", copy.getUri());
+    assertEquals(2, (int)copy.getVersion());
+    assertFalse(copy.getCommitted());
+    assertEquals(art.getStorageUrl(), copy.getStorageUrl());
+    assertEquals(art.getContentLength(), copy.getContentLength());
+    assertEquals(art.getContentDigest(), copy.getContentDigest());
+    assertEquals(1234, copy.getCollectionDate());
+    assertSame(copy, tree.get("ns1", "au1", "http://a/").latest(true));
+
+    // Changes to the caller's artifact aren't seen by the tree
+    art.setCommitted(true);
+    assertEmpty(tree.get("ns1", "au1", "http://a/").version(2, false));
+  }
+}
@@ -143,8 +143,38 @@ public class TestLocalArtifactIndex extends AbstractArtifactIndexTest<LocalArtif
     }
 
     @Test
-    void populateFromPersistenceTest() {
-        // TODO
+    void populateFromPersistenceTest() throws IOException {
+        String uuid1 = UUID.randomUUID().toString();
+        String uuid2 = UUID.randomUUID().toString();
+        Artifact artifact1 = new Artifact(new ArtifactIdentifier(uuid1, "ns1", "auid1", "uri1", 1),
+            false, "volatile://test.warc?offset=0", 1024, "sha1");
+        Artifact artifact2 = new Artifact(new ArtifactIdentifier(uuid2, "ns1", "auid1", "uri2", 1),
+            false, "volatile://test.warc?offset=1024", 1024, "sha1");
+
+        index.addToIndex(uuid1, artifact1);
+        index.addToIndex(uuid2, artifact2);
+        index.commitArtifact(uuid1);
+        index.updateStorageUrl(uuid1, "volatile://test2.warc?offset=0");
+        index.removeFromIndex(uuid2);
+
+        // The mutations are in the log, not the snapshot
+        File logFile = new File(testBaseDir, PERSISTED_INDEX_NAME + LocalArtifactIndex.LOG_SUFFIX);
+        assertTrue(logFile.length() > 0);
+
+        // Populate a second LocalArtifactIndex from the snapshot and log
+        LocalArtifactIndex index2 = new LocalArtifactIndex(testBaseDir, PERSISTED_INDEX_NAME);
+
+        Artifact replayed = index2.getArtifact(uuid1);
+        assertNotNull(replayed);
+        assertTrue(replayed.getCommitted());
+        assertEquals("volatile://test2.warc?offset=0", replayed.getStorageUrl());
+        assertNull(index2.getArtifact(uuid2));
+        compareArtifactIndexes(index, index2);
+
+        // The log has been compacted into the snapshot
+        assertEquals(0, logFile.length());
+        LocalArtifactIndex index3 = new LocalArtifactIndex(testBaseDir, PERSISTED_INDEX_NAME);
+        compareArtifactIndexes(index, index3);
     }
 
     @Test
@@ -152,6 +182,53 @@ public class TestLocalArtifactIndex extends AbstractArtifactIndexTest<LocalArtif
         // TODO
     }
 
+    @Test
+    void replayPrevLogTest() throws IOException {
+        String uuid1 = UUID.randomUUID().toString();
+        Artifact artifact1 = new Artifact(new ArtifactIdentifier(uuid1, "ns1", "auid1", "uri1", 1),
+            false, "volatile://test.warc?offset=0", 1024, "sha1");
+
+        index.addToIndex(uuid1, artifact1);
+        index.commitArtifact(uuid1);
+        index.stop();
+
+        // Leave the log as if a compaction had started but not finished
+        File logFile = new File(testBaseDir, PERSISTED_INDEX_NAME + LocalArtifactIndex.LOG_SUFFIX);
+        File prevLogFile = new File(logFile.getPath() + LocalArtifactIndex.PREV_LOG_SUFFIX);
+        assertTrue(logFile.renameTo(prevLogFile));
+
+        LocalArtifactIndex index2 = new LocalArtifactIndex(testBaseDir, PERSISTED_INDEX_NAME);
+        Artifact replayed = index2.getArtifact(uuid1);
+        assertNotNull(replayed);
+        assertTrue(replayed.getCommitted());
+
+        // The previous log has been compacted into the snapshot
+        assertFalse(prevLogFile.exists());
+        assertEquals(0, logFile.length());
+        index2.removeFromIndex(uuid1);
+        index2.stop();
+
+        LocalArtifactIndex index3 = new LocalArtifactIndex(testBaseDir, PERSISTED_INDEX_NAME);
+        assertNull(index3.getArtifact(uuid1));
+    }
+
+    @Test
+    void unloggedMutationTest() throws IOException {
+        String uuid1 = UUID.randomUUID().toString();
+        Artifact artifact1 = new Artifact(new ArtifactIdentifier(uuid1, "ns1", "auid1", "uri1", 1),
+            false, "volatile://test.warc?offset=0", 1024, "sha1");
+
+        // With the log closed the mutation can't be appended, so a snapshot is written instead
+        index.stop();
+        index.addToIndex(uuid1, artifact1);
+        index.commitArtifact(uuid1);
+
+        LocalArtifactIndex index2 = new LocalArtifactIndex(testBaseDir, PERSISTED_INDEX_NAME);
+        Artifact persisted = index2.getArtifact(uuid1);
+        assertNotNull(persisted);
+        assertTrue(persisted.getCommitted());
+    }
+
     @Disabled
     @Test
     @Override
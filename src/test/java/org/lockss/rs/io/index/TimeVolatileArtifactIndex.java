@@ -0,0 +1,176 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.rs.io.index;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.lockss.test.*;
+import org.lockss.util.rest.repo.model.Artifact;
+import org.lockss.util.rest.repo.model.ArtifactIdentifier;
+
+/**
+ * Measures VolatileArtifactIndex prefix and latest-version lookups
+ * against a full scan of the index with a predicate.  The number of
+ * artifacts is set by the system property
+ * <code>TimeVolatileArtifactIndex.size</code> (default 1,000,000; 10M
+ * needs a heap of several GB).  Also reports the heap retained by the
+ * index.  Not run as part of the unit tests.
+ */
+public class TimeVolatileArtifactIndex extends LockssTiming {
+  static final String NS = "ns1";
+  static final int NUM_AUS = 100;
+  static final int NUM_VERSIONS = 2;
+
+  static int size = Integer.getInteger("TimeVolatileArtifactIndex.size",
+                                       1000000);
+  static VolatileArtifactIndex index;
+
+  Random rnd = new Random(1);
+
+  public void setUp() throws Exception {
+    super.setUp();
+    if (index == null) {
+      index = new VolatileArtifactIndex();
+      index.indexArtifacts(makeArtifacts());
+    }
+  }
+
+  static List<Artifact> makeArtifacts() {
+    List<Artifact> res = new ArrayList<>(size);
+    int perAu = size / NUM_AUS / NUM_VERSIONS;
+    for (int au = 0; au < NUM_AUS; au++) {
+      for (int ix = 0; ix < perAu; ix++) {
+        for (int ver = 1; ver <= NUM_VERSIONS; ver++) {
+          ArtifactIdentifier id =
+            new ArtifactIdentifier(UUID.randomUUID().toString(), NS,
+                                   auid(au), url(ix), ver);
+          res.add(new Artifact(id, true, "volatile://x", 1024, "sha1"));
+        }
+      }
+    }
+    return res;
+  }
+
+  static long usedHeap() throws InterruptedException {
+    Runtime rt = Runtime.getRuntime();
+    for (int ix = 0; ix < 3; ix++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+  static String auid(int au) {
+    return "org|lockss|plugin|TimePlugin&base_url~http%3A%2F%2Fh" + au
+      + "%2F";
+  }
+
+  static String url(int ix) {
+    return String.format("http://host.example.com/dir%d/file%06d.html",
+                         ix % 100, ix);
+  }
+
+  String randomAuid() {
+    return auid(rnd.nextInt(NUM_AUS));
+  }
+
+  public void testPrefix() throws Exception {
+    time(null, "Prefix, " + size + " artifacts", new Computation() {
+        public void execute() throws Exception {
+          String prefix = "http://host.example.com/dir" + rnd.nextInt(100)
+            + "/";
+          for (Artifact art :
+                 index.getArtifactsWithPrefix(NS, randomAuid(), prefix)) {
+            incrBytesProcessed(1);
+          }
+        }});
+  }
+
+  public void testPrefixScan() throws Exception {
+    time(null, "Prefix scan, " + size + " artifacts", new Computation() {
+        public void execute() throws Exception {
+          String prefix = "http://host.example.com/dir" + rnd.nextInt(100)
+            + "/";
+          VolatileArtifactPredicateBuilder q =
+            new VolatileArtifactPredicateBuilder();
+          q.filterByURIPrefix(prefix);
+          q.filterByCommitStatus(true);
+          q.filterByNamespace(NS);
+          q.filterByAuid(randomAuid());
+          incrBytesProcessed(index.indexedByUuid.values().stream()
+                             .filter(q.build())
+                             .collect(Collectors.groupingBy(Artifact::getUri))
+                             .size());
+        }});
+  }
+
+  public void testLatest() throws Exception {
+    int perAu = size / NUM_AUS / NUM_VERSIONS;
+    time(null, "Latest version, " + size + " artifacts", new Computation() {
+        public void execute() throws Exception {
+          for (int ix = 0; ix < 10000; ix++) {
+            if (index.getArtifact(NS, randomAuid(), url(rnd.nextInt(perAu)),
+                                  false) != null) {
+              incrBytesProcessed(1);
+            }
+          }
+        }});
+  }
+
+  /**
+   * Reports the heap retained by a list of the artifacts, as they arrive
+   * to be indexed, and by an index of them once the list has been
+   * dropped.
+   */
+  public void testHeapSize() throws Exception {
+    long base = usedHeap();
+    List<Artifact> artifacts = makeArtifacts();
+    int n = artifacts.size();
+    long listBytes = usedHeap() - base;
+    VolatileArtifactIndex idx = new VolatileArtifactIndex();
+    idx.indexArtifacts(artifacts);
+    artifacts = null;
+    long indexBytes = usedHeap() - base;
+    System.out.println("Heap, " + n + " artifacts: list "
+                       + listBytes / n + " bytes/artifact, index "
+                       + indexBytes / n + " bytes/artifact ("
+                       + indexBytes / (1024 * 1024) + " MB)");
+    assertEquals(n, idx.indexedByUuid.size());
+  }
+
+  public static void main(String[] argv) {
+    String[] testCaseList = { TimeVolatileArtifactIndex.class.getName()};
+    junit.textui.TestRunner.main(testCaseList);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2024, Board of Trustees of Leland Stanford Jr. University,
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.lockss.rs.io.index.solr;
+
+import org.junit.jupiter.api.Test;
+import org.lockss.util.rest.repo.model.Artifact;
+import org.lockss.util.rest.repo.util.ArtifactSpec;
+
+import java.util.Iterator;
+import java.util.UUID;
+
+/**
+ * Runs the {@link SolrArtifactIndex} tests with index updates coalesced into batches.
+ */
+public class TestSolrArtifactIndexCoalesced extends TestSolrArtifactIndex {
+
+  @Override
+  protected SolrArtifactIndex makeArtifactIndex() throws Exception {
+    SolrArtifactIndex index = super.makeArtifactIndex();
+
+    // Long enough that only explicit or size-triggered flushes happen during a test
+    index.setCommitWindow(60000);
+    index.setCommitBatchMax(3);
+
+    return index;
+  }
+
+  @Test
+  public void testCoalescedUpdates() throws Exception {
+    assertTrue(index.isCoalescingUpdates());
+
+    String uuid = UUID.randomUUID().toString();
+    ArtifactSpec spec = ArtifactSpec.forNsAuUrl("ns", "auid", "url");
+    spec.setArtifactUuid(uuid);
+    indexArtifactSpec(spec);
+
+    // Uncommitted artifact is visible before it has been sent to Solr
+    assertNull(index.getArtifact("ns", "auid", "url", false));
+    assertEquals(uuid, index.getArtifact("ns", "auid", "url", true).getUuid());
+    assertEquals(uuid, index.getArtifactVersion("ns", "auid", "url", 1, true).getUuid());
+
+    // Commit and storage URL change are visible before they have been sent to Solr
+    assertTrue(index.commitArtifact(uuid).getCommitted());
+    Artifact updated = index.updateStorageUrl(uuid, "file:///new/url");
+    assertEquals("file:///new/url", updated.getStorageUrl());
+
+    Artifact latest = index.getArtifact("ns", "auid", "url", false);
+    assertEquals(uuid, latest.getUuid());
+    assertTrue(latest.getCommitted());
+    assertEquals("file:///new/url", latest.getStorageUrl());
+
+    // Flushed updates are retrieved from Solr
+    index.flushPendingUpdates();
+
+    Artifact flushed = index.getArtifact(uuid);
+    assertTrue(flushed.getCommitted());
+    assertEquals("file:///new/url", flushed.getStorageUrl());
+
+    Iterator<Artifact> iter = index.getArtifacts("ns", "auid", false).iterator();
+    assertEquals(uuid, iter.next().getUuid());
+    assertFalse(iter.hasNext());
+  }
+
+  @Test
+  public void testSetCommitWindow() throws Exception {
+    assertThrows(IllegalArgumentException.class, () -> index.setCommitWindow(-1));
+    assertThrows(IllegalArgumentException.class, () -> index.setCommitBatchMax(0));
+  }
+}
@@ -1624,6 +1624,60 @@ public abstract class AbstractWarcArtifactDataStoreTest<WADS extends WarcArtifac
     }
   }
 
+  /**
+   * Test for the temporary WARC record index: {@link WarcArtifactDataStore#readWarcRecordIndex(Path)} and
+   * {@link WarcArtifactDataStore#removeTmpWarc(Path)}.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testWarcRecordIndex() throws Exception {
+    // Add two artifacts, one through a batch
+    ArtifactData ad1 = generateTestArtifactData(NS1, AUID1, "uri1", 1, 1024);
+    Artifact a1 = store.addArtifactData(ad1);
+
+    Artifact a2;
+    try (WarcArtifactDataStore.ArtifactBatch batch = store.openArtifactBatch()) {
+      ArtifactData ad2 = generateTestArtifactData(NS1, AUID1, "uri2", 1, 1024);
+      a2 = batch.add(ad2);
+    }
+
+    for (Artifact artifact : ListUtil.list(a1, a2)) {
+      Path tmpWarc = WarcArtifactDataStore.getPathFromStorageUrl(new URI(artifact.getStorageUrl()));
+      assertTrue(store.isTmpStorage(tmpWarc));
+
+      // Assert the index covers the temporary WARC and has an entry for the artifact
+      List<WarcRecordIndex.Entry> entries = store.readWarcRecordIndex(tmpWarc);
+      assertNotNull(entries);
+      assertEquals(WARCConstants.WARCRecordType.warcinfo.name(), entries.get(0).getType());
+
+      WarcRecordIndex.Entry entry = entries.stream()
+          .filter(e -> artifact.getUuid().equals(e.getArtifactIdentifier().getUuid()))
+          .findFirst()
+          .orElse(null);
+
+      assertNotNull(entry);
+      assertTrue(entry.isArtifact());
+      assertEquals(artifact.getIdentifier(), entry.getArtifactIdentifier());
+
+      // Uncommitted and unexpired: not removable
+      assertFalse(store.isTempWarcRecordRemovable(entry));
+    }
+
+    // Assert an index that no longer covers its WARC is not used
+    Path tmpWarc = WarcArtifactDataStore.getPathFromStorageUrl(new URI(a1.getStorageUrl()));
+
+    try (OutputStream output = store.getAppendableOutputStream(tmpWarc)) {
+      output.write("partial record".getBytes());
+    }
+
+    assertNull(store.readWarcRecordIndex(tmpWarc));
+
+    // Assert removing a temporary WARC removes its index
+    store.removeTmpWarc(tmpWarc);
+    assertNull(store.readWarcRecordIndex(tmpWarc));
+  }
+
   /**
    * Test for {@link WarcArtifactDataStore#isTempWarcRemovable(Path)}.
    *
@@ -2159,6 +2213,88 @@ public abstract class AbstractWarcArtifactDataStoreTest<WADS extends WarcArtifac
     assertNotNull(indexedArtifact);
   }
 
+  /**
+   * Test for {@link WarcArtifactDataStore.ArtifactBatch} and {@link WarcArtifactDataStore#commitArtifactsData(List)}.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testArtifactBatch_uncompressed() throws Exception {
+    runTestArtifactBatch(false);
+  }
+
+  @Test
+  public void testArtifactBatch_compressed() throws Exception {
+    runTestArtifactBatch(true);
+  }
+
+  public void runTestArtifactBatch(boolean useCompression) throws Exception {
+    store.setUseWarcCompression(useCompression);
+    store.setBatchMaxArtifacts(3);
+
+    List<ArtifactSpec> specs = new ArrayList<>();
+    String[][] auUrls = {{AUID1, URL1}, {AUID1, URL2}, {AUID2, URL1}, {AUID1, URL1 + "/discarded"}};
+
+    for (String[] auUrl : auUrls) {
+      ArtifactSpec spec = ArtifactSpec.forNsAuUrl(NS1, auUrl[0], auUrl[1]);
+      spec.setArtifactUuid(UUID.randomUUID().toString());
+      spec.generateContent();
+      specs.add(spec);
+    }
+
+    ArtifactIndex index = store.getArtifactIndex();
+    List<Artifact> added = new ArrayList<>();
+
+    try (WarcArtifactDataStore.ArtifactBatch batch = store.openArtifactBatch()) {
+      for (ArtifactSpec spec : specs) {
+        added.add(batch.add(spec.getArtifactData()));
+      }
+
+      // Assert the artifacts were written to the same temporary WARC and are not yet indexed
+      Path tmpWarcPath = WarcArtifactDataStore.getPathFromStorageUrl(new URI(added.get(0).getStorageUrl()));
+      assertTrue(store.isTmpStorage(tmpWarcPath));
+
+      for (Artifact artifact : added) {
+        assertEquals(tmpWarcPath, WarcArtifactDataStore.getPathFromStorageUrl(new URI(artifact.getStorageUrl())));
+        assertFalse(index.artifactExists(artifact.getUuid()));
+      }
+
+      assertTrue(batch.isFull());
+
+      // Discard the last artifact and flush the others to the index
+      batch.discard(added.get(3));
+      assertThrows(IllegalArgumentException.class, () -> batch.discard(added.get(3)));
+
+      assertIterableEquals(added.subList(0, 3), batch.flush());
+      assertFalse(batch.isFull());
+      assertEmpty(batch.flush());
+    }
+
+    for (int ix = 0; ix < 3; ix++) {
+      assertTrue(index.artifactExists(added.get(ix).getUuid()));
+      assertFalse(index.getArtifact(added.get(ix).getUuid()).getCommitted());
+    }
+    assertFalse(index.artifactExists(added.get(3).getUuid()));
+
+    // Commit the indexed artifacts together
+    List<Future<Artifact>> futures = store.commitArtifactsData(added.subList(0, 3));
+    assertEquals(3, futures.size());
+
+    for (int ix = 0; ix < 3; ix++) {
+      Artifact committed = futures.get(ix).get(10, TimeUnit.SECONDS);
+      assertTrue(committed.getCommitted());
+
+      Path warcPath = WarcArtifactDataStore.getPathFromStorageUrl(new URI(committed.getStorageUrl()));
+      assertFalse(store.isTmpStorage(warcPath));
+      assertEquals(committed.getStorageUrl(), index.getArtifact(committed.getUuid()).getStorageUrl());
+
+      ArtifactSpec spec = specs.get(ix);
+      spec.setCommitted(true);
+      spec.setStorageUrl(URI.create(committed.getStorageUrl()));
+      assertArtifact(spec, store, committed);
+    }
+  }
+
   /**
    * Test for {@link WarcArtifactDataStore#getArtifactData(Artifact)}.
    *
@@ -2652,6 +2788,67 @@ public abstract class AbstractWarcArtifactDataStoreTest<WADS extends WarcArtifac
     assertArtifactIndexEquals(index1, index2);
   }
 
+  /**
+   * Test that a reindex records each indexed WARC in the reindex state file, and that a restarted reindex skips the
+   * WARCs recorded there.
+   */
+  @Test
+  public void testReindexCheckpoint() throws Exception {
+    teardownDataStore();
+
+    ArtifactIndex index1 = new VolatileArtifactIndex();
+    index1.start();
+
+    store = makeWarcArtifactDataStore(index1);
+
+    // Setup mock BaseLockssRepository to pass repository state directory
+    File repoStateDir = getTempDir();
+    BaseLockssRepository repo = mock(BaseLockssRepository.class);
+    when(repo.getRepositoryStateDir()).thenReturn(repoStateDir);
+
+    // Touch reindex state file
+    Path indexStateDir = repoStateDir.toPath().resolve("index");
+    indexStateDir.toFile().mkdir();
+    File reindexStateFile = indexStateDir.resolve("reindex").toFile();
+    reindexStateFile.createNewFile();
+
+    // Add and commit an artifact
+    ArtifactData ad1 = generateTestArtifactData(NS1, AUID1, "uri1", 1, 1024);
+    Artifact a1 = store.addArtifactData(ad1);
+    Artifact committed_a1 = store.commitArtifactData(a1).get(10, TimeUnit.SECONDS);
+    assertTrue(committed_a1.getCommitted());
+
+    store.stop();
+
+    // Reindex with multiple threads
+    ArtifactIndex index2 = new VolatileArtifactIndex();
+    index2.start();
+    store = makeWarcArtifactDataStore(index2, store);
+    store.setLockssRepository(repo);
+    store.setReindexThreads(3);
+    store.reindexArtifacts(index2);
+
+    assertArtifactIndexEquals(index1, index2);
+
+    // Assert the permanent WARC holding the artifact was recorded, with a single header
+    Path warcPath = WarcArtifactDataStore.getPathFromStorageUrl(new URI(committed_a1.getStorageUrl()));
+    List<String> lines = FileUtils.readLines(reindexStateFile, "UTF-8");
+    assertEquals("start,end,indexed,warc", lines.get(0));
+    assertEquals(1, lines.stream().filter(line -> line.startsWith("start,")).count());
+    assertTrue(lines.stream().anyMatch(line -> line.endsWith("," + warcPath)));
+
+    store.stop();
+
+    // A restarted reindex skips WARCs that were already indexed
+    ArtifactIndex index3 = new VolatileArtifactIndex();
+    index3.start();
+    store = makeWarcArtifactDataStore(index3, store);
+    store.setLockssRepository(repo);
+    store.reindexArtifacts(index3);
+
+    assertFalse(index3.artifactExists(committed_a1.getUuid()));
+  }
+
   private void assertArtifactIndexEquals(ArtifactIndex expected, ArtifactIndex actual) throws IOException {
     // Assert both indexes have the same namespaces
     List<String> nss1 = IterableUtils.toList(expected.getNamespaces());
@@ -0,0 +1,190 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.rs.io.storage.warc;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lockss.util.test.LockssTestCase5;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test class for {@link FileChannelCache}.
+ */
+public class TestFileChannelCache extends LockssTestCase5 {
+  private Path file1;
+  private Path file2;
+  private Path file3;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    File dir = getTempDir();
+    file1 = writeFile(dir, "one", "0123456789");
+    file2 = writeFile(dir, "two", "abcdefghij");
+    file3 = writeFile(dir, "three", "ABCDEFGHIJ");
+  }
+
+  private Path writeFile(File dir, String name, String contents) throws IOException {
+    File file = new File(dir, name);
+    FileUtils.writeStringToFile(file, contents, StandardCharsets.US_ASCII);
+    return file.toPath();
+  }
+
+  private String read(FileChannelCache cache, Path path, long offset, long length) throws IOException {
+    try (InputStream input = cache.getInputStream(path, offset, length)) {
+      return IOUtils.toString(input, StandardCharsets.US_ASCII);
+    }
+  }
+
+  @Test
+  public void testRegions() throws Exception {
+    FileChannelCache cache = new FileChannelCache(2);
+
+    assertEquals("2345", read(cache, file1, 2, 4));
+    assertEquals("89", read(cache, file1, 8, 100));
+    assertEquals("56789", read(cache, file1, 5, -1));
+    assertEquals("", read(cache, file1, 10, 5));
+
+    try (InputStream input = cache.getInputStream(file1, 1, 6)) {
+      assertEquals('1', input.read());
+      assertEquals(5, input.available());
+      assertEquals(2, input.skip(2));
+      byte[] buf = new byte[10];
+      assertEquals(3, input.read(buf, 0, 10));
+      assertEquals("456", new String(buf, 0, 3, StandardCharsets.US_ASCII));
+      assertEquals(-1, input.read());
+      assertEquals(0, input.skip(1));
+    }
+
+    assertThrows(IllegalArgumentException.class, () -> new FileChannelCache(0));
+    assertThrows(IllegalArgumentException.class, () -> cache.getInputStream(file1, -1, 1));
+  }
+
+  @Test
+  public void testHitsOpensEvictions() throws Exception {
+    FileChannelCache cache = new FileChannelCache(2);
+
+    read(cache, file1, 0, 1);
+    read(cache, file1, 1, 1);
+    read(cache, file2, 0, 1);
+    assertEquals(2, cache.getOpens());
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getOpenChannels());
+
+    // Use file1 so that file2 is least recently used
+    read(cache, file1, 0, 1);
+    read(cache, file3, 0, 1);
+    assertEquals(3, cache.getOpens());
+    assertEquals(2, cache.getHits());
+    assertEquals(1, cache.getEvictions());
+    assertEquals(2, cache.getOpenChannels());
+
+    // file1 is still open, file2 must be reopened
+    read(cache, file1, 0, 1);
+    assertEquals(3, cache.getOpens());
+    read(cache, file2, 0, 1);
+    assertEquals(4, cache.getOpens());
+
+    cache.invalidate(file2);
+    assertEquals(1, cache.getOpenChannels());
+    cache.closeAll();
+    assertEquals(0, cache.getOpenChannels());
+  }
+
+  @Test
+  public void testEvictedWhileInUse() throws Exception {
+    FileChannelCache cache = new FileChannelCache(1);
+
+    try (InputStream input = cache.getInputStream(file1, 0, 10)) {
+      assertEquals('0', input.read());
+
+      // Evicts file1's channel, which must remain usable by the open stream
+      assertEquals("abc", read(cache, file2, 0, 3));
+      assertEquals(1, cache.getEvictions());
+
+      // Invalidated while in use
+      try (InputStream input2 = cache.getInputStream(file3, 0, 10)) {
+        cache.invalidate(file3);
+        assertEquals("ABCDEFGHIJ", IOUtils.toString(input2, StandardCharsets.US_ASCII));
+      }
+
+      assertEquals("123456789", IOUtils.toString(input, StandardCharsets.US_ASCII));
+    }
+
+    assertThrows(IOException.class, () -> {
+      InputStream input = cache.getInputStream(file1, 0, 10);
+      input.close();
+      input.read(new byte[1], 0, 1);
+    });
+  }
+
+  @Test
+  public void testInterruptedReader() throws Exception {
+    FileChannelCache cache = new FileChannelCache(2);
+
+    try (InputStream input = cache.getInputStream(file1, 0, 10)) {
+      assertEquals('0', input.read());
+
+      // Another stream on the same (shared) channel is read by a thread that has been interrupted, which closes the
+      // channel
+      AtomicReference<Throwable> thrown = new AtomicReference<>();
+      Thread reader = new Thread(() -> {
+        try (InputStream input2 = cache.getInputStream(file1, 0, 10)) {
+          Thread.currentThread().interrupt();
+          input2.read(new byte[4], 0, 4);
+        } catch (Throwable t) {
+          thrown.set(t);
+        }
+      });
+      reader.start();
+      reader.join();
+      assertTrue(thrown.get() instanceof ClosedByInterruptException, "Thrown: " + thrown.get());
+
+      // The first stream continues on a new channel
+      assertEquals("123456789", IOUtils.toString(input, StandardCharsets.US_ASCII));
+      assertEquals(1, cache.getReopens());
+    }
+
+    // The closed channel is no longer cached
+    assertEquals("0123456789", read(cache, file1, 0, 10));
+    assertEquals("abc", read(cache, file2, 0, 3));
+  }
+}
@@ -79,6 +79,7 @@ class TestWarcFilePool extends LockssTestCase5 {
     doCallRealMethod().when(store).setUseWarcCompression(ArgumentMatchers.anyBoolean());
     doCallRealMethod().when(store).getWarcFileExtension();
     doCallRealMethod().when(store).getUseWarcCompression();
+    doNothing().when(store).initWarcRecordIndex(ArgumentMatchers.any(WarcFile.class));
 
     store.setUseWarcCompression(useCompression);
 
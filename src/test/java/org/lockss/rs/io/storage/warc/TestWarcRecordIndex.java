@@ -0,0 +1,167 @@
+/*
+
+Copyright (c) 2000-2026, Board of Trustees of Leland Stanford Jr. University
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.lockss.rs.io.storage.warc;
+
+import org.junit.jupiter.api.Test;
+import org.lockss.util.ListUtil;
+import org.lockss.util.rest.repo.model.ArtifactIdentifier;
+import org.lockss.util.test.LockssTestCase5;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Test class for {@link WarcRecordIndex}.
+ */
+public class TestWarcRecordIndex extends LockssTestCase5 {
+
+  @Test
+  public void testGetIndexPath() {
+    assertEquals(Paths.get("/lockss/tmp/warcs/abc.warc.gz.idx"),
+        WarcRecordIndex.getIndexPath(Paths.get("/lockss/tmp/warcs/abc.warc.gz")));
+  }
+
+  @Test
+  public void testWriteRead() throws Exception {
+    ArtifactIdentifier aid =
+        new ArtifactIdentifier("uuid1", "ns1", "auid1", "http://example.com/a,b\"c\nd", 3);
+
+    List<WarcRecordIndex.Entry> entries = ListUtil.list(
+        new WarcRecordIndex.Entry("warcinfo", null, null, null, null, 0, 1000L, 0L, 100L),
+        new WarcRecordIndex.Entry("response", aid, 2000L, 100L, 50L));
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    WarcRecordIndex.write(entries.subList(0, 1), output);
+    WarcRecordIndex.write(entries.subList(1, 2), output);
+
+    List<WarcRecordIndex.Entry> read =
+        WarcRecordIndex.read(new ByteArrayInputStream(output.toByteArray()));
+
+    assertEquals(2, read.size());
+
+    assertFalse(read.get(0).isArtifact());
+    assertEquals("warcinfo", read.get(0).getType());
+    assertEquals(0L, read.get(0).getOffset());
+    assertEquals(100L, read.get(0).getLength());
+
+    WarcRecordIndex.Entry entry = read.get(1);
+    assertTrue(entry.isArtifact());
+    assertEquals(aid, entry.getArtifactIdentifier());
+    assertEquals(2000L, entry.getDate());
+    assertEquals(100L, entry.getOffset());
+    assertEquals(50L, entry.getLength());
+
+    // A truncated index is malformed
+    byte[] bytes = output.toByteArray();
+    ByteArrayInputStream truncated = new ByteArrayInputStream(bytes, 0, bytes.length - 8);
+    assertThrows(IOException.class, () -> WarcRecordIndex.read(truncated));
+  }
+
+  @Test
+  public void testAppender() throws Exception {
+    String prefix = "http://www.example.com/journals/volume1/issue2/";
+
+    List<WarcRecordIndex.Entry> entries = ListUtil.list(
+        new WarcRecordIndex.Entry("warcinfo", null, null, null, null, 0, 1000L, 0L, 100L),
+        new WarcRecordIndex.Entry("response", "u1", "ns1", "auid1", prefix + "article1.pdf", 1, 2000L, 100L, 50L),
+        new WarcRecordIndex.Entry("response", "u2", "ns1", "auid1", prefix + "article10.pdf", 1, 2000L, 150L, 50L),
+        new WarcRecordIndex.Entry("response", "u3", "ns1", "=auid2", prefix + "article1.pdf", 2, 2000L, 200L, 50L),
+        new WarcRecordIndex.Entry("response", "u4", "ns1", "=auid2", "http://other.example.com/", 1, 2000L, 250L, 50L),
+        new WarcRecordIndex.Entry("response", "u5", "=", "auid1", "http://other.example.com/\uD83D\uDE00", 1,
+            2000L, 300L, 50L),
+        new WarcRecordIndex.Entry("response", "u6", "=", "auid1", "http://other.example.com/\uD83D\uDE01", 1,
+            2000L, 350L, 50L));
+
+    // Append in several calls to the same appender
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (WarcRecordIndex.Appender appender = new WarcRecordIndex.Appender(output)) {
+      appender.append(entries.subList(0, 2));
+      appender.append(entries.subList(2, 5));
+      appender.append(entries.subList(5, 7));
+    }
+
+    assertEntriesEqual(entries, WarcRecordIndex.read(new ByteArrayInputStream(output.toByteArray())));
+
+    // Repeated namespaces, AUIDs and URL prefixes are not written in full
+    ByteArrayOutputStream full = new ByteArrayOutputStream();
+    for (WarcRecordIndex.Entry entry : entries) {
+      WarcRecordIndex.write(ListUtil.list(entry), full);
+    }
+
+    assertTrue(output.size() < full.size());
+    assertEntriesEqual(entries, WarcRecordIndex.read(new ByteArrayInputStream(full.toByteArray())));
+
+    // A reference to a previous entry in the first entry is malformed
+    assertThrows(IOException.class, () -> WarcRecordIndex.read(new ByteArrayInputStream(
+        "response,u1,=,auid1,0,http://example.com/,1,2000,100,50\r\n".getBytes(StandardCharsets.UTF_8))));
+  }
+
+  private static void assertEntriesEqual(List<WarcRecordIndex.Entry> expected, List<WarcRecordIndex.Entry> actual) {
+    assertEquals(expected.size(), actual.size());
+
+    for (int i = 0; i < expected.size(); i++) {
+      WarcRecordIndex.Entry e = expected.get(i);
+      WarcRecordIndex.Entry a = actual.get(i);
+
+      assertEquals(e.getType(), a.getType());
+      assertEquals(e.getArtifactIdentifier(), a.getArtifactIdentifier());
+      assertEquals(e.getDate(), a.getDate());
+      assertEquals(e.getOffset(), a.getOffset());
+      assertEquals(e.getLength(), a.getLength());
+    }
+  }
+
+  @Test
+  public void testIsComplete() {
+    WarcRecordIndex.Entry e1 = new WarcRecordIndex.Entry("warcinfo", null, null, null, null, 0, 0L, 0L, 100L);
+    WarcRecordIndex.Entry e2 = new WarcRecordIndex.Entry("resource", "u2", "ns", "au", "url", 1, 0L, 100L, 50L);
+    WarcRecordIndex.Entry e3 = new WarcRecordIndex.Entry("resource", "u3", "ns", "au", "url", 2, 0L, 150L, 25L);
+
+    assertTrue(WarcRecordIndex.isComplete(ListUtil.list(e1, e2, e3), 175L));
+    assertTrue(WarcRecordIndex.isComplete(ListUtil.list(e3, e1, e2), 175L));
+
+    // Record(s) at the end of the WARC not in the index
+    assertFalse(WarcRecordIndex.isComplete(ListUtil.list(e1, e2), 175L));
+    assertFalse(WarcRecordIndex.isComplete(ListUtil.list(e1, e2, e3), 200L));
+
+    // Gap
+    assertFalse(WarcRecordIndex.isComplete(ListUtil.list(e1, e3), 175L));
+
+    // No warcinfo record
+    assertFalse(WarcRecordIndex.isComplete(ListUtil.list(e2, e3), 175L));
+  }
+}
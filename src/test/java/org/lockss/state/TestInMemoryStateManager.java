@@ -28,6 +28,7 @@ in this Software without prior written authorization from Stanford University.
 
 package org.lockss.state;
 
+import java.util.concurrent.atomic.*;
 import org.junit.*;
 import org.lockss.plugin.*;
 import org.lockss.protocol.*;
@@ -36,7 +37,7 @@ import org.lockss.test.*;
 
 public class TestInMemoryStateManager extends StateTestCase {
 
-  InMemoryStateManager myStateMgr;
+  MyInMemoryStateManager myStateMgr;
 
   @Before
   public void setUp() throws Exception {
@@ -45,7 +46,7 @@ public class TestInMemoryStateManager extends StateTestCase {
 
   @Override
   protected StateManager makeStateManager() {
-    myStateMgr = new InMemoryStateManager();
+    myStateMgr = new MyInMemoryStateManager();
     return myStateMgr;
   }
 
@@ -142,6 +143,59 @@ public class TestInMemoryStateManager extends StateTestCase {
     assertFalse(naps1.contains(pid1));
   }
 
+  @Test
+  public void testCacheMissesForDifferentAusLoadInParallel()
+      throws Exception {
+    // AUID1 and AUID2 must hash to different stripes for this test
+    assertNotEquals(Math.floorMod(AUID1.hashCode(),
+				  CachingStateManager.DEFAULT_LOCK_STRIPES),
+		    Math.floorMod(AUID2.hashCode(),
+				  CachingStateManager.DEFAULT_LOCK_STRIPES));
+    myStateMgr.blockKey = AUID1;
+    AtomicReference<AuAgreements> res1 = new AtomicReference<>();
+    AtomicReference<AuAgreements> res1b = new AtomicReference<>();
+    Thread t1 = new Thread(() -> res1.set(stateMgr.getAuAgreements(AUID1)));
+    t1.start();
+    assertTrue(myStateMgr.loading.take(TIMEOUT_SHOULDNT));
+
+    // A second request for the AU being loaded must wait for that load
+    Thread t1b = new Thread(() -> res1b.set(stateMgr.getAuAgreements(AUID1)));
+    t1b.start();
+
+    // while a miss for a different AU doesn't
+    AtomicReference<AuAgreements> res2 = new AtomicReference<>();
+    Thread t2 = new Thread(() -> res2.set(stateMgr.getAuAgreements(AUID2)));
+    t2.start();
+    t2.join(TIMEOUT_SHOULDNT);
+    assertNotNull(res2.get());
+    assertNull(res1.get());
+    assertNull(res1b.get());
+
+    myStateMgr.release.give();
+    t1.join(TIMEOUT_SHOULDNT);
+    t1b.join(TIMEOUT_SHOULDNT);
+    assertNotNull(res1.get());
+    assertSame(res1.get(), res1b.get());
+    assertEquals(1, myStateMgr.blockedLoads.get());
+  }
+
+  static class MyInMemoryStateManager extends InMemoryStateManager {
+    String blockKey;
+    SimpleBinarySemaphore loading = new SimpleBinarySemaphore();
+    SimpleBinarySemaphore release = new SimpleBinarySemaphore();
+    AtomicInteger blockedLoads = new AtomicInteger();
+
+    @Override
+    protected AuAgreements doLoadAuAgreements(String key) {
+      if (key.equals(blockKey)) {
+	blockedLoads.incrementAndGet();
+	loading.give();
+	release.take(TIMEOUT_SHOULDNT);
+      }
+      return super.doLoadAuAgreements(key);
+    }
+  }
+
   void auEvent(ArchivalUnit au, AuEvent.Type type) {
     pluginMgr.signalAuEvent(au, AuEvent.forAu(au, type));
   }
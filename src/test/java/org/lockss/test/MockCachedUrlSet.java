@@ -59,7 +59,8 @@ public class MockCachedUrlSet implements CachedUrlSet {
   private boolean hasContentIsSet = false;
   private boolean hasContent = false;
 
-  private Set cachedUrls = new HashSet();
+  // Added to by concurrent fetch threads in some crawler tests
+  private Set cachedUrls = Collections.synchronizedSet(new HashSet());
   private Set forceCachedUrls = new HashSet();
 
   private Iterator flatIterator = null;
@@ -133,4 +133,79 @@ public class TestRegexpUtil extends LockssTestCase {
     assertEquals("foo\\.b\\[a\\]\\ r", RegexpUtil.quotemeta("foo.b[a] r"));
     assertEquals("foo\\.b\\(a\\)\\ r", RegexpUtil.quotemeta("foo.b(a) r"));
   }
+
+  int RO = Perl5Compiler.READ_ONLY_MASK;
+  int CI = Perl5Compiler.READ_ONLY_MASK | Perl5Compiler.CASE_INSENSITIVE_MASK;
+
+  String[] TRANSLATE_RES = {
+    "^https?://www\\.example\\.com/",
+    "^http://example\\.com/(issue|vol)/[0-9]+/?$",
+    "\\.(css|js|gif|jpe?g|png)(\\?.*)?$",
+    "[a[]",
+    "[&&b]",
+    "[^/]+/\\d{2,4}\\b",
+    "^foo.*bar",
+  };
+
+  String[] TRANSLATE_STRS = {
+    "", "a", "]]]", "[", "&", "b", "http://www.example.com/",
+    "https://www.example.com/foo", "http://example.com/issue/12/",
+    "http://example.com/vol/12", "http://example.com/vol/", "x/foo.JPG",
+    "x/foo.jpg?v=1", "x/foo.css", "ab/1234 z", "a/1 z", "FOObar",
+    "fooxxbar",
+  };
+
+  // Translated patterns must agree with ORO on every string
+  public void testToJavaPattern() throws Exception {
+    Perl5Matcher matcher = RegexpUtil.getMatcher();
+    for (String re : TRANSLATE_RES) {
+      for (int opts : new int[] {RO, CI}) {
+	Pattern oro = RegexpUtil.getCompiler().compile(re, opts);
+	java.util.regex.Pattern jpat = RegexpUtil.toJavaPattern(re, opts);
+	assertNotNull(re, jpat);
+	for (String str : TRANSLATE_STRS) {
+	  assertEquals(re + " ~ " + str, matcher.contains(str, oro),
+		       jpat.matcher(str).find());
+	}
+      }
+    }
+  }
+
+  public void testToJavaPatternUntranslatable() {
+    // Escapes whose meaning may differ
+    assertNull(RegexpUtil.toJavaPattern("\\p{Alpha}", RO));
+    assertNull(RegexpUtil.toJavaPattern("\\Qa.b\\E", RO));
+    assertNull(RegexpUtil.toJavaPattern("\\h", RO));
+    // POSIX class
+    assertNull(RegexpUtil.toJavaPattern("[[:alpha:]]", RO));
+    // Unsupported options
+    assertNull(RegexpUtil.toJavaPattern("^foo",
+					Perl5Compiler.MULTILINE_MASK));
+    // Not valid java.util.regex syntax
+    assertNull(RegexpUtil.toJavaPattern("a{b", RO));
+  }
+
+  public void testGetLiteralPrefix() {
+    assertEquals("http://www.example.com/",
+		 RegexpUtil.getLiteralPrefix("^http://www\\.example\\.com/",
+					     RO));
+    assertEquals("http",
+		 RegexpUtil.getLiteralPrefix("^https?://www\\.example\\.com/",
+					     RO));
+    assertEquals("http://foo.com/",
+		 RegexpUtil.getLiteralPrefix("^http://foo\\.com/[0-9]+", RO));
+    assertEquals("fo",
+		 RegexpUtil.getLiteralPrefix("^foo*", RO));
+    assertEquals("fo",
+		 RegexpUtil.getLiteralPrefix("^foo{0,2}", RO));
+    assertEquals("foo",
+		 RegexpUtil.getLiteralPrefix("^foo+", RO));
+    assertEquals("foo",
+		 RegexpUtil.getLiteralPrefix("^foo\\d", RO));
+    assertNull(RegexpUtil.getLiteralPrefix("http://foo\\.com/", RO));
+    assertNull(RegexpUtil.getLiteralPrefix("^foo|^bar", RO));
+    assertNull(RegexpUtil.getLiteralPrefix("^foo", CI));
+    assertNull(RegexpUtil.getLiteralPrefix("^.foo", RO));
+    assertNull(RegexpUtil.getLiteralPrefix("^f?oo", RO));
+  }
 }